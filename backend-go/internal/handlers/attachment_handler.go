@@ -1,6 +1,7 @@
 package handlers
 
 import (
+	"context"
 	"io"
 	"mime"
 	"net/http"
@@ -122,43 +123,53 @@ func (h *AttachmentHandler) Upload(w http.ResponseWriter, r *http.Request) {
 		api.WriteError(w, r, http.StatusBadRequest, "Tipo de arquivo nao permitido.")
 		return
 	}
-	total, err := h.store.CountAttachmentsBySolicitacao(r.Context(), solicitacaoID)
-	if err != nil {
-		api.WriteError(w, r, http.StatusInternalServerError, "Erro ao consultar anexos.")
-		return
-	}
-	if total >= maxAttachments {
-		api.WriteError(w, r, http.StatusBadRequest, "Limite de anexos atingido.")
-		return
-	}
-
 	originalName := sanitizeOriginalName(header.Filename)
-	storedName := buildStoredName(solicitacao, originalName, total+1)
 	folderID, err := h.storage.EnsureFolder(solicitacaoID)
 	if err != nil {
 		api.WriteError(w, r, http.StatusInternalServerError, "Falha ao criar pasta de anexos.")
 		return
 	}
-	fileID, err := h.storage.UploadFile(folderID, storedName, file)
-	if err != nil {
-		api.WriteError(w, r, http.StatusInternalServerError, "Falha ao salvar arquivo localmente.")
-		return
-	}
-
-	attachment, err := h.store.CreateAttachment(r.Context(), domain.Attachment{
+	// A vaga e o numero do nome saem do contador da solicitacao, na mesma transacao que registra
+	// a reserva PENDENTE: uploads simultaneos nao passam do limite nem gravam por cima um do
+	// outro, e uma queda antes da confirmacao deixa a reserva para a limpeza do backend Java.
+	reserva, ok, err := h.store.ReserveAttachment(r.Context(), domain.Attachment{
 		SolicitacaoID: solicitacaoID,
-		DriveFileID:   fileID,
 		DriveFolderID: &folderID,
 		OriginalName:  originalName,
-		StoredName:    storedName,
 		ContentType:   contentType,
 		Size:          header.Size,
 		UploadedBy:    conta.Usuario,
+	}, maxAttachments, func(sequencia int64) (string, string, error) {
+		storedName := buildStoredName(solicitacao, originalName, sequencia)
+		fileID, err := h.storage.FileID(folderID, storedName)
+		return storedName, fileID, err
 	})
+	if err != nil {
+		api.WriteError(w, r, http.StatusInternalServerError, "Erro ao consultar anexos.")
+		return
+	}
+	if !ok {
+		api.WriteError(w, r, http.StatusBadRequest, "Limite de anexos atingido.")
+		return
+	}
+	confirmado := false
+	defer func() {
+		if !confirmado {
+			_ = h.storage.DeleteFile(reserva.DriveFileID)
+			_ = h.store.DiscardAttachment(context.Background(), reserva.ID)
+		}
+	}()
+
+	if _, err := h.storage.UploadFile(folderID, reserva.StoredName, file); err != nil {
+		api.WriteError(w, r, http.StatusInternalServerError, "Falha ao salvar arquivo localmente.")
+		return
+	}
+	attachment, err := h.store.ConfirmAttachment(r.Context(), reserva.ID)
 	if err != nil {
 		api.WriteError(w, r, http.StatusInternalServerError, "Erro ao registrar anexo.")
 		return
 	}
+	confirmado = true
 	referenciaTipo := "SOLICITACAO"
 	referenciaID := strconv.FormatInt(solicitacaoID, 10)
 	_ = h.store.RegistrarAuditoria(r.Context(), store.AuditoriaInput{
@@ -264,7 +275,6 @@ func (h *AttachmentHandler) Delete(w http.ResponseWriter, r *http.Request) {
 		return
 	}
 
-	_ = h.storage.DeleteFile(attachment.DriveFileID)
 	if err := h.store.DeleteAttachmentByID(r.Context(), attachmentID); err != nil {
 		if err == store.ErrAnexoNaoEncontrado {
 			api.WriteError(w, r, http.StatusNotFound, "Anexo nao encontrado.")
@@ -273,6 +283,8 @@ func (h *AttachmentHandler) Delete(w http.ResponseWriter, r *http.Request) {
 		api.WriteError(w, r, http.StatusInternalServerError, "Erro ao excluir anexo.")
 		return
 	}
+	// Depois do registro: arquivos avulsos saem aqui; blobs ficam para a coleta por referencias.
+	_ = h.storage.DeleteFile(attachment.DriveFileID)
 	referenciaTipo := "SOLICITACAO"
 	referenciaID := strconv.FormatInt(attachment.SolicitacaoID, 10)
 	_ = h.store.RegistrarAuditoria(r.Context(), store.AuditoriaInput{
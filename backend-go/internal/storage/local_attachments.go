@@ -1,6 +1,8 @@
 package storage
 
 import (
+	"crypto/sha256"
+	"encoding/hex"
 	"errors"
 	"io"
 	"os"
@@ -12,6 +14,13 @@ import (
 const (
 	localFolderPrefix = "local-folder:"
 	localFilePrefix   = "local-file:"
+
+	// Pastas por solicitacao distribuidas em pastas/ab/cd/<id>/ (mesmo formato do backend Java).
+	localFileV2Prefix = "local-file:v2:"
+	pastasDir         = "pastas"
+
+	// Blobs enderecados por conteudo, gravados e coletados pelo backend Java (compartilhados entre anexos).
+	localBlobPrefix = "local-blob:"
 )
 
 type LocalAttachments struct {
@@ -28,25 +37,30 @@ func (s *LocalAttachments) EnsureFolder(requestID int64) (string, error) {
 	if requestID <= 0 {
 		return "", errors.New("id da solicitacao obrigatorio para criar pasta")
 	}
-	folder := filepath.Join(s.root, strconv.FormatInt(requestID, 10))
-	if err := s.ensureWithinRoot(folder); err != nil {
-		return "", err
-	}
+	folder := filepath.Join(s.root, pastasDir, filepath.FromSlash(pastaDistribuida(strconv.FormatInt(requestID, 10))))
 	if err := os.MkdirAll(folder, 0o755); err != nil {
 		return "", err
 	}
 	return localFolderPrefix + strconv.FormatInt(requestID, 10), nil
 }
 
-func (s *LocalAttachments) UploadFile(folderID, storedName string, reader io.Reader) (string, error) {
+// FileID devolve o ID que UploadFile vai gerar para o arquivo, sem gravar nada: permite
+// registrar a reserva antes da gravacao.
+func (s *LocalAttachments) FileID(folderID, storedName string) (string, error) {
 	requestID, err := parseRequestID(folderID)
 	if err != nil {
 		return "", err
 	}
-	folder := filepath.Join(s.root, strconv.FormatInt(requestID, 10))
-	if err := s.ensureWithinRoot(folder); err != nil {
+	return localFileV2Prefix + pastaDistribuida(strconv.FormatInt(requestID, 10)) + "/" + storedName, nil
+}
+
+func (s *LocalAttachments) UploadFile(folderID, storedName string, reader io.Reader) (string, error) {
+	requestID, err := parseRequestID(folderID)
+	if err != nil {
 		return "", err
 	}
+	pasta := pastaDistribuida(strconv.FormatInt(requestID, 10))
+	folder := filepath.Join(s.root, pastasDir, filepath.FromSlash(pasta))
 	if err := os.MkdirAll(folder, 0o755); err != nil {
 		return "", err
 	}
@@ -64,7 +78,7 @@ func (s *LocalAttachments) UploadFile(folderID, storedName string, reader io.Rea
 	if _, err := io.Copy(file, reader); err != nil {
 		return "", err
 	}
-	return localFilePrefix + strconv.FormatInt(requestID, 10) + "/" + storedName, nil
+	return localFileV2Prefix + pasta + "/" + storedName, nil
 }
 
 func (s *LocalAttachments) OpenFile(fileID string) (*os.File, error) {
@@ -76,6 +90,10 @@ func (s *LocalAttachments) OpenFile(fileID string) (*os.File, error) {
 }
 
 func (s *LocalAttachments) DeleteFile(fileID string) error {
+	if strings.HasPrefix(fileID, localBlobPrefix) {
+		// O blob pode estar em uso por outros anexos; a remocao fica com a coleta por referencias.
+		return nil
+	}
 	path, err := s.resolveLocalFile(fileID)
 	if err != nil {
 		return err
@@ -88,18 +106,76 @@ func (s *LocalAttachments) DeleteFile(fileID string) error {
 }
 
 func (s *LocalAttachments) resolveLocalFile(fileID string) (string, error) {
+	if strings.HasPrefix(fileID, localBlobPrefix) {
+		sha := strings.TrimPrefix(fileID, localBlobPrefix)
+		if len(sha) != 64 || strings.Trim(sha, "0123456789abcdef") != "" {
+			return "", errors.New("id de blob local invalido")
+		}
+		return filepath.Join(s.root, "blobs", sha[0:2], sha[2:4], sha), nil
+	}
 	if !strings.HasPrefix(fileID, localFilePrefix) {
 		return "", errors.New("id de arquivo invalido para armazenamento local")
 	}
+	fullPath, err := s.caminhoLegado(fileID)
+	if err != nil {
+		return "", err
+	}
+	if _, err := os.Stat(fullPath); err == nil {
+		return fullPath, nil
+	}
+	// Durante a migracao das pastas (feita pelo backend Java) o arquivo pode estar no outro formato.
+	if alternativo := idAlternativo(fileID); alternativo != "" {
+		if outro, err := s.caminhoLegado(alternativo); err == nil {
+			if _, err := os.Stat(outro); err == nil {
+				return outro, nil
+			}
+		}
+	}
+	return fullPath, nil
+}
+
+func (s *LocalAttachments) caminhoLegado(fileID string) (string, error) {
+	base := s.root
 	relative := strings.TrimPrefix(fileID, localFilePrefix)
-	relative = filepath.Clean(relative)
-	fullPath := filepath.Join(s.root, relative)
+	if strings.HasPrefix(fileID, localFileV2Prefix) {
+		base = filepath.Join(s.root, pastasDir)
+		relative = strings.TrimPrefix(fileID, localFileV2Prefix)
+	}
+	fullPath := filepath.Join(base, filepath.Clean(relative))
 	if err := s.ensureWithinRoot(fullPath); err != nil {
 		return "", err
 	}
 	return fullPath, nil
 }
 
+// idAlternativo devolve o mesmo arquivo no outro formato de ID (local-file:<id>/<nome> ou
+// local-file:v2:ab/cd/<id>/<nome>), ou "" se o ID nao segue nenhum dos dois.
+func idAlternativo(fileID string) string {
+	if strings.HasPrefix(fileID, localFileV2Prefix) {
+		partes := strings.SplitN(strings.TrimPrefix(fileID, localFileV2Prefix), "/", 4)
+		if len(partes) != 4 || !numerico(partes[2]) {
+			return ""
+		}
+		return localFilePrefix + partes[2] + "/" + partes[3]
+	}
+	partes := strings.SplitN(strings.TrimPrefix(fileID, localFilePrefix), "/", 2)
+	if len(partes) != 2 || !numerico(partes[0]) {
+		return ""
+	}
+	return localFileV2Prefix + pastaDistribuida(partes[0]) + "/" + partes[1]
+}
+
+// pastaDistribuida devolve ab/cd/<id>, com ab e cd tirados do SHA-256 do ID.
+func pastaDistribuida(pasta string) string {
+	hash := sha256.Sum256([]byte(pasta))
+	h := hex.EncodeToString(hash[:2])
+	return h[0:2] + "/" + h[2:4] + "/" + pasta
+}
+
+func numerico(valor string) bool {
+	return valor != "" && strings.Trim(valor, "0123456789") == ""
+}
+
 func (s *LocalAttachments) ensureWithinRoot(path string) error {
 	rootAbs, err := filepath.Abs(s.root)
 	if err != nil {
@@ -170,7 +170,7 @@ func (s *PostgresStore) ListAttachmentsBySolicitacao(ctx context.Context, solici
 	rows, err := s.Pool.Query(ctx, `
 		SELECT id, solicitacao_id, drive_file_id, drive_folder_id, original_name, stored_name, content_type, size, uploaded_by, created_at
 		FROM anexos
-		WHERE solicitacao_id = $1
+		WHERE solicitacao_id = $1 AND status = 'CONFIRMADO'
 		ORDER BY created_at ASC, id ASC
 	`, solicitacaoID)
 	if err != nil {
@@ -9,18 +9,119 @@ import (
 	"github.com/jackc/pgx/v5"
 )
 
-func (s *PostgresStore) CountAttachmentsBySolicitacao(ctx context.Context, solicitacaoID int64) (int64, error) {
-	var total int64
-	err := s.Pool.QueryRow(ctx, "SELECT COUNT(1) FROM anexos WHERE solicitacao_id = $1", solicitacaoID).Scan(&total)
-	return total, err
+// ReserveAttachment reserva uma vaga no contador da solicitacao (o mesmo do backend Java) e,
+// na mesma transacao, registra o anexo como PENDENTE com o nome e o arquivo planejados para o
+// numero reservado. Se o processo cair antes da confirmacao, a limpeza de reservas do backend
+// Java remove a linha e o arquivo e devolve a vaga. Devolve ok=false no limite.
+func (s *PostgresStore) ReserveAttachment(
+	ctx context.Context,
+	attachment domain.Attachment,
+	max int64,
+	planejar func(sequencia int64) (storedName string, fileID string, err error),
+) (*domain.Attachment, bool, error) {
+	tx, err := s.Pool.BeginTx(ctx, pgx.TxOptions{})
+	if err != nil {
+		return nil, false, err
+	}
+	defer rollbackQuietly(ctx, tx)
+
+	var sequencia int64
+	err = tx.QueryRow(ctx, `
+		UPDATE solicitacoes
+		SET anexos_total = anexos_total + 1, anexos_sequencia = anexos_sequencia + 1
+		WHERE id = $1 AND anexos_total + 1 <= $2
+		RETURNING anexos_sequencia
+	`, attachment.SolicitacaoID, max).Scan(&sequencia)
+	if err != nil {
+		if errors.Is(err, pgx.ErrNoRows) {
+			return nil, false, nil
+		}
+		return nil, false, err
+	}
+	storedName, fileID, err := planejar(sequencia)
+	if err != nil {
+		return nil, false, err
+	}
+
+	out := attachment
+	out.StoredName = storedName
+	out.DriveFileID = fileID
+	err = tx.QueryRow(ctx, `
+		INSERT INTO anexos (
+			solicitacao_id, drive_file_id, drive_folder_id, original_name, stored_name, content_type, size, uploaded_by, created_at, status
+		) VALUES ($1,$2,$3,$4,$5,$6,$7,$8,$9,'PENDENTE')
+		RETURNING id, created_at
+	`,
+		out.SolicitacaoID,
+		out.DriveFileID,
+		out.DriveFolderID,
+		out.OriginalName,
+		out.StoredName,
+		out.ContentType,
+		out.Size,
+		out.UploadedBy,
+		time.Now().UTC(),
+	).Scan(&out.ID, &out.CreatedAt)
+	if err != nil {
+		return nil, false, err
+	}
+	if err := tx.Commit(ctx); err != nil {
+		return nil, false, err
+	}
+	return &out, true, nil
+}
+
+// ConfirmAttachment torna visivel um anexo reservado depois que o arquivo foi gravado. Devolve
+// ErrAnexoNaoEncontrado se a reserva ja foi removida pela limpeza.
+func (s *PostgresStore) ConfirmAttachment(ctx context.Context, attachmentID int64) (*domain.Attachment, error) {
+	var out domain.Attachment
+	err := s.Pool.QueryRow(ctx, `
+		UPDATE anexos SET status = 'CONFIRMADO'
+		WHERE id = $1 AND status = 'PENDENTE'
+		RETURNING id, solicitacao_id, drive_file_id, drive_folder_id, original_name, stored_name, content_type, size, uploaded_by, created_at
+	`, attachmentID).Scan(
+		&out.ID,
+		&out.SolicitacaoID,
+		&out.DriveFileID,
+		&out.DriveFolderID,
+		&out.OriginalName,
+		&out.StoredName,
+		&out.ContentType,
+		&out.Size,
+		&out.UploadedBy,
+		&out.CreatedAt,
+	)
+	if err != nil {
+		if errors.Is(err, pgx.ErrNoRows) {
+			return nil, ErrAnexoNaoEncontrado
+		}
+		return nil, err
+	}
+	return &out, nil
+}
+
+// DiscardAttachment remove uma reserva que nao virou anexo e devolve a vaga, no mesmo comando
+// (como o removerPendentes do backend Java): reserva ja confirmada ou removida fica de fora.
+func (s *PostgresStore) DiscardAttachment(ctx context.Context, attachmentID int64) error {
+	_, err := s.Pool.Exec(ctx, `
+		WITH removidos AS (
+			DELETE FROM anexos WHERE id = $1 AND status = 'PENDENTE' RETURNING solicitacao_id
+		)
+		UPDATE solicitacoes s
+		SET anexos_total = GREATEST(s.anexos_total - 1, 0)
+		FROM removidos
+		WHERE s.id = removidos.solicitacao_id
+	`, attachmentID)
+	return err
 }
 
+// FindAttachmentByID ignora anexos PENDENTE: o upload pelo backend Java ainda nao terminou.
 func (s *PostgresStore) FindAttachmentByID(ctx context.Context, attachmentID int64) (*domain.Attachment, error) {
 	var item domain.Attachment
 	err := s.Pool.QueryRow(ctx, `
 		SELECT id, solicitacao_id, drive_file_id, drive_folder_id, original_name, stored_name, content_type, size, uploaded_by, created_at
 		FROM anexos
-		WHERE id = $1
+		WHERE id = $1 AND status = 'CONFIRMADO'
 		LIMIT 1
 	`, attachmentID).Scan(
 		&item.ID,
@@ -43,47 +144,43 @@ func (s *PostgresStore) FindAttachmentByID(ctx context.Context, attachmentID int
 	return &item, nil
 }
 
-func (s *PostgresStore) CreateAttachment(ctx context.Context, attachment domain.Attachment) (*domain.Attachment, error) {
-	var out domain.Attachment
-	err := s.Pool.QueryRow(ctx, `
-		INSERT INTO anexos (
-			solicitacao_id, drive_file_id, drive_folder_id, original_name, stored_name, content_type, size, uploaded_by, created_at
-		) VALUES ($1,$2,$3,$4,$5,$6,$7,$8,$9)
-		RETURNING id, solicitacao_id, drive_file_id, drive_folder_id, original_name, stored_name, content_type, size, uploaded_by, created_at
-	`,
-		attachment.SolicitacaoID,
-		attachment.DriveFileID,
-		attachment.DriveFolderID,
-		attachment.OriginalName,
-		attachment.StoredName,
-		attachment.ContentType,
-		attachment.Size,
-		attachment.UploadedBy,
-		time.Now().UTC(),
-	).Scan(
-		&out.ID,
-		&out.SolicitacaoID,
-		&out.DriveFileID,
-		&out.DriveFolderID,
-		&out.OriginalName,
-		&out.StoredName,
-		&out.ContentType,
-		&out.Size,
-		&out.UploadedBy,
-		&out.CreatedAt,
-	)
-	if err != nil {
-		return nil, err
-	}
-	return &out, nil
-}
+// liberarBlobsRemovidos devolve as referencias a anexo_blobs dos anexos apagados no CTE
+// "removidos", na mesma regra do AnexoBlobRepository.liberar do backend Java: ao chegar a zero,
+// o blob ganha liberado_em e a coleta do Java o remove apos a carencia.
+const liberarBlobsRemovidos = `
+	liberados AS (
+		SELECT sha, count(*) AS qtd
+		FROM removidos, unnest(ARRAY[removidos.sha256, removidos.original_sha256]) AS sha
+		WHERE removidos.status = 'CONFIRMADO' AND removidos.drive_file_id LIKE 'local-blob:%' AND sha IS NOT NULL
+		GROUP BY sha
+	),
+	blobs AS (
+		UPDATE anexo_blobs b
+		SET referencias = GREATEST(b.referencias - l.qtd, 0),
+			liberado_em = CASE WHEN b.referencias <= l.qtd THEN LOCALTIMESTAMP ELSE b.liberado_em END
+		FROM liberados l
+		WHERE b.sha256 = l.sha AND b.referencias > 0
+	)`
 
 func (s *PostgresStore) DeleteAttachmentByID(ctx context.Context, attachmentID int64) error {
-	cmd, err := s.Pool.Exec(ctx, `DELETE FROM anexos WHERE id = $1`, attachmentID)
+	var removidos int64
+	err := s.Pool.QueryRow(ctx, `
+		WITH removidos AS (
+			DELETE FROM anexos WHERE id = $1 AND status = 'CONFIRMADO'
+			RETURNING solicitacao_id, status, drive_file_id, sha256, original_sha256
+		),
+		contador AS (
+			UPDATE solicitacoes s
+			SET anexos_total = GREATEST(s.anexos_total - 1, 0)
+			FROM removidos
+			WHERE s.id = removidos.solicitacao_id
+		),`+liberarBlobsRemovidos+`
+		SELECT count(*) FROM removidos
+	`, attachmentID).Scan(&removidos)
 	if err != nil {
 		return err
 	}
-	if cmd.RowsAffected() == 0 {
+	if removidos == 0 {
 		return ErrAnexoNaoEncontrado
 	}
 	return nil
@@ -122,6 +122,9 @@ func (s *PostgresStore) CreateSolicitacao(ctx context.Context, conta *domain.Con
 	if err := insertLinhas(ctx, tx, id, req.Linhas); err != nil {
 		return nil, err
 	}
+	if err := ajustarConsumo(ctx, tx, id, 1); err != nil {
+		return nil, err
+	}
 	if err := insertHistorico(ctx, tx, id, string(conta.Tipo), "CRIADA", nil); err != nil {
 		return nil, err
 	}
@@ -169,6 +172,9 @@ func (s *PostgresStore) ReenviarSolicitacao(ctx context.Context, conta *domain.C
 		return nil, ErrCategoriaInvalida
 	}
 
+	if err := ajustarConsumo(ctx, tx, id, -1); err != nil {
+		return nil, err
+	}
 	now := time.Now().UTC()
 	updateQuery := `
 		UPDATE solicitacoes
@@ -184,10 +190,14 @@ func (s *PostgresStore) ReenviarSolicitacao(ctx context.Context, conta *domain.C
 		    status = $11,
 		    enviado_em = $12,
 		    decidido_em = NULL,
-		    valor_aprovado = NULL
-		WHERE id = $1
+		    valor_aprovado = NULL,
+		    info_solicitada_em = NULL,
+		    lembrete_em = NULL,
+		    escalada_em = NULL,
+		    versao = versao + 1
+		WHERE id = $1 AND status = $13
 	`
-	_, err = tx.Exec(ctx, updateQuery,
+	cmd, err := tx.Exec(ctx, updateQuery,
 		id,
 		req.Dados.CategoriaID,
 		strings.TrimSpace(req.Dados.Titulo),
@@ -200,10 +210,18 @@ func (s *PostgresStore) ReenviarSolicitacao(ctx context.Context, conta *domain.C
 		domain.NormalizeOptionalString(req.Dados.Observacoes),
 		domain.StatusPendente,
 		now,
+		domain.StatusPendenteInfo,
 	)
 	if err != nil {
 		return nil, err
 	}
+	if cmd.RowsAffected() == 0 {
+		// Reenviada ou alterada por outra requisicao depois da leitura.
+		return nil, ErrSolicitacaoStatusInvalido
+	}
+	if err := ajustarConsumo(ctx, tx, id, 1); err != nil {
+		return nil, err
+	}
 
 	if _, err := tx.Exec(ctx, "DELETE FROM solicitacao_linhas WHERE solicitacao_id = $1", id); err != nil {
 		return nil, err
@@ -369,7 +387,7 @@ func (s *PostgresStore) loadLinhasBySolicitacao(ctx context.Context, ids []int64
 		SELECT id, solicitacao_id, descricao, valor::float8, observacao
 		FROM solicitacao_linhas
 		WHERE solicitacao_id = ANY($1)
-		ORDER BY id ASC
+		ORDER BY ordem ASC, id ASC
 	`, ids)
 	if err != nil {
 		return nil, err
@@ -563,15 +581,16 @@ func insertLinhas(ctx context.Context, tx pgx.Tx, solicitacaoID int64, linhas []
 		return nil
 	}
 	const query = `
-		INSERT INTO solicitacao_linhas (solicitacao_id, descricao, valor, observacao)
-		VALUES ($1, $2, $3, $4)
+		INSERT INTO solicitacao_linhas (solicitacao_id, descricao, valor, observacao, ordem)
+		VALUES ($1, $2, $3, $4, $5)
 	`
-	for _, linha := range linhas {
+	for ordem, linha := range linhas {
 		_, err := tx.Exec(ctx, query,
 			solicitacaoID,
 			strings.TrimSpace(linha.Descricao),
 			linha.Valor,
 			domain.NormalizeOptionalString(linha.Observacao),
+			ordem,
 		)
 		if err != nil {
 			return err
@@ -595,6 +614,28 @@ func insertHistorico(ctx context.Context, tx pgx.Tx, solicitacaoID int64, ator,
 	return err
 }
 
+// ajustarConsumo soma (sinal 1) ou retira (sinal -1) a contribuicao atual da solicitacao em
+// orcamento_consumo, com as mesmas regras do OrcamentoService do backend Java: PENDENTE e
+// PENDENTE_INFO comprometem o valor estimado, APROVADO conta o valor aprovado, competencia pelo
+// criado_em. Transicoes chamam com -1 antes do UPDATE e com 1 depois dele. Nao bloqueia por limite.
+func ajustarConsumo(ctx context.Context, tx pgx.Tx, solicitacaoID int64, sinal int) error {
+	const query = `
+		INSERT INTO orcamento_consumo (filial_key, categoria_id, competencia, valor_comprometido, valor_aprovado)
+		SELECT lower(trim(filial)),
+		       categoria_id,
+		       to_char(criado_em, 'YYYY-MM'),
+		       $2::integer * CASE WHEN status IN ('PENDENTE', 'PENDENTE_INFO') THEN coalesce(valor_estimado, 0) ELSE 0 END,
+		       $2::integer * CASE WHEN status = 'APROVADO' THEN coalesce(valor_aprovado, valor_estimado, 0) ELSE 0 END
+		FROM solicitacoes
+		WHERE id = $1 AND categoria_id IS NOT NULL AND status IN ('PENDENTE', 'PENDENTE_INFO', 'APROVADO')
+		ON CONFLICT (filial_key, categoria_id, competencia) DO UPDATE
+		SET valor_comprometido = orcamento_consumo.valor_comprometido + excluded.valor_comprometido,
+		    valor_aprovado = orcamento_consumo.valor_aprovado + excluded.valor_aprovado
+	`
+	_, err := tx.Exec(ctx, query, solicitacaoID, sinal)
+	return err
+}
+
 func normalizeFiliais(values []string) []string {
 	if len(values) == 0 {
 		return nil
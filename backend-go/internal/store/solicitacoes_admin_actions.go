@@ -44,17 +44,28 @@ func (s *PostgresStore) PedirInfoSolicitacao(ctx context.Context, admin *domain.
 
 	normalizedComment := strings.TrimSpace(input.Comentario)
 	now := time.Now().UTC()
-	_, err = tx.Exec(ctx, `
+	// Mesmas marcacoes do backend Java: o prazo do lembrete conta a partir deste pedido e
+	// lembrete/escalada de ciclos anteriores nao valem mais. Condicionado ao status lido e
+	// incrementando a versao, como o @Version do backend Java.
+	cmd, err := tx.Exec(ctx, `
 		UPDATE solicitacoes
 		SET status = $2,
 		    comentario_decisao = $3,
 		    decidido_em = NULL,
-		    valor_aprovado = NULL
-		WHERE id = $1
-	`, id, domain.StatusPendenteInfo, normalizedComment, now)
+		    valor_aprovado = NULL,
+		    info_solicitada_em = $4,
+		    lembrete_em = NULL,
+		    escalada_em = NULL,
+		    versao = versao + 1
+		WHERE id = $1 AND status = $5
+	`, id, domain.StatusPendenteInfo, normalizedComment, now, domain.StatusPendente)
 	if err != nil {
 		return nil, err
 	}
+	if cmd.RowsAffected() == 0 {
+		// Decidida ou devolvida por outra requisicao depois da leitura.
+		return nil, ErrSolicitacaoStatusInvalido
+	}
 
 	commentPtr := &normalizedComment
 	if normalizedComment == "" {
@@ -108,17 +119,29 @@ func (s *PostgresStore) DecidirSolicitacao(ctx context.Context, admin *domain.Co
 		valorAprovado = &value
 	}
 
-	_, err = tx.Exec(ctx, `
+	if err := ajustarConsumo(ctx, tx, id, -1); err != nil {
+		return nil, err
+	}
+	// Condicionado a PENDENTE: de duas decisoes simultaneas (por este backend ou pelo Java), so
+	// a primeira grava; a versao incrementada invalida o If-Match de quem leu antes.
+	cmd, err := tx.Exec(ctx, `
 		UPDATE solicitacoes
 		SET status = $2,
 		    valor_aprovado = $3,
 		    comentario_decisao = $4,
-		    decidido_em = $5
-		WHERE id = $1
-	`, id, status, valorAprovado, domain.NormalizeOptionalString(input.Comentario), now)
+		    decidido_em = $5,
+		    versao = versao + 1
+		WHERE id = $1 AND status = $6
+	`, id, status, valorAprovado, domain.NormalizeOptionalString(input.Comentario), now, domain.StatusPendente)
 	if err != nil {
 		return nil, err
 	}
+	if cmd.RowsAffected() == 0 {
+		return nil, ErrSolicitacaoStatusInvalido
+	}
+	if err := ajustarConsumo(ctx, tx, id, 1); err != nil {
+		return nil, err
+	}
 
 	if err := insertHistorico(ctx, tx, id, string(admin.Tipo), acao, domain.NormalizeOptionalString(input.Comentario)); err != nil {
 		return nil, err
@@ -148,7 +171,17 @@ func (s *PostgresStore) ExcluirSolicitacao(ctx context.Context, admin *domain.Co
 	}
 
 	// Remove apenas dados de banco. Mesmo se o arquivo fisico nao existir, nao bloqueia exclusao.
-	if _, err := tx.Exec(ctx, "DELETE FROM anexos WHERE solicitacao_id = $1", id); err != nil {
+	// Os blobs compartilhados so perdem a referencia; o arquivo sai pela coleta do backend Java.
+	if _, err := tx.Exec(ctx, `
+		WITH removidos AS (
+			DELETE FROM anexos WHERE solicitacao_id = $1
+			RETURNING status, drive_file_id, sha256, original_sha256
+		),`+liberarBlobsRemovidos+`
+		SELECT count(*) FROM removidos
+	`, id); err != nil {
+		return err
+	}
+	if err := ajustarConsumo(ctx, tx, id, -1); err != nil {
 		return err
 	}
 	if _, err := tx.Exec(ctx, "DELETE FROM solicitacao_historico WHERE solicitacao_id = $1", id); err != nil {
@@ -25,9 +25,31 @@ public class CorsConfig {
                 .collect(Collectors.toList());
 
         config.setAllowedOrigins(origins);
-        config.setAllowedMethods(List.of("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
-        config.setAllowedHeaders(List.of("Authorization", "Content-Type"));
-        config.setExposedHeaders(List.of("Authorization"));
+        config.setAllowedMethods(List.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+        config.setAllowedHeaders(List.of(
+                "Authorization",
+                "Content-Type",
+                "Content-Disposition",
+                "Prefer",
+                "Idempotency-Key",
+                "If-Match",
+                "If-None-Match",
+                "If-Modified-Since",
+                "If-Range",
+                "Range"
+        ));
+        config.setExposedHeaders(List.of(
+                "Authorization",
+                "Preference-Applied",
+                "Idempotent-Replayed",
+                "ETag",
+                "Last-Modified",
+                "Accept-Ranges",
+                "Content-Range",
+                "Location",
+                "Upload-Offset",
+                "Upload-Length"
+        ));
         config.setAllowCredentials(false);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
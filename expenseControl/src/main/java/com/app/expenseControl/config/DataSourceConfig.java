@@ -35,6 +35,8 @@ public class DataSourceConfig {
         if (settings.password() != null) {
             dataSource.setPassword(settings.password());
         }
+        // O driver reescreve lotes de INSERT em um unico INSERT multi-valores.
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
         return dataSource;
     }
 
@@ -0,0 +1,48 @@
+package com.app.expenseControl.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+@Configuration
+public class SchemaMigrationConfig {
+
+    private static final String MIGRATIONS_BEAN = "schemaMigrations";
+
+    @Bean(name = MIGRATIONS_BEAN)
+    public SchemaMigrations schemaMigrations(DataSource dataSource) {
+        return new SchemaMigrations(dataSource);
+    }
+
+    /**
+     * Garante que as migracoes rodem antes de o Hibernate subir e validar sequences/colunas.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor schemaMigrationsBeforeJpa() {
+        return beanFactory -> {
+            Set<String> names = new LinkedHashSet<>();
+            names.addAll(Arrays.asList(BeanFactoryUtils.beanNamesForTypeIncludingAncestors(
+                    beanFactory, EntityManagerFactory.class, true, false)));
+            names.addAll(Arrays.asList(BeanFactoryUtils.beanNamesForTypeIncludingAncestors(
+                    beanFactory, AbstractEntityManagerFactoryBean.class, true, false)));
+            for (String name : names) {
+                String beanName = BeanFactoryUtils.transformedBeanName(name);
+                if (!beanFactory.containsBeanDefinition(beanName)) {
+                    continue;
+                }
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                definition.setDependsOn(StringUtils.addStringToArray(definition.getDependsOn(), MIGRATIONS_BEAN));
+            }
+        };
+    }
+}
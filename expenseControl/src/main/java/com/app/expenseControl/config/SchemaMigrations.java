@@ -0,0 +1,287 @@
+package com.app.expenseControl.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ajustes de schema que o {@code ddl-auto=update} do Hibernate nao faz sozinho
+ * (sequences com incremento, colunas novas com default em tabelas existentes, backfills).
+ * Todos os comandos sao idempotentes e rodam em duas passagens: antes do Hibernate
+ * (tabelas ja existentes) e depois dele (banco novo, tabelas recem-criadas).
+ */
+public class SchemaMigrations implements InitializingBean, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    /** Deve bater com o allocationSize dos @SequenceGenerator das entidades. */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final List<String[]> SEQUENCE_TABLES = List.of(
+            new String[]{"solicitacoes", "solicitacoes_seq"},
+            new String[]{"solicitacao_linhas", "solicitacao_linhas_seq"},
+            new String[]{"solicitacao_historico", "solicitacao_historico_seq"},
+            new String[]{"anexos", "anexos_seq"},
+            new String[]{"auditoria_eventos", "auditoria_eventos_seq"}
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SchemaMigrations(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        aplicar("antes do JPA");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        aplicar("depois do JPA");
+    }
+
+    private void aplicar(String fase) {
+        for (Migracao migracao : migracoes()) {
+            try {
+                jdbcTemplate.execute(migracao.sql());
+            } catch (RuntimeException ex) {
+                throw new IllegalStateException("Falha na migracao '" + migracao.nome() + "' (" + fase + ").", ex);
+            }
+        }
+        log.info("Migracoes de schema verificadas ({}).", fase);
+    }
+
+    private List<Migracao> migracoes() {
+        List<Migracao> migracoes = new ArrayList<>();
+        for (String[] item : SEQUENCE_TABLES) {
+            migracoes.add(new Migracao("sequence " + item[1], sequenceParaTabela(item[0], item[1])));
+        }
+        migracoes.add(new Migracao("solicitacoes.versao", colunaComDefault("solicitacoes", "versao", "bigint", "0")));
+        migracoes.add(new Migracao("anexos.status", colunaComDefault("anexos", "status", "varchar(20)", "'CONFIRMADO'")));
+        migracoes.add(new Migracao("solicitacoes.anexos_total", contadorAnexos()));
+        migracoes.add(new Migracao("solicitacoes.anexos_sequencia", sequenciaAnexos()));
+        // Linhas antigas ficam com 0 e seguem na ordem do id, como eram listadas.
+        migracoes.add(new Migracao("solicitacao_linhas.ordem", colunaComDefault("solicitacao_linhas", "ordem", "integer", "0")));
+        migracoes.add(new Migracao("idx_solicitacoes_fila_pendentes", indice(
+                "solicitacoes",
+                "idx_solicitacoes_fila_pendentes",
+                "(enviado_em, id) WHERE status = 'PENDENTE'"
+        )));
+        migracoes.add(new Migracao("idx_solicitacoes_status_enviado_em", indice(
+                "solicitacoes",
+                "idx_solicitacoes_status_enviado_em",
+                "(status, enviado_em)"
+        )));
+        // As colunas precisam existir antes do indice parcial, inclusive na fase anterior ao Hibernate.
+        migracoes.add(new Migracao("solicitacoes.escalada_em", coluna("solicitacoes", "escalada_em", "timestamp(6)")));
+        migracoes.add(new Migracao("solicitacoes.lembrete_em", coluna("solicitacoes", "lembrete_em", "timestamp(6)")));
+        migracoes.add(new Migracao("idx_solicitacoes_vencimento", indice(
+                "solicitacoes",
+                "idx_solicitacoes_vencimento",
+                "(status, enviado_em) WHERE escalada_em IS NULL AND lembrete_em IS NULL"
+        )));
+        migracoes.add(new Migracao("solicitacoes.info_solicitada_em", infoSolicitada()));
+        migracoes.add(new Migracao("idx_solicitacoes_info_sem_lembrete", indice(
+                "solicitacoes",
+                "idx_solicitacoes_info_sem_lembrete",
+                "(info_solicitada_em, id) WHERE status = 'PENDENTE_INFO' AND lembrete_em IS NULL"
+        )));
+        // Colunas de replicacao antes do indice parcial; a NOT NULL precisa de default para as linhas existentes.
+        migracoes.add(new Migracao("anexo_blobs.replicacao_tentativas",
+                colunaComDefault("anexo_blobs", "replicacao_tentativas", "integer", "0")));
+        migracoes.add(new Migracao("anexo_blobs.replicado_em", coluna("anexo_blobs", "replicado_em", "timestamp(6)")));
+        migracoes.add(new Migracao("anexo_blobs.replicacao_proxima", coluna("anexo_blobs", "replicacao_proxima", "timestamp(6)")));
+        migracoes.add(new Migracao("idx_anexo_blobs_replicacao_pendente", indice(
+                "anexo_blobs",
+                "idx_anexo_blobs_replicacao_pendente",
+                "(replicacao_proxima, criado_em) WHERE replicado_em IS NULL"
+        )));
+        migracoes.add(new Migracao("orcamento_consumo (carga inicial)", consumoOrcamento()));
+        return migracoes;
+    }
+
+    /**
+     * Garante coluna NOT NULL com default no banco, preenchendo linhas existentes. O default
+     * fica tambem para inserts que nao conhecem a coluna (backend Go).
+     */
+    private String colunaComDefault(String tabela, String coluna, String tipo, String valorPadrao) {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('%1$s') IS NOT NULL THEN
+                        ALTER TABLE %1$s ADD COLUMN IF NOT EXISTS %2$s %3$s NOT NULL DEFAULT %4$s;
+                        ALTER TABLE %1$s ALTER COLUMN %2$s SET DEFAULT %4$s;
+                    END IF;
+                END $$;
+                """.formatted(tabela, coluna, tipo, valorPadrao);
+    }
+
+    /**
+     * Momento do pedido de ajuste. PENDENTE_INFO anteriores a coluna partem do ultimo PEDIDO_INFO
+     * do historico (ou do envio, se nao houver), para nao receberem lembrete antes da hora.
+     */
+    private String infoSolicitada() {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('solicitacoes') IS NOT NULL THEN
+                        ALTER TABLE solicitacoes ADD COLUMN IF NOT EXISTS info_solicitada_em timestamp(6);
+                        IF to_regclass('solicitacao_historico') IS NOT NULL THEN
+                            UPDATE solicitacoes s
+                               SET info_solicitada_em = coalesce((
+                                       SELECT max(h.criado_em) FROM solicitacao_historico h
+                                        WHERE h.solicitacao_id = s.id AND h.acao = 'PEDIDO_INFO'
+                                   ), s.enviado_em)
+                             WHERE s.status = 'PENDENTE_INFO' AND s.info_solicitada_em IS NULL;
+                        END IF;
+                    END IF;
+                END $$;
+                """;
+    }
+
+    /**
+     * Contador de anexos da solicitacao: {@code anexos_total} (vagas ocupadas, contando reservas)
+     * e {@code anexos_sequencia} (ultimo numero usado nos nomes). Ao criar as colunas, parte da
+     * contagem atual de anexos; depois so a aplicacao altera.
+     */
+    private String contadorAnexos() {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('solicitacoes') IS NOT NULL AND NOT EXISTS (
+                        SELECT 1 FROM information_schema.columns
+                         WHERE table_schema = current_schema() AND table_name = 'solicitacoes' AND column_name = 'anexos_total'
+                    ) THEN
+                        ALTER TABLE solicitacoes ADD COLUMN anexos_total integer NOT NULL DEFAULT 0;
+                        ALTER TABLE solicitacoes ADD COLUMN IF NOT EXISTS anexos_sequencia integer NOT NULL DEFAULT 0;
+                        IF to_regclass('anexos') IS NOT NULL THEN
+                            UPDATE solicitacoes s
+                               SET anexos_total = a.total, anexos_sequencia = a.total
+                              FROM (SELECT solicitacao_id, count(*) AS total FROM anexos GROUP BY solicitacao_id) a
+                             WHERE s.id = a.solicitacao_id;
+                        END IF;
+                    END IF;
+                END $$;
+                """;
+    }
+
+    /**
+     * Carga inicial de {@code orcamento_consumo} a partir das solicitacoes, com a mesma soma do
+     * recalculo: sem ela, decisoes sobre solicitacoes anteriores ao contador descontariam de zero.
+     * So roda com a tabela vazia; o lock impede que incrementos concorrentes se misturem a carga.
+     */
+    private String consumoOrcamento() {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('orcamento_consumo') IS NOT NULL AND to_regclass('solicitacoes') IS NOT NULL
+                       AND NOT EXISTS (SELECT 1 FROM orcamento_consumo) THEN
+                        LOCK TABLE orcamento_consumo IN EXCLUSIVE MODE;
+                        IF NOT EXISTS (SELECT 1 FROM orcamento_consumo) THEN
+                            INSERT INTO orcamento_consumo (filial_key, categoria_id, competencia, valor_comprometido, valor_aprovado)
+                            SELECT lower(trim(s.filial)),
+                                   s.categoria_id,
+                                   to_char(s.criado_em, 'YYYY-MM'),
+                                   coalesce(sum(CASE WHEN s.status IN ('PENDENTE', 'PENDENTE_INFO') THEN s.valor_estimado END), 0),
+                                   coalesce(sum(CASE WHEN s.status = 'APROVADO'
+                                                     THEN coalesce(s.valor_aprovado, s.valor_estimado) END), 0)
+                            FROM solicitacoes s
+                            GROUP BY lower(trim(s.filial)), s.categoria_id, to_char(s.criado_em, 'YYYY-MM');
+                        END IF;
+                    END IF;
+                END $$;
+                """;
+    }
+
+    /**
+     * Garante que {@code anexos_sequencia} nao fique abaixo do maior numero ja usado nos nomes
+     * gravados ({@code solicitacao-<id>-<titulo>-NNN.ext}): anexos excluidos deixam buracos, e
+     * partir da contagem repetiria um nome existente. So aumenta o contador.
+     */
+    private String sequenciaAnexos() {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('solicitacoes') IS NOT NULL AND to_regclass('anexos') IS NOT NULL THEN
+                        UPDATE solicitacoes s
+                           SET anexos_sequencia = a.maior
+                          FROM (
+                                SELECT solicitacao_id,
+                                       max(substring(stored_name FROM '-([0-9]{1,9})(\\.[^.-]*)?$')::integer) AS maior
+                                  FROM anexos
+                                 GROUP BY solicitacao_id
+                               ) a
+                         WHERE s.id = a.solicitacao_id AND s.anexos_sequencia < a.maior;
+                    END IF;
+                END $$;
+                """;
+    }
+
+    private String coluna(String tabela, String coluna, String tipo) {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('%1$s') IS NOT NULL THEN
+                        ALTER TABLE %1$s ADD COLUMN IF NOT EXISTS %2$s %3$s;
+                    END IF;
+                END $$;
+                """.formatted(tabela, coluna, tipo);
+    }
+
+    /**
+     * Cria o indice se a tabela ja existir. Indices parciais nao cabem no {@code @Index} do JPA.
+     */
+    private String indice(String tabela, String nome, String definicao) {
+        return """
+                DO $$
+                BEGIN
+                    IF to_regclass('%1$s') IS NOT NULL THEN
+                        CREATE INDEX IF NOT EXISTS %2$s ON %1$s %3$s;
+                    END IF;
+                END $$;
+                """.formatted(tabela, nome, definicao);
+    }
+
+    /**
+     * Troca IDENTITY por uma sequence com incremento igual ao allocationSize (pooled-lo) e a
+     * deixa como default da coluna, para que inserts fora do Hibernate continuem funcionando.
+     * A sequence so e posicionada apos o maior id na conversao (coluna ainda IDENTITY ou
+     * sequence recem-criada): depois disso, outra instancia em execucao pode ter reservado um
+     * bloco acima de {@code last_value} e ja gravado ids nele, e voltar a sequence para
+     * {@code max(id) + 1} entregaria os mesmos ids de novo.
+     */
+    private String sequenceParaTabela(String tabela, String sequence) {
+        return """
+                DO $$
+                DECLARE
+                    criada boolean;
+                    identidade boolean;
+                    proximo bigint;
+                BEGIN
+                    criada := to_regclass('%2$s') IS NULL;
+                    CREATE SEQUENCE IF NOT EXISTS %2$s START WITH 1 INCREMENT BY %3$d;
+                    IF to_regclass('%1$s') IS NOT NULL THEN
+                        SELECT coalesce(a.attidentity <> '', false) INTO identidade
+                        FROM pg_attribute a
+                        WHERE a.attrelid = to_regclass('%1$s') AND a.attname = 'id' AND NOT a.attisdropped;
+                        IF criada OR identidade THEN
+                            SELECT coalesce(max(id), 0) + 1 INTO proximo FROM %1$s;
+                            PERFORM setval('%2$s', proximo, false);
+                        END IF;
+                        ALTER TABLE %1$s ALTER COLUMN id DROP IDENTITY IF EXISTS;
+                        ALTER TABLE %1$s ALTER COLUMN id SET DEFAULT nextval('%2$s');
+                        ALTER SEQUENCE %2$s OWNED BY %1$s.id;
+                    END IF;
+                END $$;
+                """.formatted(tabela, sequence, ID_ALLOCATION_SIZE);
+    }
+
+    private record Migracao(String nome, String sql) {}
+}
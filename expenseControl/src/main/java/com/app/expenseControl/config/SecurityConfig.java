@@ -34,17 +34,37 @@ public class SecurityConfig {
 
                         .requestMatchers(HttpMethod.POST,
                                 "/solicitacoes/*/anexos",
-                                "/requests/*/attachments").hasAnyRole("ADMIN", "FILIAL")
+                                "/requests/*/attachments",
+                                "/solicitacoes/*/anexos/batch",
+                                "/requests/*/attachments/batch",
+                                "/solicitacoes/*/anexos/uploads",
+                                "/requests/*/attachments/uploads",
+                                "/anexos/uploads/*/concluir",
+                                "/attachments/uploads/*/complete").hasAnyRole("ADMIN", "FILIAL")
+                        .requestMatchers(HttpMethod.PUT,
+                                "/anexos/uploads/*",
+                                "/attachments/uploads/*").hasAnyRole("ADMIN", "FILIAL")
+                        .requestMatchers(HttpMethod.HEAD,
+                                "/anexos/uploads/*",
+                                "/attachments/uploads/*").hasAnyRole("ADMIN", "FILIAL")
                         .requestMatchers(HttpMethod.GET,
                                 "/solicitacoes/*/anexos",
                                 "/requests/*/attachments",
                                 "/anexos/*/download",
-                                "/attachments/*/download").hasAnyRole("ADMIN", "FILIAL")
+                                "/attachments/*/download",
+                                "/anexos/*/preview",
+                                "/attachments/*/preview",
+                                "/anexos/uploads/*",
+                                "/attachments/uploads/*",
+                                "/solicitacoes/*/anexos/zip",
+                                "/requests/*/attachments/zip").hasAnyRole("ADMIN", "FILIAL")
                         .requestMatchers(HttpMethod.DELETE,
                                 "/anexos/*",
-                                "/attachments/*").hasAnyRole("ADMIN", "FILIAL")
+                                "/attachments/*",
+                                "/anexos/uploads/*",
+                                "/attachments/uploads/*").hasAnyRole("ADMIN", "FILIAL")
 
-                        .requestMatchers(HttpMethod.POST, "/solicitacoes").hasRole("FILIAL")
+                        .requestMatchers(HttpMethod.POST, "/solicitacoes", "/solicitacoes/import").hasRole("FILIAL")
                         .requestMatchers(HttpMethod.PUT, "/solicitacoes/*/reenvio").hasRole("FILIAL")
                         .requestMatchers(HttpMethod.GET, "/solicitacoes/**").hasRole("FILIAL")
                         .requestMatchers(HttpMethod.GET, "/categorias").hasRole("FILIAL")
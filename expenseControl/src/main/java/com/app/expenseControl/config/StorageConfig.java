@@ -0,0 +1,41 @@
+package com.app.expenseControl.config;
+
+import com.app.expenseControl.service.HttpObjectStorageBackend;
+import com.app.expenseControl.service.LocalDiskStorageBackend;
+import com.app.expenseControl.service.StorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Camada remota dos blobs de anexo, escolhida por {@code app.storage.remote.type}:
+ * {@code http} (servico de objetos com PUT/GET/DELETE por chave) ou {@code directory}
+ * (outro disco, ex.: um volume de rede). Sem o tipo, os blobs ficam so no disco local.
+ */
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.remote.type", havingValue = "http")
+    public StorageBackend httpStorageBackend(@Value("${app.storage.remote.url}") String url,
+                                             @Value("${app.storage.remote.authorization:}") String authorization,
+                                             @Value("${app.storage.remote.timeout-seconds:30}") long timeoutSeconds) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("app.storage.remote.url nao configurado.");
+        }
+        return new HttpObjectStorageBackend(url.trim(), authorization, Duration.ofSeconds(Math.max(1, timeoutSeconds)));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.remote.type", havingValue = "directory")
+    public StorageBackend directoryStorageBackend(@Value("${app.storage.remote.directory}") String directory) {
+        if (directory == null || directory.isBlank()) {
+            throw new IllegalStateException("app.storage.remote.directory nao configurado.");
+        }
+        return new LocalDiskStorageBackend(Path.of(directory.trim()));
+    }
+}
@@ -0,0 +1,39 @@
+package com.app.expenseControl.controller;
+
+import com.app.expenseControl.dto.OrcamentoCreateDTO;
+import com.app.expenseControl.dto.OrcamentoUtilizacaoDTO;
+import com.app.expenseControl.service.OrcamentoService;
+import jakarta.validation.Valid;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/admin/orcamentos")
+public class AdminOrcamentoController {
+
+    private final OrcamentoService orcamentoService;
+
+    public AdminOrcamentoController(OrcamentoService orcamentoService) {
+        this.orcamentoService = orcamentoService;
+    }
+
+    @GetMapping("/utilizacao")
+    public List<OrcamentoUtilizacaoDTO> utilizacao(
+            @RequestParam(value = "competencia", required = false) String competencia
+    ) {
+        return orcamentoService.utilizacao(competencia);
+    }
+
+    @PutMapping
+    public ResponseEntity<OrcamentoUtilizacaoDTO> definir(@RequestBody @Valid OrcamentoCreateDTO dto) {
+        return ResponseEntity.ok(orcamentoService.definir(dto));
+    }
+
+    @PostMapping("/recalcular")
+    public Map<String, Integer> recalcular() {
+        return Map.of("combinacoes", orcamentoService.recalcular());
+    }
+}
@@ -1,23 +1,37 @@
 package com.app.expenseControl.controller;
 
+import com.app.expenseControl.dto.AnexoIntegridadeDTO;
+import com.app.expenseControl.dto.DecisaoLoteDTO;
+import com.app.expenseControl.dto.DecisaoLoteResponseDTO;
 import com.app.expenseControl.dto.DecisaoSolicitacaoDTO;
 import com.app.expenseControl.dto.SolicitacaoPedidoInfoDTO;
 import com.app.expenseControl.dto.SolicitacaoResponseDTO;
+import com.app.expenseControl.dto.SolicitacaoResumoDTO;
 import com.app.expenseControl.dto.PageResponse;
 import com.app.expenseControl.dto.SolicitacaoStatsDTO;
+import com.app.expenseControl.service.AnexoIntegridadeService;
+import com.app.expenseControl.service.AnexoZipService;
 import com.app.expenseControl.service.SolicitacaoService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/admin/solicitacoes")
 public class AdminSolicitacaoController {
 
     private final SolicitacaoService solicitacaoService;
+    private final AnexoZipService anexoZipService;
+    private final AnexoIntegridadeService anexoIntegridadeService;
 
-    public AdminSolicitacaoController(SolicitacaoService solicitacaoService) {
+    public AdminSolicitacaoController(SolicitacaoService solicitacaoService,
+                                      AnexoZipService anexoZipService,
+                                      AnexoIntegridadeService anexoIntegridadeService) {
         this.solicitacaoService = solicitacaoService;
+        this.anexoZipService = anexoZipService;
+        this.anexoIntegridadeService = anexoIntegridadeService;
     }
 
     @GetMapping
@@ -31,21 +45,77 @@ public class AdminSolicitacaoController {
         return solicitacaoService.listarParaAdmin(status, page, size, sort, query);
     }
 
+    /**
+     * ZIP com os anexos das solicitacoes visiveis que atendem o filtro (datas {@code AAAA-MM-DD},
+     * inclusivas, sobre o envio). Ex.: aprovadas de um mes para auditoria.
+     */
+    @GetMapping("/anexos/zip")
+    public ResponseEntity<StreamingResponseBody> anexosZip(
+            @RequestParam(value = "filial", required = false) String filial,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "de", required = false) String de,
+            @RequestParam(value = "ate", required = false) String ate
+    ) {
+        return ZipResponses.of(anexoZipService, anexoZipService.prepararFiltro(filial, status, de, ate));
+    }
+
+    /**
+     * Resultado da verificacao periodica de integridade dos anexos (ou o progresso da atual).
+     */
+    @GetMapping("/anexos/integridade")
+    public AnexoIntegridadeDTO integridadeAnexos() {
+        return anexoIntegridadeService.relatorio();
+    }
+
     @GetMapping("/estatisticas")
     public SolicitacaoStatsDTO estatisticas() {
         return solicitacaoService.estatisticasAprovadas();
     }
 
+    @PostMapping("/fila/proxima")
+    public ResponseEntity<SolicitacaoResponseDTO> reservarProxima() {
+        return solicitacaoService.reservarProxima()
+                .map(resposta -> ResponseEntity.ok().eTag(EtagHeaders.etag(resposta.versao())).body(resposta))
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    @DeleteMapping("/{id}/reserva")
+    public ResponseEntity<Void> liberarReserva(@PathVariable Long id) {
+        solicitacaoService.liberarReserva(id);
+        return ResponseEntity.noContent().build();
+    }
+
     @PatchMapping("/{id}/pedido-info")
-    public ResponseEntity<SolicitacaoResponseDTO> pedirInfo(@PathVariable Long id,
-                                                            @RequestBody @Valid SolicitacaoPedidoInfoDTO dto) {
-        return ResponseEntity.ok(solicitacaoService.pedirInfo(id, dto));
+    public ResponseEntity<?> pedirInfo(@PathVariable Long id,
+                                       @RequestBody @Valid SolicitacaoPedidoInfoDTO dto,
+                                       @RequestHeader(value = PreferHeaders.PREFER, required = false) String prefer,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long versaoEsperada = EtagHeaders.versaoEsperada(ifMatch);
+        if (PreferHeaders.returnMinimal(prefer)) {
+            SolicitacaoResumoDTO resumo = solicitacaoService.pedirInfoResumo(id, dto, versaoEsperada);
+            return PreferHeaders.minimal(ResponseEntity.ok()).eTag(EtagHeaders.etag(resumo.versao())).body(resumo);
+        }
+        SolicitacaoResponseDTO resposta = solicitacaoService.pedirInfo(id, dto, versaoEsperada);
+        return ResponseEntity.ok().eTag(EtagHeaders.etag(resposta.versao())).body(resposta);
     }
 
     @PatchMapping("/{id}/decisao")
-    public ResponseEntity<SolicitacaoResponseDTO> decidir(@PathVariable Long id,
-                                                          @RequestBody @Valid DecisaoSolicitacaoDTO dto) {
-        return ResponseEntity.ok(solicitacaoService.decidir(id, dto));
+    public ResponseEntity<?> decidir(@PathVariable Long id,
+                                     @RequestBody @Valid DecisaoSolicitacaoDTO dto,
+                                     @RequestHeader(value = PreferHeaders.PREFER, required = false) String prefer,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long versaoEsperada = EtagHeaders.versaoEsperada(ifMatch);
+        if (PreferHeaders.returnMinimal(prefer)) {
+            SolicitacaoResumoDTO resumo = solicitacaoService.decidirResumo(id, dto, versaoEsperada);
+            return PreferHeaders.minimal(ResponseEntity.ok()).eTag(EtagHeaders.etag(resumo.versao())).body(resumo);
+        }
+        SolicitacaoResponseDTO resposta = solicitacaoService.decidir(id, dto, versaoEsperada);
+        return ResponseEntity.ok().eTag(EtagHeaders.etag(resposta.versao())).body(resposta);
+    }
+
+    @PostMapping("/decisoes")
+    public ResponseEntity<DecisaoLoteResponseDTO> decidirEmLote(@RequestBody @Valid DecisaoLoteDTO dto) {
+        return ResponseEntity.ok(solicitacaoService.decidirEmLote(dto));
     }
 
     @DeleteMapping("/{id}")
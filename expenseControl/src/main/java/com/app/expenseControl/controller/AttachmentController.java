@@ -1,33 +1,167 @@
 package com.app.expenseControl.controller;
 
+import com.app.expenseControl.dto.AnexoUploadCreateDTO;
+import com.app.expenseControl.dto.AnexoUploadResponseDTO;
 import com.app.expenseControl.dto.AttachmentResponseDTO;
+import com.app.expenseControl.entity.Attachment;
+import com.app.expenseControl.service.AnexoPreview;
+import com.app.expenseControl.service.AnexoUploadService;
+import com.app.expenseControl.service.AnexoZipService;
 import com.app.expenseControl.service.AttachmentDownload;
 import com.app.expenseControl.service.AttachmentService;
-import org.springframework.core.io.InputStreamResource;
+import com.app.expenseControl.service.IdempotenciaService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Locale;
 
 @RestController
 public class AttachmentController {
 
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
     private final AttachmentService attachmentService;
+    private final AnexoUploadService anexoUploadService;
+    private final AnexoZipService anexoZipService;
+    private final IdempotenciaService idempotenciaService;
 
-    public AttachmentController(AttachmentService attachmentService) {
+    public AttachmentController(AttachmentService attachmentService,
+                                AnexoUploadService anexoUploadService,
+                                AnexoZipService anexoZipService,
+                                IdempotenciaService idempotenciaService) {
         this.attachmentService = attachmentService;
+        this.anexoUploadService = anexoUploadService;
+        this.anexoZipService = anexoZipService;
+        this.idempotenciaService = idempotenciaService;
     }
 
     @PostMapping(path = {"/solicitacoes/{solicitacaoId}/anexos", "/requests/{solicitacaoId}/attachments"},
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<AttachmentResponseDTO> upload(@PathVariable Long solicitacaoId,
-                                                        @RequestParam("file") MultipartFile file) {
-        AttachmentResponseDTO dto = attachmentService.upload(solicitacaoId, file);
-        return ResponseEntity.status(201).body(dto);
+                                                        @RequestParam("file") MultipartFile file,
+                                                        @RequestHeader(value = IdempotenciaService.HEADER, required = false)
+                                                        String idempotencyKey) {
+        String requisicao = solicitacaoId + "|" + file.getOriginalFilename() + "|" + file.getSize()
+                + "|" + file.getContentType();
+        var resultado = idempotenciaService.executarSemTransacao(
+                idempotencyKey,
+                "ANEXO_UPLOAD",
+                requisicao,
+                () -> attachmentService.upload(solicitacaoId, file),
+                AttachmentResponseDTO::id,
+                attachmentService::buscar
+        );
+        return IdempotencyHeaders.body(ResponseEntity.status(201), resultado);
+    }
+
+    /**
+     * Varios arquivos (partes {@code files}) em uma requisicao: anexados todos ou nenhum.
+     */
+    @PostMapping(path = {"/solicitacoes/{solicitacaoId}/anexos/batch", "/requests/{solicitacaoId}/attachments/batch"},
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<AttachmentResponseDTO>> uploadLote(@PathVariable Long solicitacaoId,
+                                                                  @RequestParam("files") List<MultipartFile> files) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(attachmentService.uploadLote(solicitacaoId, files));
+    }
+
+    /**
+     * Upload com o arquivo como corpo da requisicao ({@code Content-Type} do proprio arquivo). O nome
+     * vem de {@code Content-Disposition: attachment; filename="..."} ou do parametro {@code nome}.
+     */
+    @PostMapping(path = {"/solicitacoes/{solicitacaoId}/anexos", "/requests/{solicitacaoId}/attachments"},
+            consumes = {MediaType.APPLICATION_PDF_VALUE, MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE, "image/jpg"})
+    public ResponseEntity<AttachmentResponseDTO> uploadStream(@PathVariable Long solicitacaoId,
+                                                              @RequestParam(value = "nome", required = false) String nome,
+                                                              @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false)
+                                                              String contentDisposition,
+                                                              @RequestHeader(value = IdempotenciaService.HEADER, required = false)
+                                                              String idempotencyKey,
+                                                              HttpServletRequest request) {
+        MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+        String contentType = mediaType.getType() + "/" + mediaType.getSubtype();
+        String originalName = resolveUploadName(contentDisposition, nome);
+        long tamanho = request.getContentLengthLong();
+        String requisicao = solicitacaoId + "|" + originalName + "|" + tamanho + "|" + contentType;
+        var resultado = idempotenciaService.executarSemTransacao(
+                idempotencyKey,
+                "ANEXO_UPLOAD",
+                requisicao,
+                () -> {
+                    try (InputStream in = request.getInputStream()) {
+                        return attachmentService.uploadStream(solicitacaoId, originalName, contentType, tamanho, in);
+                    } catch (IOException ex) {
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falha ao ler arquivo enviado.");
+                    }
+                },
+                AttachmentResponseDTO::id,
+                attachmentService::buscar
+        );
+        return IdempotencyHeaders.body(ResponseEntity.status(201), resultado);
+    }
+
+    /**
+     * Abre uma sessao de upload retomavel (arquivos grandes ou conexoes instaveis). Os trechos vao
+     * por {@code PUT /anexos/uploads/{id}?offset=N} e a sessao termina em {@code .../concluir}.
+     */
+    @PostMapping({"/solicitacoes/{solicitacaoId}/anexos/uploads", "/requests/{solicitacaoId}/attachments/uploads"})
+    public ResponseEntity<AnexoUploadResponseDTO> criarUpload(@PathVariable Long solicitacaoId,
+                                                              @RequestBody @Valid AnexoUploadCreateDTO dto) {
+        AnexoUploadResponseDTO upload = anexoUploadService.criar(solicitacaoId, dto);
+        return ResponseEntity.created(URI.create("/anexos/uploads/" + upload.id()))
+                .headers(uploadHeaders(upload))
+                .body(upload);
+    }
+
+    /**
+     * Estado da sessao; tambem atende {@code HEAD}, com o offset atual em {@code Upload-Offset}.
+     */
+    @GetMapping({"/anexos/uploads/{uploadId}", "/attachments/uploads/{uploadId}"})
+    public ResponseEntity<AnexoUploadResponseDTO> consultarUpload(@PathVariable String uploadId) {
+        AnexoUploadResponseDTO upload = anexoUploadService.consultar(uploadId);
+        return ResponseEntity.ok().headers(uploadHeaders(upload)).body(upload);
+    }
+
+    @PutMapping({"/anexos/uploads/{uploadId}", "/attachments/uploads/{uploadId}"})
+    public ResponseEntity<AnexoUploadResponseDTO> enviarTrecho(@PathVariable String uploadId,
+                                                               @RequestParam("offset") long offset,
+                                                               HttpServletRequest request) {
+        AnexoUploadResponseDTO upload;
+        try (InputStream in = request.getInputStream()) {
+            upload = anexoUploadService.enviarTrecho(uploadId, offset, in);
+        } catch (IOException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falha ao ler arquivo enviado.");
+        }
+        return ResponseEntity.ok().headers(uploadHeaders(upload)).body(upload);
+    }
+
+    @PostMapping({"/anexos/uploads/{uploadId}/concluir", "/attachments/uploads/{uploadId}/complete"})
+    public ResponseEntity<AttachmentResponseDTO> concluirUpload(@PathVariable String uploadId) {
+        return ResponseEntity.status(201).body(anexoUploadService.concluir(uploadId));
+    }
+
+    @DeleteMapping({"/anexos/uploads/{uploadId}", "/attachments/uploads/{uploadId}"})
+    public ResponseEntity<Void> cancelarUpload(@PathVariable String uploadId) {
+        anexoUploadService.cancelar(uploadId);
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping({"/solicitacoes/{solicitacaoId}/anexos", "/requests/{solicitacaoId}/attachments"})
@@ -35,20 +169,59 @@ public class AttachmentController {
         return attachmentService.listBySolicitacao(solicitacaoId);
     }
 
+    /**
+     * Todos os anexos da solicitacao em um ZIP, escrito direto na resposta.
+     */
+    @GetMapping({"/solicitacoes/{solicitacaoId}/anexos/zip", "/requests/{solicitacaoId}/attachments/zip"})
+    public ResponseEntity<StreamingResponseBody> zip(@PathVariable Long solicitacaoId) {
+        return ZipResponses.of(anexoZipService, anexoZipService.prepararSolicitacao(solicitacaoId));
+    }
+
+    /**
+     * Download com validadores de cache: o ETag e o SHA-256 do conteudo e o anexo nunca muda, entao
+     * If-None-Match devolve 304 antes de resolver o arquivo (nem busca na camada remota). Pedidos
+     * com Range recebem 206 com o trecho (ResourceRegion), o que permite ao visualizador de PDF
+     * buscar so as paginas exibidas.
+     */
     @GetMapping({"/anexos/{attachmentId}/download", "/attachments/{attachmentId}/download"})
-    public ResponseEntity<InputStreamResource> download(@PathVariable Long attachmentId,
-                                                        @RequestParam(value = "disposition", defaultValue = "attachment")
-                                                        String disposition) {
-        AttachmentDownload download = attachmentService.download(attachmentId);
-        String filename = sanitizeFilename(download.attachment().getOriginalName());
-        String contentDisposition = resolveContentDisposition(disposition, download.attachment().getContentType());
-        MediaType mediaType = resolveMediaType(download.attachment().getContentType());
+    public ResponseEntity<Resource> download(@PathVariable Long attachmentId,
+                                             @RequestParam(value = "disposition", defaultValue = "attachment")
+                                             String disposition,
+                                             @RequestParam(value = "original", defaultValue = "false") boolean original,
+                                             WebRequest webRequest) {
+        AttachmentDownload download = attachmentService.download(attachmentId, original);
+        Attachment attachment = download.attachment();
+        String etag = resolveEtag(attachment, download.sha256());
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+
+        String filename = sanitizeFilename(attachment.getOriginalName());
+        String contentDisposition = resolveContentDisposition(disposition, attachment.getContentType());
+        MediaType mediaType = resolveMediaType(attachment.getContentType());
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition + "; filename=\"" + filename + "\"")
                 .contentType(mediaType)
-                .contentLength(download.attachment().getSize())
-                .body(new InputStreamResource(download.inputStream()));
+                .eTag(etag)
+                .lastModified(attachment.getCreatedAt().atZone(ZoneId.systemDefault()))
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable())
+                .body(attachmentService.abrir(download));
+    }
+
+    /**
+     * Pre-visualizacao JPEG (imagens e primeira pagina de PDFs) no menor tamanho configurado que
+     * atende {@code tamanho}, em pixels do lado maior. Evita baixar o original so para exibir.
+     */
+    @GetMapping({"/anexos/{attachmentId}/preview", "/attachments/{attachmentId}/preview"})
+    public ResponseEntity<Resource> preview(@PathVariable Long attachmentId,
+                                            @RequestParam(value = "tamanho", required = false) Integer tamanho) {
+        AnexoPreview preview = attachmentService.preview(attachmentId, tamanho);
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .eTag("\"" + preview.sha256() + "-p" + preview.tamanho() + "\"")
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable())
+                .body(preview.resource());
     }
 
     @DeleteMapping({"/anexos/{attachmentId}", "/attachments/{attachmentId}"})
@@ -57,6 +230,36 @@ public class AttachmentController {
         return ResponseEntity.noContent().build();
     }
 
+    private HttpHeaders uploadHeaders(AnexoUploadResponseDTO upload) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(UPLOAD_OFFSET, String.valueOf(upload.recebido()));
+        headers.set(UPLOAD_LENGTH, String.valueOf(upload.tamanho()));
+        headers.setCacheControl(CacheControl.noStore());
+        return headers;
+    }
+
+    private String resolveUploadName(String contentDisposition, String nome) {
+        if (contentDisposition != null && !contentDisposition.isBlank()) {
+            try {
+                String filename = ContentDisposition.parse(contentDisposition).getFilename();
+                if (filename != null && !filename.isBlank()) {
+                    return filename;
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Cabecalho malformado: usa o parametro nome.
+            }
+        }
+        return nome;
+    }
+
+    private String resolveEtag(Attachment attachment, String sha256) {
+        if (sha256 != null && !sha256.isBlank()) {
+            return "\"" + sha256 + "\"";
+        }
+        // Anexos antigos, sem hash: o conteudo de um anexo nunca muda, entao id e tamanho bastam.
+        return "\"a" + attachment.getId() + "-" + attachment.getSize() + "\"";
+    }
+
     private String sanitizeFilename(String value) {
         if (value == null || value.isBlank()) return "arquivo";
         return value.replace("\"", "'");
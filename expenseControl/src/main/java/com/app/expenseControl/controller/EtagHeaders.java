@@ -0,0 +1,34 @@
+package com.app.expenseControl.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * ETag das solicitacoes: a propria versao otimista ({@code "versao"}). O If-Match e opcional;
+ * quando enviado, a escrita so acontece se a versao ainda for a mesma.
+ */
+final class EtagHeaders {
+
+    private EtagHeaders() {
+    }
+
+    static String etag(Long versao) {
+        return "\"" + (versao == null ? 0 : versao) + "\"";
+    }
+
+    static Long versaoEsperada(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String valor = ifMatch.trim();
+        if (valor.startsWith("W/")) {
+            valor = valor.substring(2);
+        }
+        valor = valor.replace("\"", "").trim();
+        try {
+            return Long.valueOf(valor);
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match invalido.");
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.app.expenseControl.controller;
+
+import com.app.expenseControl.service.IdempotenciaService;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Monta a resposta de uma escrita idempotente, sinalizando quando ela foi reproduzida.
+ */
+final class IdempotencyHeaders {
+
+    private IdempotencyHeaders() {
+    }
+
+    static <T> ResponseEntity<T> body(ResponseEntity.BodyBuilder builder, IdempotenciaService.Resultado<T> resultado) {
+        if (resultado.reproduzido()) {
+            builder.header(IdempotenciaService.REPLAY_HEADER, "true");
+        }
+        return builder.body(resultado.corpo());
+    }
+}
@@ -0,0 +1,35 @@
+package com.app.expenseControl.controller;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.Locale;
+
+/**
+ * Suporte ao cabecalho {@code Prefer: return=minimal} (RFC 7240) nas escritas de solicitacao.
+ */
+final class PreferHeaders {
+
+    static final String PREFER = "Prefer";
+    static final String PREFERENCE_APPLIED = "Preference-Applied";
+    static final String RETURN_MINIMAL = "return=minimal";
+
+    private PreferHeaders() {
+    }
+
+    static boolean returnMinimal(String prefer) {
+        if (prefer == null || prefer.isBlank()) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            String token = preference.split(";", 2)[0].replace(" ", "").toLowerCase(Locale.ROOT);
+            if (RETURN_MINIMAL.equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static ResponseEntity.BodyBuilder minimal(ResponseEntity.BodyBuilder builder) {
+        return builder.header(PREFERENCE_APPLIED, RETURN_MINIMAL);
+    }
+}
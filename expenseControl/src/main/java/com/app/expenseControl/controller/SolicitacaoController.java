@@ -1,33 +1,100 @@
 package com.app.expenseControl.controller;
 
 import com.app.expenseControl.dto.SolicitacaoCreateDTO;
+import com.app.expenseControl.dto.SolicitacaoImportResultadoDTO;
 import com.app.expenseControl.dto.SolicitacaoReenvioDTO;
 import com.app.expenseControl.dto.SolicitacaoResponseDTO;
+import com.app.expenseControl.dto.SolicitacaoResumoDTO;
+import com.app.expenseControl.service.IdempotenciaService;
 import com.app.expenseControl.dto.PageResponse;
+import com.app.expenseControl.service.SolicitacaoImportService;
 import com.app.expenseControl.service.SolicitacaoService;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/solicitacoes")
 public class SolicitacaoController {
 
     private final SolicitacaoService solicitacaoService;
+    private final SolicitacaoImportService importService;
+    private final IdempotenciaService idempotenciaService;
 
-    public SolicitacaoController(SolicitacaoService solicitacaoService){
+    public SolicitacaoController(SolicitacaoService solicitacaoService,
+                                 SolicitacaoImportService importService,
+                                 IdempotenciaService idempotenciaService){
         this.solicitacaoService = solicitacaoService;
+        this.importService = importService;
+        this.idempotenciaService = idempotenciaService;
     }
 
     @PostMapping
-    public ResponseEntity<SolicitacaoResponseDTO> criar(@RequestBody @Valid SolicitacaoCreateDTO dto){
-        return ResponseEntity.status(201).body(solicitacaoService.criar(dto));
+    public ResponseEntity<?> criar(@RequestBody @Valid SolicitacaoCreateDTO dto,
+                                   @RequestHeader(value = PreferHeaders.PREFER, required = false) String prefer,
+                                   @RequestHeader(value = IdempotenciaService.HEADER, required = false) String idempotencyKey){
+        if (PreferHeaders.returnMinimal(prefer)) {
+            var resultado = idempotenciaService.executar(
+                    idempotencyKey,
+                    "SOLICITACAO_CRIAR",
+                    dto.toString(),
+                    () -> solicitacaoService.criarResumo(dto),
+                    SolicitacaoResumoDTO::id,
+                    solicitacaoService::buscarResumoDaFilial
+            );
+            return IdempotencyHeaders.body(
+                    PreferHeaders.minimal(ResponseEntity.status(201)).eTag(EtagHeaders.etag(resultado.corpo().versao())),
+                    resultado
+            );
+        }
+        var resultado = idempotenciaService.executar(
+                idempotencyKey,
+                "SOLICITACAO_CRIAR",
+                dto.toString(),
+                () -> solicitacaoService.criar(dto),
+                SolicitacaoResponseDTO::id,
+                solicitacaoService::buscarDaFilial
+        );
+        return IdempotencyHeaders.body(
+                ResponseEntity.status(201).eTag(EtagHeaders.etag(resultado.corpo().versao())),
+                resultado
+        );
+    }
+
+    @PostMapping(path = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<SolicitacaoImportResultadoDTO> importar(@RequestParam("file") MultipartFile file)
+            throws IOException {
+        try (InputStream entrada = file.getInputStream()) {
+            return ResponseEntity.ok(importService.importar(entrada));
+        }
+    }
+
+    /**
+     * Corpo CSV cru: nao passa pelo limite de multipart e e lido direto do socket.
+     */
+    @PostMapping(path = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<SolicitacaoImportResultadoDTO> importarCsv(InputStream entrada) {
+        return ResponseEntity.ok(importService.importar(entrada));
     }
 
     @PutMapping("/{id}/reenvio")
-    public ResponseEntity<SolicitacaoResponseDTO> reenvio(@PathVariable Long id,
-                                                          @RequestBody @Valid SolicitacaoReenvioDTO dto) {
-        return ResponseEntity.ok(solicitacaoService.reenvio(id, dto));
+    public ResponseEntity<?> reenvio(@PathVariable Long id,
+                                     @RequestBody @Valid SolicitacaoReenvioDTO dto,
+                                     @RequestHeader(value = PreferHeaders.PREFER, required = false) String prefer,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long versaoEsperada = EtagHeaders.versaoEsperada(ifMatch);
+        if (PreferHeaders.returnMinimal(prefer)) {
+            SolicitacaoResumoDTO resumo = solicitacaoService.reenvioResumo(id, dto, versaoEsperada);
+            return PreferHeaders.minimal(ResponseEntity.ok()).eTag(EtagHeaders.etag(resumo.versao())).body(resumo);
+        }
+        SolicitacaoResponseDTO resposta = solicitacaoService.reenvio(id, dto, versaoEsperada);
+        return ResponseEntity.ok().eTag(EtagHeaders.etag(resposta.versao())).body(resposta);
     }
 
     @GetMapping
@@ -42,6 +109,7 @@ public class SolicitacaoController {
 
     @GetMapping("/{id}")
     public ResponseEntity<SolicitacaoResponseDTO> buscar(@PathVariable Long id) {
-        return ResponseEntity.ok(solicitacaoService.buscarDaFilial(id));
+        SolicitacaoResponseDTO resposta = solicitacaoService.buscarDaFilial(id);
+        return ResponseEntity.ok().eTag(EtagHeaders.etag(resposta.versao())).body(resposta);
     }
 }
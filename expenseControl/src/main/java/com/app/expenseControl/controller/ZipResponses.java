@@ -0,0 +1,31 @@
+package com.app.expenseControl.controller;
+
+import com.app.expenseControl.service.AnexoZipService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Resposta de exportacao em ZIP: sem Content-Length (o tamanho so e conhecido no fim) e escrita
+ * fora da thread da requisicao, depois que as permissoes ja foram verificadas.
+ */
+final class ZipResponses {
+
+    private static final MediaType APPLICATION_ZIP = MediaType.parseMediaType("application/zip");
+
+    private ZipResponses() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> of(AnexoZipService service, AnexoZipService.AnexoZip zip) {
+        StreamingResponseBody corpo = out -> service.escrever(zip.filtro(), out);
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_ZIP)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(zip.nomeArquivo()).build().toString())
+                .cacheControl(CacheControl.noStore())
+                .body(corpo);
+    }
+}
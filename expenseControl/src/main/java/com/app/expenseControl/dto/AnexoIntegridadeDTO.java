@@ -0,0 +1,22 @@
+package com.app.expenseControl.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Resultado da verificacao de integridade dos anexos. {@code ausentes} e {@code divergentes}
+ * sao limitados; os totais contam todos os casos.
+ */
+public record AnexoIntegridadeDTO(
+        LocalDateTime inicio,
+        LocalDateTime fim,
+        String fase,
+        long verificados,
+        long bytesLidos,
+        long totalAusentes,
+        long totalDivergentes,
+        long restaurados,
+        long emQuarentena,
+        List<String> ausentes,
+        List<String> divergentes
+) {}
@@ -0,0 +1,17 @@
+package com.app.expenseControl.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+public record AnexoUploadCreateDTO(
+        @Size(max = 255)
+        String nome,
+
+        @NotBlank @Size(max = 120)
+        String contentType,
+
+        @NotNull @Positive
+        Long tamanho
+) {}
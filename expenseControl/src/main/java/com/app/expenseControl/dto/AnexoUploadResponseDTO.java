@@ -0,0 +1,13 @@
+package com.app.expenseControl.dto;
+
+import java.time.LocalDateTime;
+
+public record AnexoUploadResponseDTO(
+        String id,
+        Long solicitacaoId,
+        String originalName,
+        String contentType,
+        Long tamanho,
+        Long recebido,
+        LocalDateTime expiraEm
+) {}
@@ -0,0 +1,14 @@
+package com.app.expenseControl.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record DecisaoLoteDTO(
+        @NotEmpty
+        @Size(max = 200)
+        List<@NotNull @Valid DecisaoLoteItemDTO> decisoes
+) {}
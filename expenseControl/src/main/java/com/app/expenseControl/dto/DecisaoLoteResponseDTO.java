@@ -0,0 +1,9 @@
+package com.app.expenseControl.dto;
+
+import java.util.List;
+
+public record DecisaoLoteResponseDTO(
+        int processadas,
+        int falhas,
+        List<DecisaoLoteResultadoDTO> resultados
+) {}
@@ -0,0 +1,12 @@
+package com.app.expenseControl.dto;
+
+import com.app.expenseControl.enums.StatusSolicitacao;
+
+public record DecisaoLoteResultadoDTO(
+        Long id,
+        boolean sucesso,
+        StatusSolicitacao status,
+        Long versao,
+        int codigo,
+        String erro
+) {}
@@ -0,0 +1,11 @@
+package com.app.expenseControl.dto;
+
+import java.math.BigDecimal;
+
+public record OrcamentoConsumoTotaisDTO(
+        String filialKey,
+        Long categoriaId,
+        String competencia,
+        BigDecimal valorComprometido,
+        BigDecimal valorAprovado
+) {}
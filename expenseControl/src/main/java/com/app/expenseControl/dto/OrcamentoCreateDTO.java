@@ -0,0 +1,26 @@
+package com.app.expenseControl.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+
+public record OrcamentoCreateDTO(
+        @NotBlank @Size(max = 120)
+        String filial,
+
+        @NotNull
+        Long categoriaId,
+
+        @NotBlank
+        @Pattern(regexp = "\\d{4}-(0[1-9]|1[0-2])")
+        String competencia,
+
+        @NotNull @DecimalMin(value = "0.00")
+        BigDecimal valorLimite,
+
+        Boolean bloquearExcesso
+) {}
@@ -0,0 +1,17 @@
+package com.app.expenseControl.dto;
+
+import java.math.BigDecimal;
+
+public record OrcamentoUtilizacaoDTO(
+        String filial,
+        Long categoriaId,
+        String categoriaNome,
+        String competencia,
+        BigDecimal valorLimite,
+        BigDecimal valorComprometido,
+        BigDecimal valorAprovado,
+        BigDecimal valorDisponivel,
+        BigDecimal percentualUtilizado,
+        boolean bloquearExcesso,
+        boolean excedido
+) {}
@@ -0,0 +1,6 @@
+package com.app.expenseControl.dto;
+
+public record SolicitacaoImportErroDTO(
+        int linha,
+        String erro
+) {}
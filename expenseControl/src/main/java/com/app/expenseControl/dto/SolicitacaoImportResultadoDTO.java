@@ -0,0 +1,11 @@
+package com.app.expenseControl.dto;
+
+import java.util.List;
+
+public record SolicitacaoImportResultadoDTO(
+        int linhasLidas,
+        int importadas,
+        int rejeitadas,
+        List<SolicitacaoImportErroDTO> erros,
+        boolean errosTruncados
+) {}
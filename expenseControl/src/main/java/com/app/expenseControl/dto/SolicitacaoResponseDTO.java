@@ -24,5 +24,9 @@ public record SolicitacaoResponseDTO(
         LocalDateTime decididoEm,
         String comentarioDecisao,
         List<SolicitacaoLinhaResponseDTO> linhas,
-        List<SolicitacaoHistoricoResponseDTO> historico
+        List<SolicitacaoHistoricoResponseDTO> historico,
+        Long versao,
+        String reservadoPor,
+        LocalDateTime reservadoAte,
+        LocalDateTime escaladaEm
 ) {}
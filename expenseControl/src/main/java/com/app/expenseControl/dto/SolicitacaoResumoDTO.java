@@ -0,0 +1,17 @@
+package com.app.expenseControl.dto;
+
+import com.app.expenseControl.enums.StatusSolicitacao;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resposta reduzida das escritas quando o cliente envia {@code Prefer: return=minimal}.
+ */
+public record SolicitacaoResumoDTO(
+        Long id,
+        StatusSolicitacao status,
+        LocalDateTime criadoEm,
+        LocalDateTime enviadoEm,
+        LocalDateTime decididoEm,
+        Long versao
+) {}
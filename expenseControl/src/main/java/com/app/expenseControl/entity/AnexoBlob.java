@@ -0,0 +1,65 @@
+package com.app.expenseControl.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conteudo armazenado uma unica vez, identificado pelo SHA-256. Cada anexo confirmado conta uma
+ * referencia; blobs sem referencias ha algum tempo sao removidos pela coleta periodica.
+ * Alterado apenas pelas operacoes atomicas de {@code AnexoBlobRepository}.
+ */
+@Entity
+@Table(
+        name = "anexo_blobs",
+        indexes = @Index(name = "idx_anexo_blobs_liberado_em", columnList = "liberado_em")
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnexoBlob {
+
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long tamanho;
+
+    @Column(name = "content_type", nullable = false, length = 120)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Integer referencias;
+
+    @Column(name = "criado_em", nullable = false)
+    private LocalDateTime criadoEm;
+
+    /**
+     * Momento em que as referencias chegaram a zero; nulo enquanto o blob esta em uso.
+     */
+    @Column(name = "liberado_em")
+    private LocalDateTime liberadoEm;
+
+    /**
+     * Quando a copia na camada remota foi confirmada; nulo enquanto a replicacao esta pendente
+     * (ou sem camada remota configurada).
+     */
+    @Column(name = "replicado_em")
+    private LocalDateTime replicadoEm;
+
+    @Column(name = "replicacao_tentativas", nullable = false)
+    private Integer replicacaoTentativas;
+
+    /**
+     * Proxima tentativa de replicacao (espera apos falha) ou fim da reserva de um worker.
+     */
+    @Column(name = "replicacao_proxima")
+    private LocalDateTime replicacaoProxima;
+
+    @Column(name = "replicacao_erro", length = 500)
+    private String replicacaoErro;
+}
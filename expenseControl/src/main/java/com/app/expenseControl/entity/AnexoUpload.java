@@ -0,0 +1,59 @@
+package com.app.expenseControl.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sessao de upload retomavel: o arquivo e recebido em trechos, por offset, em um temporario do
+ * tamanho declarado. Na conclusao vira um anexo comum; sessoes paradas expiram.
+ */
+@Entity
+@Table(
+        name = "anexo_uploads",
+        indexes = {
+                @Index(name = "idx_anexo_uploads_expira_em", columnList = "expira_em"),
+                @Index(name = "idx_anexo_uploads_solicitacao_id", columnList = "solicitacao_id")
+        }
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnexoUpload {
+
+    /** UUID aleatorio; tambem serve de token da sessao. */
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(name = "solicitacao_id", nullable = false)
+    private Long solicitacaoId;
+
+    @Column(nullable = false, length = 120)
+    private String usuario;
+
+    @Column(name = "original_name", nullable = false, length = 255)
+    private String originalName;
+
+    @Column(name = "content_type", nullable = false, length = 120)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long tamanho;
+
+    /** Bytes ja gravados a partir do inicio; o proximo trecho deve comecar aqui. */
+    @Column(nullable = false)
+    private Long recebido;
+
+    @Column(name = "arquivo_id", nullable = false, length = 200)
+    private String arquivoId;
+
+    @Column(name = "criado_em", nullable = false)
+    private LocalDateTime criadoEm;
+
+    @Column(name = "expira_em", nullable = false)
+    private LocalDateTime expiraEm;
+}
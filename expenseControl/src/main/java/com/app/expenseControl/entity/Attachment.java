@@ -1,12 +1,16 @@
 package com.app.expenseControl.entity;
 
+import com.app.expenseControl.enums.StatusAnexo;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "anexos")
+@Table(
+        name = "anexos",
+        indexes = @Index(name = "idx_anexos_solicitacao_id", columnList = "solicitacao_id, id")
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,7 +19,8 @@ import java.time.LocalDateTime;
 public class Attachment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "anexos_seq")
+    @SequenceGenerator(name = "anexos_seq", sequenceName = "anexos_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -40,6 +45,27 @@ public class Attachment {
     @Column(nullable = false)
     private Long size;
 
+    /**
+     * SHA-256 do conteudo, calculado durante o upload. Nulo em anexos anteriores ao calculo.
+     */
+    @Column(length = 64)
+    private String sha256;
+
+    /**
+     * SHA-256 do arquivo como enviado, quando a imagem foi normalizada e o original mantido
+     * ({@code app.attachments.images.keep-original}). O original tambem conta uma referencia no blob.
+     */
+    @Column(name = "original_sha256", length = 64)
+    private String originalSha256;
+
+    /**
+     * PENDENTE enquanto o arquivo e gravado (fora de transacao); CONFIRMADO depois.
+     * Reservas que nao chegam a ser confirmadas sao removidas pela limpeza periodica.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StatusAnexo status;
+
     @Column(name = "uploaded_by", nullable = false, length = 120)
     private String uploadedBy;
 
@@ -51,5 +77,8 @@ public class Attachment {
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
         }
+        if (status == null) {
+            status = StatusAnexo.CONFIRMADO;
+        }
     }
 }
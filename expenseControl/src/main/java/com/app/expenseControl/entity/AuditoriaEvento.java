@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class AuditoriaEvento {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auditoria_eventos_seq")
+    @SequenceGenerator(name = "auditoria_eventos_seq", sequenceName = "auditoria_eventos_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "usuario", nullable = false, length = 120)
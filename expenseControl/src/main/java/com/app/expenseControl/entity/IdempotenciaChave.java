@@ -0,0 +1,61 @@
+package com.app.expenseControl.entity;
+
+import com.app.expenseControl.enums.StatusIdempotencia;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "idempotencia_chaves",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_idempotencia_chaves_usuario_chave",
+                columnNames = {"usuario", "chave"}
+        ),
+        indexes = @Index(name = "idx_idempotencia_chaves_expira_em", columnList = "expira_em")
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotenciaChave {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 120)
+    private String usuario;
+
+    @Column(nullable = false, length = 120)
+    private String chave;
+
+    @Column(nullable = false, length = 80)
+    private String operacao;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StatusIdempotencia status;
+
+    @Column(name = "recurso_id")
+    private Long recursoId;
+
+    /** Identifica a tentativa dona da reserva: conclusao e liberacao exigem o mesmo token. */
+    @Column(length = 36)
+    private String token;
+
+    /** Fim da reserva, renovado enquanto a acao roda; depois disso outra tentativa pode assumir. */
+    @Column(name = "reservada_ate")
+    private LocalDateTime reservadaAte;
+
+    @Column(name = "criado_em", nullable = false)
+    private LocalDateTime criadoEm;
+
+    @Column(name = "expira_em", nullable = false)
+    private LocalDateTime expiraEm;
+}
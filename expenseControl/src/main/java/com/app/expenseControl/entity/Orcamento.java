@@ -0,0 +1,55 @@
+package com.app.expenseControl.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(
+        name = "orcamentos",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_orcamentos_filial_categoria_competencia",
+                columnNames = {"filial_key", "categoria_id", "competencia"}
+        )
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Orcamento {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 120)
+    private String filial;
+
+    @Column(name = "filial_key", nullable = false, length = 120)
+    private String filialKey;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "categoria_id", nullable = false)
+    private Categoria categoria;
+
+    @Column(nullable = false, length = 7)
+    private String competencia;
+
+    @Column(name = "valor_limite", nullable = false, precision = 12, scale = 2)
+    private BigDecimal valorLimite;
+
+    @Column(name = "bloquear_excesso", nullable = false)
+    private boolean bloquearExcesso;
+
+    @Column(name = "atualizado_em", nullable = false)
+    private LocalDateTime atualizadoEm;
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        this.atualizadoEm = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,45 @@
+package com.app.expenseControl.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Totais correntes por filial/categoria/competencia. Atualizados apenas por incremento
+ * atomico em {@code OrcamentoConsumoRepository#acumular}, nunca recalculados por requisicao.
+ */
+@Entity
+@Table(
+        name = "orcamento_consumo",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_orcamento_consumo_filial_categoria_competencia",
+                columnNames = {"filial_key", "categoria_id", "competencia"}
+        )
+)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrcamentoConsumo {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "filial_key", nullable = false, length = 120)
+    private String filialKey;
+
+    @Column(name = "categoria_id", nullable = false)
+    private Long categoriaId;
+
+    @Column(nullable = false, length = 7)
+    private String competencia;
+
+    @Column(name = "valor_comprometido", nullable = false, precision = 14, scale = 2)
+    private BigDecimal valorComprometido;
+
+    @Column(name = "valor_aprovado", nullable = false, precision = 14, scale = 2)
+    private BigDecimal valorAprovado;
+}
@@ -0,0 +1,31 @@
+package com.app.expenseControl.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Posse de uma rotina agendada que so pode rodar em uma instancia por vez. A instancia dona
+ * renova {@code ate} a cada execucao; as demais so assumem depois que ele passa. Alterado apenas
+ * pelo UPDATE condicional de {@code RotinaLeaseRepository}.
+ */
+@Entity
+@Table(name = "rotina_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RotinaLease {
+
+    @Id
+    @Column(length = 60)
+    private String nome;
+
+    @Column(nullable = false, length = 60)
+    private String dono;
+
+    @Column(nullable = false)
+    private LocalDateTime ate;
+}
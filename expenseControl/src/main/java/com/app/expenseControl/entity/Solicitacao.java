@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 public class Solicitacao {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "solicitacoes_seq")
+    @SequenceGenerator(name = "solicitacoes_seq", sequenceName = "solicitacoes_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 120)
@@ -69,6 +70,34 @@ public class Solicitacao {
     @Column(length = 500)
     private String comentarioDecisao;
 
+    @Version
+    @Column(nullable = false)
+    private Long versao;
+
+    /**
+     * Reserva na fila de aprovacao. Gravada apenas via SQL (SolicitacaoJdbcRepository),
+     * por isso fica fora dos INSERT/UPDATE do Hibernate.
+     */
+    @Column(name = "reservado_por", length = 120, insertable = false, updatable = false)
+    private String reservadoPor;
+
+    @Column(name = "reservado_ate", insertable = false, updatable = false)
+    private LocalDateTime reservadoAte;
+
+    /**
+     * Marcas da rotina de vencimento (SolicitacaoVencimentoService). Zeradas quando a solicitacao
+     * muda de etapa, para que o proximo atraso seja sinalizado de novo.
+     */
+    @Column(name = "escalada_em")
+    private LocalDateTime escaladaEm;
+
+    @Column(name = "lembrete_em")
+    private LocalDateTime lembreteEm;
+
+    /** Quando o ajuste foi pedido (PENDENTE_INFO); o lembrete conta a partir daqui. */
+    @Column(name = "info_solicitada_em")
+    private LocalDateTime infoSolicitadaEm;
+
     @PrePersist
     public void prePersist() {
         if (this.criadoEm == null) this.criadoEm = LocalDateTime.now();
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class SolicitacaoHistorico {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "solicitacao_historico_seq")
+    @SequenceGenerator(name = "solicitacao_historico_seq", sequenceName = "solicitacao_historico_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "solicitacao_id", nullable = false)
@@ -14,7 +14,8 @@ import java.math.BigDecimal;
 public class SolicitacaoLinha {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "solicitacao_linhas_seq")
+    @SequenceGenerator(name = "solicitacao_linhas_seq", sequenceName = "solicitacao_linhas_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "solicitacao_id", nullable = false)
@@ -28,4 +29,8 @@ public class SolicitacaoLinha {
 
     @Column(length = 300)
     private String observacao;
+
+    /** Posicao da linha na solicitacao, como enviada. */
+    @Column(nullable = false)
+    private int ordem;
 }
@@ -0,0 +1,6 @@
+package com.app.expenseControl.enums;
+
+public enum StatusAnexo {
+    PENDENTE,
+    CONFIRMADO
+}
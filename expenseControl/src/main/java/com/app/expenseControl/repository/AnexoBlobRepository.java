@@ -0,0 +1,140 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.entity.AnexoBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface AnexoBlobRepository extends JpaRepository<AnexoBlob, String> {
+
+    /**
+     * Soma uma referencia ao blob, criando o registro se for conteudo novo. A linha fica travada
+     * ate o fim da transacao, o que serializa a promocao do arquivo com a coleta do mesmo blob.
+     */
+    @Modifying
+    @Query(value = """
+            insert into anexo_blobs (sha256, tamanho, content_type, referencias, criado_em, liberado_em,
+                                     replicacao_tentativas)
+            values (:sha256, :tamanho, :contentType, 1, :agora, null, 0)
+            on conflict (sha256) do update
+            set referencias = anexo_blobs.referencias + 1,
+                liberado_em = null
+            """, nativeQuery = true)
+    int referenciar(@Param("sha256") String sha256,
+                    @Param("tamanho") long tamanho,
+                    @Param("contentType") String contentType,
+                    @Param("agora") LocalDateTime agora);
+
+    /**
+     * Retira uma referencia. Ao chegar a zero o blob fica marcado para a coleta, que so o remove
+     * apos o periodo de carencia.
+     */
+    @Modifying
+    @Query(value = """
+            update anexo_blobs
+               set referencias = referencias - 1,
+                   liberado_em = case when referencias = 1 then cast(:agora as timestamp) else liberado_em end
+             where sha256 = :sha256 and referencias > 0
+            """, nativeQuery = true)
+    int liberar(@Param("sha256") String sha256, @Param("agora") LocalDateTime agora);
+
+    @Query("""
+            select b.sha256 from AnexoBlob b
+             where b.referencias = 0 and b.liberadoEm < :limite
+             order by b.liberadoEm
+            """)
+    List<String> findLiberados(@Param("limite") LocalDateTime limite, Pageable pageable);
+
+    /**
+     * Apaga o registro se continua sem referencias. Retorna 0 quando um upload voltou a usar o
+     * blob desde a consulta da coleta.
+     */
+    @Modifying
+    @Query("delete from AnexoBlob b where b.sha256 = :sha256 and b.referencias = 0")
+    int removerSeLiberado(@Param("sha256") String sha256);
+
+    /**
+     * Fila de replicacao: reserva ate {@code limite} blobs pendentes por {@code leaseSegundos},
+     * sem esperar linhas ja reservadas por outra instancia. Se o worker cair, a reserva expira e o
+     * blob volta para a fila.
+     */
+    @Query(value = """
+            with proximos as (
+                select sha256 from anexo_blobs
+                 where replicado_em is null and referencias > 0
+                   and (replicacao_proxima is null or replicacao_proxima <= :agora)
+                 order by replicacao_proxima nulls first, criado_em
+                 limit :limite
+                 for update skip locked
+            )
+            update anexo_blobs b
+               set replicacao_proxima = cast(:agora as timestamp) + :leaseSegundos * interval '1 second'
+              from proximos
+             where b.sha256 = proximos.sha256
+            returning b.sha256
+            """, nativeQuery = true)
+    List<String> reservarReplicacao(@Param("agora") LocalDateTime agora,
+                                    @Param("leaseSegundos") long leaseSegundos,
+                                    @Param("limite") int limite);
+
+    @Modifying
+    @Query("""
+            update AnexoBlob b
+               set b.replicadoEm = :agora, b.replicacaoProxima = null, b.replicacaoErro = null
+             where b.sha256 = :sha256
+            """)
+    int marcarReplicado(@Param("sha256") String sha256, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("""
+            update AnexoBlob b
+               set b.replicacaoTentativas = b.replicacaoTentativas + 1,
+                   b.replicacaoProxima = :proxima, b.replicacaoErro = :erro
+             where b.sha256 = :sha256
+            """)
+    int adiarReplicacao(@Param("sha256") String sha256,
+                        @Param("proxima") LocalDateTime proxima,
+                        @Param("erro") String erro);
+
+    /**
+     * Volta o blob para a fila (ex.: copia remota apagada pela coleta de um blob que voltou a ser usado).
+     */
+    @Modifying
+    @Query("""
+            update AnexoBlob b
+               set b.replicadoEm = null, b.replicacaoTentativas = 0, b.replicacaoProxima = null, b.replicacaoErro = null
+             where b.sha256 = :sha256
+            """)
+    int reiniciarReplicacao(@Param("sha256") String sha256);
+
+    @Query("select b.replicacaoTentativas from AnexoBlob b where b.sha256 = :sha256")
+    Integer findReplicacaoTentativas(@Param("sha256") String sha256);
+
+    @Query("select b.sha256 from AnexoBlob b where b.sha256 in :shas and b.replicadoEm is not null")
+    List<String> findReplicados(@Param("shas") Collection<String> shas);
+
+    /**
+     * Cria um registro provisorio (sem referencias) para um arquivo de blob sem registro. A linha
+     * fica travada ate o fim da transacao: um upload do mesmo conteudo espera, e a verificacao
+     * pode mover o arquivo sem concorrer com a promocao. Retorna 0 se o registro ja existe.
+     */
+    @Modifying
+    @Query(value = """
+            insert into anexo_blobs (sha256, tamanho, content_type, referencias, criado_em, liberado_em,
+                                     replicacao_tentativas)
+            values (:sha256, 0, 'application/octet-stream', 0, :agora, :agora, 0)
+            on conflict (sha256) do nothing
+            """, nativeQuery = true)
+    int travarOrfao(@Param("sha256") String sha256, @Param("agora") LocalDateTime agora);
+
+    /**
+     * Proxima pagina de blobs em ordem de SHA-256, para a verificacao de integridade.
+     */
+    List<AnexoBlob> findBySha256GreaterThanOrderBySha256Asc(String aposSha256, Pageable pageable);
+}
@@ -0,0 +1,210 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.enums.StatusSolicitacao;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Consultas sobre {@code anexos} feitas direto em SQL, para leituras em volume que nao precisam
+ * das entidades.
+ */
+@Repository
+public class AnexoJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AnexoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Filtro de exportacao. Campos nulos nao filtram.
+     *
+     * @param filiaisVisiveis chaves normalizadas das filiais visiveis; {@code null} para todas
+     * @param enviadoDe       inicio (inclusivo) de {@code enviado_em}
+     * @param enviadoAte      fim (exclusivo) de {@code enviado_em}
+     */
+    public record FiltroAnexos(Long solicitacaoId,
+                               Collection<String> filiaisVisiveis,
+                               String filial,
+                               StatusSolicitacao status,
+                               LocalDateTime enviadoDe,
+                               LocalDateTime enviadoAte) {}
+
+    public record AnexoExportado(Long id,
+                                 Long solicitacaoId,
+                                 String originalName,
+                                 String contentType,
+                                 String driveFileId,
+                                 LocalDateTime createdAt) {}
+
+    /**
+     * Proxima pagina de anexos confirmados do filtro, em ordem de (solicitacao, anexo), depois da
+     * posicao {@code (aposSolicitacao, aposId)}. A visibilidade entra na propria consulta.
+     */
+    public List<AnexoExportado> buscarParaExportacao(FiltroAnexos filtro, long aposSolicitacao, long aposId, int limite) {
+        if (filtro.filiaisVisiveis() != null && filtro.filiaisVisiveis().isEmpty()) {
+            return List.of();
+        }
+        StringBuilder where = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        args.add(aposSolicitacao);
+        args.add(aposId);
+        if (filtro.solicitacaoId() != null) {
+            where.append(" and a.solicitacao_id = ?");
+            args.add(filtro.solicitacaoId());
+        }
+        if (filtro.filiaisVisiveis() != null) {
+            where.append(" and lower(s.filial) in (")
+                    .append(String.join(", ", Collections.nCopies(filtro.filiaisVisiveis().size(), "?")))
+                    .append(")");
+            args.addAll(filtro.filiaisVisiveis());
+        }
+        if (filtro.filial() != null) {
+            where.append(" and lower(s.filial) = ?");
+            args.add(filtro.filial());
+        }
+        if (filtro.status() != null) {
+            where.append(" and s.status = ?");
+            args.add(filtro.status().name());
+        }
+        if (filtro.enviadoDe() != null) {
+            where.append(" and s.enviado_em >= ?");
+            args.add(Timestamp.valueOf(filtro.enviadoDe()));
+        }
+        if (filtro.enviadoAte() != null) {
+            where.append(" and s.enviado_em < ?");
+            args.add(Timestamp.valueOf(filtro.enviadoAte()));
+        }
+        args.add(limite);
+        String sql = """
+                select a.id, a.solicitacao_id, a.original_name, a.content_type, a.drive_file_id, a.created_at
+                  from anexos a
+                  join solicitacoes s on s.id = a.solicitacao_id
+                 where a.status = 'CONFIRMADO'
+                   and (a.solicitacao_id, a.id) > (?, ?)
+                   %s
+                 order by a.solicitacao_id, a.id
+                 limit ?
+                """.formatted(where);
+        return jdbcTemplate.query(
+                sql,
+                (rs, rowNum) -> new AnexoExportado(
+                        rs.getLong("id"),
+                        rs.getLong("solicitacao_id"),
+                        rs.getString("original_name"),
+                        rs.getString("content_type"),
+                        rs.getString("drive_file_id"),
+                        rs.getTimestamp("created_at").toLocalDateTime()
+                ),
+                args.toArray()
+        );
+    }
+
+    public record ArquivoLegado(String driveFileId, long size, String sha256) {}
+
+    /**
+     * Proxima pagina de anexos em pasta por solicitacao, em ordem binaria do ID (a mesma da
+     * listagem das pastas), depois de {@code aposFileId}: IDs {@code local-file:v2:} (pastas
+     * distribuidas) ou, com {@code distribuidos = false}, os da pasta direto na raiz.
+     */
+    public List<ArquivoLegado> buscarLegados(boolean distribuidos, String aposFileId, int limite) {
+        String formato = distribuidos
+                ? "drive_file_id like 'local-file:v2:%'"
+                : "drive_file_id like 'local-file:%' and drive_file_id not like 'local-file:v2:%'";
+        return jdbcTemplate.query(
+                """
+                select drive_file_id, size, sha256
+                  from anexos
+                 where %s
+                   and drive_file_id collate "C" > ?
+                 order by drive_file_id collate "C"
+                 limit ?
+                """.formatted(formato),
+                (rs, rowNum) -> new ArquivoLegado(
+                        rs.getString("drive_file_id"),
+                        rs.getLong("size"),
+                        rs.getString("sha256")
+                ),
+                aposFileId,
+                limite
+        );
+    }
+
+    /**
+     * Troca o prefixo do ID dos anexos de uma pasta migrada (ex.: {@code local-file:12/} por
+     * {@code local-file:v2:ab/cd/12/}). IDs que passariam do tamanho da coluna ficam como estao:
+     * o formato antigo continua resolvendo para a pasta nova.
+     */
+    public int trocarPrefixoArquivo(String prefixoAntigo, String prefixoNovo) {
+        return jdbcTemplate.update(
+                """
+                update anexos
+                   set drive_file_id = ? || substr(drive_file_id, ?)
+                 where drive_file_id like ?
+                   and length(drive_file_id) + ? <= 200
+                """,
+                prefixoNovo,
+                prefixoAntigo.length() + 1,
+                prefixoAntigo + "%",
+                prefixoNovo.length() - prefixoAntigo.length()
+        );
+    }
+
+    /**
+     * Quais dos IDs de arquivo ainda pertencem a um anexo (pendente ou confirmado) ou a um upload
+     * em andamento.
+     */
+    public List<String> arquivosEmUso(Collection<String> fileIds) {
+        if (fileIds.isEmpty()) {
+            return List.of();
+        }
+        String marcadores = String.join(", ", Collections.nCopies(fileIds.size(), "?"));
+        List<Object> args = new ArrayList<>(fileIds);
+        args.addAll(fileIds);
+        return jdbcTemplate.queryForList(
+                """
+                select drive_file_id from anexos where drive_file_id in (%1$s)
+                union
+                select arquivo_id from anexo_uploads where arquivo_id in (%1$s)
+                """.formatted(marcadores),
+                String.class,
+                args.toArray()
+        );
+    }
+
+    /**
+     * Remove as reservas que ainda estiverem PENDENTE e, no mesmo comando, devolve as vagas ao
+     * contador das solicitacoes. Linhas ja confirmadas ou removidas por outro fluxo ficam de fora,
+     * entao uma vaga nunca e devolvida duas vezes. Devolve os arquivos das reservas removidas.
+     */
+    public List<String> removerPendentes(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(
+                """
+                with removidos as (
+                    delete from anexos
+                     where id in (%s) and status = 'PENDENTE'
+                    returning solicitacao_id, drive_file_id
+                ), liberadas as (
+                    update solicitacoes s
+                       set anexos_total = greatest(s.anexos_total - r.quantidade, 0)
+                      from (select solicitacao_id, count(*) as quantidade from removidos group by solicitacao_id) r
+                     where s.id = r.solicitacao_id
+                )
+                select drive_file_id from removidos
+                """.formatted(String.join(", ", Collections.nCopies(ids.size(), "?"))),
+                String.class,
+                ids.toArray()
+        );
+    }
+}
@@ -0,0 +1,37 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.entity.AnexoUpload;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface AnexoUploadRepository extends JpaRepository<AnexoUpload, String> {
+
+    long countBySolicitacaoId(Long solicitacaoId);
+
+    List<AnexoUpload> findByExpiraEmBeforeOrderByExpiraEmAsc(LocalDateTime agora, Pageable pageable);
+
+    /**
+     * Avanca o offset apos gravar um trecho. Retorna 0 se outro pedido ja avancou a sessao ou se
+     * ela foi cancelada/expirou enquanto o trecho era gravado.
+     */
+    @Modifying
+    @Query("""
+            update AnexoUpload u
+               set u.recebido = :recebido, u.expiraEm = :expiraEm
+             where u.id = :id and u.recebido = :offset
+            """)
+    int avancar(@Param("id") String id,
+                @Param("offset") long offset,
+                @Param("recebido") long recebido,
+                @Param("expiraEm") LocalDateTime expiraEm);
+
+    @Modifying
+    @Query("delete from AnexoUpload u where u.id = :id")
+    int removerPorId(@Param("id") String id);
+}
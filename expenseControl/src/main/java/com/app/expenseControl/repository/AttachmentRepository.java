@@ -1,13 +1,47 @@
 package com.app.expenseControl.repository;
 
 import com.app.expenseControl.entity.Attachment;
+import com.app.expenseControl.enums.StatusAnexo;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
 
     List<Attachment> findBySolicitacaoIdOrderByCreatedAtAsc(Long solicitacaoId);
 
-    long countBySolicitacaoId(Long solicitacaoId);
+    List<Attachment> findBySolicitacaoIdInOrderByCreatedAtAsc(List<Long> solicitacaoIds);
+
+    List<Attachment> findBySolicitacaoIdAndStatusOrderByCreatedAtAsc(Long solicitacaoId, StatusAnexo status);
+
+    List<Attachment> findBySolicitacaoIdInAndStatusOrderByCreatedAtAsc(List<Long> solicitacaoIds, StatusAnexo status);
+
+    Optional<Attachment> findByIdAndStatus(Long id, StatusAnexo status);
+
+    List<Attachment> findByStatusAndCreatedAtBeforeOrderByIdAsc(StatusAnexo status, LocalDateTime createdAt, Pageable pageable);
+
+    /**
+     * Confirma a reserva feita antes da gravacao do arquivo, apontando o anexo para o blob
+     * definitivo. Retorna 0 se a reserva ja foi descartada (ex.: pela limpeza de pendentes).
+     */
+    @Modifying
+    @Query("""
+            update Attachment a
+               set a.status = com.app.expenseControl.enums.StatusAnexo.CONFIRMADO,
+                   a.size = :size, a.sha256 = :sha256, a.contentType = :contentType,
+                   a.driveFileId = :driveFileId, a.originalSha256 = :originalSha256
+             where a.id = :id and a.status = com.app.expenseControl.enums.StatusAnexo.PENDENTE
+            """)
+    int confirmar(@Param("id") Long id,
+                  @Param("size") long size,
+                  @Param("sha256") String sha256,
+                  @Param("contentType") String contentType,
+                  @Param("driveFileId") String driveFileId,
+                  @Param("originalSha256") String originalSha256);
 }
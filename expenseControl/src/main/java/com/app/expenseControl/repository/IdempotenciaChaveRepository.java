@@ -0,0 +1,79 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.entity.IdempotenciaChave;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+public interface IdempotenciaChaveRepository extends JpaRepository<IdempotenciaChave, Long> {
+
+    Optional<IdempotenciaChave> findByUsuarioAndChave(String usuario, String chave);
+
+    /**
+     * Reserva a chave. A constraint unica decide qual requisicao concorrente vence: as demais
+     * recebem 0 sem esperar lock nenhum.
+     */
+    @Modifying
+    @Query(value = """
+            insert into idempotencia_chaves
+                (usuario, chave, operacao, fingerprint, status, token, criado_em, reservada_ate, expira_em)
+            values (:usuario, :chave, :operacao, :fingerprint, 'EM_ANDAMENTO', :token, :criadoEm, :reservadaAte, :expiraEm)
+            on conflict (usuario, chave) do nothing
+            """, nativeQuery = true)
+    int reservar(@Param("usuario") String usuario,
+                 @Param("chave") String chave,
+                 @Param("operacao") String operacao,
+                 @Param("fingerprint") String fingerprint,
+                 @Param("token") String token,
+                 @Param("criadoEm") LocalDateTime criadoEm,
+                 @Param("reservadaAte") LocalDateTime reservadaAte,
+                 @Param("expiraEm") LocalDateTime expiraEm);
+
+    /**
+     * Conclui a reserva so se ela ainda for desta tentativa. Retorna 0 se outra tentativa a assumiu.
+     */
+    @Modifying
+    @Query("""
+            update IdempotenciaChave i
+               set i.status = com.app.expenseControl.enums.StatusIdempotencia.CONCLUIDA, i.recursoId = :recursoId
+             where i.usuario = :usuario and i.chave = :chave and i.token = :token
+               and i.status = com.app.expenseControl.enums.StatusIdempotencia.EM_ANDAMENTO
+            """)
+    int concluir(@Param("usuario") String usuario,
+                 @Param("chave") String chave,
+                 @Param("token") String token,
+                 @Param("recursoId") Long recursoId);
+
+    @Modifying
+    @Query("""
+            delete from IdempotenciaChave i
+             where i.usuario = :usuario and i.chave = :chave and i.token = :token
+               and i.status = com.app.expenseControl.enums.StatusIdempotencia.EM_ANDAMENTO
+            """)
+    int liberar(@Param("usuario") String usuario, @Param("chave") String chave, @Param("token") String token);
+
+    /**
+     * Estende as reservas em andamento destas tentativas.
+     */
+    @Modifying
+    @Query("""
+            update IdempotenciaChave i
+               set i.reservadaAte = :reservadaAte
+             where i.token in :tokens
+               and i.status = com.app.expenseControl.enums.StatusIdempotencia.EM_ANDAMENTO
+            """)
+    int renovar(@Param("tokens") Collection<String> tokens, @Param("reservadaAte") LocalDateTime reservadaAte);
+
+    @Modifying
+    @Query("delete from IdempotenciaChave i where i.id = :id")
+    int removerPorId(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from IdempotenciaChave i where i.expiraEm < :agora")
+    int removerExpiradas(@Param("agora") LocalDateTime agora);
+}
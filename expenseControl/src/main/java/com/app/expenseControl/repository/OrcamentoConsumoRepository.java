@@ -0,0 +1,98 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.dto.OrcamentoConsumoTotaisDTO;
+import com.app.expenseControl.entity.OrcamentoConsumo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrcamentoConsumoRepository extends JpaRepository<OrcamentoConsumo, Long> {
+
+    @Modifying
+    @Query(value = """
+            insert into orcamento_consumo (filial_key, categoria_id, competencia, valor_comprometido, valor_aprovado)
+            values (:filialKey, :categoriaId, :competencia, :comprometido, :aprovado)
+            on conflict (filial_key, categoria_id, competencia) do update
+            set valor_comprometido = orcamento_consumo.valor_comprometido + excluded.valor_comprometido,
+                valor_aprovado = orcamento_consumo.valor_aprovado + excluded.valor_aprovado
+            """, nativeQuery = true)
+    int acumular(@Param("filialKey") String filialKey,
+                 @Param("categoriaId") Long categoriaId,
+                 @Param("competencia") String competencia,
+                 @Param("comprometido") BigDecimal comprometido,
+                 @Param("aprovado") BigDecimal aprovado);
+
+    @Query("""
+            select new com.app.expenseControl.dto.OrcamentoConsumoTotaisDTO(
+                c.filialKey,
+                c.categoriaId,
+                c.competencia,
+                c.valorComprometido,
+                c.valorAprovado
+            )
+            from OrcamentoConsumo c
+            where c.filialKey = :filialKey and c.categoriaId = :categoriaId and c.competencia = :competencia
+            """)
+    Optional<OrcamentoConsumoTotaisDTO> totais(@Param("filialKey") String filialKey,
+                                               @Param("categoriaId") Long categoriaId,
+                                               @Param("competencia") String competencia);
+
+    @Query("""
+            select new com.app.expenseControl.dto.OrcamentoConsumoTotaisDTO(
+                c.filialKey,
+                c.categoriaId,
+                c.competencia,
+                c.valorComprometido,
+                c.valorAprovado
+            )
+            from OrcamentoConsumo c
+            where c.competencia = :competencia
+            """)
+    List<OrcamentoConsumoTotaisDTO> totaisPorCompetencia(@Param("competencia") String competencia);
+
+    @Query("""
+            select new com.app.expenseControl.dto.OrcamentoConsumoTotaisDTO(
+                c.filialKey,
+                c.categoriaId,
+                c.competencia,
+                c.valorComprometido,
+                c.valorAprovado
+            )
+            from OrcamentoConsumo c
+            where c.competencia = :competencia and c.filialKey in :filialKeys
+            """)
+    List<OrcamentoConsumoTotaisDTO> totaisPorCompetenciaAndFiliais(@Param("competencia") String competencia,
+                                                                  @Param("filialKeys") Collection<String> filialKeys);
+
+    /**
+     * Trava os contadores contra incrementos ate o fim da transacao (leituras continuam): o
+     * recalculo nao se mistura com transicoes concorrentes, deste backend ou do Go.
+     */
+    @Modifying
+    @Query(value = "lock table orcamento_consumo in exclusive mode", nativeQuery = true)
+    void travar();
+
+    @Modifying
+    @Query(value = "delete from orcamento_consumo", nativeQuery = true)
+    int limpar();
+
+    @Modifying
+    @Query(value = """
+            insert into orcamento_consumo (filial_key, categoria_id, competencia, valor_comprometido, valor_aprovado)
+            select lower(trim(s.filial)),
+                   s.categoria_id,
+                   to_char(s.criado_em, 'YYYY-MM'),
+                   coalesce(sum(case when s.status in ('PENDENTE', 'PENDENTE_INFO') then s.valor_estimado end), 0),
+                   coalesce(sum(case when s.status = 'APROVADO'
+                                     then coalesce(s.valor_aprovado, s.valor_estimado) end), 0)
+            from solicitacoes s
+            group by lower(trim(s.filial)), s.categoria_id, to_char(s.criado_em, 'YYYY-MM')
+            """, nativeQuery = true)
+    int recalcularTudo();
+}
@@ -0,0 +1,17 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.entity.Orcamento;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrcamentoRepository extends JpaRepository<Orcamento, Long> {
+
+    Optional<Orcamento> findByFilialKeyAndCategoriaIdAndCompetencia(String filialKey, Long categoriaId, String competencia);
+
+    List<Orcamento> findByCompetencia(String competencia);
+
+    List<Orcamento> findByCompetenciaAndFilialKeyIn(String competencia, Collection<String> filialKeys);
+}
@@ -0,0 +1,29 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.entity.RotinaLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface RotinaLeaseRepository extends JpaRepository<RotinaLease, String> {
+
+    /**
+     * Assume ou renova a posse da rotina ate {@code ate}: cria o registro na primeira vez e so o
+     * toma de outro dono depois que a posse dele venceu. Devolve 0 se outra instancia e a dona.
+     */
+    @Modifying
+    @Query(value = """
+            insert into rotina_leases (nome, dono, ate)
+            values (:nome, :dono, :ate)
+            on conflict (nome) do update
+            set dono = excluded.dono, ate = excluded.ate
+            where rotina_leases.dono = excluded.dono or rotina_leases.ate < :agora
+            """, nativeQuery = true)
+    int assumir(@Param("nome") String nome,
+                @Param("dono") String dono,
+                @Param("agora") LocalDateTime agora,
+                @Param("ate") LocalDateTime ate);
+}
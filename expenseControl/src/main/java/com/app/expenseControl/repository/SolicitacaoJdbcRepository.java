@@ -0,0 +1,264 @@
+package com.app.expenseControl.repository;
+
+import com.app.expenseControl.enums.StatusSolicitacao;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Operacoes em lote sobre {@code solicitacoes} que nao cabem bem no modelo de entidade do JPA.
+ * Participa da mesma transacao do JPA (a conexao e compartilhada pelo JpaTransactionManager).
+ */
+@Repository
+public class SolicitacaoJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SolicitacaoJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record Decisao(Long id,
+                          Long versao,
+                          StatusSolicitacao status,
+                          BigDecimal valorAprovado,
+                          String comentario,
+                          LocalDateTime decididoEm) {}
+
+    /**
+     * Aplica as decisoes com um unico UPDATE executado em lote. As condicoes {@code status = 'PENDENTE'}
+     * e {@code versao = ?} protegem contra escritas concorrentes (mesmo contrato do {@code @Version}
+     * da entidade): o retorno indica, por posicao, se a linha foi alterada.
+     */
+    public boolean[] decidirPendentes(List<Decisao> decisoes) {
+        if (decisoes.isEmpty()) {
+            return new boolean[0];
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(
+                """
+                update solicitacoes
+                   set status = ?, valor_aprovado = ?, comentario_decisao = ?, decidido_em = ?, versao = versao + 1
+                 where id = ? and status = 'PENDENTE' and versao = ?
+                """,
+                decisoes,
+                decisoes.size(),
+                (ps, decisao) -> {
+                    ps.setString(1, decisao.status().name());
+                    if (decisao.valorAprovado() == null) {
+                        ps.setNull(2, Types.NUMERIC);
+                    } else {
+                        ps.setBigDecimal(2, decisao.valorAprovado());
+                    }
+                    ps.setString(3, decisao.comentario());
+                    ps.setTimestamp(4, Timestamp.valueOf(decisao.decididoEm()));
+                    ps.setLong(5, decisao.id());
+                    ps.setLong(6, decisao.versao());
+                }
+        );
+        return alteradas(counts, decisoes.size());
+    }
+
+    /**
+     * Solicitacao lida antes da escrita; {@code versao} protege contra alteracoes no meio do caminho.
+     */
+    public record Marcacao(Long id, Long versao) {}
+
+    /**
+     * Marca como escaladas solicitacoes PENDENTE que seguem na versao lida.
+     */
+    public boolean[] escalarPendentes(List<Marcacao> marcacoes, LocalDateTime escaladaEm) {
+        return marcar(
+                "update solicitacoes set escalada_em = ?, versao = versao + 1 where id = ? and status = 'PENDENTE' and versao = ?",
+                marcacoes,
+                escaladaEm
+        );
+    }
+
+    /**
+     * Registra o lembrete em solicitacoes PENDENTE_INFO que seguem na versao lida.
+     */
+    public boolean[] lembrarPendentesInfo(List<Marcacao> marcacoes, LocalDateTime lembreteEm) {
+        return marcar(
+                "update solicitacoes set lembrete_em = ?, versao = versao + 1 where id = ? and status = 'PENDENTE_INFO' and versao = ?",
+                marcacoes,
+                lembreteEm
+        );
+    }
+
+    /**
+     * Reprova solicitacoes PENDENTE_INFO que seguem na versao lida (vencimento automatico).
+     */
+    public boolean[] expirarPendentesInfo(List<Marcacao> marcacoes, String comentario, LocalDateTime decididoEm) {
+        if (marcacoes.isEmpty()) {
+            return new boolean[0];
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(
+                """
+                update solicitacoes
+                   set status = 'REPROVADO', valor_aprovado = null, comentario_decisao = ?, decidido_em = ?,
+                       versao = versao + 1
+                 where id = ? and status = 'PENDENTE_INFO' and versao = ?
+                """,
+                marcacoes,
+                marcacoes.size(),
+                (ps, marcacao) -> {
+                    ps.setString(1, comentario);
+                    ps.setTimestamp(2, Timestamp.valueOf(decididoEm));
+                    ps.setLong(3, marcacao.id());
+                    ps.setLong(4, marcacao.versao());
+                }
+        );
+        return alteradas(counts, marcacoes.size());
+    }
+
+    /**
+     * Advisory lock transacional do Postgres: devolve {@code false} sem esperar se outra instancia
+     * ja o detem. Liberado automaticamente no fim da transacao atual.
+     */
+    public boolean tentarLockTransacional(long chave) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select pg_try_advisory_xact_lock(?)", Boolean.class, chave));
+    }
+
+    /**
+     * Reserva {@code quantidade} vagas de anexo sem passar de {@code limite}, em um unico UPDATE
+     * condicional: uploads concorrentes se enfileiram na linha da solicitacao em vez de lerem a
+     * mesma contagem. Devolve o ultimo numero da sequencia reservada (os novos anexos ficam com
+     * {@code ultimo - quantidade + 1} ate {@code ultimo}) ou {@code null} se o limite seria excedido.
+     */
+    public Long reservarVagasAnexo(Long solicitacaoId, int quantidade, int limite) {
+        return jdbcTemplate.query(
+                """
+                update solicitacoes
+                   set anexos_total = anexos_total + ?, anexos_sequencia = anexos_sequencia + ?
+                 where id = ? and anexos_total + ? <= ?
+                returning anexos_sequencia
+                """,
+                rs -> rs.next() ? rs.getLong(1) : null,
+                quantidade, quantidade, solicitacaoId, quantidade, limite
+        );
+    }
+
+    /**
+     * Devolve vagas de anexos removidos. A sequencia nao volta: nomes ja usados nao se repetem.
+     */
+    public void liberarVagasAnexo(Long solicitacaoId, int quantidade) {
+        jdbcTemplate.update(
+                "update solicitacoes set anexos_total = greatest(anexos_total - ?, 0) where id = ?",
+                quantidade, solicitacaoId
+        );
+    }
+
+    public long vagasAnexoOcupadas(Long solicitacaoId) {
+        Long total = jdbcTemplate.query(
+                "select anexos_total from solicitacoes where id = ?",
+                rs -> rs.next() ? rs.getLong(1) : null,
+                solicitacaoId
+        );
+        return total == null ? 0 : total;
+    }
+
+    private boolean[] marcar(String sql, List<Marcacao> marcacoes, LocalDateTime momento) {
+        if (marcacoes.isEmpty()) {
+            return new boolean[0];
+        }
+        int[][] counts = jdbcTemplate.batchUpdate(
+                sql,
+                marcacoes,
+                marcacoes.size(),
+                (ps, marcacao) -> {
+                    ps.setTimestamp(1, Timestamp.valueOf(momento));
+                    ps.setLong(2, marcacao.id());
+                    ps.setLong(3, marcacao.versao());
+                }
+        );
+        return alteradas(counts, marcacoes.size());
+    }
+
+    private boolean[] alteradas(int[][] counts, int total) {
+        boolean[] alteradas = new boolean[total];
+        int index = 0;
+        for (int[] lote : counts) {
+            for (int count : lote) {
+                // SUCCESS_NO_INFO (-2) so aparece quando o driver nao informa contagem; trata como alterada.
+                alteradas[index++] = count != 0;
+            }
+        }
+        return alteradas;
+    }
+
+    /**
+     * Reserva para {@code usuario} a solicitacao PENDENTE mais antiga que ninguem esteja segurando.
+     * {@code FOR UPDATE SKIP LOCKED} faz aprovadores concorrentes pularem a linha que outro esta
+     * reservando, em vez de esperar por ela. Devolve o id reservado ou {@code null}.
+     *
+     * @param filiais filiais visiveis (chaves normalizadas); {@code null} para todas
+     */
+    public Long reservarProxima(String usuario, Collection<String> filiais, int leaseMinutos) {
+        List<Object> args = new ArrayList<>();
+        String filtroFilial = "";
+        if (filiais != null) {
+            filtroFilial = "and lower(filial) in (" + String.join(", ", Collections.nCopies(filiais.size(), "?")) + ")";
+            args.addAll(filiais);
+        }
+        args.add(usuario);
+        args.add(leaseMinutos);
+        String sql = """
+                with proxima as (
+                    select id
+                      from solicitacoes
+                     where status = 'PENDENTE'
+                       and (reservado_ate is null or reservado_ate < localtimestamp)
+                       %s
+                     order by enviado_em asc, id asc
+                     limit 1
+                       for update skip locked
+                )
+                update solicitacoes s
+                   set reservado_por = ?, reservado_ate = localtimestamp + ? * interval '1 minute'
+                  from proxima
+                 where s.id = proxima.id
+                returning s.id
+                """.formatted(filtroFilial);
+        return jdbcTemplate.query(sql, rs -> rs.next() ? rs.getLong(1) : null, args.toArray());
+    }
+
+    /**
+     * Renova e devolve a reserva ainda valida do proprio usuario, se houver.
+     */
+    public Long renovarReserva(String usuario, int leaseMinutos) {
+        return jdbcTemplate.query(
+                """
+                update solicitacoes
+                   set reservado_ate = localtimestamp + ? * interval '1 minute'
+                 where id = (
+                        select id
+                          from solicitacoes
+                         where status = 'PENDENTE' and reservado_por = ? and reservado_ate >= localtimestamp
+                         order by enviado_em asc, id asc
+                         limit 1
+                           for update skip locked
+                 )
+                returning id
+                """,
+                rs -> rs.next() ? rs.getLong(1) : null,
+                leaseMinutos,
+                usuario
+        );
+    }
+
+    public boolean liberarReserva(Long id, String usuario) {
+        return jdbcTemplate.update(
+                "update solicitacoes set reservado_por = null, reservado_ate = null where id = ? and reservado_por = ?",
+                id,
+                usuario
+        ) > 0;
+    }
+}
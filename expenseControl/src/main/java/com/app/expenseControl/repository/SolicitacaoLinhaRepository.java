@@ -7,9 +7,9 @@ import java.util.List;
 
 public interface SolicitacaoLinhaRepository extends JpaRepository<SolicitacaoLinha, Long> {
 
-    List<SolicitacaoLinha> findBySolicitacaoId(Long solicitacaoId);
+    List<SolicitacaoLinha> findBySolicitacaoIdOrderByOrdemAscIdAsc(Long solicitacaoId);
 
-    List<SolicitacaoLinha> findBySolicitacaoIdIn(List<Long> solicitacaoIds);
+    List<SolicitacaoLinha> findBySolicitacaoIdInOrderByOrdemAscIdAsc(List<Long> solicitacaoIds);
 
     void deleteBySolicitacaoId(Long solicitacaoId);
 }
@@ -4,15 +4,19 @@ import com.app.expenseControl.entity.Solicitacao;
 import com.app.expenseControl.dto.SolicitacaoBreakdownDTO;
 import com.app.expenseControl.dto.SolicitacaoStatusResumoDTO;
 import com.app.expenseControl.enums.StatusSolicitacao;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface SolicitacaoRepository extends JpaRepository<Solicitacao, Long> {
     List<Solicitacao> findByFilialOrderByEnviadoEmDesc(String filial);
@@ -27,6 +31,56 @@ public interface SolicitacaoRepository extends JpaRepository<Solicitacao, Long>
     long countByStatus(StatusSolicitacao status);
     long countByStatusAndFilialIn(StatusSolicitacao status, Collection<String> filiais);
 
+    /**
+     * Carga somente leitura para fluxos em lote: as alteracoes sao gravadas por SQL proprio,
+     * entao as entidades nao devem ser sujas nem reescritas no flush.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    @Query("select s from Solicitacao s join fetch s.categoria where s.id in :ids")
+    List<Solicitacao> findAllSomenteLeituraByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select s.status from Solicitacao s where s.id = :id")
+    Optional<StatusSolicitacao> findStatusById(@Param("id") Long id);
+
+    /**
+     * Solicitacoes paradas no status desde antes de {@code enviadoAntes} e ainda nao sinalizadas
+     * pela rotina de vencimento. Atende pelo indice parcial idx_solicitacoes_vencimento.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    @Query("""
+            select s from Solicitacao s join fetch s.categoria
+            where s.status = :status and s.enviadoEm < :enviadoAntes
+              and s.escaladaEm is null and s.lembreteEm is null
+            order by s.enviadoEm asc, s.id asc
+            """)
+    List<Solicitacao> findNaoSinalizadasSomenteLeitura(@Param("status") StatusSolicitacao status,
+                                                       @Param("enviadoAntes") LocalDateTime enviadoAntes,
+                                                       Pageable pageable);
+
+    /**
+     * PENDENTE_INFO com ajuste pedido antes de {@code solicitadaAntes} e ainda sem lembrete.
+     * Atende pelo indice parcial idx_solicitacoes_info_sem_lembrete.
+     */
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    @Query("""
+            select s from Solicitacao s join fetch s.categoria
+            where s.status = com.app.expenseControl.enums.StatusSolicitacao.PENDENTE_INFO
+              and s.infoSolicitadaEm < :solicitadaAntes and s.lembreteEm is null
+            order by s.infoSolicitadaEm asc, s.id asc
+            """)
+    List<Solicitacao> findInfoSemLembreteSomenteLeitura(@Param("solicitadaAntes") LocalDateTime solicitadaAntes,
+                                                        Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.readOnly", value = "true"))
+    @Query("""
+            select s from Solicitacao s join fetch s.categoria
+            where s.status = :status and s.lembreteEm < :lembreteAntes
+            order by s.enviadoEm asc, s.id asc
+            """)
+    List<Solicitacao> findLembradasSomenteLeitura(@Param("status") StatusSolicitacao status,
+                                                  @Param("lembreteAntes") LocalDateTime lembreteAntes,
+                                                  Pageable pageable);
+
     @Query("select sum(coalesce(s.valorAprovado, s.valorEstimado)) from Solicitacao s where s.status = :status")
     BigDecimal sumValorAprovadoByStatus(@Param("status") StatusSolicitacao status);
 
@@ -110,6 +164,17 @@ public interface SolicitacaoRepository extends JpaRepository<Solicitacao, Long>
             """)
     List<SolicitacaoStatusResumoDTO> resumoPorStatus();
 
+    @Query("""
+            select new com.app.expenseControl.dto.SolicitacaoStatusResumoDTO(
+                s.status,
+                count(s)
+            )
+            from Solicitacao s
+            where lower(s.filial) in :filiais
+            group by s.status
+            """)
+    List<SolicitacaoStatusResumoDTO> resumoPorStatusAndFiliais(@Param("filiais") Collection<String> filiais);
+
     @Query("""
             select s from Solicitacao s
             where s.filial = :filial
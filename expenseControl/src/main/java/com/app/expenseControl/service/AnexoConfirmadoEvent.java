@@ -0,0 +1,6 @@
+package com.app.expenseControl.service;
+
+/**
+ * Publicado na transacao que confirma um upload; usado para gerar as pre-visualizacoes apos o commit.
+ */
+public record AnexoConfirmadoEvent(String fileId, String sha256, String contentType) {}
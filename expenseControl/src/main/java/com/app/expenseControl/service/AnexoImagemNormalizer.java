@@ -0,0 +1,122 @@
+package com.app.expenseControl.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Normalizacao opcional de fotos enviadas como anexo: reduz para {@code max-dimension} no lado
+ * maior, recodifica (JPEG na qualidade configurada, PNG continua PNG, com transparencia) e
+ * descarta os metadados, aplicando antes a orientacao EXIF. Imagens que nao precisam de reducao
+ * tambem saem sem metadados (localizacao, aparelho), copiadas sem recodificar. A leitura usa
+ * subamostragem, entao a memoria fica limitada pela dimensao maxima e nao pela resolucao da
+ * foto; o resultado e escrito direto no temporario.
+ * O numero de normalizacoes simultaneas e limitado: sem vaga, o arquivo segue como foi enviado.
+ */
+@Service
+public class AnexoImagemNormalizer {
+
+    private static final Logger log = LoggerFactory.getLogger(AnexoImagemNormalizer.class);
+
+    private final GoogleDriveStorageService storageService;
+    private final boolean habilitado;
+    private final int dimensaoMaxima;
+    private final float qualidade;
+    private final long tamanhoMinimo;
+    private final boolean manterOriginal;
+    private final Semaphore vagas;
+
+    public AnexoImagemNormalizer(@Lazy GoogleDriveStorageService storageService,
+                                 @Value("${app.attachments.images.normalize:false}") boolean habilitado,
+                                 @Value("${app.attachments.images.max-dimension:2048}") int dimensaoMaxima,
+                                 @Value("${app.attachments.images.quality:0.85}") float qualidade,
+                                 @Value("${app.attachments.images.min-bytes:524288}") long tamanhoMinimo,
+                                 @Value("${app.attachments.images.keep-original:false}") boolean manterOriginal,
+                                 @Value("${app.attachments.images.max-concurrent:2}") int maxSimultaneas) {
+        this.storageService = storageService;
+        this.habilitado = habilitado;
+        this.dimensaoMaxima = Math.max(256, dimensaoMaxima);
+        this.qualidade = Math.min(1f, Math.max(0.1f, qualidade));
+        this.tamanhoMinimo = Math.max(0, tamanhoMinimo);
+        this.manterOriginal = manterOriginal;
+        this.vagas = new Semaphore(Math.max(1, maxSimultaneas));
+    }
+
+    public boolean manterOriginal() {
+        return manterOriginal;
+    }
+
+    /**
+     * Gera a versao normalizada em um novo temporario. Fotos grandes (ou giradas pelo EXIF) sao
+     * reduzidas e recodificadas; as demais, ou quando a recodificacao nao reduz o arquivo, sao
+     * copiadas sem os metadados e sem perda. Devolve {@code null} (e o original segue sem
+     * alteracao) se a normalizacao esta desligada, nao se aplica ao tipo, nao ha o que remover
+     * ou falha.
+     */
+    public StoredFile normalizar(StoredFile original) {
+        String contentType = original.contentType();
+        boolean png = "image/png".equals(contentType);
+        if (!habilitado || !(png || "image/jpeg".equals(contentType))) {
+            return null;
+        }
+        if (!vagas.tryAcquire()) {
+            log.debug("Normalizacao de imagens sem vaga; arquivo {} mantido como enviado.", original.sha256());
+            return null;
+        }
+        String tempId = null;
+        try {
+            File origem = storageService.downloadResource(original.fileId()).getFile();
+            // So JPEG traz orientacao; sem recodificar, ela se perderia junto com o EXIF.
+            boolean girada = !png && PreviewRenderer.orientacaoExif(origem) > 1;
+            if (girada || original.size() >= tamanhoMinimo || PreviewRenderer.maiorLado(origem) > dimensaoMaxima) {
+                BufferedImage imagem = PreviewRenderer.reduzir(
+                        PreviewRenderer.imagemAte(origem, dimensaoMaxima), dimensaoMaxima, png);
+                tempId = storageService.newTempId();
+                StoredFile normalizado = storageService.stageGenerated(tempId, contentType, out -> {
+                    if (png) {
+                        PreviewRenderer.png(imagem, out);
+                    } else {
+                        PreviewRenderer.jpeg(imagem, qualidade, out);
+                    }
+                });
+                if (girada || normalizado.size() < original.size()) {
+                    return normalizado;
+                }
+                storageService.deleteFile(tempId);
+            }
+
+            tempId = storageService.newTempId();
+            StoredFile limpo = storageService.stageGenerated(tempId, contentType, out -> {
+                if (png) {
+                    PreviewRenderer.pngSemMetadados(origem, out);
+                } else {
+                    PreviewRenderer.jpegSemMetadados(origem, out);
+                }
+            });
+            if (limpo.sha256().equals(original.sha256())) {
+                storageService.deleteFile(tempId);
+                return null;
+            }
+            return limpo;
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Falha ao normalizar imagem {}; mantido o original: {}", original.sha256(), ex.getMessage());
+            if (tempId != null) {
+                try {
+                    storageService.deleteFile(tempId);
+                } catch (RuntimeException ignored) {
+                    // Temporario orfao em blobs/.tmp; nao afeta o upload.
+                }
+            }
+            return null;
+        } finally {
+            vagas.release();
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.AnexoIntegridadeDTO;
+import com.app.expenseControl.entity.AnexoBlob;
+import com.app.expenseControl.repository.AnexoBlobRepository;
+import com.app.expenseControl.repository.AnexoJdbcRepository;
+import com.app.expenseControl.repository.RotinaLeaseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Verificacao periodica do armazenamento de anexos contra o banco: percorre os blobs, as pastas
+ * por solicitacao (distribuidas e no formato antigo) e os temporarios em ordem, junto com os
+ * registros correspondentes, conferindo existencia, tamanho e SHA-256.
+ * <ul>
+ *     <li>registro sem arquivo: listado como ausente (blobs ja replicados nao contam);</li>
+ *     <li>conteudo divergente: blobs replicados saem do disco e voltam da camada remota na
+ *     proxima leitura; os demais sao listados;</li>
+ *     <li>arquivo sem registro ha mais de {@code orphan-grace-hours}: movido para a quarentena.</li>
+ * </ul>
+ * Cada execucao avanca um trecho da passada e para ao fim de {@code max-tick-ms}; a posicao fica
+ * em memoria e a passada continua na execucao seguinte. A leitura para o SHA-256 e limitada a
+ * {@code bytes-per-second}, para nao disputar o disco com os downloads.
+ * <p>
+ * Com varias instancias no mesmo armazenamento, so a dona da posse {@code integridade-anexos}
+ * verifica (e move arquivos): cada execucao renova a posse em uma transacao curta e as demais so
+ * a assumem depois de {@code lease-seconds} sem renovacao. A leitura dos arquivos roda sem
+ * conexao presa; so a quarentena de blobs orfaos usa uma transacao propria.
+ */
+@Service
+public class AnexoIntegridadeService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnexoIntegridadeService.class);
+
+    private static final String ROTINA = "integridade-anexos";
+
+    private static final int MAX_LISTADOS = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private enum Fase {
+        BLOBS, PASTAS, LEGADO, TEMPORARIOS
+    }
+
+    private static final class Passada {
+        private final LocalDateTime inicio = LocalDateTime.now();
+        private long verificados;
+        private long bytesLidos;
+        private long totalAusentes;
+        private long totalDivergentes;
+        private long restaurados;
+        private long emQuarentena;
+        private final List<String> ausentes = new ArrayList<>();
+        private final List<String> divergentes = new ArrayList<>();
+
+        private void ausente(String descricao) {
+            totalAusentes++;
+            if (ausentes.size() < MAX_LISTADOS) {
+                ausentes.add(descricao);
+            }
+        }
+
+        private void divergente(String descricao) {
+            totalDivergentes++;
+            if (divergentes.size() < MAX_LISTADOS) {
+                divergentes.add(descricao);
+            }
+        }
+
+        private AnexoIntegridadeDTO resumo(Fase fase, LocalDateTime fim) {
+            return new AnexoIntegridadeDTO(
+                    inicio,
+                    fim,
+                    fase == null ? null : fase.name(),
+                    verificados,
+                    bytesLidos,
+                    totalAusentes,
+                    totalDivergentes,
+                    restaurados,
+                    emQuarentena,
+                    List.copyOf(ausentes),
+                    List.copyOf(divergentes)
+            );
+        }
+    }
+
+    private final GoogleDriveStorageService storageService;
+    private final AnexoBlobRepository anexoBlobRepository;
+    private final AnexoJdbcRepository anexoJdbcRepository;
+    private final RotinaLeaseRepository rotinaLeaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    /** Identifica esta instancia como dona da posse da rotina. */
+    private final String instancia = UUID.randomUUID().toString();
+    private final long posseSegundos;
+    private final boolean habilitado;
+    private final int lote;
+    private final long bytesPorSegundo;
+    private final long duracaoMaximaNanos;
+    private final long intervaloPassadaHoras;
+    private final long carenciaOrfaosHoras;
+
+    // Estado da passada; so a rotina agendada altera.
+    private Fase fase;
+    private String cursor;
+    private List<String> pastasLegado = List.of();
+    private Passada passada;
+    private LocalDateTime proximaPassada;
+    private volatile AnexoIntegridadeDTO relatorio;
+
+    public AnexoIntegridadeService(@Lazy GoogleDriveStorageService storageService,
+                                   AnexoBlobRepository anexoBlobRepository,
+                                   AnexoJdbcRepository anexoJdbcRepository,
+                                   RotinaLeaseRepository rotinaLeaseRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${app.attachments.scrub.enabled:true}") boolean habilitado,
+                                   @Value("${app.attachments.scrub.interval-ms:5000}") long intervaloMillis,
+                                   @Value("${app.attachments.scrub.lease-seconds:60}") long posseSegundos,
+                                   @Value("${app.attachments.scrub.chunk:200}") int lote,
+                                   @Value("${app.attachments.scrub.bytes-per-second:4194304}") long bytesPorSegundo,
+                                   @Value("${app.attachments.scrub.max-tick-ms:2000}") long duracaoMaximaMillis,
+                                   @Value("${app.attachments.scrub.pass-interval-hours:24}") long intervaloPassadaHoras,
+                                   @Value("${app.attachments.scrub.orphan-grace-hours:24}") long carenciaOrfaosHoras) {
+        this.storageService = storageService;
+        this.anexoBlobRepository = anexoBlobRepository;
+        this.anexoJdbcRepository = anexoJdbcRepository;
+        this.rotinaLeaseRepository = rotinaLeaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.habilitado = habilitado;
+        this.lote = Math.max(1, lote);
+        this.bytesPorSegundo = Math.max(BUFFER_SIZE, bytesPorSegundo);
+        this.duracaoMaximaNanos = Math.max(100, duracaoMaximaMillis) * 1_000_000L;
+        this.intervaloPassadaHoras = Math.max(1, intervaloPassadaHoras);
+        this.carenciaOrfaosHoras = Math.max(1, carenciaOrfaosHoras);
+        // A posse precisa sobreviver ao intervalo entre execucoes da dona, com folga.
+        long minimoSegundos = 3 * (Math.max(0, intervaloMillis) + Math.max(100, duracaoMaximaMillis)) / 1000 + 1;
+        this.posseSegundos = Math.max(minimoSegundos, posseSegundos);
+    }
+
+    /**
+     * Ultima passada concluida ou, durante uma passada, o progresso ate aqui ({@code fim} nulo).
+     */
+    public AnexoIntegridadeDTO relatorio() {
+        AnexoIntegridadeDTO atual = relatorio;
+        if (atual == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Verificacao de integridade ainda nao executada.");
+        }
+        return atual;
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.attachments.scrub.interval-ms:5000}",
+            fixedDelayString = "${app.attachments.scrub.interval-ms:5000}"
+    )
+    public void executar() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            if (!assumirPosse()) {
+                log.debug("Verificacao de integridade em execucao em outra instancia; ignorando.");
+                return;
+            }
+            executarTrecho();
+        } catch (RuntimeException ex) {
+            log.warn("Verificacao de integridade dos anexos interrompida: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Assume ou renova a posse da rotina em uma transacao curta. Devolve {@code false} se outra
+     * instancia e a dona.
+     */
+    private boolean assumirPosse() {
+        LocalDateTime agora = LocalDateTime.now();
+        Integer assumiu = transactionTemplate.execute(status ->
+                rotinaLeaseRepository.assumir(ROTINA, instancia, agora, agora.plusSeconds(posseSegundos)));
+        return assumiu != null && assumiu > 0;
+    }
+
+    /**
+     * Avanca a passada ate {@code max-tick-ms}, sem transacao: consultas ao banco pegam uma
+     * conexao so pelo tempo do comando.
+     */
+    private void executarTrecho() {
+        if (fase == null) {
+            if (proximaPassada != null && LocalDateTime.now().isBefore(proximaPassada)) {
+                return;
+            }
+            passada = new Passada();
+            fase = Fase.BLOBS;
+            cursor = null;
+        }
+        long prazo = System.nanoTime() + duracaoMaximaNanos;
+        try {
+            while (fase != null && System.nanoTime() < prazo) {
+                boolean concluida = switch (fase) {
+                    case BLOBS -> verificarBlobs(prazo);
+                    case PASTAS -> verificarPastas(prazo, true);
+                    case LEGADO -> verificarPastas(prazo, false);
+                    case TEMPORARIOS -> verificarTemporarios();
+                };
+                if (concluida) {
+                    avancarFase();
+                }
+            }
+        } catch (RuntimeException ex) {
+            // A posicao e mantida: o trecho e refeito na proxima execucao.
+            log.warn("Verificacao de integridade dos anexos interrompida: {}", ex.getMessage());
+        }
+        relatorio = passada.resumo(fase, fase == null ? LocalDateTime.now() : null);
+    }
+
+    private void avancarFase() {
+        cursor = null;
+        switch (fase) {
+            case BLOBS -> fase = Fase.PASTAS;
+            case PASTAS -> {
+                fase = Fase.LEGADO;
+                pastasLegado = storageService.listLegacyFolders();
+            }
+            case LEGADO -> {
+                fase = Fase.TEMPORARIOS;
+                pastasLegado = List.of();
+            }
+            case TEMPORARIOS -> {
+                fase = null;
+                proximaPassada = LocalDateTime.now().plusHours(intervaloPassadaHoras);
+                if (passada.totalAusentes > 0 || passada.totalDivergentes > 0) {
+                    log.warn("Integridade dos anexos: {} ausente(s) {}, {} divergente(s) {}.",
+                            passada.totalAusentes, passada.ausentes, passada.totalDivergentes, passada.divergentes);
+                }
+                log.info("Integridade dos anexos: {} arquivo(s) verificado(s), {} restaurado(s) da camada remota, {} em quarentena.",
+                        passada.verificados, passada.restaurados, passada.emQuarentena);
+            }
+        }
+    }
+
+    /**
+     * Um trecho da fase de blobs. Devolve {@code true} ao chegar ao fim.
+     */
+    private boolean verificarBlobs(long prazo) {
+        List<GoogleDriveStorageService.BlobArquivos> arquivos = storageService.listBlobs(cursor, lote);
+        List<AnexoBlob> registros = anexoBlobRepository.findBySha256GreaterThanOrderBySha256Asc(
+                cursor == null ? "" : cursor, PageRequest.of(0, lote));
+        Map<String, GoogleDriveStorageService.BlobArquivos> porArquivo = indexar(arquivos, GoogleDriveStorageService.BlobArquivos::sha256);
+        Map<String, AnexoBlob> porRegistro = indexar(registros, AnexoBlob::getSha256);
+        String limite = limite(arquivos.size(), ultimo(arquivos, GoogleDriveStorageService.BlobArquivos::sha256),
+                registros.size(), ultimo(registros, AnexoBlob::getSha256));
+
+        for (String sha : chaves(porArquivo.keySet(), porRegistro.keySet(), limite)) {
+            GoogleDriveStorageService.BlobArquivos grupo = porArquivo.get(sha);
+            AnexoBlob registro = porRegistro.get(sha);
+            if (registro == null) {
+                quarentenarBlobOrfao(grupo);
+            } else {
+                verificarBlob(registro, grupo);
+            }
+            cursor = sha;
+            if (System.nanoTime() >= prazo) {
+                return false;
+            }
+        }
+        cursor = limite;
+        return limite == null;
+    }
+
+    private void verificarBlob(AnexoBlob registro, GoogleDriveStorageService.BlobArquivos grupo) {
+        String sha = registro.getSha256();
+        if (grupo == null || grupo.blob() == null) {
+            boolean naCamadaRemota = storageService.hasRemoteTier() && registro.getReplicadoEm() != null;
+            if (registro.getReferencias() > 0 && !naCamadaRemota) {
+                passada.ausente(storageService.blobId(sha));
+            }
+            return;
+        }
+        String problema = conferir(grupo.blob(), registro.getTamanho(), sha);
+        if (problema == null) {
+            return;
+        }
+        if (storageService.hasRemoteTier() && registro.getReplicadoEm() != null) {
+            storageService.evictLocal(sha);
+            passada.restaurados++;
+            log.warn("Blob {} local divergente ({}); sera buscado de novo na camada remota.", sha, problema);
+        } else {
+            passada.divergente(storageService.blobId(sha) + " (" + problema + ")");
+        }
+    }
+
+    /**
+     * Move para a quarentena um blob (e pre-visualizacoes) sem registro. O registro provisorio
+     * criado na mesma transacao impede que um upload do mesmo conteudo promova o arquivo enquanto
+     * ele e movido.
+     */
+    private void quarentenarBlobOrfao(GoogleDriveStorageService.BlobArquivos grupo) {
+        List<Path> arquivos = new ArrayList<>(grupo.derivados());
+        if (grupo.blob() != null) {
+            arquivos.add(grupo.blob());
+        }
+        if (!arquivos.stream().allMatch(this::foraDaCarencia)) {
+            return;
+        }
+        try {
+            Integer movidos = transactionTemplate.execute(status -> {
+                if (anexoBlobRepository.travarOrfao(grupo.sha256(), LocalDateTime.now()) == 0) {
+                    return 0;
+                }
+                arquivos.forEach(storageService::quarantine);
+                anexoBlobRepository.removerSeLiberado(grupo.sha256());
+                return arquivos.size();
+            });
+            passada.emQuarentena += movidos == null ? 0 : movidos;
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao mover blob orfao {} para a quarentena: {}", grupo.sha256(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Um trecho da fase de pastas por solicitacao: distribuidas ({@code local-file:v2:}) ou no
+     * formato antigo ({@code local-file:}). Como a migracao entre os formatos roda em paralelo, o
+     * arquivo de um registro e procurado nos dois lugares, e um arquivo so e orfao se nenhum dos
+     * dois IDs tem registro.
+     */
+    private boolean verificarPastas(long prazo, boolean distribuidas) {
+        List<String> arquivos = distribuidas
+                ? storageService.listShardedFiles(cursor, lote)
+                : storageService.listLegacyFiles(pastasLegado, cursor, lote);
+        List<AnexoJdbcRepository.ArquivoLegado> registros = anexoJdbcRepository.buscarLegados(
+                distribuidas, cursor == null ? "" : cursor, lote);
+        Map<String, AnexoJdbcRepository.ArquivoLegado> porRegistro = indexar(registros, AnexoJdbcRepository.ArquivoLegado::driveFileId);
+        String limite = limite(arquivos.size(), ultimo(arquivos, Function.identity()),
+                registros.size(), ultimo(registros, AnexoJdbcRepository.ArquivoLegado::driveFileId));
+
+        for (String fileId : chaves(new HashSet<>(arquivos), porRegistro.keySet(), limite)) {
+            AnexoJdbcRepository.ArquivoLegado registro = porRegistro.get(fileId);
+            Path arquivo;
+            try {
+                arquivo = storageService.localPath(fileId);
+            } catch (IllegalStateException ex) {
+                passada.divergente(fileId + " (ID invalido)");
+                cursor = fileId;
+                continue;
+            }
+            if (registro == null) {
+                if (foraDaCarencia(arquivo)
+                        && anexoJdbcRepository.arquivosEmUso(storageService.legacyFileIds(fileId)).isEmpty()) {
+                    quarentenar(arquivo);
+                }
+            } else if (!Files.isRegularFile(arquivo)) {
+                passada.ausente(fileId);
+            } else {
+                String problema = conferir(arquivo, registro.size(), registro.sha256());
+                if (problema != null) {
+                    passada.divergente(fileId + " (" + problema + ")");
+                }
+            }
+            cursor = fileId;
+            if (System.nanoTime() >= prazo) {
+                return false;
+            }
+        }
+        cursor = limite;
+        return limite == null;
+    }
+
+    /**
+     * Temporarios antigos que nao pertencem a um anexo pendente nem a um upload em andamento
+     * (gravacoes interrompidas por queda do processo). So metadados: roda de uma vez.
+     */
+    private boolean verificarTemporarios() {
+        List<Path> antigos = storageService.listTemps().stream()
+                .filter(this::foraDaCarencia)
+                .toList();
+        for (int inicio = 0; inicio < antigos.size(); inicio += lote) {
+            Map<String, Path> porId = new HashMap<>();
+            for (Path temp : antigos.subList(inicio, Math.min(antigos.size(), inicio + lote))) {
+                String tempId = storageService.tempIdOf(temp);
+                porId.put(tempId != null ? tempId : temp.toString(), temp);
+            }
+            Set<String> emUso = new HashSet<>(anexoJdbcRepository.arquivosEmUso(porId.keySet()));
+            porId.forEach((tempId, temp) -> {
+                if (!emUso.contains(tempId)) {
+                    quarentenar(temp);
+                }
+            });
+        }
+        return true;
+    }
+
+    private void quarentenar(Path arquivo) {
+        try {
+            storageService.quarantine(arquivo);
+            passada.emQuarentena++;
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao mover {} para a quarentena: {}", arquivo, ex.getMessage());
+        }
+    }
+
+    /**
+     * Confere tamanho e, se conhecido, SHA-256. Devolve a divergencia encontrada ou {@code null}.
+     */
+    private String conferir(Path arquivo, long tamanhoEsperado, String shaEsperado) {
+        passada.verificados++;
+        try {
+            long tamanho = Files.size(arquivo);
+            if (tamanho != tamanhoEsperado) {
+                return "tamanho " + tamanho + ", esperado " + tamanhoEsperado;
+            }
+            if (shaEsperado != null && !shaEsperado.equals(hashLimitado(arquivo))) {
+                return "SHA-256 diferente";
+            }
+            return null;
+        } catch (NoSuchFileException ex) {
+            // Removido pela coleta durante a verificacao.
+            return null;
+        } catch (IOException ex) {
+            return "erro de leitura: " + ex.getMessage();
+        }
+    }
+
+    /**
+     * SHA-256 do arquivo, lendo no maximo {@code bytesPorSegundo}: a leitura pausa sempre que
+     * fica adiantada em relacao a taxa.
+     */
+    private String hashLimitado(Path arquivo) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long inicio = System.nanoTime();
+        long lidos = 0;
+        try (FileChannel channel = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+                lidos += read;
+                passada.bytesLidos += read;
+                long adiantado = lidos * 1_000_000_000L / bytesPorSegundo - (System.nanoTime() - inicio);
+                if (adiantado > 0) {
+                    LockSupport.parkNanos(adiantado);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private boolean foraDaCarencia(Path arquivo) {
+        try {
+            return Files.getLastModifiedTime(arquivo).toInstant()
+                    .isBefore(Instant.now().minus(carenciaOrfaosHoras, ChronoUnit.HOURS));
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Ate onde o trecho pode ser comparado: a menor ultima chave entre as listas que vieram
+     * cheias (depois dela pode haver itens ainda nao lidos). {@code null} quando as duas
+     * terminaram, ou seja, o trecho vai ate o fim.
+     */
+    private String limite(int arquivos, String ultimoArquivo, int registros, String ultimoRegistro) {
+        String limite = arquivos >= lote ? ultimoArquivo : null;
+        if (registros >= lote && (limite == null || ultimoRegistro.compareTo(limite) < 0)) {
+            limite = ultimoRegistro;
+        }
+        return limite;
+    }
+
+    private static TreeSet<String> chaves(Set<String> arquivos, Set<String> registros, String limite) {
+        TreeSet<String> chaves = new TreeSet<>(arquivos);
+        chaves.addAll(registros);
+        return limite == null ? chaves : new TreeSet<>(chaves.headSet(limite, true));
+    }
+
+    private static <T> Map<String, T> indexar(List<T> itens, Function<T, String> chave) {
+        Map<String, T> mapa = new HashMap<>();
+        itens.forEach(item -> mapa.put(chave.apply(item), item));
+        return mapa;
+    }
+
+    private static <T> String ultimo(List<T> itens, Function<T, String> chave) {
+        return itens.isEmpty() ? null : chave.apply(itens.get(itens.size() - 1));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 indisponivel.", ex);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.repository.AnexoJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Migracao em segundo plano das pastas de anexos antigas ({@code <raiz>/<id>/}) para o formato
+ * distribuido ({@code pastas/ab/cd/<id>/}), em lotes de {@code batch} pastas por execucao. Para
+ * cada pasta, os IDs dos anexos passam para {@code local-file:v2:} e depois a pasta e movida (um
+ * rename). Enquanto isso os dois formatos de ID resolvem para onde o arquivo estiver, entao
+ * leituras e exclusoes concorrentes nao falham; uma execucao interrompida e retomada na seguinte.
+ */
+@Service
+public class AnexoPastaMigracaoService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnexoPastaMigracaoService.class);
+
+    private final GoogleDriveStorageService storageService;
+    private final AnexoJdbcRepository anexoJdbcRepository;
+    private final boolean habilitada;
+    private final int lote;
+
+    // Estado da migracao; so a rotina agendada altera.
+    private List<String> pendentes = List.of();
+    private int posicao;
+    private final Set<String> comConflito = new HashSet<>();
+    private boolean concluida;
+
+    public AnexoPastaMigracaoService(@Lazy GoogleDriveStorageService storageService,
+                                     AnexoJdbcRepository anexoJdbcRepository,
+                                     @Value("${app.attachments.folder-migration.enabled:true}") boolean habilitada,
+                                     @Value("${app.attachments.folder-migration.batch:100}") int lote) {
+        this.storageService = storageService;
+        this.anexoJdbcRepository = anexoJdbcRepository;
+        this.habilitada = habilitada;
+        this.lote = Math.max(1, lote);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.attachments.folder-migration.interval-ms:60000}",
+            fixedDelayString = "${app.attachments.folder-migration.interval-ms:60000}"
+    )
+    public void migrar() {
+        if (!habilitada || concluida) {
+            return;
+        }
+        if (posicao >= pendentes.size()) {
+            pendentes = storageService.listLegacyFolders();
+            posicao = 0;
+            if (comConflito.containsAll(pendentes)) {
+                concluida = true;
+                if (pendentes.isEmpty()) {
+                    log.info("Migracao das pastas de anexos concluida.");
+                } else {
+                    log.warn("Migracao das pastas de anexos concluida; {} pasta(s) com arquivos em conflito ficaram no formato antigo.",
+                            pendentes.size());
+                }
+                return;
+            }
+        }
+
+        int fim = Math.min(pendentes.size(), posicao + lote);
+        int migradas = 0;
+        for (; posicao < fim; posicao++) {
+            String pasta = pendentes.get(posicao);
+            if (comConflito.contains(pasta)) {
+                continue;
+            }
+            try {
+                // IDs primeiro: se a execucao cair antes do rename, a pasta e migrada de novo e o
+                // ID novo resolve para a pasta antiga ate la.
+                anexoJdbcRepository.trocarPrefixoArquivo(
+                        storageService.legacyFolderPrefix(pasta),
+                        storageService.shardedFolderPrefix(pasta)
+                );
+                int conflitos = storageService.migrateLegacyFolder(pasta);
+                if (conflitos > 0) {
+                    comConflito.add(pasta);
+                    log.warn("Pasta de anexos {} migrada em parte: {} arquivo(s) ja existiam no destino.", pasta, conflitos);
+                } else {
+                    migradas++;
+                }
+            } catch (RuntimeException ex) {
+                // Tenta de novo na proxima rodada.
+                log.warn("Falha ao migrar pasta de anexos {}: {}", pasta, ex.getMessage());
+            }
+        }
+        if (migradas > 0) {
+            log.info("Migracao das pastas de anexos: {} pasta(s) migrada(s), {} restante(s) nesta rodada.",
+                    migradas, pendentes.size() - posicao);
+        }
+    }
+}
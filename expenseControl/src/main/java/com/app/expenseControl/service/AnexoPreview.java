@@ -0,0 +1,8 @@
+package com.app.expenseControl.service;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Pre-visualizacao JPEG de um anexo; {@code tamanho} e o lado maior em pixels.
+ */
+public record AnexoPreview(String sha256, int tamanho, Resource resource) {}
@@ -0,0 +1,232 @@
+package com.app.expenseControl.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-visualizacoes JPEG dos anexos (imagens e primeira pagina de PDFs), gravadas ao lado do blob
+ * e servidas no lugar do original. Sao geradas em segundo plano apos o upload e, se faltarem,
+ * sob demanda. Todo o trabalho roda em um pool limitado com fila limitada: com a fila cheia o
+ * upload nao espera (a geracao fica para o primeiro pedido) e o pedido recebe 503.
+ */
+@Service
+public class AnexoPreviewService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AnexoPreviewService.class);
+
+    private final GoogleDriveStorageService storageService;
+    private final List<Integer> tamanhos;
+    private final float qualidade;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> emAndamento = new ConcurrentHashMap<>();
+
+    public AnexoPreviewService(@Lazy GoogleDriveStorageService storageService,
+                               @Value("${app.attachments.previews.sizes:160,800}") String tamanhos,
+                               @Value("${app.attachments.previews.quality:0.8}") float qualidade,
+                               @Value("${app.attachments.previews.threads:2}") int threads,
+                               @Value("${app.attachments.previews.queue:32}") int fila,
+                               @Value("${app.attachments.previews.timeout-seconds:20}") long timeoutSeconds) {
+        this.storageService = storageService;
+        this.tamanhos = Arrays.stream(tamanhos.split(","))
+                .map(String::trim)
+                .filter(valor -> !valor.isEmpty())
+                .map(Integer::valueOf)
+                .filter(valor -> valor > 0 && valor <= 4096)
+                .distinct()
+                .sorted()
+                .toList();
+        if (this.tamanhos.isEmpty()) {
+            throw new IllegalStateException("app.attachments.previews.sizes sem tamanhos validos.");
+        }
+        this.qualidade = Math.min(1f, Math.max(0.1f, qualidade));
+        this.timeoutMillis = Math.max(1, timeoutSeconds) * 1000L;
+
+        int limite = Math.max(1, threads);
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                limite,
+                limite,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, fila)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "anexo-preview-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean suporta(String contentType) {
+        return contentType != null && (contentType.startsWith("image/") || "application/pdf".equals(contentType));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAnexoConfirmado(AnexoConfirmadoEvent event) {
+        if (!suporta(event.contentType())) {
+            return;
+        }
+        List<Integer> faltantes = tamanhos.stream()
+                .filter(tamanho -> !storageService.exists(storageService.previewId(event.sha256(), tamanho)))
+                .toList();
+        if (!faltantes.isEmpty()) {
+            gerar(event.fileId(), event.sha256(), event.contentType(), faltantes);
+        }
+    }
+
+    /**
+     * Devolve a pre-visualizacao no menor tamanho configurado que atende {@code tamanhoPedido}
+     * (ou no maior disponivel), gerando-a se ainda nao existir.
+     */
+    public AnexoPreview obter(String fileId, String sha256, String contentType, Integer tamanhoPedido) {
+        if (sha256 == null || !suporta(contentType)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Pre-visualizacao indisponivel para este anexo.");
+        }
+        int tamanho = escolherTamanho(tamanhoPedido);
+        String previewId = storageService.previewId(sha256, tamanho);
+        if (!storageService.exists(previewId)) {
+            aguardar(gerar(fileId, sha256, contentType, List.of(tamanho)).get(tamanho));
+        }
+        return new AnexoPreview(sha256, tamanho, storageService.downloadResource(previewId));
+    }
+
+    public void removerPreviews(String sha256) {
+        try {
+            storageService.deletePreviews(sha256);
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao remover pre-visualizacoes do blob {}: {}", sha256, ex.getMessage());
+        }
+    }
+
+    private int escolherTamanho(Integer tamanhoPedido) {
+        if (tamanhoPedido == null) {
+            return tamanhos.get(0);
+        }
+        return tamanhos.stream()
+                .filter(tamanho -> tamanho >= tamanhoPedido)
+                .findFirst()
+                .orElse(tamanhos.get(tamanhos.size() - 1));
+    }
+
+    /**
+     * Agenda uma unica tarefa para os tamanhos ainda nao em andamento: o original e decodificado
+     * uma vez, no maior tamanho, e reduzido para os demais. Pedidos concorrentes do mesmo
+     * tamanho compartilham o resultado.
+     */
+    private Map<Integer, CompletableFuture<String>> gerar(String fileId,
+                                                          String sha256,
+                                                          String contentType,
+                                                          Collection<Integer> pedidos) {
+        Map<Integer, CompletableFuture<String>> futuros = new TreeMap<>();
+        Map<Integer, CompletableFuture<String>> proprios = new TreeMap<>(Comparator.reverseOrder());
+        for (Integer tamanho : pedidos) {
+            CompletableFuture<String> novo = new CompletableFuture<>();
+            CompletableFuture<String> existente = emAndamento.putIfAbsent(storageService.previewId(sha256, tamanho), novo);
+            futuros.put(tamanho, existente != null ? existente : novo);
+            if (existente == null) {
+                proprios.put(tamanho, novo);
+            }
+        }
+        if (proprios.isEmpty()) {
+            return futuros;
+        }
+        try {
+            executor.execute(() -> renderizar(fileId, sha256, contentType, proprios));
+        } catch (RejectedExecutionException ex) {
+            log.debug("Fila de pre-visualizacoes cheia; blob {} fica para geracao sob demanda.", sha256);
+            proprios.forEach((tamanho, futuro) -> concluir(sha256, tamanho, futuro, ex));
+        }
+        return futuros;
+    }
+
+    private void renderizar(String fileId,
+                            String sha256,
+                            String contentType,
+                            Map<Integer, CompletableFuture<String>> pendentes) {
+        List<Integer> restantes = new ArrayList<>(pendentes.keySet());
+        try {
+            File origem = storageService.downloadResource(fileId).getFile();
+            int maior = restantes.get(0);
+            BufferedImage imagem = "application/pdf".equals(contentType)
+                    ? PreviewRenderer.primeiraPaginaPdf(origem, maior)
+                    : PreviewRenderer.imagem(origem, maior);
+            while (!restantes.isEmpty()) {
+                Integer tamanho = restantes.get(0);
+                imagem = PreviewRenderer.reduzir(imagem, tamanho);
+                storageService.storeDerived(storageService.previewId(sha256, tamanho), PreviewRenderer.jpeg(imagem, qualidade));
+                concluir(sha256, tamanho, pendentes.get(tamanho), null);
+                restantes.remove(0);
+            }
+        } catch (Exception ex) {
+            log.warn("Falha ao gerar pre-visualizacao do blob {}: {}", sha256, ex.toString());
+            restantes.forEach(tamanho -> concluir(sha256, tamanho, pendentes.get(tamanho), ex));
+            restantes.clear();
+        } finally {
+            // Erros graves (ex.: falta de memoria) nao podem deixar pedidos esperando para sempre.
+            restantes.forEach(tamanho -> concluir(sha256, tamanho, pendentes.get(tamanho),
+                    new IllegalStateException("Geracao de pre-visualizacao interrompida.")));
+        }
+    }
+
+    private void concluir(String sha256, int tamanho, CompletableFuture<String> futuro, Throwable erro) {
+        String previewId = storageService.previewId(sha256, tamanho);
+        emAndamento.remove(previewId, futuro);
+        if (erro == null) {
+            futuro.complete(previewId);
+        } else {
+            futuro.completeExceptionally(erro);
+        }
+    }
+
+    private void aguardar(CompletableFuture<String> futuro) {
+        try {
+            futuro.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Pre-visualizacao em processamento. Tente novamente.");
+        } catch (TimeoutException ex) {
+            // A geracao continua; o proximo pedido encontra o arquivo pronto.
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Pre-visualizacao em processamento. Tente novamente.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RejectedExecutionException) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Fila de pre-visualizacoes cheia. Tente novamente.");
+            }
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY, "Nao foi possivel gerar a pre-visualizacao do anexo.");
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,247 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.AnexoUploadCreateDTO;
+import com.app.expenseControl.dto.AnexoUploadResponseDTO;
+import com.app.expenseControl.dto.AttachmentResponseDTO;
+import com.app.expenseControl.entity.AnexoUpload;
+import com.app.expenseControl.repository.AnexoUploadRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Upload retomavel de anexos grandes: a sessao declara nome, tipo e tamanho, os trechos chegam
+ * por {@code PUT} com o offset de inicio e sao gravados na posicao certa de um temporario ja do
+ * tamanho final; a conclusao entrega o temporario ao fluxo normal de anexos. Uma conexao que cai
+ * perde so o trecho em andamento: o cliente consulta o offset e continua dali.
+ * <p>
+ * Nenhuma transacao fica aberta durante a gravacao; o offset avanca com um UPDATE condicional
+ * depois que os bytes estao no disco. Sessoes sem atividade por {@code ttl-minutes} sao removidas
+ * com o temporario.
+ */
+@Service
+public class AnexoUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnexoUploadService.class);
+
+    private static final int LIMPEZA_LOTE = 100;
+
+    private final AnexoUploadRepository anexoUploadRepository;
+    private final AttachmentService attachmentService;
+    private final GoogleDriveStorageService storageService;
+    private final TransactionTemplate transactionTemplate;
+    private final long tamanhoMaximo;
+    private final long ttlMinutos;
+    /** Sessoes com um trecho ou conclusao em andamento nesta instancia. */
+    private final Set<String> emUso = ConcurrentHashMap.newKeySet();
+
+    public AnexoUploadService(AnexoUploadRepository anexoUploadRepository,
+                              AttachmentService attachmentService,
+                              @Lazy GoogleDriveStorageService storageService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.attachments.resumable.max-bytes:104857600}") long tamanhoMaximo,
+                              @Value("${app.attachments.resumable.ttl-minutes:1440}") long ttlMinutos) {
+        this.anexoUploadRepository = anexoUploadRepository;
+        this.attachmentService = attachmentService;
+        this.storageService = storageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanhoMaximo = Math.max(1, tamanhoMaximo);
+        this.ttlMinutos = Math.max(1, ttlMinutos);
+    }
+
+    public AnexoUploadResponseDTO criar(Long solicitacaoId, AnexoUploadCreateDTO dto) {
+        if (dto.tamanho() > tamanhoMaximo) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Arquivo excede " + (tamanhoMaximo / (1024 * 1024)) + "MB."
+            );
+        }
+        AnexoUpload upload = transactionTemplate.execute(status -> {
+            String usuario = attachmentService.validarNovoAnexo(
+                    solicitacaoId,
+                    dto.contentType(),
+                    anexoUploadRepository.countBySolicitacaoId(solicitacaoId)
+            );
+            LocalDateTime agora = LocalDateTime.now();
+            return anexoUploadRepository.save(AnexoUpload.builder()
+                    .id(UUID.randomUUID().toString())
+                    .solicitacaoId(solicitacaoId)
+                    .usuario(usuario)
+                    .originalName(dto.nome() == null || dto.nome().isBlank() ? "arquivo" : dto.nome())
+                    .contentType(dto.contentType().toLowerCase())
+                    .tamanho(dto.tamanho())
+                    .recebido(0L)
+                    .arquivoId(storageService.newTempId())
+                    .criadoEm(agora)
+                    .expiraEm(agora.plusMinutes(ttlMinutos))
+                    .build());
+        });
+        try {
+            storageService.allocateTemp(upload.getArquivoId(), upload.getTamanho());
+        } catch (RuntimeException ex) {
+            transactionTemplate.executeWithoutResult(status -> anexoUploadRepository.removerPorId(upload.getId()));
+            throw ex;
+        }
+        return toDTO(upload);
+    }
+
+    public AnexoUploadResponseDTO consultar(String uploadId) {
+        return toDTO(transactionTemplate.execute(status -> buscar(uploadId)));
+    }
+
+    /**
+     * Grava um trecho a partir de {@code offset}, que deve ser o offset atual da sessao (409 caso
+     * contrario, com o cliente consultando a sessao para continuar de onde parou).
+     */
+    public AnexoUploadResponseDTO enviarTrecho(String uploadId, long offset, InputStream in) {
+        AnexoUpload upload = transactionTemplate.execute(status -> buscar(uploadId));
+        if (offset != upload.getRecebido()) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT,
+                    "Offset " + offset + " nao confere; a sessao recebeu " + upload.getRecebido() + " bytes."
+            );
+        }
+        if (upload.getRecebido().equals(upload.getTamanho())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload ja recebido por completo.");
+        }
+        ocupar(uploadId);
+        try {
+            long gravados = storageService.writeAt(upload.getArquivoId(), offset, in, upload.getTamanho() - offset);
+            long recebido = offset + gravados;
+            LocalDateTime expiraEm = LocalDateTime.now().plusMinutes(ttlMinutos);
+            Integer avancou = transactionTemplate.execute(status ->
+                    anexoUploadRepository.avancar(uploadId, offset, recebido, expiraEm));
+            if (avancou == null || avancou == 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Sessao de upload alterada por outro pedido.");
+            }
+            upload.setRecebido(recebido);
+            upload.setExpiraEm(expiraEm);
+            return toDTO(upload);
+        } finally {
+            emUso.remove(uploadId);
+        }
+    }
+
+    /**
+     * Conclui a sessao com o arquivo completo: vira um anexo (com as mesmas validacoes do upload
+     * comum) e a sessao deixa de existir.
+     */
+    public AttachmentResponseDTO concluir(String uploadId) {
+        AnexoUpload upload = transactionTemplate.execute(status -> buscar(uploadId));
+        if (!upload.getRecebido().equals(upload.getTamanho())) {
+            throw new ResponseStatusException(
+                    HttpStatus.CONFLICT,
+                    "Upload incompleto: recebidos " + upload.getRecebido() + " de " + upload.getTamanho() + " bytes."
+            );
+        }
+        ocupar(uploadId);
+        try {
+            return attachmentService.armazenarRecebido(
+                    upload.getSolicitacaoId(),
+                    upload.getOriginalName(),
+                    upload.getContentType(),
+                    upload.getArquivoId(),
+                    () -> {
+                        if (anexoUploadRepository.removerPorId(uploadId) == 0) {
+                            throw new ResponseStatusException(HttpStatus.GONE, "Upload expirado. Envie o arquivo novamente.");
+                        }
+                    }
+            );
+        } finally {
+            emUso.remove(uploadId);
+        }
+    }
+
+    public void cancelar(String uploadId) {
+        AnexoUpload upload = transactionTemplate.execute(status -> {
+            AnexoUpload encontrado = buscar(uploadId);
+            anexoUploadRepository.removerPorId(uploadId);
+            return encontrado;
+        });
+        apagarArquivo(upload.getArquivoId());
+    }
+
+    /**
+     * Remove, com os temporarios, sessoes que nao recebem trechos ha mais de {@code ttl-minutes}.
+     */
+    @Scheduled(
+            initialDelayString = "${app.attachments.resumable.cleanup-interval-ms:600000}",
+            fixedDelayString = "${app.attachments.resumable.cleanup-interval-ms:600000}"
+    )
+    public void limparExpiradas() {
+        List<String> arquivos = transactionTemplate.execute(status -> {
+            List<AnexoUpload> expiradas = anexoUploadRepository
+                    .findByExpiraEmBeforeOrderByExpiraEmAsc(LocalDateTime.now(), PageRequest.of(0, LIMPEZA_LOTE))
+                    .stream()
+                    .filter(upload -> !emUso.contains(upload.getId()))
+                    .toList();
+            anexoUploadRepository.deleteAllInBatch(expiradas);
+            return expiradas.stream().map(AnexoUpload::getArquivoId).toList();
+        });
+        if (arquivos != null && !arquivos.isEmpty()) {
+            arquivos.forEach(this::apagarArquivo);
+            log.info("Sessoes de upload expiradas removidas: {}", arquivos.size());
+        }
+    }
+
+    private void ocupar(String uploadId) {
+        if (!emUso.add(uploadId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Outro trecho deste upload esta em andamento.");
+        }
+    }
+
+    private AnexoUpload buscar(String uploadId) {
+        AnexoUpload upload = anexoUploadRepository.findById(uploadId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Sessao de upload nao encontrada."));
+        // Sessao de outro usuario responde como inexistente.
+        if (!upload.getUsuario().equals(usuarioLogado())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Sessao de upload nao encontrada.");
+        }
+        return upload;
+    }
+
+    private String usuarioLogado() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Usuario nao autenticado.");
+        }
+        return auth.getName();
+    }
+
+    private void apagarArquivo(String arquivoId) {
+        try {
+            storageService.deleteFile(arquivoId);
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao remover temporario de upload {}: {}", arquivoId, ex.getMessage());
+        }
+    }
+
+    private AnexoUploadResponseDTO toDTO(AnexoUpload upload) {
+        return new AnexoUploadResponseDTO(
+                upload.getId(),
+                upload.getSolicitacaoId(),
+                upload.getOriginalName(),
+                upload.getContentType(),
+                upload.getTamanho(),
+                upload.getRecebido(),
+                upload.getExpiraEm()
+        );
+    }
+}
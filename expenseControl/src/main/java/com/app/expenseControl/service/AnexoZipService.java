@@ -0,0 +1,271 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.entity.Conta;
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.enums.TipoConta;
+import com.app.expenseControl.repository.AnexoJdbcRepository;
+import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exportacao dos anexos em um ZIP gerado enquanto e enviado: sem arquivo temporario e com memoria
+ * constante (paginas de anexos por keyset e um buffer fixo). PDF, JPG e PNG ja sao comprimidos e
+ * entram como STORED; o CRC exigido pelo formato e calculado numa leitura previa do arquivo.
+ * <p>
+ * A visibilidade e verificada antes do envio (na requisicao) e aplicada na consulta dos anexos;
+ * a escrita em si nao depende do usuario logado nem segura conexao entre as paginas.
+ */
+@Service
+public class AnexoZipService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnexoZipService.class);
+
+    private static final int LOTE = 200;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ARQUIVO_FALHAS = "anexos-indisponiveis.txt";
+    private static final Set<String> JA_COMPRIMIDOS = Set.of("application/pdf", "image/jpeg", "image/jpg", "image/png");
+
+    private final AnexoJdbcRepository anexoJdbcRepository;
+    private final SolicitacaoRepository solicitacaoRepository;
+    private final ContaRepository contaRepository;
+    private final ContaPermissionService permissionService;
+    private final GoogleDriveStorageService storageService;
+    private final AuditoriaService auditoriaService;
+
+    public AnexoZipService(AnexoJdbcRepository anexoJdbcRepository,
+                           SolicitacaoRepository solicitacaoRepository,
+                           ContaRepository contaRepository,
+                           ContaPermissionService permissionService,
+                           @Lazy GoogleDriveStorageService storageService,
+                           AuditoriaService auditoriaService) {
+        this.anexoJdbcRepository = anexoJdbcRepository;
+        this.solicitacaoRepository = solicitacaoRepository;
+        this.contaRepository = contaRepository;
+        this.permissionService = permissionService;
+        this.storageService = storageService;
+        this.auditoriaService = auditoriaService;
+    }
+
+    /**
+     * Exportacao pronta para ser escrita: o nome do arquivo e o filtro ja restrito ao que o
+     * usuario pode ver.
+     */
+    public record AnexoZip(String nomeArquivo, AnexoJdbcRepository.FiltroAnexos filtro) {}
+
+    @Transactional
+    public AnexoZip prepararSolicitacao(Long solicitacaoId) {
+        Solicitacao solicitacao = solicitacaoRepository.findById(solicitacaoId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
+        Conta conta = getContaLogada();
+        if ((conta.getTipo() != TipoConta.ADMIN && conta.getTipo() != TipoConta.FILIAL)
+                || !permissionService.canViewFilial(conta, solicitacao.getFilial())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Sem permissao para visualizar esta solicitacao.");
+        }
+        auditoriaService.registrar(
+                conta,
+                "ANEXOS_EXPORTADOS",
+                "Anexos da solicitacao #" + solicitacaoId + " exportados em ZIP.",
+                null,
+                "SOLICITACAO",
+                String.valueOf(solicitacaoId)
+        );
+        return new AnexoZip(
+                "solicitacao-" + solicitacaoId + "-anexos.zip",
+                new AnexoJdbcRepository.FiltroAnexos(solicitacaoId, null, null, null, null, null)
+        );
+    }
+
+    /**
+     * Anexos das solicitacoes visiveis ao admin que atendem o filtro. Datas em ISO
+     * ({@code yyyy-MM-dd}), inclusivas, sobre a data de envio.
+     */
+    @Transactional
+    public AnexoZip prepararFiltro(String filial, String status, String de, String ate) {
+        Conta conta = getContaLogada();
+        if (conta.getTipo() != TipoConta.ADMIN) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Apenas ADMIN pode acessar este recurso.");
+        }
+        LocalDate inicio = parseData(de);
+        LocalDate fim = parseData(ate);
+        if (inicio != null && fim != null && fim.isBefore(inicio)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Periodo invalido.");
+        }
+        String filialChave = filial == null || filial.isBlank() ? null : permissionService.normalizedKey(filial);
+        var filtro = new AnexoJdbcRepository.FiltroAnexos(
+                null,
+                permissionService.isRootAdmin(conta) ? null : permissionService.visibleFilialKeys(conta),
+                filialChave,
+                parseStatus(status),
+                inicio != null ? inicio.atStartOfDay() : null,
+                fim != null ? fim.plusDays(1).atStartOfDay() : null
+        );
+        String resumo = "Anexos exportados em ZIP (filial: " + (filialChave != null ? filialChave : "todas")
+                + ", status: " + (filtro.status() != null ? filtro.status() : "todos")
+                + ", periodo: " + (inicio != null ? inicio : "-") + " a " + (fim != null ? fim : "-") + ").";
+        auditoriaService.registrar(conta, "ANEXOS_EXPORTADOS", resumo, null, null, null);
+        return new AnexoZip("anexos-" + LocalDate.now() + ".zip", filtro);
+    }
+
+    /**
+     * Escreve o ZIP em {@code destino}. Arquivos que nao puderem ser lidos ficam de fora e sao
+     * listados em {@value #ARQUIVO_FALHAS} no fim do ZIP (o status da resposta ja foi enviado).
+     */
+    public void escrever(AnexoJdbcRepository.FiltroAnexos filtro, OutputStream destino) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(destino, BUFFER_SIZE), StandardCharsets.UTF_8);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        List<String> falhas = new ArrayList<>();
+        int total = 0;
+        long aposSolicitacao = 0;
+        long aposId = 0;
+        while (true) {
+            List<AnexoJdbcRepository.AnexoExportado> lote =
+                    anexoJdbcRepository.buscarParaExportacao(filtro, aposSolicitacao, aposId, LOTE);
+            for (AnexoJdbcRepository.AnexoExportado anexo : lote) {
+                String nome = nomeEntrada(anexo);
+                Path arquivo = localizar(anexo, nome, falhas);
+                if (arquivo != null && adicionar(zip, anexo, nome, arquivo, buffer, falhas)) {
+                    total++;
+                }
+            }
+            if (lote.size() < LOTE) {
+                break;
+            }
+            AnexoJdbcRepository.AnexoExportado ultimo = lote.get(lote.size() - 1);
+            aposSolicitacao = ultimo.solicitacaoId();
+            aposId = ultimo.id();
+        }
+        if (!falhas.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(ARQUIVO_FALHAS));
+            zip.write((String.join("\n", falhas) + "\n").getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            log.warn("Exportacao de anexos em ZIP com {} arquivo(s) indisponivel(is).", falhas.size());
+        }
+        zip.finish();
+        zip.flush();
+        log.debug("Exportacao de anexos em ZIP: {} arquivo(s).", total);
+    }
+
+    private Path localizar(AnexoJdbcRepository.AnexoExportado anexo, String nome, List<String> falhas) {
+        try {
+            Path arquivo = storageService.downloadResource(anexo.driveFileId()).getFile().toPath();
+            if (Files.isRegularFile(arquivo)) {
+                return arquivo;
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Anexo {} indisponivel para exportacao: {}", anexo.id(), ex.getMessage());
+        }
+        falhas.add(nome);
+        return null;
+    }
+
+    /**
+     * Adiciona o arquivo ao ZIP. Falha de leitura antes da entrada comecar so pula o arquivo;
+     * falha de escrita (cliente desconectou) interrompe a exportacao.
+     */
+    private boolean adicionar(ZipOutputStream zip,
+                              AnexoJdbcRepository.AnexoExportado anexo,
+                              String nome,
+                              Path arquivo,
+                              byte[] buffer,
+                              List<String> falhas) throws IOException {
+        ZipEntry entry = new ZipEntry(nome);
+        entry.setTimeLocal(anexo.createdAt());
+        if (anexo.contentType() != null && JA_COMPRIMIDOS.contains(anexo.contentType().toLowerCase())) {
+            CRC32 crc = new CRC32();
+            long tamanho = 0;
+            try (InputStream in = Files.newInputStream(arquivo)) {
+                int lidos;
+                while ((lidos = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, lidos);
+                    tamanho += lidos;
+                }
+            } catch (IOException ex) {
+                log.warn("Falha ao ler anexo {} para exportacao: {}", anexo.id(), ex.getMessage());
+                falhas.add(nome);
+                return false;
+            }
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(tamanho);
+            entry.setCompressedSize(tamanho);
+            entry.setCrc(crc.getValue());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        zip.putNextEntry(entry);
+        try (InputStream in = Files.newInputStream(arquivo)) {
+            in.transferTo(zip);
+        }
+        zip.closeEntry();
+        return true;
+    }
+
+    private String nomeEntrada(AnexoJdbcRepository.AnexoExportado anexo) {
+        String original = anexo.originalName() == null || anexo.originalName().isBlank() ? "arquivo" : anexo.originalName();
+        int barra = Math.max(original.lastIndexOf('/'), original.lastIndexOf('\\'));
+        String nome = original.substring(barra + 1).replaceAll("[\\p{Cntrl}:*?\"<>|]", "_");
+        return "solicitacao-" + anexo.solicitacaoId() + "/" + anexo.id() + "-" + (nome.isBlank() ? "arquivo" : nome);
+    }
+
+    private LocalDate parseData(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(valor.trim());
+        } catch (DateTimeParseException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Data invalida. Use o formato AAAA-MM-DD.");
+        }
+    }
+
+    private StatusSolicitacao parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return StatusSolicitacao.valueOf(status.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Status invalido. Use PENDENTE, PENDENTE_INFO, APROVADO ou REPROVADO."
+            );
+        }
+    }
+
+    private Conta getContaLogada() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Usuario nao autenticado.");
+        }
+        return contaRepository.findByUsuario(auth.getName())
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.UNAUTHORIZED,
+                        "Conta autenticada nao encontrada no banco."
+                ));
+    }
+}
@@ -0,0 +1,9 @@
+package com.app.expenseControl.service;
+
+import java.util.List;
+
+/**
+ * Publicado quando registros de anexo sao removidos dentro de uma transacao maior; os arquivos
+ * so sao apagados depois do commit.
+ */
+public record AnexosRemovidosEvent(List<String> fileIds) {}
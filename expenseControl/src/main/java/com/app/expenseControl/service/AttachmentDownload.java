@@ -2,6 +2,10 @@ package com.app.expenseControl.service;
 
 import com.app.expenseControl.entity.Attachment;
 
-import java.io.InputStream;
-
-public record AttachmentDownload(Attachment attachment, InputStream inputStream) {}
+/**
+ * Anexo liberado para download, ainda sem o arquivo: o {@code fileId} so e resolvido em
+ * {@link AttachmentService#abrir}, depois do If-None-Match, entao um 304 nao traz da camada remota
+ * um blob que saiu do cache. {@code sha256} identifica o conteudo entregue (o original, se pedido e
+ * mantido).
+ */
+public record AttachmentDownload(Attachment attachment, String fileId, String sha256) {}
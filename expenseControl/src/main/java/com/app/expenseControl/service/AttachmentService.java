@@ -4,33 +4,59 @@ import com.app.expenseControl.dto.AttachmentResponseDTO;
 import com.app.expenseControl.entity.Attachment;
 import com.app.expenseControl.entity.Conta;
 import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.enums.StatusAnexo;
 import com.app.expenseControl.enums.StatusSolicitacao;
 import com.app.expenseControl.enums.TipoConta;
+import com.app.expenseControl.repository.AnexoBlobRepository;
+import com.app.expenseControl.repository.AnexoJdbcRepository;
 import com.app.expenseControl.repository.AttachmentRepository;
 import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.SolicitacaoJdbcRepository;
 import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
-public class AttachmentService {
+public class AttachmentService implements DisposableBean {
     private static final Logger log = LoggerFactory.getLogger(AttachmentService.class);
 
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
     private static final int MAX_ATTACHMENTS = 5;
+    private static final int LIMPEZA_LOTE = 100;
     private static final Set<String> ALLOWED_TYPES = Set.of(
             "application/pdf",
             "image/jpeg",
@@ -39,27 +65,73 @@ public class AttachmentService {
     );
 
     private final AttachmentRepository attachmentRepository;
+    private final AnexoBlobRepository anexoBlobRepository;
+    private final AnexoJdbcRepository anexoJdbcRepository;
     private final SolicitacaoRepository solicitacaoRepository;
+    private final SolicitacaoJdbcRepository solicitacaoJdbcRepository;
     private final ContaRepository contaRepository;
     private final GoogleDriveStorageService driveStorageService;
+    private final AnexoPreviewService previewService;
+    private final AnexoImagemNormalizer imagemNormalizer;
     private final ContaPermissionService permissionService;
     private final AuditoriaService auditoriaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final long pendenteTtlMinutos;
+    private final long blobCarenciaMinutos;
+    private final ThreadPoolExecutor gravacaoExecutor;
 
     public AttachmentService(AttachmentRepository attachmentRepository,
+                             AnexoBlobRepository anexoBlobRepository,
+                             AnexoJdbcRepository anexoJdbcRepository,
                              SolicitacaoRepository solicitacaoRepository,
+                             SolicitacaoJdbcRepository solicitacaoJdbcRepository,
                              ContaRepository contaRepository,
                              @Lazy GoogleDriveStorageService driveStorageService,
+                             AnexoPreviewService previewService,
+                             AnexoImagemNormalizer imagemNormalizer,
                              ContaPermissionService permissionService,
-                             AuditoriaService auditoriaService) {
+                             AuditoriaService auditoriaService,
+                             ApplicationEventPublisher eventPublisher,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.attachments.pending-ttl-minutes:30}") long pendenteTtlMinutos,
+                             @Value("${app.attachments.blob-gc-grace-minutes:60}") long blobCarenciaMinutos,
+                             @Value("${app.attachments.batch.threads:4}") int gravacaoThreads) {
         this.attachmentRepository = attachmentRepository;
+        this.anexoBlobRepository = anexoBlobRepository;
+        this.anexoJdbcRepository = anexoJdbcRepository;
         this.solicitacaoRepository = solicitacaoRepository;
+        this.solicitacaoJdbcRepository = solicitacaoJdbcRepository;
         this.contaRepository = contaRepository;
         this.driveStorageService = driveStorageService;
+        this.previewService = previewService;
+        this.imagemNormalizer = imagemNormalizer;
         this.permissionService = permissionService;
         this.auditoriaService = auditoriaService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pendenteTtlMinutos = Math.max(1, pendenteTtlMinutos);
+        this.blobCarenciaMinutos = Math.max(0, blobCarenciaMinutos);
+
+        // Com o pool e a fila ocupados, a gravacao roda na propria thread da requisicao.
+        int limite = Math.max(1, gravacaoThreads);
+        AtomicInteger sequence = new AtomicInteger();
+        this.gravacaoExecutor = new ThreadPoolExecutor(
+                limite,
+                limite,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(limite * 2),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "anexo-gravacao-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        this.gravacaoExecutor.allowCoreThreadTimeOut(true);
     }
 
-    @Transactional
     public AttachmentResponseDTO upload(Long solicitacaoId, MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo nao enviado.");
@@ -67,47 +139,365 @@ public class AttachmentService {
         if (file.getSize() > MAX_FILE_SIZE) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo excede 10MB.");
         }
-        String contentType = file.getContentType();
+        try (InputStream in = file.getInputStream()) {
+            return armazenar(solicitacaoId, file.getOriginalFilename(), file.getContentType(), in);
+        } catch (IOException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falha ao ler arquivo enviado.");
+        }
+    }
+
+    /**
+     * Varios arquivos em uma requisicao: validados juntos, reservados em uma transacao curta,
+     * gravados em paralelo no pool limitado de {@code app.attachments.batch.threads} e confirmados
+     * em outra transacao curta, com um unico evento de auditoria. Se algum arquivo falhar, nenhum
+     * e anexado.
+     */
+    public List<AttachmentResponseDTO> uploadLote(Long solicitacaoId, List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo nao enviado.");
+        }
+        if (files.size() > MAX_ATTACHMENTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limite de anexos atingido.");
+        }
+        List<NovoAnexo> novos = new ArrayList<>();
+        for (MultipartFile file : files) {
+            if (file == null || file.isEmpty()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo nao enviado.");
+            }
+            if (file.getSize() > MAX_FILE_SIZE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo excede 10MB.");
+            }
+            validarTipo(file.getContentType());
+            novos.add(new NovoAnexo(file.getOriginalFilename(), file.getContentType(), driveStorageService.newTempId()));
+        }
+
+        List<Reserva> reservas = transactionTemplate.execute(status -> reservar(solicitacaoId, novos));
+        List<Future<Preparado>> gravacoes = new ArrayList<>();
+        for (int i = 0; i < reservas.size(); i++) {
+            Attachment attachment = reservas.get(i).attachment();
+            MultipartFile file = files.get(i);
+            gravacoes.add(gravacaoExecutor.submit(() -> receber(attachment, file)));
+        }
+
+        List<Preparado> preparados = new ArrayList<>();
+        RuntimeException erro = null;
+        for (Future<Preparado> gravacao : gravacoes) {
+            try {
+                preparados.add(gravacao.get());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                erro = new IllegalStateException("Upload de anexos interrompido.", ex);
+                // Reservas das gravacoes ainda em andamento ficam para a limpeza periodica.
+                break;
+            } catch (ExecutionException ex) {
+                if (erro == null) {
+                    erro = ex.getCause() instanceof RuntimeException runtime
+                            ? runtime
+                            : new IllegalStateException("Falha ao salvar arquivo localmente.", ex.getCause());
+                }
+            }
+        }
+        if (erro != null) {
+            preparados.forEach(this::descartar);
+            throw erro;
+        }
+        confirmarTodos(reservas.get(0).conta(), preparados);
+        return preparados.stream().map(preparado -> toDTO(preparado.attachment())).toList();
+    }
+
+    /**
+     * Grava uma parte do upload em lote no temporario reservado e a prepara para confirmar.
+     */
+    private Preparado receber(Attachment attachment, MultipartFile file) {
+        StoredFile enviado;
+        try (InputStream in = file.getInputStream()) {
+            enviado = driveStorageService.stage(attachment.getDriveFileId(), in, MAX_FILE_SIZE);
+        } catch (IOException ex) {
+            descartar(attachment);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Falha ao ler arquivo enviado.");
+        } catch (RuntimeException ex) {
+            descartar(attachment);
+            throw ex;
+        }
+        return preparar(attachment, enviado);
+    }
+
+    /**
+     * Upload com o arquivo no corpo da requisicao (sem multipart): o corpo e lido uma unica vez
+     * e gravado direto no destino, sem a copia temporaria que o Tomcat faz para multipart.
+     *
+     * @param tamanhoInformado Content-Length da requisicao, ou -1 quando desconhecido
+     */
+    public AttachmentResponseDTO uploadStream(Long solicitacaoId,
+                                              String originalName,
+                                              String contentType,
+                                              long tamanhoInformado,
+                                              InputStream in) {
+        if (tamanhoInformado == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo nao enviado.");
+        }
+        if (tamanhoInformado > MAX_FILE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo excede 10MB.");
+        }
+        return armazenar(solicitacaoId, originalName, contentType, in);
+    }
+
+    /**
+     * Upload em duas fases, sem conexao presa durante a gravacao do arquivo:
+     * uma transacao curta valida e reserva o anexo como PENDENTE, o arquivo e gravado fora de
+     * transacao e outra transacao curta confirma. Se algo falhar no meio, a reserva e o arquivo
+     * sao descartados; o que sobrar (processo derrubado) e removido por {@link #limparPendentes()}.
+     * <p>
+     * O arquivo vai primeiro para um temporario (o SHA-256 so e conhecido depois de ler tudo) e,
+     * na confirmacao, vira referencia ao blob daquele conteudo: se o blob ja existe, o temporario
+     * e apagado e nenhum byte e gravado no repositorio. Fotos podem ser normalizadas (reduzidas e
+     * recodificadas) entre a gravacao e a confirmacao; ver {@link AnexoImagemNormalizer}.
+     */
+    private AttachmentResponseDTO armazenar(Long solicitacaoId, String nomeInformado, String contentType, InputStream in) {
+        validarTipo(contentType);
+
+        Reserva reserva = transactionTemplate.execute(status ->
+                reservar(solicitacaoId, nomeInformado, contentType, driveStorageService.newTempId()));
+        Attachment attachment = reserva.attachment();
+
+        StoredFile enviado;
+        try {
+            enviado = driveStorageService.stage(attachment.getDriveFileId(), in, MAX_FILE_SIZE);
+        } catch (RuntimeException ex) {
+            descartar(attachment);
+            throw ex;
+        }
+        return concluirArmazenamento(reserva, enviado);
+    }
+
+    /**
+     * Valida um anexo que ainda sera enviado (upload retomavel), sem reservar nada: acesso,
+     * status da solicitacao e limite de anexos, contando {@code reservasAbertas} como ocupadas.
+     * Devolve o usuario logado.
+     */
+    @Transactional(readOnly = true)
+    public String validarNovoAnexo(Long solicitacaoId, String contentType, long reservasAbertas) {
+        validarTipo(contentType);
+        Solicitacao solicitacao = buscarSolicitacao(solicitacaoId);
+        Conta conta = getContaLogada();
+        ensureAccess(conta, solicitacao);
+        ensureCanChangeAttachments(conta);
+        ensureStatusAllowsAttachment(solicitacao);
+        if (solicitacaoJdbcRepository.vagasAnexoOcupadas(solicitacaoId) + reservasAbertas >= MAX_ATTACHMENTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limite de anexos atingido.");
+        }
+        return conta.getUsuario();
+    }
+
+    /**
+     * Conclui um arquivo ja recebido por inteiro em um temporario (upload retomavel): o anexo e
+     * reservado apontando para esse temporario e segue o mesmo caminho de um upload comum.
+     * {@code naReserva} roda na transacao da reserva, que passa a ser dona do temporario.
+     */
+    public AttachmentResponseDTO armazenarRecebido(Long solicitacaoId,
+                                                   String nomeInformado,
+                                                   String contentType,
+                                                   String tempId,
+                                                   Runnable naReserva) {
+        validarTipo(contentType);
+
+        Reserva reserva = transactionTemplate.execute(status -> {
+            Reserva nova = reservar(solicitacaoId, nomeInformado, contentType, tempId);
+            naReserva.run();
+            return nova;
+        });
+
+        StoredFile enviado;
+        try {
+            enviado = driveStorageService.inspect(tempId);
+        } catch (RuntimeException ex) {
+            descartar(reserva.attachment());
+            throw ex;
+        }
+        return concluirArmazenamento(reserva, enviado);
+    }
+
+    private void validarTipo(String contentType) {
         if (contentType == null || !ALLOWED_TYPES.contains(contentType.toLowerCase())) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Tipo de arquivo nao permitido.");
         }
+    }
+
+    private AttachmentResponseDTO concluirArmazenamento(Reserva reserva, StoredFile enviado) {
+        Preparado preparado = preparar(reserva.attachment(), enviado);
+        confirmarTodos(reserva.conta(), List.of(preparado));
+        return toDTO(preparado.attachment());
+    }
+
+    /**
+     * Confere o conteudo gravado e aplica a normalizacao de imagem. Em caso de erro a reserva e
+     * o temporario ja saem descartados.
+     */
+    private Preparado preparar(Attachment attachment, StoredFile enviado) {
+        if (enviado.size() == 0 || enviado.contentType() == null) {
+            // Conteudo vazio ou que nao e PDF/JPG/PNG de fato, independente do Content-Type declarado.
+            descartar(attachment);
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    enviado.size() == 0 ? "Arquivo nao enviado." : "Tipo de arquivo nao permitido."
+            );
+        }
+
+        StoredFile normalizado = imagemNormalizer.normalizar(enviado);
+        StoredFile stored = normalizado != null ? normalizado : enviado;
+        StoredFile original = normalizado != null && imagemNormalizer.manterOriginal() ? enviado : null;
+        if (normalizado != null && original == null) {
+            apagarArquivo(enviado.fileId());
+        }
+        return new Preparado(attachment, enviado, stored, original);
+    }
+
+    /**
+     * Confirma os anexos preparados em uma unica transacao curta; se falhar, todos sao descartados.
+     */
+    private void confirmarTodos(Conta conta, List<Preparado> preparados) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> confirmar(conta, preparados));
+        } catch (RuntimeException ex) {
+            preparados.forEach(this::descartar);
+            throw ex;
+        }
+        for (Preparado preparado : preparados) {
+            Attachment attachment = preparado.attachment();
+            StoredFile stored = preparado.stored();
+            attachment.setStatus(StatusAnexo.CONFIRMADO);
+            attachment.setDriveFileId(driveStorageService.blobId(stored.sha256()));
+            attachment.setSize(stored.size());
+            attachment.setSha256(stored.sha256());
+            attachment.setContentType(stored.contentType());
+            attachment.setOriginalSha256(preparado.original() != null ? preparado.original().sha256() : null);
+        }
+    }
+
+    private record Reserva(Attachment attachment, Conta conta) {}
+
+    private record NovoAnexo(String nome, String contentType, String tempId) {}
+
+    /**
+     * Anexo com o conteudo ja gravado em temporario, pronto para confirmar: {@code stored} e o que
+     * vira o anexo (normalizado ou como enviado) e {@code original}, o enviado quando mantido.
+     */
+    private record Preparado(Attachment attachment, StoredFile enviado, StoredFile stored, StoredFile original) {}
 
+    private Reserva reservar(Long solicitacaoId, String nomeInformado, String contentType, String tempId) {
+        List<Reserva> reservas = reservar(solicitacaoId, List.of(new NovoAnexo(nomeInformado, contentType, tempId)));
+        return reservas.get(0);
+    }
+
+    private List<Reserva> reservar(Long solicitacaoId, List<NovoAnexo> novos) {
         Solicitacao solicitacao = buscarSolicitacao(solicitacaoId);
         Conta conta = getContaLogada();
         ensureAccess(conta, solicitacao);
         ensureCanChangeAttachments(conta);
         ensureStatusAllowsAttachment(solicitacao);
 
-        long total = attachmentRepository.countBySolicitacaoId(solicitacaoId);
-        if (total >= MAX_ATTACHMENTS) {
+        // Vagas e numeros dos nomes saem do contador da solicitacao, atomicamente: dois uploads
+        // simultaneos nao passam do limite nem repetem o nome gravado.
+        Long ultimo = solicitacaoJdbcRepository.reservarVagasAnexo(solicitacaoId, novos.size(), MAX_ATTACHMENTS);
+        if (ultimo == null) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limite de anexos atingido.");
         }
+        long primeiro = ultimo - novos.size() + 1;
 
-        String originalName = sanitizeOriginalName(file.getOriginalFilename());
-        long nextIndex = total + 1;
-        String storedName = buildStoredName(solicitacao, originalName, nextIndex);
-        String folderId = driveStorageService.ensureFolder(solicitacaoId);
-        String driveFileId = driveStorageService.uploadFile(folderId, storedName, file);
-
-        Attachment attachment = Attachment.builder()
-                .solicitacao(solicitacao)
-                .driveFileId(driveFileId)
-                .driveFolderId(folderId)
-                .originalName(originalName)
-                .storedName(storedName)
-                .contentType(contentType)
-                .size(file.getSize())
-                .uploadedBy(conta.getUsuario())
-                .build();
-
-        Attachment saved = attachmentRepository.save(attachment);
+        List<Attachment> attachments = new ArrayList<>();
+        for (NovoAnexo novo : novos) {
+            String originalName = sanitizeOriginalName(novo.nome());
+            String storedName = buildStoredName(solicitacao, originalName, primeiro + attachments.size());
+            attachments.add(Attachment.builder()
+                    .solicitacao(solicitacao)
+                    .driveFileId(novo.tempId())
+                    .driveFolderId(driveStorageService.folderId(solicitacaoId))
+                    .originalName(originalName)
+                    .storedName(storedName)
+                    .contentType(novo.contentType().toLowerCase())
+                    .size(0L)
+                    .status(StatusAnexo.PENDENTE)
+                    .uploadedBy(conta.getUsuario())
+                    .build());
+        }
+        return attachmentRepository.saveAll(attachments).stream()
+                .map(attachment -> new Reserva(attachment, conta))
+                .toList();
+    }
+
+    private void confirmar(Conta conta, List<Preparado> preparados) {
+        Long solicitacaoId = preparados.get(0).attachment().getSolicitacao().getId();
+        StatusSolicitacao status = solicitacaoRepository.findStatusById(solicitacaoId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
+        if (status != StatusSolicitacao.PENDENTE) {
+            // A solicitacao foi decidida ou devolvida enquanto o arquivo era gravado.
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Solicitacao nao aceita anexos neste status.");
+        }
+        List<StoredFile> conteudos = new ArrayList<>();
+        for (Preparado preparado : preparados) {
+            StoredFile stored = preparado.stored();
+            StoredFile original = preparado.original();
+            if (attachmentRepository.confirmar(preparado.attachment().getId(), stored.size(), stored.sha256(),
+                    stored.contentType(), driveStorageService.blobId(stored.sha256()),
+                    original != null ? original.sha256() : null) == 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Upload expirado. Envie o arquivo novamente.");
+            }
+            conteudos.add(stored);
+            if (original != null) {
+                conteudos.add(original);
+            }
+        }
+        // Em ordem de SHA-256: transacoes que referenciam os mesmos blobs travam as linhas na
+        // mesma ordem e nao entram em deadlock.
+        conteudos.sort(Comparator.comparing(StoredFile::sha256));
+        for (StoredFile conteudo : conteudos) {
+            anexoBlobRepository.referenciar(conteudo.sha256(), conteudo.size(), conteudo.contentType(), LocalDateTime.now());
+        }
+        List<String> nomes = preparados.stream().map(preparado -> "\"" + preparado.attachment().getOriginalName() + "\"").toList();
+        String descricao = nomes.size() == 1
+                ? "Anexo " + nomes.get(0) + " enviado para solicitacao #" + solicitacaoId + "."
+                : nomes.size() + " anexos enviados para solicitacao #" + solicitacaoId + ": " + String.join(", ", nomes) + ".";
         auditoriaService.registrar(
-                "ANEXO_ENVIADO",
-                "Anexo \"" + saved.getOriginalName() + "\" enviado para solicitacao #" + solicitacaoId + ".",
+                conta,
+                nomes.size() == 1 ? "ANEXO_ENVIADO" : "ANEXOS_ENVIADOS",
+                descricao,
+                null,
                 "SOLICITACAO",
                 String.valueOf(solicitacaoId)
         );
-        return toDTO(saved);
+        // Por ultimo, com as linhas dos blobs travadas pelo referenciar: a coleta nao remove o
+        // arquivo no meio da promocao. Se o commit falhar depois disso, sobram no maximo blobs sem registro.
+        for (StoredFile conteudo : conteudos) {
+            driveStorageService.promoteBlob(conteudo);
+        }
+        for (Preparado preparado : preparados) {
+            StoredFile stored = preparado.stored();
+            eventPublisher.publishEvent(new AnexoConfirmadoEvent(
+                    driveStorageService.blobId(stored.sha256()), stored.sha256(), stored.contentType()));
+        }
+    }
+
+    /**
+     * Descarta um anexo preparado: a reserva, o temporario enviado e o normalizado, se houver.
+     */
+    private void descartar(Preparado preparado) {
+        descartar(preparado.attachment());
+        if (preparado.stored() != preparado.enviado()) {
+            apagarArquivo(preparado.stored().fileId());
+        }
+    }
+
+    /**
+     * Remove a reserva, devolvendo a vaga, e o arquivo (se chegou a ser gravado). Falhas ficam
+     * para a limpeza periodica.
+     */
+    private void descartar(Attachment attachment) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> anexoJdbcRepository.removerPendentes(List.of(attachment.getId())));
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao descartar reserva do anexo {}: {}", attachment.getId(), ex.getMessage());
+        }
+        apagarArquivo(attachment.getDriveFileId());
     }
 
     @Transactional(readOnly = true)
@@ -116,60 +506,213 @@ public class AttachmentService {
         Conta conta = getContaLogada();
         ensureAccess(conta, solicitacao);
 
-        return attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(solicitacaoId)
+        return attachmentRepository.findBySolicitacaoIdAndStatusOrderByCreatedAtAsc(solicitacaoId, StatusAnexo.CONFIRMADO)
                 .stream()
                 .map(this::toDTO)
                 .toList();
     }
 
     @Transactional(readOnly = true)
-    public AttachmentDownload download(Long attachmentId) {
-        Attachment attachment = attachmentRepository.findById(attachmentId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Anexo nao encontrado."));
-        Solicitacao solicitacao = attachment.getSolicitacao();
-
+    public AttachmentResponseDTO buscar(Long attachmentId) {
+        Attachment attachment = buscarConfirmado(attachmentId);
         Conta conta = getContaLogada();
-        ensureAccess(conta, solicitacao);
+        ensureAccess(conta, attachment.getSolicitacao());
+        return toDTO(attachment);
+    }
 
-        return new AttachmentDownload(attachment, driveStorageService.downloadFile(attachment.getDriveFileId()));
+    /**
+     * Confere o acesso em transacao curta e escolhe o arquivo a entregar, sem busca-lo: a busca
+     * (que pode vir da camada remota) fica para {@link #abrir}, sem conexao presa.
+     *
+     * @param original entrega o arquivo como enviado, quando a imagem foi normalizada e o original
+     *                 mantido; sem original guardado, entrega o anexo normal
+     */
+    public AttachmentDownload download(Long attachmentId, boolean original) {
+        Attachment attachment = transactionTemplate.execute(status -> {
+            Attachment encontrado = buscarConfirmado(attachmentId);
+            ensureAccess(getContaLogada(), encontrado.getSolicitacao());
+            return encontrado;
+        });
+
+        if (original && attachment.getOriginalSha256() != null) {
+            String originalId = driveStorageService.blobId(attachment.getOriginalSha256());
+            return new AttachmentDownload(attachment, originalId, attachment.getOriginalSha256());
+        }
+        return new AttachmentDownload(attachment, attachment.getDriveFileId(), attachment.getSha256());
     }
 
-    @Transactional
+    /**
+     * Arquivo de um download ja liberado. O {@link Resource} aponta para o arquivo sem abri-lo:
+     * intervalos (Range) sao lidos direto da posicao pedida.
+     */
+    public Resource abrir(AttachmentDownload download) {
+        return driveStorageService.downloadResource(download.fileId());
+    }
+
+    /**
+     * Pre-visualizacao reduzida do anexo. A consulta de acesso usa uma transacao curta; a leitura
+     * (ou geracao) do arquivo acontece sem conexao presa.
+     */
+    public AnexoPreview preview(Long attachmentId, Integer tamanho) {
+        Attachment attachment = transactionTemplate.execute(status -> {
+            Attachment encontrado = buscarConfirmado(attachmentId);
+            ensureAccess(getContaLogada(), encontrado.getSolicitacao());
+            return encontrado;
+        });
+        return previewService.obter(attachment.getDriveFileId(), attachment.getSha256(), attachment.getContentType(), tamanho);
+    }
+
+    /**
+     * Remove o registro em transacao curta. Anexos em blob so liberam a referencia (o arquivo sai
+     * na coleta); arquivos antigos, por solicitacao, sao apagados depois, sem conexao presa.
+     */
     public void delete(Long attachmentId) {
-        Attachment attachment = attachmentRepository.findById(attachmentId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Anexo nao encontrado."));
-        Solicitacao solicitacao = attachment.getSolicitacao();
+        String fileId = transactionTemplate.execute(status -> {
+            Attachment attachment = buscarConfirmado(attachmentId);
+            Solicitacao solicitacao = attachment.getSolicitacao();
 
-        Conta conta = getContaLogada();
-        ensureAccess(conta, solicitacao);
-        ensureCanChangeAttachments(conta);
-        ensureStatusAllowsAttachment(solicitacao);
+            Conta conta = getContaLogada();
+            ensureAccess(conta, solicitacao);
+            ensureCanChangeAttachments(conta);
+            ensureStatusAllowsAttachment(solicitacao);
 
-        driveStorageService.deleteFile(attachment.getDriveFileId());
-        attachmentRepository.delete(attachment);
-        auditoriaService.registrar(
-                "ANEXO_EXCLUIDO",
-                "Anexo \"" + attachment.getOriginalName() + "\" removido da solicitacao #" + solicitacao.getId() + ".",
-                "SOLICITACAO",
-                String.valueOf(solicitacao.getId())
-        );
+            attachmentRepository.delete(attachment);
+            solicitacaoJdbcRepository.liberarVagasAnexo(solicitacao.getId(), 1);
+            String arquivoAvulso = liberarConteudo(attachment);
+            auditoriaService.registrar(
+                    conta,
+                    "ANEXO_EXCLUIDO",
+                    "Anexo \"" + attachment.getOriginalName() + "\" removido da solicitacao #" + solicitacao.getId() + ".",
+                    null,
+                    "SOLICITACAO",
+                    String.valueOf(solicitacao.getId())
+            );
+            return arquivoAvulso;
+        });
+        if (fileId != null) {
+            apagarArquivo(fileId);
+        }
     }
 
+    /**
+     * Remove os registros na transacao de quem chamou; os arquivos sao apagados apos o commit.
+     * O contador de anexos nao e ajustado: so e usado antes da exclusao da propria solicitacao.
+     */
     @Transactional
     public void deleteAllForSolicitacao(Long solicitacaoId) {
         List<Attachment> attachments = attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(solicitacaoId);
+        if (attachments.isEmpty()) {
+            return;
+        }
+        attachmentRepository.deleteAllInBatch(attachments);
+        List<String> arquivosAvulsos = new ArrayList<>();
         for (Attachment attachment : attachments) {
+            String fileId = liberarConteudo(attachment);
+            if (fileId != null) {
+                arquivosAvulsos.add(fileId);
+            }
+        }
+        if (!arquivosAvulsos.isEmpty()) {
+            eventPublisher.publishEvent(new AnexosRemovidosEvent(arquivosAvulsos));
+        }
+    }
+
+    /**
+     * Libera a referencia ao blob do anexo removido. Devolve o arquivo a apagar quando o anexo
+     * nao usa blob (formato antigo ou reserva pendente), ou {@code null}.
+     */
+    private String liberarConteudo(Attachment attachment) {
+        if (attachment.getStatus() == StatusAnexo.CONFIRMADO && driveStorageService.isBlobId(attachment.getDriveFileId())) {
+            anexoBlobRepository.liberar(attachment.getSha256(), LocalDateTime.now());
+            if (attachment.getOriginalSha256() != null) {
+                anexoBlobRepository.liberar(attachment.getOriginalSha256(), LocalDateTime.now());
+            }
+            return null;
+        }
+        return attachment.getDriveFileId();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAnexosRemovidos(AnexosRemovidosEvent event) {
+        event.fileIds().forEach(this::apagarArquivo);
+    }
+
+    /**
+     * Descarta reservas PENDENTE antigas (upload interrompido sem chance de limpar) e seus arquivos.
+     */
+    @Scheduled(
+            initialDelayString = "${app.attachments.pending-cleanup-interval-ms:600000}",
+            fixedDelayString = "${app.attachments.pending-cleanup-interval-ms:600000}"
+    )
+    public void limparPendentes() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(pendenteTtlMinutos);
+        List<String> fileIds = transactionTemplate.execute(status -> {
+            List<Attachment> abandonados = attachmentRepository.findByStatusAndCreatedAtBeforeOrderByIdAsc(
+                    StatusAnexo.PENDENTE,
+                    limite,
+                    PageRequest.of(0, LIMPEZA_LOTE)
+            );
+            return anexoJdbcRepository.removerPendentes(abandonados.stream().map(Attachment::getId).toList());
+        });
+        if (fileIds != null && !fileIds.isEmpty()) {
+            fileIds.forEach(this::apagarArquivo);
+            log.info("Reservas de anexo abandonadas removidas: {}", fileIds.size());
+        }
+    }
+
+    /**
+     * Remove blobs sem referencias ha mais de {@code blob-gc-grace-minutes}. Cada blob e apagado
+     * na propria transacao, com a linha travada: um upload concorrente do mesmo conteudo espera e,
+     * como o registro some, grava o arquivo de novo.
+     */
+    @Scheduled(
+            initialDelayString = "${app.attachments.blob-gc-interval-ms:3600000}",
+            fixedDelayString = "${app.attachments.blob-gc-interval-ms:3600000}"
+    )
+    public void coletarBlobs() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(blobCarenciaMinutos);
+        List<String> liberados = anexoBlobRepository.findLiberados(limite, PageRequest.of(0, LIMPEZA_LOTE));
+        int removidos = 0;
+        for (String sha256 : liberados) {
             try {
-                driveStorageService.deleteFile(attachment.getDriveFileId());
-            } catch (Exception ex) {
-                // Mantem a exclusao dos dados mesmo quando o arquivo fisico nao existe mais.
-                log.warn("Falha ao remover arquivo fisico do anexo {} (solicitacao {}): {}",
-                        attachment.getId(),
-                        solicitacaoId,
-                        ex.getMessage());
+                // A copia remota sai primeiro; se o blob voltar a ser usado nesse meio tempo, volta
+                // para a fila de replicacao.
+                driveStorageService.deleteRemote(sha256);
+                Boolean removido = transactionTemplate.execute(status -> {
+                    if (anexoBlobRepository.removerSeLiberado(sha256) == 0) {
+                        if (driveStorageService.hasRemoteTier()) {
+                            anexoBlobRepository.reiniciarReplicacao(sha256);
+                        }
+                        return false;
+                    }
+                    driveStorageService.deleteFile(driveStorageService.blobId(sha256));
+                    return true;
+                });
+                if (Boolean.TRUE.equals(removido)) {
+                    removidos++;
+                    previewService.removerPreviews(sha256);
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Falha ao coletar blob {}: {}", sha256, ex.getMessage());
             }
         }
-        attachmentRepository.deleteAll(attachments);
+        if (removidos > 0) {
+            log.info("Blobs de anexo sem referencias removidos: {}", removidos);
+        }
+    }
+
+    private void apagarArquivo(String fileId) {
+        try {
+            driveStorageService.deleteFile(fileId);
+        } catch (Exception ex) {
+            // Mantem a exclusao dos dados mesmo quando o arquivo fisico nao existe mais.
+            log.warn("Falha ao remover arquivo fisico {}: {}", fileId, ex.getMessage());
+        }
+    }
+
+    private Attachment buscarConfirmado(Long attachmentId) {
+        return attachmentRepository.findByIdAndStatus(attachmentId, StatusAnexo.CONFIRMADO)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Anexo nao encontrado."));
     }
 
     private Solicitacao buscarSolicitacao(Long solicitacaoId) {
@@ -251,6 +794,11 @@ public class AttachmentService {
         );
     }
 
+    @Override
+    public void destroy() {
+        gravacaoExecutor.shutdownNow();
+    }
+
     private Conta getContaLogada() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || auth.getName() == null) {
@@ -12,11 +12,20 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Service
 public class AuditoriaService {
 
@@ -26,11 +35,14 @@ public class AuditoriaService {
 
     private final AuditoriaEventoRepository auditoriaEventoRepository;
     private final ContaRepository contaRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     public AuditoriaService(AuditoriaEventoRepository auditoriaEventoRepository,
-                            ContaRepository contaRepository) {
+                            ContaRepository contaRepository,
+                            JdbcTemplate jdbcTemplate) {
         this.auditoriaEventoRepository = auditoriaEventoRepository;
         this.contaRepository = contaRepository;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     @Transactional
@@ -51,23 +63,134 @@ public class AuditoriaService {
                           String referenciaId) {
         try {
             String actor = usuarioAutenticado();
-            String tipoConta = tipoContaAutenticada(actor);
-            AuditoriaEvento evento = AuditoriaEvento.builder()
-                    .usuario(limit(actor, 120))
-                    .tipoConta(limit(tipoConta, 30))
-                    .acao(limit(normalizeAction(acao), 80))
-                    .referenciaTipo(limit(blankToNull(referenciaTipo), 60))
-                    .referenciaId(limit(blankToNull(referenciaId), 120))
-                    .detalhe(limit(normalizeDetail(resumo), 2000))
-                    .detalheCompleto(limit(normalizeFullDetail(detalheCompleto), 20000))
-                    .build();
-            auditoriaEventoRepository.save(evento);
+            gravar(actor, tipoContaAutenticada(actor), acao, resumo, detalheCompleto, referenciaTipo, referenciaId);
+        } catch (Exception ex) {
+            // Auditoria nao deve bloquear a operacao principal.
+            log.warn("Falha ao registrar auditoria para acao {}: {}", acao, ex.getMessage());
+        }
+    }
+
+    /**
+     * Variante para quem ja carregou a conta logada: evita a consulta extra de tipo de conta.
+     */
+    @Transactional
+    public void registrar(Conta autor,
+                          String acao,
+                          String resumo,
+                          String detalheCompleto,
+                          String referenciaTipo,
+                          String referenciaId) {
+        if (autor == null) {
+            registrar(acao, resumo, detalheCompleto, referenciaTipo, referenciaId);
+            return;
+        }
+        try {
+            gravar(autor.getUsuario(), autor.getTipo().name(), acao, resumo, detalheCompleto,
+                    referenciaTipo, referenciaId);
         } catch (Exception ex) {
             // Auditoria nao deve bloquear a operacao principal.
             log.warn("Falha ao registrar auditoria para acao {}: {}", acao, ex.getMessage());
         }
     }
 
+    private void gravar(String actor,
+                        String tipoConta,
+                        String acao,
+                        String resumo,
+                        String detalheCompleto,
+                        String referenciaTipo,
+                        String referenciaId) {
+        AuditoriaEvento evento = AuditoriaEvento.builder()
+                .usuario(limit(actor, 120))
+                .tipoConta(limit(tipoConta, 30))
+                .acao(limit(normalizeAction(acao), 80))
+                .referenciaTipo(limit(blankToNull(referenciaTipo), 60))
+                .referenciaId(limit(blankToNull(referenciaId), 120))
+                .detalhe(limit(normalizeDetail(resumo), 2000))
+                .detalheCompleto(limit(normalizeFullDetail(detalheCompleto), 20000))
+                .criadoEm(LocalDateTime.now())
+                .build();
+        inserir(List.of(evento));
+    }
+
+    /**
+     * Evento pendente de gravacao, usado por {@link #registrarLote(List)}.
+     */
+    public record Registro(String acao,
+                           String resumo,
+                           String detalheCompleto,
+                           String referenciaTipo,
+                           String referenciaId) {}
+
+    /**
+     * Grava varios eventos do mesmo ator com uma unica consulta de conta e um insert em lote.
+     */
+    @Transactional
+    public void registrarLote(List<Registro> registros) {
+        if (registros == null || registros.isEmpty()) {
+            return;
+        }
+        try {
+            String actor = usuarioAutenticado();
+            String tipoConta = tipoContaAutenticada(actor);
+            LocalDateTime agora = LocalDateTime.now();
+            List<AuditoriaEvento> eventos = registros.stream()
+                    .map(registro -> AuditoriaEvento.builder()
+                            .usuario(limit(actor, 120))
+                            .tipoConta(limit(tipoConta, 30))
+                            .acao(limit(normalizeAction(registro.acao()), 80))
+                            .referenciaTipo(limit(blankToNull(registro.referenciaTipo()), 60))
+                            .referenciaId(limit(blankToNull(registro.referenciaId()), 120))
+                            .detalhe(limit(normalizeDetail(registro.resumo()), 2000))
+                            .detalheCompleto(limit(normalizeFullDetail(registro.detalheCompleto()), 20000))
+                            .criadoEm(agora)
+                            .build())
+                    .toList();
+            inserir(eventos);
+        } catch (Exception ex) {
+            // Auditoria nao deve bloquear a operacao principal.
+            log.warn("Falha ao registrar auditoria em lote ({} eventos): {}", registros.size(), ex.getMessage());
+        }
+    }
+
+    /**
+     * Insere na hora, fora do batching do Hibernate: pelo JPA o insert ficaria para o flush do
+     * commit, fora do try/catch de quem chamou, e uma falha ali desfaria a operacao principal.
+     * O savepoint e necessario porque, no Postgres, um comando com erro aborta a transacao inteira.
+     */
+    private void inserir(List<AuditoriaEvento> eventos) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            Savepoint savepoint = con.getAutoCommit() ? null : con.setSavepoint();
+            try (PreparedStatement ps = con.prepareStatement("""
+                    insert into auditoria_eventos
+                        (usuario, tipo_conta, acao, referencia_tipo, referencia_id, detalhe, detalhe_completo, criado_em)
+                    values (?, ?, ?, ?, ?, ?, ?, ?)
+                    """)) {
+                for (AuditoriaEvento evento : eventos) {
+                    ps.setString(1, evento.getUsuario());
+                    ps.setString(2, evento.getTipoConta());
+                    ps.setString(3, evento.getAcao());
+                    ps.setString(4, evento.getReferenciaTipo());
+                    ps.setString(5, evento.getReferenciaId());
+                    ps.setString(6, evento.getDetalhe());
+                    ps.setString(7, evento.getDetalheCompleto());
+                    ps.setTimestamp(8, Timestamp.valueOf(evento.getCriadoEm()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            } catch (SQLException ex) {
+                if (savepoint != null) {
+                    con.rollback(savepoint);
+                }
+                throw ex;
+            }
+            if (savepoint != null) {
+                con.releaseSavepoint(savepoint);
+            }
+            return null;
+        });
+    }
+
     @Transactional(readOnly = true)
     public PageResponse<AuditoriaEventoResponseDTO> listar(int page, int size, String query) {
         Pageable pageable = buildPageable(page, size);
@@ -0,0 +1,158 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.repository.AnexoBlobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Camada remota de armazenamento, fora do caminho das requisicoes:
+ * <ul>
+ *     <li>replicacao: a fila e a propria tabela {@code anexo_blobs} (blobs sem {@code replicado_em}),
+ *     reservada por lotes com SKIP LOCKED e retentada com espera exponencial apos falhas;</li>
+ *     <li>cache local: acima de {@code app.storage.cache.max-bytes}, os blobs ja replicados menos
+ *     usados recentemente saem do disco; a proxima leitura os traz de volta.</li>
+ * </ul>
+ * Sem camada remota configurada, as duas rotinas nao fazem nada.
+ */
+@Service
+public class BlobReplicacaoService {
+
+    private static final Logger log = LoggerFactory.getLogger(BlobReplicacaoService.class);
+
+    private static final int CONSULTA_LOTE = 500;
+    private static final double FRACAO_ALVO_CACHE = 0.9;
+
+    private final AnexoBlobRepository anexoBlobRepository;
+    private final GoogleDriveStorageService storageService;
+    private final TransactionTemplate transactionTemplate;
+    private final int lote;
+    private final long leaseSegundos;
+    private final long esperaBaseSegundos;
+    private final long esperaMaximaSegundos;
+    private final long cacheMaxBytes;
+
+    public BlobReplicacaoService(AnexoBlobRepository anexoBlobRepository,
+                                 @Lazy GoogleDriveStorageService storageService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.storage.replication.batch:20}") int lote,
+                                 @Value("${app.storage.replication.lease-seconds:300}") long leaseSegundos,
+                                 @Value("${app.storage.replication.retry-base-seconds:30}") long esperaBaseSegundos,
+                                 @Value("${app.storage.replication.retry-max-seconds:3600}") long esperaMaximaSegundos,
+                                 @Value("${app.storage.cache.max-bytes:0}") long cacheMaxBytes) {
+        this.anexoBlobRepository = anexoBlobRepository;
+        this.storageService = storageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.lote = Math.max(1, lote);
+        this.leaseSegundos = Math.max(30, leaseSegundos);
+        this.esperaBaseSegundos = Math.max(1, esperaBaseSegundos);
+        this.esperaMaximaSegundos = Math.max(this.esperaBaseSegundos, esperaMaximaSegundos);
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.storage.replication.interval-ms:10000}",
+            fixedDelayString = "${app.storage.replication.interval-ms:10000}"
+    )
+    public void replicarPendentes() {
+        if (!storageService.hasRemoteTier()) {
+            return;
+        }
+        List<String> reservados = transactionTemplate.execute(status ->
+                anexoBlobRepository.reservarReplicacao(LocalDateTime.now(), leaseSegundos, lote));
+        if (reservados == null || reservados.isEmpty()) {
+            return;
+        }
+
+        int replicados = 0;
+        for (String sha256 : reservados) {
+            try {
+                if (storageService.replicate(sha256)) {
+                    transactionTemplate.executeWithoutResult(status ->
+                            anexoBlobRepository.marcarReplicado(sha256, LocalDateTime.now()));
+                    replicados++;
+                } else {
+                    adiar(sha256, "Blob ausente no disco local.");
+                }
+            } catch (IOException | RuntimeException ex) {
+                adiar(sha256, ex.getMessage());
+            }
+        }
+        log.info("Replicacao de blobs: {} de {} enviados.", replicados, reservados.size());
+    }
+
+    private void adiar(String sha256, String erro) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Integer tentativas = anexoBlobRepository.findReplicacaoTentativas(sha256);
+            int expoente = Math.min(tentativas == null ? 0 : tentativas, 20);
+            long espera = Math.min(esperaMaximaSegundos, esperaBaseSegundos << expoente);
+            String mensagem = erro == null ? "Falha sem mensagem." : erro;
+            anexoBlobRepository.adiarReplicacao(
+                    sha256,
+                    LocalDateTime.now().plusSeconds(espera),
+                    mensagem.length() > 500 ? mensagem.substring(0, 500) : mensagem
+            );
+        });
+        log.warn("Falha ao replicar blob {}: {}", sha256, erro);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.storage.cache.evict-interval-ms:300000}",
+            fixedDelayString = "${app.storage.cache.evict-interval-ms:300000}"
+    )
+    public void expulsarDoCache() {
+        if (!storageService.hasRemoteTier() || cacheMaxBytes <= 0) {
+            return;
+        }
+        List<GoogleDriveStorageService.LocalBlob> blobs = new ArrayList<>();
+        long[] total = {0};
+        storageService.forEachLocalBlob(blob -> {
+            blobs.add(blob);
+            total[0] += blob.size();
+        });
+        if (total[0] <= cacheMaxBytes) {
+            return;
+        }
+
+        long alvo = (long) (cacheMaxBytes * FRACAO_ALVO_CACHE);
+        long uso = total[0];
+        int removidos = 0;
+        blobs.sort(Comparator.comparing(GoogleDriveStorageService.LocalBlob::lastAccess));
+        for (int inicio = 0; inicio < blobs.size() && uso > alvo; inicio += CONSULTA_LOTE) {
+            List<GoogleDriveStorageService.LocalBlob> pedaco = blobs.subList(inicio, Math.min(inicio + CONSULTA_LOTE, blobs.size()));
+            // So sai do disco o que ja tem copia remota confirmada.
+            Set<String> replicados = new HashSet<>(anexoBlobRepository.findReplicados(
+                    pedaco.stream().map(GoogleDriveStorageService.LocalBlob::sha256).toList()
+            ));
+            for (GoogleDriveStorageService.LocalBlob blob : pedaco) {
+                if (uso <= alvo) {
+                    break;
+                }
+                if (!replicados.contains(blob.sha256())) {
+                    continue;
+                }
+                try {
+                    storageService.evictLocal(blob.sha256());
+                    uso -= blob.size();
+                    removidos++;
+                } catch (RuntimeException ex) {
+                    log.warn("Falha ao tirar blob {} do cache local: {}", blob.sha256(), ex.getMessage());
+                }
+            }
+        }
+        log.info("Cache local de blobs: {} removidos, uso {} de {} bytes.", removidos, uso, cacheMaxBytes);
+    }
+}
@@ -0,0 +1,42 @@
+package com.app.expenseControl.service;
+
+/**
+ * Identifica PDF, PNG e JPEG pelos primeiros bytes (assinatura do formato), sem confiar no
+ * Content-Type informado pelo cliente.
+ */
+final class ContentTypeSniffer {
+
+    static final int BYTES_NECESSARIOS = 8;
+
+    private static final byte[] PDF = {'%', 'P', 'D', 'F', '-'};
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    private ContentTypeSniffer() {
+    }
+
+    static String detectar(byte[] cabecalho, int tamanho) {
+        if (comecaCom(cabecalho, tamanho, PDF)) {
+            return "application/pdf";
+        }
+        if (comecaCom(cabecalho, tamanho, PNG)) {
+            return "image/png";
+        }
+        if (comecaCom(cabecalho, tamanho, JPEG)) {
+            return "image/jpeg";
+        }
+        return null;
+    }
+
+    private static boolean comecaCom(byte[] cabecalho, int tamanho, byte[] assinatura) {
+        if (tamanho < assinatura.length) {
+            return false;
+        }
+        for (int i = 0; i < assinatura.length; i++) {
+            if (cabecalho[i] != assinatura[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,147 @@
+package com.app.expenseControl.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitor CSV (RFC 4180) que devolve um registro por vez, sem carregar o arquivo em memoria.
+ * Aceita {@code ,} ou {@code ;} como separador (detectado no cabecalho), aspas com escape
+ * por aspas duplas, campos com quebra de linha e BOM UTF-8. Campos e registros tem tamanho
+ * limitado: o excesso e descartado e o registro volta marcado com erro.
+ */
+final class CsvReader implements Closeable {
+
+    private static final int MAX_CAMPOS = 64;
+
+    private final BufferedReader reader;
+    private final char separador;
+    private final int maxCampo;
+    private int linhaAtual;
+
+    record Registro(int linha, List<String> campos, String erro) {
+
+        boolean vazio() {
+            return erro == null && campos.stream().allMatch(String::isBlank);
+        }
+    }
+
+    private CsvReader(BufferedReader reader, char separador, int maxCampo) {
+        this.reader = reader;
+        this.separador = separador;
+        this.maxCampo = maxCampo;
+    }
+
+    static CsvReader abrir(InputStream entrada, int maxCampo) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8), 64 * 1024);
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+        return new CsvReader(reader, detectarSeparador(reader), maxCampo);
+    }
+
+    private static char detectarSeparador(BufferedReader reader) throws IOException {
+        int limite = 8 * 1024;
+        reader.mark(limite);
+        int virgulas = 0;
+        int pontoEVirgulas = 0;
+        for (int i = 0; i < limite; i++) {
+            int c = reader.read();
+            if (c == -1 || c == '\n') {
+                break;
+            }
+            if (c == ',') virgulas++;
+            if (c == ';') pontoEVirgulas++;
+        }
+        reader.reset();
+        return pontoEVirgulas > virgulas ? ';' : ',';
+    }
+
+    /**
+     * Le o proximo registro ou devolve {@code null} no fim do arquivo.
+     */
+    Registro proximo() throws IOException {
+        List<String> campos = new ArrayList<>();
+        StringBuilder atual = new StringBuilder();
+        boolean entreAspas = false;
+        boolean leuAlgo = false;
+        String erro = null;
+        int inicio = linhaAtual + 1;
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            leuAlgo = true;
+            char ch = (char) c;
+            if (entreAspas) {
+                if (ch == '"') {
+                    reader.mark(1);
+                    int seguinte = reader.read();
+                    if (seguinte == '"') {
+                        erro = anexar(atual, '"', erro);
+                    } else {
+                        entreAspas = false;
+                        if (seguinte != -1) {
+                            reader.reset();
+                        }
+                    }
+                    continue;
+                }
+                if (ch == '\n') {
+                    linhaAtual++;
+                }
+                erro = anexar(atual, ch, erro);
+                continue;
+            }
+            if (ch == '"' && atual.isEmpty()) {
+                entreAspas = true;
+            } else if (ch == separador) {
+                erro = fecharCampo(campos, atual, erro);
+            } else if (ch == '\n') {
+                linhaAtual++;
+                erro = fecharCampo(campos, atual, erro);
+                return new Registro(inicio, campos, erro);
+            } else if (ch != '\r') {
+                erro = anexar(atual, ch, erro);
+            }
+        }
+
+        if (!leuAlgo) {
+            return null;
+        }
+        linhaAtual++;
+        if (entreAspas) {
+            erro = "Aspas nao fechadas.";
+        }
+        erro = fecharCampo(campos, atual, erro);
+        return new Registro(inicio, campos, erro);
+    }
+
+    private String anexar(StringBuilder atual, char ch, String erro) {
+        if (atual.length() >= maxCampo) {
+            return erro != null ? erro : "Campo excede " + maxCampo + " caracteres.";
+        }
+        atual.append(ch);
+        return erro;
+    }
+
+    private String fecharCampo(List<String> campos, StringBuilder atual, String erro) {
+        if (campos.size() >= MAX_CAMPOS) {
+            atual.setLength(0);
+            return erro != null ? erro : "Registro excede " + MAX_CAMPOS + " colunas.";
+        }
+        campos.add(atual.toString());
+        atual.setLength(0);
+        return erro;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
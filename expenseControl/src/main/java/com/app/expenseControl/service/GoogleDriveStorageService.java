@@ -1,29 +1,112 @@
 package com.app.expenseControl.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.io.BufferedOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Armazenamento local dos anexos. Arquivos novos ficam em um repositorio enderecado por conteudo
+ * ({@code blobs/ab/cd/<sha256>}): o mesmo arquivo enviado varias vezes ocupa o disco uma vez so.
+ * Anexos antigos ficam em uma pasta por solicitacao: no formato atual, distribuidas em
+ * {@code pastas/ab/cd/<id>/} (IDs {@code local-file:v2:ab/cd/<id>/<nome>}); IDs {@code local-file:<id>/<nome>},
+ * da pasta direto na raiz, continuam validos e sao migrados em segundo plano ({@link AnexoPastaMigracaoService}).
+ * <p>
+ * Os blobs ficam na camada local ({@link LocalDiskStorageBackend}), que atende todas as leituras.
+ * Com uma camada remota configurada ({@code app.storage.remote.type}), os blobs sao copiados para
+ * ela em segundo plano ({@link BlobReplicacaoService}), podem sair do disco local quando o cache
+ * passa do limite e voltam sob demanda na primeira leitura.
+ */
 @Service
 @Lazy
 public class GoogleDriveStorageService {
 
     private static final String LOCAL_FOLDER_PREFIX = "local-folder:";
     private static final String LOCAL_FILE_PREFIX = "local-file:";
+    private static final String LOCAL_FILE_V2_PREFIX = "local-file:v2:";
+    private static final String LOCAL_BLOB_PREFIX = "local-blob:";
+    private static final String LOCAL_TEMP_PREFIX = "local-tmp:";
+    private static final String LOCAL_PREVIEW_PREFIX = "local-preview:";
+    private static final String PREVIEW_INFIX = ".preview-";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String PASTAS_DIR = "pastas";
+    private static final String TEMP_DIR = ".tmp";
+    private static final String TEMP_SUFFIX = ".part";
+    private static final String QUARANTINE_DIR = "quarentena";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Duration INTERVALO_TOQUE = Duration.ofHours(1);
+    private static final int TRAVAS = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(GoogleDriveStorageService.class);
 
     private final Path localRootPath;
+    private final Path blobsPath;
+    private final Path pastasPath;
+    private final Path tempPath;
+    private final LocalDiskStorageBackend local;
+    private final StorageBackend remoto;
+    private final Object[] travas = new Object[TRAVAS];
 
     public GoogleDriveStorageService(
-            @Value("${app.attachments.local-root:${ATTACHMENTS_LOCAL_ROOT:/solicitacoes}}") String localRoot
+            @Value("${app.attachments.local-root:${ATTACHMENTS_LOCAL_ROOT:/solicitacoes}}") String localRoot,
+            ObjectProvider<StorageBackend> remoto
     ) {
         this.localRootPath = Paths.get(localRoot).toAbsolutePath().normalize();
+        this.blobsPath = localRootPath.resolve(BLOBS_DIR);
+        this.pastasPath = localRootPath.resolve(PASTAS_DIR);
+        this.local = new LocalDiskStorageBackend(blobsPath);
+        this.remoto = remoto.getIfAvailable();
+        for (int i = 0; i < TRAVAS; i++) {
+            travas[i] = new Object();
+        }
+        // Temporarios no mesmo sistema de arquivos dos blobs, para que a promocao seja um rename atomico.
+        this.tempPath = blobsPath.resolve(TEMP_DIR);
+    }
+
+    public String folderId(Long requestId) {
+        if (requestId == null) {
+            throw new IllegalArgumentException("ID da solicitacao obrigatorio para criar pasta.");
+        }
+        return LOCAL_FOLDER_PREFIX + requestId;
     }
 
     public String ensureFolder(Long requestId) {
@@ -32,8 +115,7 @@ public class GoogleDriveStorageService {
         }
 
         try {
-            Path folder = localRootPath.resolve(String.valueOf(requestId)).normalize();
-            ensureWithinRoot(folder);
+            Path folder = pastasPath.resolve(pastaDistribuida(String.valueOf(requestId)));
             Files.createDirectories(folder);
             return LOCAL_FOLDER_PREFIX + requestId;
         } catch (IOException ex) {
@@ -41,29 +123,615 @@ public class GoogleDriveStorageService {
         }
     }
 
-    public String uploadFile(String folderId, String storedName, org.springframework.web.multipart.MultipartFile file) {
-        Long requestId = parseRequestId(folderId);
+    /**
+     * Reserva um ID de arquivo temporario, gravado depois com {@link #stage}. Permite registrar o
+     * anexo (e limpar o temporario, se o upload for abandonado) antes de receber os bytes.
+     */
+    public String newTempId() {
+        return LOCAL_TEMP_PREFIX + UUID.randomUUID();
+    }
 
+    /**
+     * Grava o conteudo em um temporario lendo a entrada uma unica vez, via FileChannel, enquanto
+     * tamanho, SHA-256 e tipo (pelos primeiros bytes) sao calculados. Excedido {@code maxBytes}, a
+     * gravacao e abortada e nada fica no disco.
+     */
+    public StoredFile stage(String tempId, InputStream in, long maxBytes) {
+        Path temp = resolveLocalFile(tempId);
+        MessageDigest digest = sha256();
+        byte[] cabecalho = new byte[ContentTypeSniffer.BYTES_NECESSARIOS];
+        int cabecalhoLido = 0;
+        long total = 0;
         try {
-            Path folder = localRootPath.resolve(String.valueOf(requestId)).normalize();
-            ensureWithinRoot(folder);
-            Files.createDirectories(folder);
+            Files.createDirectories(tempPath);
+            try (ReadableByteChannel source = Channels.newChannel(in);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    if (read == 0) {
+                        continue;
+                    }
+                    total += read;
+                    if (total > maxBytes) {
+                        throw new ResponseStatusException(
+                                HttpStatus.BAD_REQUEST,
+                                "Arquivo excede " + (maxBytes / (1024 * 1024)) + "MB."
+                        );
+                    }
+                    buffer.flip();
+                    if (cabecalhoLido < cabecalho.length) {
+                        int copiar = Math.min(cabecalho.length - cabecalhoLido, buffer.remaining());
+                        buffer.duplicate().get(cabecalho, cabecalhoLido, copiar);
+                        cabecalhoLido += copiar;
+                    }
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                out.force(false);
+            }
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            throw new IllegalStateException("Falha ao salvar arquivo localmente.", ex);
+        } catch (RuntimeException ex) {
+            deleteQuietly(temp);
+            throw ex;
+        }
+
+        return new StoredFile(
+                tempId,
+                total,
+                HexFormat.of().formatHex(digest.digest()),
+                ContentTypeSniffer.detectar(cabecalho, cabecalhoLido)
+        );
+    }
+
+    /**
+     * Gera um temporario escrevendo direto no arquivo (ex.: imagem recodificada), com tamanho e
+     * SHA-256 calculados na escrita. Mesmo contrato de {@link #stage}, com o tipo ja conhecido.
+     */
+    public StoredFile stageGenerated(String tempId, String contentType, ContentWriter writer) {
+        Path temp = resolveLocalFile(tempId);
+        MessageDigest digest = sha256();
+        try {
+            Files.createDirectories(tempPath);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream out = new DigestOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE),
+                        digest
+                );
+                writer.write(out);
+                out.flush();
+                channel.force(false);
+                return new StoredFile(tempId, channel.size(), HexFormat.of().formatHex(digest.digest()), contentType);
+            }
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            throw new IllegalStateException("Falha ao salvar arquivo localmente.", ex);
+        } catch (RuntimeException ex) {
+            deleteQuietly(temp);
+            throw ex;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
 
-            Path target = folder.resolve(storedName).normalize();
-            ensureWithinRoot(target);
+    /**
+     * Cria o temporario de um upload retomavel ja com o tamanho final, para que cada trecho seja
+     * gravado na sua posicao sem depender da ordem de chegada.
+     */
+    public void allocateTemp(String tempId, long size) {
+        Path temp = resolveLocalFile(tempId);
+        try {
+            Files.createDirectories(tempPath);
+            try (RandomAccessFile file = new RandomAccessFile(temp.toFile(), "rw")) {
+                file.setLength(size);
+            }
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            throw new IllegalStateException("Falha ao salvar arquivo localmente.", ex);
+        }
+    }
+
+    /**
+     * Grava a entrada no temporario a partir de {@code offset} (escrita posicional, sem reler o
+     * que ja foi recebido) e devolve quantos bytes foram gravados. Um trecho interrompido pode ser
+     * reenviado do mesmo offset: os bytes sao sobrescritos.
+     */
+    public long writeAt(String tempId, long offset, InputStream in, long maxBytes) {
+        Path temp = resolveLocalFile(tempId);
+        long total = 0;
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                if (read == 0) {
+                    continue;
+                }
+                total += read;
+                if (total > maxBytes) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trecho excede o tamanho declarado do arquivo.");
+                }
+                buffer.flip();
+                long posicao = offset + total - read;
+                while (buffer.hasRemaining()) {
+                    posicao += out.write(buffer, posicao);
+                }
+                buffer.clear();
+            }
+            // O offset so avanca no banco depois que os bytes estao no disco.
+            out.force(false);
+            return total;
+        } catch (NoSuchFileException ex) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Upload expirado. Envie o arquivo novamente.");
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao salvar arquivo localmente.", ex);
+        }
+    }
 
-            try (InputStream in = file.getInputStream()) {
-                Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Le o temporario completo uma vez para obter tamanho, SHA-256 e tipo (pelos primeiros bytes),
+     * como {@link #stage} faz durante a gravacao.
+     */
+    public StoredFile inspect(String tempId) {
+        Path temp = resolveLocalFile(tempId);
+        MessageDigest digest = sha256();
+        byte[] cabecalho = new byte[ContentTypeSniffer.BYTES_NECESSARIOS];
+        int cabecalhoLido = 0;
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                total += read;
+                buffer.flip();
+                if (cabecalhoLido < cabecalho.length) {
+                    int copiar = Math.min(cabecalho.length - cabecalhoLido, buffer.remaining());
+                    buffer.duplicate().get(cabecalho, cabecalhoLido, copiar);
+                    cabecalhoLido += copiar;
+                }
+                digest.update(buffer);
+                buffer.clear();
             }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao ler arquivo local.", ex);
+        }
+        return new StoredFile(
+                tempId,
+                total,
+                HexFormat.of().formatHex(digest.digest()),
+                ContentTypeSniffer.detectar(cabecalho, cabecalhoLido)
+        );
+    }
+
+    /**
+     * Move o temporario para o repositorio de blobs com rename atomico. Se o blob ja existe
+     * (mesmo conteudo enviado antes), o temporario e so descartado. Deve rodar com o registro do
+     * blob travado (ver AnexoBlobRepository#referenciar), para nao concorrer com a coleta.
+     */
+    public String promoteBlob(StoredFile staged) {
+        Path temp = resolveLocalFile(staged.fileId());
+        String blobId = blobId(staged.sha256());
+        Path target = resolveLocalFile(blobId);
+        try {
+            if (Files.exists(target)) {
+                Files.deleteIfExists(temp);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return blobId;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao salvar arquivo localmente.", ex);
+        }
+    }
+
+    public String blobId(String sha256) {
+        return LOCAL_BLOB_PREFIX + sha256;
+    }
+
+    public boolean isBlobId(String fileId) {
+        return fileId != null && fileId.startsWith(LOCAL_BLOB_PREFIX);
+    }
+
+    /**
+     * Pre-visualizacao de um blob, gravada ao lado dele ({@code <sha256>.preview-<tamanho>.jpg}).
+     */
+    public String previewId(String sha256, int tamanho) {
+        return LOCAL_PREVIEW_PREFIX + sha256 + "-" + tamanho;
+    }
+
+    public boolean exists(String fileId) {
+        return Files.isRegularFile(resolveLocalFile(fileId));
+    }
 
-            return LOCAL_FILE_PREFIX + requestId + "/" + storedName;
+    /**
+     * Grava um arquivo pequeno e derivado (pre-visualizacao) por temporario e rename atomico:
+     * leitores nunca veem o arquivo pela metade.
+     */
+    public void storeDerived(String fileId, byte[] content) {
+        Path target = resolveLocalFile(fileId);
+        Path temp = tempPath.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            Files.createDirectories(tempPath);
+            Files.createDirectories(target.getParent());
+            Files.write(temp, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
         } catch (IOException ex) {
+            deleteQuietly(temp);
             throw new IllegalStateException("Falha ao salvar arquivo localmente.", ex);
         }
     }
 
+    /**
+     * Apaga as pre-visualizacoes do blob, de qualquer tamanho ja gerado.
+     */
+    public void deletePreviews(String sha256) {
+        Path blob = resolveLocalFile(blobId(sha256));
+        if (!Files.isDirectory(blob.getParent())) {
+            return;
+        }
+        try (DirectoryStream<Path> previews = Files.newDirectoryStream(blob.getParent(), sha256 + PREVIEW_INFIX + "*.jpg")) {
+            for (Path preview : previews) {
+                Files.deleteIfExists(preview);
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao remover arquivo local.", ex);
+        }
+    }
+
+    public boolean hasRemoteTier() {
+        return remoto != null;
+    }
+
+    /**
+     * Envia o blob local para a camada remota. Devolve {@code false} se o blob nao esta no disco.
+     */
+    public boolean replicate(String sha256) throws IOException {
+        if (remoto == null) {
+            throw new IllegalStateException("Armazenamento remoto nao configurado.");
+        }
+        Path blob = local.caminho(sha256);
+        if (!Files.isRegularFile(blob)) {
+            return false;
+        }
+        remoto.put(sha256, blob);
+        return true;
+    }
+
+    public void deleteRemote(String sha256) throws IOException {
+        if (remoto != null) {
+            remoto.delete(sha256);
+        }
+    }
+
+    /**
+     * Blob presente no disco local, com tamanho e ultimo acesso (mtime, atualizado nas leituras).
+     */
+    public record LocalBlob(String sha256, long size, FileTime lastAccess) {}
+
+    /**
+     * Arquivos de um blob no disco: o proprio blob (nulo se ausente) e as pre-visualizacoes.
+     */
+    public record BlobArquivos(String sha256, Path blob, List<Path> derivados) {}
+
+    /**
+     * Proximos blobs do disco em ordem de SHA-256, a partir de {@code aposSha256} (exclusivo).
+     * Percorre os shards em ordem, entao cada chamada lista so os diretorios necessarios.
+     */
+    public List<BlobArquivos> listBlobs(String aposSha256, int limite) {
+        String apos = aposSha256 == null ? "" : aposSha256;
+        List<BlobArquivos> resultado = new ArrayList<>();
+        for (String nivel1 : listarNomes(blobsPath, "[0-9a-f]{2}")) {
+            if (apos.length() >= 2 && nivel1.compareTo(apos.substring(0, 2)) < 0) {
+                continue;
+            }
+            for (String nivel2 : listarNomes(blobsPath.resolve(nivel1), "[0-9a-f]{2}")) {
+                if (apos.length() >= 4 && (nivel1 + nivel2).compareTo(apos.substring(0, 4)) < 0) {
+                    continue;
+                }
+                Path shard = blobsPath.resolve(nivel1).resolve(nivel2);
+                TreeMap<String, BlobArquivos> grupos = new TreeMap<>();
+                for (String nome : listarNomes(shard, "[0-9a-f]{64}(" + Pattern.quote(PREVIEW_INFIX) + "[0-9]{1,5}\\.jpg)?")) {
+                    String sha = nome.substring(0, 64);
+                    if (sha.compareTo(apos) <= 0) {
+                        continue;
+                    }
+                    BlobArquivos grupo = grupos.computeIfAbsent(sha, chave -> new BlobArquivos(chave, null, new ArrayList<>()));
+                    if (nome.length() == 64) {
+                        grupos.put(sha, new BlobArquivos(sha, shard.resolve(nome), grupo.derivados()));
+                    } else {
+                        grupo.derivados().add(shard.resolve(nome));
+                    }
+                }
+                for (BlobArquivos grupo : grupos.values()) {
+                    resultado.add(grupo);
+                    if (resultado.size() >= limite) {
+                        return resultado;
+                    }
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Pastas do formato antigo (uma por solicitacao, direto na raiz), em ordem de nome.
+     */
+    public List<String> listLegacyFolders() {
+        return listarNomes(localRootPath, "[0-9]+");
+    }
+
+    /**
+     * Proximos arquivos do formato antigo, como IDs {@code local-file:}, em ordem de ID e a partir
+     * de {@code aposFileId} (exclusivo).
+     */
+    public List<String> listLegacyFiles(List<String> pastas, String aposFileId, int limite) {
+        List<String> resultado = new ArrayList<>();
+        listarArquivos(localRootPath, LOCAL_FILE_PREFIX, pastas, aposFileId == null ? "" : aposFileId, limite, resultado);
+        return resultado;
+    }
+
+    /**
+     * Proximos arquivos das pastas distribuidas, como IDs {@code local-file:v2:}, em ordem de ID
+     * e a partir de {@code aposFileId} (exclusivo). Percorre os shards em ordem, como
+     * {@link #listBlobs}.
+     */
+    public List<String> listShardedFiles(String aposFileId, int limite) {
+        String apos = aposFileId == null ? "" : aposFileId;
+        List<String> resultado = new ArrayList<>();
+        for (String nivel1 : listarNomes(pastasPath, "[0-9a-f]{2}")) {
+            if (antes(LOCAL_FILE_V2_PREFIX + nivel1 + "/", apos)) {
+                continue;
+            }
+            for (String nivel2 : listarNomes(pastasPath.resolve(nivel1), "[0-9a-f]{2}")) {
+                String shard = nivel1 + "/" + nivel2;
+                if (antes(LOCAL_FILE_V2_PREFIX + shard + "/", apos)) {
+                    continue;
+                }
+                List<String> pastas = listarNomes(pastasPath.resolve(shard), "[0-9]+").stream()
+                        .map(pasta -> shard + "/" + pasta)
+                        .toList();
+                if (listarArquivos(pastasPath, LOCAL_FILE_V2_PREFIX, pastas, apos, limite, resultado)) {
+                    return resultado;
+                }
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Acrescenta os arquivos das pastas depois de {@code apos}. Devolve {@code true} ao atingir o limite.
+     */
+    private boolean listarArquivos(Path base, String prefixoId, List<String> pastas, String apos, int limite, List<String> resultado) {
+        for (String pasta : pastas) {
+            String prefixo = prefixoId + pasta + "/";
+            if (antes(prefixo, apos)) {
+                continue;
+            }
+            Path diretorio = base.resolve(pasta);
+            for (String nome : listarNomes(diretorio, null)) {
+                String fileId = prefixo + nome;
+                if (fileId.compareTo(apos) <= 0 || !Files.isRegularFile(diretorio.resolve(nome))) {
+                    continue;
+                }
+                resultado.add(fileId);
+                if (resultado.size() >= limite) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Se todos os IDs com o prefixo ficam antes de {@code apos} (e podem ser pulados sem listar).
+     */
+    private static boolean antes(String prefixo, String apos) {
+        return prefixo.compareTo(apos) < 0 && !apos.startsWith(prefixo);
+    }
+
+    /**
+     * Os dois IDs possiveis de um arquivo de pasta por solicitacao: o antigo
+     * ({@code local-file:<id>/<nome>}) e o distribuido ({@code local-file:v2:ab/cd/<id>/<nome>}).
+     */
+    public List<String> legacyFileIds(String fileId) {
+        if (fileId.startsWith(LOCAL_FILE_V2_PREFIX)) {
+            String relativo = fileId.substring(LOCAL_FILE_V2_PREFIX.length());
+            if (!relativo.matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9]+/.+")) {
+                return List.of(fileId);
+            }
+            return List.of(LOCAL_FILE_PREFIX + relativo.substring("ab/cd/".length()), fileId);
+        }
+        String relativo = fileId.substring(LOCAL_FILE_PREFIX.length());
+        int barra = relativo.indexOf('/');
+        if (barra < 1 || !relativo.substring(0, barra).matches("[0-9]+")) {
+            return List.of(fileId);
+        }
+        String pasta = relativo.substring(0, barra);
+        return List.of(fileId, LOCAL_FILE_V2_PREFIX + pastaDistribuida(pasta) + relativo.substring(barra));
+    }
+
+    /**
+     * Prefixo dos IDs dos arquivos de uma pasta no formato antigo ({@code local-file:<id>/}).
+     */
+    public String legacyFolderPrefix(String pasta) {
+        return LOCAL_FILE_PREFIX + pasta + "/";
+    }
+
+    /**
+     * Prefixo dos IDs dos arquivos da mesma pasta ja distribuida ({@code local-file:v2:ab/cd/<id>/}).
+     */
+    public String shardedFolderPrefix(String pasta) {
+        return LOCAL_FILE_V2_PREFIX + pastaDistribuida(pasta) + "/";
+    }
+
+    /**
+     * Move uma pasta do formato antigo ({@code <raiz>/<id>/}) para {@code pastas/ab/cd/<id>/}.
+     * Normalmente e um unico rename; se o destino ja existe (migracao interrompida), os arquivos
+     * restantes sao movidos um a um. Devolve quantos arquivos ficaram para tras por conflito de nome.
+     */
+    public int migrateLegacyFolder(String pasta) {
+        if (!pasta.matches("[0-9]+")) {
+            throw new IllegalArgumentException("Pasta de solicitacao invalida.");
+        }
+        Path origem = localRootPath.resolve(pasta);
+        Path destino = pastasPath.resolve(pastaDistribuida(pasta));
+        try {
+            Files.createDirectories(destino.getParent());
+            if (!Files.exists(destino)) {
+                try {
+                    Files.move(origem, destino, StandardCopyOption.ATOMIC_MOVE);
+                    return 0;
+                } catch (NoSuchFileException ex) {
+                    return 0;
+                }
+            }
+            int conflitos = 0;
+            for (String nome : listarNomes(origem, null)) {
+                Path alvo = destino.resolve(nome);
+                if (Files.exists(alvo)) {
+                    conflitos++;
+                    continue;
+                }
+                Files.move(origem.resolve(nome), alvo, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (conflitos == 0) {
+                Files.deleteIfExists(origem);
+            }
+            return conflitos;
+        } catch (NoSuchFileException ex) {
+            // Pasta ou arquivo removido durante a migracao.
+            return 0;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao migrar pasta de anexos.", ex);
+        }
+    }
+
+    /**
+     * Caminho relativo da pasta distribuida: dois niveis pelo SHA-256 do ID, para espalhar as
+     * pastas de maneira uniforme ({@code ab/cd/<id>}).
+     */
+    private String pastaDistribuida(String pasta) {
+        String hash = HexFormat.of().formatHex(sha256().digest(pasta.getBytes(StandardCharsets.UTF_8)));
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + pasta;
+    }
+
+    /**
+     * Temporarios (uploads em andamento, gravacoes interrompidas), como IDs quando o nome e de
+     * um temporario reservado, ou o caminho para os demais restos.
+     */
+    public List<Path> listTemps() {
+        List<Path> resultado = new ArrayList<>();
+        for (String nome : listarNomes(tempPath, null)) {
+            resultado.add(tempPath.resolve(nome));
+        }
+        return resultado;
+    }
+
+    /**
+     * ID do temporario reservado correspondente ao arquivo, ou {@code null} se o nome nao segue
+     * o formato de {@link #newTempId()}.
+     */
+    public String tempIdOf(Path temp) {
+        String nome = temp.getFileName().toString();
+        if (!nome.matches("[0-9a-f-]{36}" + Pattern.quote(TEMP_SUFFIX))) {
+            return null;
+        }
+        return LOCAL_TEMP_PREFIX + nome.substring(0, 36);
+    }
+
+    /**
+     * Caminho no disco local, sem buscar na camada remota.
+     */
+    public Path localPath(String fileId) {
+        return resolveLocalFile(fileId);
+    }
+
+    /**
+     * Move o arquivo para {@code quarentena/<data>/}, mantendo o caminho relativo a raiz. Nada e
+     * apagado: o conteudo pode ser conferido e restaurado manualmente.
+     */
+    public void quarantine(Path arquivo) {
+        Path origem = arquivo.toAbsolutePath().normalize();
+        ensureWithinRoot(origem);
+        Path destino = localRootPath.resolve(QUARANTINE_DIR)
+                .resolve(LocalDate.now().toString())
+                .resolve(localRootPath.relativize(origem))
+                .normalize();
+        try {
+            Files.createDirectories(destino.getParent());
+            Files.move(origem, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException ex) {
+            // Removido por outra rotina nesse meio tempo.
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao mover arquivo para a quarentena.", ex);
+        }
+    }
+
+    private List<String> listarNomes(Path diretorio, String padrao) {
+        if (!Files.isDirectory(diretorio)) {
+            return List.of();
+        }
+        try (Stream<Path> itens = Files.list(diretorio)) {
+            return itens.map(path -> path.getFileName().toString())
+                    .filter(nome -> padrao == null || nome.matches(padrao))
+                    .sorted()
+                    .toList();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao listar arquivos locais.", ex);
+        }
+    }
+
+    /**
+     * Percorre os blobs do disco local (sem temporarios nem pre-visualizacoes).
+     */
+    public void forEachLocalBlob(Consumer<LocalBlob> consumer) {
+        if (!Files.isDirectory(blobsPath)) {
+            return;
+        }
+        try (Stream<Path> arquivos = Files.walk(blobsPath, 3)) {
+            arquivos.filter(path -> path.getFileName().toString().matches("[0-9a-f]{64}"))
+                    .filter(path -> !path.startsWith(tempPath))
+                    .forEach(path -> {
+                        try {
+                            consumer.accept(new LocalBlob(
+                                    path.getFileName().toString(),
+                                    Files.size(path),
+                                    Files.getLastModifiedTime(path)
+                            ));
+                        } catch (IOException ignored) {
+                            // Removido durante a varredura.
+                        }
+                    });
+        } catch (IOException ex) {
+            throw new IllegalStateException("Falha ao listar blobs locais.", ex);
+        }
+    }
+
+    /**
+     * Tira o blob do disco local. So deve ser chamado para blobs ja replicados: a proxima leitura
+     * busca de novo na camada remota.
+     */
+    public void evictLocal(String sha256) {
+        synchronized (trava(sha256)) {
+            try {
+                local.delete(sha256);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Falha ao remover arquivo local.", ex);
+            }
+        }
+    }
+
     public InputStream downloadFile(String fileId) {
-        Path file = resolveLocalFile(fileId);
+        Path file = garantirLocal(fileId);
         try {
             return Files.newInputStream(file);
         } catch (IOException ex) {
@@ -71,6 +739,81 @@ public class GoogleDriveStorageService {
         }
     }
 
+    public Resource downloadResource(String fileId) {
+        return new FileSystemResource(garantirLocal(fileId));
+    }
+
+    /**
+     * Caminho local do arquivo. Blobs que sairam do cache sao trazidos da camada remota (uma
+     * unica busca por blob, mesmo com leituras concorrentes) e conferidos pelo SHA-256. Leituras
+     * atualizam o mtime, usado como ultimo acesso na expulsao do cache.
+     */
+    private Path garantirLocal(String fileId) {
+        Path file = resolveLocalFile(fileId);
+        if (!isBlobId(fileId)) {
+            return file;
+        }
+        if (Files.isRegularFile(file)) {
+            tocar(file);
+            return file;
+        }
+        if (remoto == null) {
+            return file;
+        }
+        String sha = fileId.substring(LOCAL_BLOB_PREFIX.length());
+        synchronized (trava(sha)) {
+            if (Files.isRegularFile(file)) {
+                return file;
+            }
+            Path temp = tempPath.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+            try {
+                Files.createDirectories(tempPath);
+                if (!remoto.get(sha, temp)) {
+                    log.warn("Blob {} ausente no disco local e em {}.", sha, remoto.nome());
+                    return file;
+                }
+                if (!sha.equals(hashArquivo(temp))) {
+                    throw new IllegalStateException("Blob " + sha + " corrompido na camada remota.");
+                }
+                Files.createDirectories(file.getParent());
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return file;
+            } catch (IOException ex) {
+                throw new IllegalStateException("Falha ao buscar arquivo no armazenamento remoto.", ex);
+            } finally {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    private void tocar(Path file) {
+        try {
+            Instant agora = Instant.now();
+            if (Files.getLastModifiedTime(file).toInstant().isBefore(agora.minus(INTERVALO_TOQUE))) {
+                Files.setLastModifiedTime(file, FileTime.from(agora));
+            }
+        } catch (IOException ignored) {
+            // So afeta a ordem de expulsao do cache.
+        }
+    }
+
+    private String hashArquivo(Path file) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Object trava(String sha256) {
+        return travas[Math.floorMod(sha256.hashCode(), TRAVAS)];
+    }
+
     public void deleteFile(String fileId) {
         Path file = resolveLocalFile(fileId);
         try {
@@ -80,34 +823,79 @@ public class GoogleDriveStorageService {
         }
     }
 
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Temporario sem uso; a limpeza de reservas pendentes tenta de novo.
+        }
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 indisponivel.", ex);
+        }
+    }
+
     private Path resolveLocalFile(String fileId) {
+        if (fileId != null && fileId.startsWith(LOCAL_BLOB_PREFIX)) {
+            String sha = fileId.substring(LOCAL_BLOB_PREFIX.length());
+            if (!sha.matches("[0-9a-f]{64}")) {
+                throw new IllegalStateException("ID de blob local invalido.");
+            }
+            return local.caminho(sha);
+        }
+        if (fileId != null && fileId.startsWith(LOCAL_PREVIEW_PREFIX)) {
+            String preview = fileId.substring(LOCAL_PREVIEW_PREFIX.length());
+            if (!preview.matches("[0-9a-f]{64}-[0-9]{1,5}")) {
+                throw new IllegalStateException("ID de pre-visualizacao invalido.");
+            }
+            String sha = preview.substring(0, 64);
+            return blobsPath.resolve(sha.substring(0, 2)).resolve(sha.substring(2, 4))
+                    .resolve(sha + PREVIEW_INFIX + preview.substring(65) + ".jpg");
+        }
+        if (fileId != null && fileId.startsWith(LOCAL_TEMP_PREFIX)) {
+            String name = fileId.substring(LOCAL_TEMP_PREFIX.length());
+            if (!name.matches("[0-9a-f-]{36}")) {
+                throw new IllegalStateException("ID de arquivo temporario invalido.");
+            }
+            return tempPath.resolve(name + TEMP_SUFFIX);
+        }
         if (!isLocalFileId(fileId)) {
             throw new IllegalStateException("ID de arquivo invalido para armazenamento local.");
         }
 
-        String relative = fileId.substring(LOCAL_FILE_PREFIX.length());
-        if (relative.isBlank()) {
-            throw new IllegalStateException("ID de arquivo local vazio.");
+        Path file = caminhoLegado(fileId);
+        if (Files.exists(file)) {
+            return file;
+        }
+        // Durante a migracao o arquivo pode estar no outro formato.
+        for (String alternativo : legacyFileIds(fileId)) {
+            if (!alternativo.equals(fileId)) {
+                Path caminho = caminhoLegado(alternativo);
+                if (Files.exists(caminho)) {
+                    return caminho;
+                }
+            }
         }
-
-        Path file = localRootPath.resolve(relative).normalize();
-        ensureWithinRoot(file);
         return file;
     }
 
-    private Long parseRequestId(String folderId) {
-        if (folderId == null || !folderId.startsWith(LOCAL_FOLDER_PREFIX)) {
-            throw new IllegalStateException("ID de pasta invalido para armazenamento local.");
-        }
-        String value = folderId.substring(LOCAL_FOLDER_PREFIX.length()).trim();
-        if (value.isBlank()) {
-            throw new IllegalStateException("ID de pasta local vazio.");
+    private Path caminhoLegado(String fileId) {
+        boolean distribuido = fileId.startsWith(LOCAL_FILE_V2_PREFIX);
+        String relative = fileId.substring(distribuido ? LOCAL_FILE_V2_PREFIX.length() : LOCAL_FILE_PREFIX.length());
+        if (relative.isBlank()) {
+            throw new IllegalStateException("ID de arquivo local vazio.");
         }
-        try {
-            return Long.valueOf(value);
-        } catch (NumberFormatException ex) {
-            throw new IllegalStateException("ID de pasta local invalido.", ex);
+        if (distribuido && !relative.matches("[0-9a-f]{2}/[0-9a-f]{2}/[0-9]+/.+")) {
+            throw new IllegalStateException("ID de arquivo local invalido.");
         }
+
+        Path file = (distribuido ? pastasPath : localRootPath).resolve(relative).normalize();
+        ensureWithinRoot(file);
+        return file;
     }
 
     private void ensureWithinRoot(Path path) {
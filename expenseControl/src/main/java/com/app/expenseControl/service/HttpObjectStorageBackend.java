@@ -0,0 +1,103 @@
+package com.app.expenseControl.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+/**
+ * Armazenamento de objetos por HTTP no estilo S3: {@code PUT}, {@code GET} e {@code DELETE} em
+ * {@code <base-url>/<chave>}. Serve para buckets com URL pre-assinada por prefixo, gateways
+ * S3/MinIO com autenticacao por cabecalho ou um servidor HTTP simples.
+ */
+public class HttpObjectStorageBackend implements StorageBackend {
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String authorization;
+    private final Duration timeout;
+
+    /**
+     * @param authorization valor do cabecalho {@code Authorization}, ou vazio para nenhum
+     */
+    public HttpObjectStorageBackend(String baseUrl, String authorization, Duration timeout) {
+        if (baseUrl == null || baseUrl.isBlank()) {
+            throw new IllegalStateException("URL do armazenamento remoto nao configurada.");
+        }
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.authorization = authorization == null ? "" : authorization.trim();
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public String nome() {
+        return "http:" + baseUrl;
+    }
+
+    @Override
+    public void put(String chave, Path arquivo) throws IOException {
+        HttpResponse<Void> response = enviar(
+                requisicao(chave).PUT(HttpRequest.BodyPublishers.ofFile(arquivo)),
+                HttpResponse.BodyHandlers.discarding()
+        );
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("PUT " + chave + " respondeu " + response.statusCode() + ".");
+        }
+    }
+
+    @Override
+    public boolean get(String chave, Path destino) throws IOException {
+        Path parcial = destino.resolveSibling(destino.getFileName() + ".download");
+        try {
+            HttpResponse<Path> response = enviar(
+                    requisicao(chave).GET(),
+                    HttpResponse.BodyHandlers.ofFile(parcial)
+            );
+            if (response.statusCode() == 404) {
+                return false;
+            }
+            if (response.statusCode() / 100 != 2) {
+                throw new IOException("GET " + chave + " respondeu " + response.statusCode() + ".");
+            }
+            Files.move(parcial, destino, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } finally {
+            Files.deleteIfExists(parcial);
+        }
+    }
+
+    @Override
+    public void delete(String chave) throws IOException {
+        HttpResponse<Void> response = enviar(requisicao(chave).DELETE(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 404 && response.statusCode() / 100 != 2) {
+            throw new IOException("DELETE " + chave + " respondeu " + response.statusCode() + ".");
+        }
+    }
+
+    private HttpRequest.Builder requisicao(String chave) {
+        StorageBackend.validarChave(chave);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + "/" + chave)).timeout(timeout);
+        if (!authorization.isEmpty()) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+
+    private <T> HttpResponse<T> enviar(HttpRequest.Builder builder, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            return client.send(builder.build(), handler);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Requisicao ao armazenamento remoto interrompida.", ex);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.entity.IdempotenciaChave;
+import com.app.expenseControl.enums.StatusIdempotencia;
+import com.app.expenseControl.repository.IdempotenciaChaveRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Suporte ao cabecalho {@code Idempotency-Key} nas criacoes sujeitas a retentativa.
+ * A chave e reservada com um insert que respeita a constraint unica (sem lock); a acao e a
+ * conclusao da chave rodam na mesma transacao, e repeticoes devolvem o recurso ja criado.
+ * <p>
+ * Cada reserva tem um token da tentativa e vale ate {@code reservada_ate}, renovado a cada
+ * {@code renew-interval-ms} enquanto a acao roda, por mais que ela demore (uploads grandes).
+ * So uma reserva sem renovacao por {@code lock-seconds} (processo caiu) pode ser assumida por
+ * outra tentativa, e a conclusao exige o token: a tentativa antiga nao conclui a reserva da nova.
+ */
+@Service
+public class IdempotenciaService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAY_HEADER = "Idempotent-Replayed";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+    private static final int MAX_CHAVE = 120;
+
+    private final IdempotenciaChaveRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlHoras;
+    private final long reservaSegundos;
+    // Tokens das reservas em andamento neste processo, renovadas por renovarReservas().
+    private final Set<String> reservasAtivas = ConcurrentHashMap.newKeySet();
+
+    public IdempotenciaService(IdempotenciaChaveRepository repository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.idempotency.ttl-hours:24}") long ttlHoras,
+                               @Value("${app.idempotency.lock-seconds:120}") long reservaSegundos,
+                               @Value("${app.idempotency.renew-interval-ms:30000}") long renovacaoMs) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlHoras = Math.max(1, ttlHoras);
+        // A reserva precisa sobreviver a algumas renovacoes atrasadas (agendador ocupado).
+        this.reservaSegundos = Math.max(Math.max(1, reservaSegundos), 3 * Math.max(1, renovacaoMs / 1000));
+    }
+
+    public record Resultado<T>(T corpo, boolean reproduzido) {}
+
+    /**
+     * Executa {@code acao} uma unica vez por chave e usuario.
+     *
+     * @param requisicao  representacao estavel do pedido; a mesma chave com outro conteudo e rejeitada
+     * @param idDoRecurso extrai o id do recurso criado, guardado para a repeticao
+     * @param reproduzir  recarrega a resposta a partir do id guardado
+     */
+    public <T> Resultado<T> executar(String chave,
+                                     String operacao,
+                                     String requisicao,
+                                     Supplier<T> acao,
+                                     Function<T, Long> idDoRecurso,
+                                     Function<Long, T> reproduzir) {
+        return executar(chave, operacao, requisicao, acao, idDoRecurso, reproduzir, true);
+    }
+
+    /**
+     * Igual a {@link #executar}, mas sem transacao em volta da acao, para acoes que controlam as
+     * proprias transacoes (upload de anexo grava o arquivo sem conexao presa). A chave e concluida
+     * logo depois, em transacao curta; se o processo cair entre as duas etapas, a reserva deixa de
+     * ser renovada e expira pelo lock-seconds.
+     */
+    public <T> Resultado<T> executarSemTransacao(String chave,
+                                                 String operacao,
+                                                 String requisicao,
+                                                 Supplier<T> acao,
+                                                 Function<T, Long> idDoRecurso,
+                                                 Function<Long, T> reproduzir) {
+        return executar(chave, operacao, requisicao, acao, idDoRecurso, reproduzir, false);
+    }
+
+    private <T> Resultado<T> executar(String chave,
+                                      String operacao,
+                                      String requisicao,
+                                      Supplier<T> acao,
+                                      Function<T, Long> idDoRecurso,
+                                      Function<Long, T> reproduzir,
+                                      boolean transacional) {
+        if (chave == null || chave.isBlank()) {
+            return new Resultado<>(acao.get(), false);
+        }
+        String chaveNormalizada = chave.trim();
+        if (chaveNormalizada.length() > MAX_CHAVE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key excede " + MAX_CHAVE + " caracteres.");
+        }
+        String usuario = usuarioAutenticado();
+        String fingerprint = sha256(operacao + "\n" + requisicao);
+        String token = UUID.randomUUID().toString();
+
+        if (!reservar(usuario, chaveNormalizada, operacao, fingerprint, token)) {
+            IdempotenciaChave existente = repository.findByUsuarioAndChave(usuario, chaveNormalizada)
+                    .orElseThrow(() -> new ResponseStatusException(
+                            HttpStatus.CONFLICT,
+                            "Requisicao com esta Idempotency-Key ainda em processamento."
+                    ));
+            if (!operacao.equals(existente.getOperacao()) || !fingerprint.equals(existente.getFingerprint())) {
+                throw new ResponseStatusException(
+                        HttpStatus.UNPROCESSABLE_ENTITY,
+                        "Idempotency-Key ja usada em outra requisicao."
+                );
+            }
+            if (existente.getStatus() != StatusIdempotencia.CONCLUIDA) {
+                throw new ResponseStatusException(
+                        HttpStatus.CONFLICT,
+                        "Requisicao com esta Idempotency-Key ainda em processamento."
+                );
+            }
+            return new Resultado<>(reproduzir.apply(existente.getRecursoId()), true);
+        }
+
+        reservasAtivas.add(token);
+        try {
+            T corpo;
+            if (transacional) {
+                corpo = transactionTemplate.execute(status -> {
+                    T resultado = acao.get();
+                    if (repository.concluir(usuario, chaveNormalizada, token, idDoRecurso.apply(resultado)) == 0) {
+                        // Desfaz a acao: outra tentativa ja assumiu a chave.
+                        throw new ResponseStatusException(
+                                HttpStatus.CONFLICT,
+                                "Requisicao com esta Idempotency-Key foi assumida por outra tentativa."
+                        );
+                    }
+                    return resultado;
+                });
+            } else {
+                corpo = acao.get();
+                Integer concluidas = transactionTemplate.execute(status ->
+                        repository.concluir(usuario, chaveNormalizada, token, idDoRecurso.apply(corpo)));
+                if (concluidas == null || concluidas == 0) {
+                    log.warn("Idempotency-Key {} de {} foi assumida por outra tentativa antes da conclusao.",
+                            chaveNormalizada, usuario);
+                }
+            }
+            return new Resultado<>(corpo, false);
+        } catch (RuntimeException | Error ex) {
+            liberar(usuario, chaveNormalizada, token);
+            throw ex;
+        } finally {
+            reservasAtivas.remove(token);
+        }
+    }
+
+    /**
+     * Estende as reservas das acoes ainda em andamento neste processo.
+     */
+    @Scheduled(
+            initialDelayString = "${app.idempotency.renew-interval-ms:30000}",
+            fixedDelayString = "${app.idempotency.renew-interval-ms:30000}"
+    )
+    public void renovarReservas() {
+        if (reservasAtivas.isEmpty()) {
+            return;
+        }
+        List<String> tokens = List.copyOf(reservasAtivas);
+        LocalDateTime reservadaAte = LocalDateTime.now().plusSeconds(reservaSegundos);
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.renovar(tokens, reservadaAte));
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao renovar {} reserva(s) de Idempotency-Key: {}", tokens.size(), ex.getMessage());
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.idempotency.cleanup-interval-ms:3600000}",
+            fixedDelayString = "${app.idempotency.cleanup-interval-ms:3600000}"
+    )
+    public void limparExpiradas() {
+        Integer removidas = transactionTemplate.execute(status -> repository.removerExpiradas(LocalDateTime.now()));
+        if (removidas != null && removidas > 0) {
+            log.info("Chaves de idempotencia expiradas removidas: {}", removidas);
+        }
+    }
+
+    /**
+     * Tenta reservar a chave; chaves vencidas ou reservas abandonadas (sem renovacao desde
+     * {@code reservada_ate}) sao descartadas e a reserva e tentada mais uma vez.
+     */
+    private boolean reservar(String usuario, String chave, String operacao, String fingerprint, String token) {
+        for (int tentativa = 0; tentativa < 2; tentativa++) {
+            LocalDateTime agora = LocalDateTime.now();
+            Integer inseridas = transactionTemplate.execute(status -> repository.reservar(
+                    usuario, chave, operacao, fingerprint, token,
+                    agora, agora.plusSeconds(reservaSegundos), agora.plusHours(ttlHoras)));
+            if (inseridas != null && inseridas > 0) {
+                return true;
+            }
+            IdempotenciaChave existente = repository.findByUsuarioAndChave(usuario, chave).orElse(null);
+            if (existente == null) {
+                continue;
+            }
+            boolean expirada = existente.getExpiraEm().isBefore(agora);
+            // Linhas anteriores ao reservada_ate contam a reserva a partir da criacao.
+            LocalDateTime fimReserva = existente.getReservadaAte() != null
+                    ? existente.getReservadaAte()
+                    : existente.getCriadoEm().plusSeconds(reservaSegundos);
+            boolean abandonada = existente.getStatus() == StatusIdempotencia.EM_ANDAMENTO && fimReserva.isBefore(agora);
+            if (!expirada && !abandonada) {
+                return false;
+            }
+            transactionTemplate.executeWithoutResult(status -> repository.removerPorId(existente.getId()));
+        }
+        return false;
+    }
+
+    private void liberar(String usuario, String chave, String token) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.liberar(usuario, chave, token));
+        } catch (RuntimeException ex) {
+            // A reserva expira sozinha pelo lock-seconds; so registra.
+            log.warn("Falha ao liberar Idempotency-Key {} de {}: {}", chave, usuario, ex.getMessage());
+        }
+    }
+
+    private String usuarioAutenticado() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Usuario nao autenticado.");
+        }
+        return auth.getName();
+    }
+
+    private String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 indisponivel.", ex);
+        }
+    }
+}
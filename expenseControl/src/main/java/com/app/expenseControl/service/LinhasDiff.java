@@ -0,0 +1,82 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.SolicitacaoLinhaCreateDTO;
+import com.app.expenseControl.entity.SolicitacaoLinha;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Diff das linhas de uma solicitacao no reenvio: linhas identicas sao mantidas, as que mudaram
+ * reaproveitam uma linha existente e so o saldo vira insercao ou remocao. A posicao vai em
+ * {@code ordem}: um reenvio que so reordena os itens altera apenas essa coluna, e um sem mudanca
+ * nenhuma nao altera nada.
+ *
+ * @param linhas    linhas finais, na ordem recebida (existentes alteradas ou nao, e novas)
+ * @param novas     linhas a inserir
+ * @param removidas linhas existentes que sobraram
+ */
+record LinhasDiff(List<SolicitacaoLinha> linhas, List<SolicitacaoLinha> novas, List<SolicitacaoLinha> removidas) {
+
+    static LinhasDiff calcular(Long solicitacaoId,
+                               List<SolicitacaoLinha> existentes,
+                               List<SolicitacaoLinhaCreateDTO> desejadas) {
+        Map<String, Deque<SolicitacaoLinha>> livresPorConteudo = new HashMap<>();
+        for (SolicitacaoLinha existente : existentes) {
+            livresPorConteudo
+                    .computeIfAbsent(chave(existente.getDescricao(), existente.getValor(), existente.getObservacao()),
+                            ignored -> new ArrayDeque<>())
+                    .add(existente);
+        }
+
+        SolicitacaoLinha[] resultado = new SolicitacaoLinha[desejadas.size()];
+        Set<SolicitacaoLinha> mantidas = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < desejadas.size(); i++) {
+            SolicitacaoLinhaCreateDTO linha = desejadas.get(i);
+            Deque<SolicitacaoLinha> iguais = livresPorConteudo.get(
+                    chave(linha.descricao().trim(), linha.valor(), linha.observacao()));
+            if (iguais != null && !iguais.isEmpty()) {
+                resultado[i] = iguais.poll();
+                mantidas.add(resultado[i]);
+            }
+        }
+
+        Deque<SolicitacaoLinha> reaproveitaveis = existentes.stream()
+                .filter(existente -> !mantidas.contains(existente))
+                .collect(Collectors.toCollection(ArrayDeque::new));
+        List<SolicitacaoLinha> novas = new ArrayList<>();
+        for (int i = 0; i < desejadas.size(); i++) {
+            if (resultado[i] != null) {
+                continue;
+            }
+            SolicitacaoLinhaCreateDTO linha = desejadas.get(i);
+            SolicitacaoLinha alvo = reaproveitaveis.poll();
+            if (alvo == null) {
+                alvo = SolicitacaoLinha.builder().solicitacaoId(solicitacaoId).build();
+                novas.add(alvo);
+            }
+            alvo.setDescricao(linha.descricao().trim());
+            alvo.setValor(linha.valor());
+            alvo.setObservacao(linha.observacao());
+            resultado[i] = alvo;
+        }
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i].setOrdem(i);
+        }
+        return new LinhasDiff(List.of(resultado), novas, List.copyOf(reaproveitaveis));
+    }
+
+    private static String chave(String descricao, BigDecimal valor, String observacao) {
+        String valorNormalizado = valor == null ? "" : valor.stripTrailingZeros().toPlainString();
+        return descricao + '\u0000' + valorNormalizado + '\u0000' + (observacao == null ? "" : observacao);
+    }
+}
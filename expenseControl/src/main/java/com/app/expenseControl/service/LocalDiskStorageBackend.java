@@ -0,0 +1,70 @@
+package com.app.expenseControl.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Blobs em um diretorio, distribuidos em dois niveis pelos primeiros caracteres da chave
+ * ({@code ab/cd/abcd...}) para nao concentrar milhares de arquivos em uma pasta. Gravacoes passam
+ * por um temporario no proprio diretorio e terminam em rename atomico.
+ */
+public class LocalDiskStorageBackend implements StorageBackend {
+
+    private static final String TEMP_DIR = ".tmp";
+
+    private final Path raiz;
+
+    public LocalDiskStorageBackend(Path raiz) {
+        this.raiz = raiz.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String nome() {
+        return "disco:" + raiz;
+    }
+
+    public Path raiz() {
+        return raiz;
+    }
+
+    /**
+     * Caminho do blob no disco (o arquivo pode nao existir).
+     */
+    public Path caminho(String chave) {
+        StorageBackend.validarChave(chave);
+        return raiz.resolve(chave.substring(0, 2)).resolve(chave.substring(2, 4)).resolve(chave);
+    }
+
+    @Override
+    public void put(String chave, Path arquivo) throws IOException {
+        Path destino = caminho(chave);
+        Path temp = raiz.resolve(TEMP_DIR).resolve(UUID.randomUUID() + ".part");
+        Files.createDirectories(temp.getParent());
+        Files.createDirectories(destino.getParent());
+        try {
+            Files.copy(arquivo, temp);
+            Files.move(temp, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public boolean get(String chave, Path destino) throws IOException {
+        try {
+            Files.copy(caminho(chave), destino, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String chave) throws IOException {
+        Files.deleteIfExists(caminho(chave));
+    }
+}
@@ -0,0 +1,551 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.OrcamentoConsumoTotaisDTO;
+import com.app.expenseControl.dto.OrcamentoCreateDTO;
+import com.app.expenseControl.dto.OrcamentoUtilizacaoDTO;
+import com.app.expenseControl.entity.Categoria;
+import com.app.expenseControl.entity.Conta;
+import com.app.expenseControl.entity.Orcamento;
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.enums.TipoConta;
+import com.app.expenseControl.repository.CategoriaRepository;
+import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.OrcamentoConsumoRepository;
+import com.app.expenseControl.repository.OrcamentoRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Orcamento mensal por filial e categoria.
+ * Os totais comprometido (PENDENTE/PENDENTE_INFO) e aprovado vivem em {@code orcamento_consumo}
+ * e sao ajustados por delta a cada transicao, de modo que a checagem na submissao e O(1).
+ */
+@Service
+public class OrcamentoService {
+
+    private final OrcamentoRepository orcamentoRepository;
+    private final OrcamentoConsumoRepository consumoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final ContaRepository contaRepository;
+    private final ContaPermissionService permissionService;
+    private final AuditoriaService auditoriaService;
+
+    public OrcamentoService(OrcamentoRepository orcamentoRepository,
+                            OrcamentoConsumoRepository consumoRepository,
+                            CategoriaRepository categoriaRepository,
+                            ContaRepository contaRepository,
+                            ContaPermissionService permissionService,
+                            AuditoriaService auditoriaService) {
+        this.orcamentoRepository = orcamentoRepository;
+        this.consumoRepository = consumoRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.contaRepository = contaRepository;
+        this.permissionService = permissionService;
+        this.auditoriaService = auditoriaService;
+    }
+
+    /**
+     * Contribuicao de uma solicitacao para os contadores, capturada antes de altera-la.
+     */
+    public record Consumo(String filialKey,
+                          Long categoriaId,
+                          String competencia,
+                          BigDecimal comprometido,
+                          BigDecimal aprovado) {
+
+        BigDecimal total() {
+            return comprometido.add(aprovado);
+        }
+
+        boolean mesmaChave(Consumo other) {
+            return filialKey.equals(other.filialKey)
+                    && categoriaId.equals(other.categoriaId)
+                    && competencia.equals(other.competencia);
+        }
+    }
+
+    public Consumo consumoDe(Solicitacao solicitacao) {
+        if (solicitacao == null || solicitacao.getCategoria() == null || solicitacao.getStatus() == null) {
+            return null;
+        }
+        BigDecimal comprometido = BigDecimal.ZERO;
+        BigDecimal aprovado = BigDecimal.ZERO;
+        StatusSolicitacao status = solicitacao.getStatus();
+        if (status == StatusSolicitacao.PENDENTE || status == StatusSolicitacao.PENDENTE_INFO) {
+            comprometido = valorOuZero(solicitacao.getValorEstimado());
+        } else if (status == StatusSolicitacao.APROVADO) {
+            aprovado = valorOuZero(solicitacao.getValorAprovado() != null
+                    ? solicitacao.getValorAprovado()
+                    : solicitacao.getValorEstimado());
+        }
+        LocalDateTime base = solicitacao.getCriadoEm() != null ? solicitacao.getCriadoEm() : LocalDateTime.now();
+        return new Consumo(
+                permissionService.normalizedKey(solicitacao.getFilial()),
+                solicitacao.getCategoria().getId(),
+                YearMonth.from(base).toString(),
+                comprometido,
+                aprovado
+        );
+    }
+
+    /**
+     * Aplica a diferenca entre o estado anterior e o atual nos contadores.
+     * Quando o total da chave aumenta e passa do limite, bloqueia (se configurado) ou registra alerta.
+     * Deve rodar dentro da transacao que persiste a solicitacao, para que um bloqueio desfaca tudo.
+     */
+    @Transactional
+    public void registrarTransicao(Consumo antes, Solicitacao depois) {
+        registrarTransicao(antes, consumoDe(depois), depois, true);
+    }
+
+    /**
+     * Igual a {@link #registrarTransicao(Consumo, Solicitacao)}, mas nunca bloqueia: apenas sinaliza excesso.
+     * Usado por fluxos em lote e automaticos, onde um item nao deve derrubar os demais.
+     */
+    @Transactional
+    public void registrarTransicaoSemBloqueio(Consumo antes, Solicitacao depois) {
+        registrarTransicao(antes, consumoDe(depois), depois, false);
+    }
+
+    /**
+     * Versao em lote de {@link #registrarTransicaoSemBloqueio(Consumo, Solicitacao)}: soma os deltas
+     * por filial/categoria/competencia e aplica um upsert por chave, nao um por solicitacao.
+     */
+    @Transactional
+    public void registrarTransicoesSemBloqueio(Map<Solicitacao, Consumo> anteriores) {
+        Map<String, Acumulado> porChave = new LinkedHashMap<>();
+        anteriores.forEach((depois, antes) -> {
+            if (antes != null) {
+                acumularDelta(porChave, antes, antes.comprometido().negate(), antes.aprovado().negate(), null);
+            }
+            Consumo atual = consumoDe(depois);
+            if (atual != null) {
+                acumularDelta(porChave, atual, atual.comprometido(), atual.aprovado(), depois);
+            }
+        });
+        for (Acumulado item : porChave.values()) {
+            if (item.comprometido.signum() == 0 && item.aprovado.signum() == 0) {
+                continue;
+            }
+            acumular(item.chave, item.comprometido, item.aprovado);
+            if (item.comprometido.add(item.aprovado).signum() > 0) {
+                verificarLimite(item.chave, item.solicitacao, false);
+            }
+        }
+    }
+
+    /**
+     * Transicao ainda nao gravada: {@code depois} e o consumo que a solicitacao tera;
+     * {@code antes} e {@code null} quando ela ainda nao existe (importacao).
+     */
+    public record Transicao(Consumo antes, Consumo depois) {}
+
+    /**
+     * Checagem de bloqueio item a item para decisoes em lote e importacoes, antes de gravar:
+     * devolve, por posicao, a mesma mensagem do 409 de {@link #registrarTransicao(Consumo, Solicitacao)}
+     * ou {@code null}. Reducoes do lote entram primeiro; aumentos somam na ordem e um item bloqueado
+     * nao conta para os seguintes. As linhas de consumo das chaves bloqueantes ficam travadas ate
+     * o commit, como no fluxo unitario.
+     */
+    @Transactional
+    public List<String> bloqueiosEmLote(List<Transicao> transicoes) {
+        Map<String, Orcamento> bloqueantes = new HashMap<>();
+        Map<String, BigDecimal> utilizados = new HashMap<>();
+        for (Transicao transicao : transicoes) {
+            BigDecimal delta = deltaNaChave(transicao);
+            if (delta != null && delta.signum() < 0) {
+                String chave = chaveCompleta(transicao.depois());
+                if (orcamentoBloqueante(transicao.depois(), chave, bloqueantes) != null) {
+                    utilizados.put(chave, utilizado(transicao.depois(), chave, utilizados).add(delta));
+                }
+            }
+        }
+
+        List<String> bloqueios = new ArrayList<>(transicoes.size());
+        for (Transicao transicao : transicoes) {
+            BigDecimal delta = deltaNaChave(transicao);
+            String motivo = null;
+            if (delta != null && delta.signum() > 0) {
+                Consumo depois = transicao.depois();
+                String chave = chaveCompleta(depois);
+                Orcamento orcamento = orcamentoBloqueante(depois, chave, bloqueantes);
+                if (orcamento != null) {
+                    BigDecimal utilizado = utilizado(depois, chave, utilizados).add(delta);
+                    if (utilizado.compareTo(orcamento.getValorLimite()) > 0) {
+                        motivo = "Orcamento de " + orcamento.getFilial() + " / " + orcamento.getCategoria().getNome()
+                                + " em " + depois.competencia() + " excedido: utilizado " + utilizado
+                                + " de " + orcamento.getValorLimite() + ".";
+                    } else {
+                        utilizados.put(chave, utilizado);
+                    }
+                }
+            }
+            bloqueios.add(motivo);
+        }
+        return bloqueios;
+    }
+
+    @Transactional
+    public void registrarExclusao(Consumo antes) {
+        registrarTransicao(antes, null, null, false);
+    }
+
+    private void registrarTransicao(Consumo antes, Consumo depois, Solicitacao solicitacao, boolean podeBloquear) {
+        if (antes != null && depois != null && antes.mesmaChave(depois)) {
+            BigDecimal deltaComprometido = depois.comprometido().subtract(antes.comprometido());
+            BigDecimal deltaAprovado = depois.aprovado().subtract(antes.aprovado());
+            if (deltaComprometido.signum() == 0 && deltaAprovado.signum() == 0) {
+                return;
+            }
+            acumular(depois, deltaComprometido, deltaAprovado);
+            if (depois.total().compareTo(antes.total()) > 0) {
+                verificarLimite(depois, solicitacao, podeBloquear);
+            }
+            return;
+        }
+
+        if (antes != null && antes.total().signum() != 0) {
+            acumular(antes, antes.comprometido().negate(), antes.aprovado().negate());
+        }
+        if (depois != null && depois.total().signum() != 0) {
+            acumular(depois, depois.comprometido(), depois.aprovado());
+            verificarLimite(depois, solicitacao, podeBloquear);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<OrcamentoUtilizacaoDTO> utilizacao(String competenciaParam) {
+        Conta conta = getContaLogada();
+        ensureAdmin(conta);
+        String competencia = parseCompetencia(competenciaParam);
+
+        List<Orcamento> orcamentos;
+        List<OrcamentoConsumoTotaisDTO> consumos;
+        if (permissionService.isRootAdmin(conta)) {
+            orcamentos = orcamentoRepository.findByCompetencia(competencia);
+            consumos = consumoRepository.totaisPorCompetencia(competencia);
+        } else {
+            Set<String> filiais = permissionService.visibleFilialKeys(conta);
+            if (filiais.isEmpty()) {
+                return List.of();
+            }
+            orcamentos = orcamentoRepository.findByCompetenciaAndFilialKeyIn(competencia, filiais);
+            consumos = consumoRepository.totaisPorCompetenciaAndFiliais(competencia, filiais);
+        }
+
+        Map<String, Orcamento> orcamentoPorChave = orcamentos.stream()
+                .collect(Collectors.toMap(
+                        o -> chave(o.getFilialKey(), o.getCategoria().getId()),
+                        Function.identity(),
+                        (a, b) -> a,
+                        LinkedHashMap::new
+                ));
+        Map<String, OrcamentoConsumoTotaisDTO> consumoPorChave = consumos.stream()
+                .collect(Collectors.toMap(
+                        c -> chave(c.filialKey(), c.categoriaId()),
+                        Function.identity(),
+                        (a, b) -> a,
+                        LinkedHashMap::new
+                ));
+        Map<Long, String> nomesCategoria = categoriaRepository.findAll().stream()
+                .collect(Collectors.toMap(Categoria::getId, Categoria::getNome));
+
+        List<OrcamentoUtilizacaoDTO> itens = new ArrayList<>();
+        for (Orcamento orcamento : orcamentoPorChave.values()) {
+            OrcamentoConsumoTotaisDTO consumo = consumoPorChave.remove(
+                    chave(orcamento.getFilialKey(), orcamento.getCategoria().getId())
+            );
+            itens.add(toUtilizacao(
+                    orcamento.getFilial(),
+                    orcamento.getCategoria().getId(),
+                    orcamento.getCategoria().getNome(),
+                    competencia,
+                    orcamento.getValorLimite(),
+                    orcamento.isBloquearExcesso(),
+                    consumo
+            ));
+        }
+        for (OrcamentoConsumoTotaisDTO consumo : consumoPorChave.values()) {
+            itens.add(toUtilizacao(
+                    consumo.filialKey(),
+                    consumo.categoriaId(),
+                    nomesCategoria.get(consumo.categoriaId()),
+                    competencia,
+                    null,
+                    false,
+                    consumo
+            ));
+        }
+        itens.sort(Comparator.comparing(OrcamentoUtilizacaoDTO::filial, String.CASE_INSENSITIVE_ORDER)
+                .thenComparing(item -> item.categoriaNome() == null ? "" : item.categoriaNome(),
+                        String.CASE_INSENSITIVE_ORDER));
+        return itens;
+    }
+
+    @Transactional
+    public OrcamentoUtilizacaoDTO definir(OrcamentoCreateDTO dto) {
+        Conta conta = getContaLogada();
+        ensureRootAdmin(conta);
+
+        String competencia = parseCompetencia(dto.competencia());
+        String filial = dto.filial().trim();
+        String filialKey = permissionService.normalizedKey(filial);
+        Categoria categoria = categoriaRepository.findById(dto.categoriaId())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Categoria nao encontrada."));
+
+        Orcamento orcamento = orcamentoRepository
+                .findByFilialKeyAndCategoriaIdAndCompetencia(filialKey, categoria.getId(), competencia)
+                .orElseGet(() -> Orcamento.builder()
+                        .filialKey(filialKey)
+                        .categoria(categoria)
+                        .competencia(competencia)
+                        .build());
+        orcamento.setFilial(filial);
+        orcamento.setValorLimite(dto.valorLimite());
+        orcamento.setBloquearExcesso(Boolean.TRUE.equals(dto.bloquearExcesso()));
+        Orcamento salvo = orcamentoRepository.save(orcamento);
+
+        auditoriaService.registrar(
+                "ORCAMENTO_DEFINIDO",
+                "Orcamento de " + filial + " / " + categoria.getNome() + " em " + competencia
+                        + " definido em " + salvo.getValorLimite() + ".",
+                "ORCAMENTO",
+                String.valueOf(salvo.getId())
+        );
+
+        OrcamentoConsumoTotaisDTO consumo = consumoRepository
+                .totais(filialKey, categoria.getId(), competencia)
+                .orElse(null);
+        return toUtilizacao(
+                salvo.getFilial(),
+                categoria.getId(),
+                categoria.getNome(),
+                competencia,
+                salvo.getValorLimite(),
+                salvo.isBloquearExcesso(),
+                consumo
+        );
+    }
+
+    /**
+     * Reconstroi os contadores a partir de {@code solicitacoes}, para reparar divergencias (a
+     * primeira carga e feita na migracao); o fluxo normal nunca re-soma a tabela. A tabela fica
+     * travada ate o commit, para que transicoes concorrentes esperem o recalculo.
+     */
+    @Transactional
+    public int recalcular() {
+        Conta conta = getContaLogada();
+        ensureRootAdmin(conta);
+
+        consumoRepository.travar();
+        consumoRepository.limpar();
+        int linhas = consumoRepository.recalcularTudo();
+        auditoriaService.registrar(
+                "ORCAMENTO_RECALCULADO",
+                "Contadores de orcamento recalculados (" + linhas + " combinacoes).",
+                "ORCAMENTO",
+                null
+        );
+        return linhas;
+    }
+
+    private void acumularDelta(Map<String, Acumulado> porChave,
+                               Consumo consumo,
+                               BigDecimal comprometido,
+                               BigDecimal aprovado,
+                               Solicitacao solicitacao) {
+        String chave = chave(consumo.filialKey(), consumo.categoriaId()) + "|" + consumo.competencia();
+        Acumulado item = porChave.computeIfAbsent(chave, ignored -> new Acumulado(consumo));
+        item.comprometido = item.comprometido.add(comprometido);
+        item.aprovado = item.aprovado.add(aprovado);
+        if (solicitacao != null) {
+            item.solicitacao = solicitacao;
+        }
+    }
+
+    /**
+     * Variacao do total na chave de destino: o total inteiro para uma solicitacao nova, a
+     * diferenca quando fica na mesma chave; {@code null} se muda de chave ou nao ha consumo.
+     */
+    private BigDecimal deltaNaChave(Transicao transicao) {
+        Consumo antes = transicao.antes();
+        Consumo depois = transicao.depois();
+        if (depois == null) {
+            return null;
+        }
+        if (antes == null) {
+            return depois.total();
+        }
+        if (!antes.mesmaChave(depois)) {
+            return null;
+        }
+        return depois.total().subtract(antes.total());
+    }
+
+    private String chaveCompleta(Consumo consumo) {
+        return chave(consumo.filialKey(), consumo.categoriaId()) + "|" + consumo.competencia();
+    }
+
+    private Orcamento orcamentoBloqueante(Consumo consumo, String chave, Map<String, Orcamento> cache) {
+        if (!cache.containsKey(chave)) {
+            Orcamento orcamento = orcamentoRepository
+                    .findByFilialKeyAndCategoriaIdAndCompetencia(consumo.filialKey(), consumo.categoriaId(), consumo.competencia())
+                    .filter(Orcamento::isBloquearExcesso)
+                    .orElse(null);
+            cache.put(chave, orcamento);
+        }
+        return cache.get(chave);
+    }
+
+    private BigDecimal utilizado(Consumo consumo, String chave, Map<String, BigDecimal> cache) {
+        BigDecimal atual = cache.get(chave);
+        if (atual == null) {
+            // Upsert com delta zero: trava a linha do contador, como o acumular do fluxo unitario.
+            acumular(consumo, BigDecimal.ZERO, BigDecimal.ZERO);
+            atual = consumoRepository.totais(consumo.filialKey(), consumo.categoriaId(), consumo.competencia())
+                    .map(totais -> valorOuZero(totais.valorComprometido()).add(valorOuZero(totais.valorAprovado())))
+                    .orElse(BigDecimal.ZERO);
+            cache.put(chave, atual);
+        }
+        return atual;
+    }
+
+    private static final class Acumulado {
+        private final Consumo chave;
+        private BigDecimal comprometido = BigDecimal.ZERO;
+        private BigDecimal aprovado = BigDecimal.ZERO;
+        private Solicitacao solicitacao;
+
+        private Acumulado(Consumo chave) {
+            this.chave = chave;
+        }
+    }
+
+    private void acumular(Consumo chave, BigDecimal comprometido, BigDecimal aprovado) {
+        consumoRepository.acumular(chave.filialKey(), chave.categoriaId(), chave.competencia(), comprometido, aprovado);
+    }
+
+    private void verificarLimite(Consumo chave, Solicitacao solicitacao, boolean podeBloquear) {
+        Orcamento orcamento = orcamentoRepository
+                .findByFilialKeyAndCategoriaIdAndCompetencia(chave.filialKey(), chave.categoriaId(), chave.competencia())
+                .orElse(null);
+        if (orcamento == null) {
+            return;
+        }
+        OrcamentoConsumoTotaisDTO totais = consumoRepository
+                .totais(chave.filialKey(), chave.categoriaId(), chave.competencia())
+                .orElse(null);
+        if (totais == null) {
+            return;
+        }
+        BigDecimal utilizado = totais.valorComprometido().add(totais.valorAprovado());
+        if (utilizado.compareTo(orcamento.getValorLimite()) <= 0) {
+            return;
+        }
+
+        String referencia = solicitacao == null || solicitacao.getId() == null ? null : String.valueOf(solicitacao.getId());
+        String detalhe = "Orcamento de " + orcamento.getFilial() + " / " + orcamento.getCategoria().getNome()
+                + " em " + chave.competencia() + " excedido: utilizado " + utilizado
+                + " de " + orcamento.getValorLimite() + ".";
+        if (podeBloquear && orcamento.isBloquearExcesso()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, detalhe);
+        }
+        auditoriaService.registrar("ORCAMENTO_EXCEDIDO", detalhe, "SOLICITACAO", referencia);
+    }
+
+    private OrcamentoUtilizacaoDTO toUtilizacao(String filial,
+                                                Long categoriaId,
+                                                String categoriaNome,
+                                                String competencia,
+                                                BigDecimal limite,
+                                                boolean bloquear,
+                                                OrcamentoConsumoTotaisDTO consumo) {
+        BigDecimal comprometido = consumo == null ? BigDecimal.ZERO : valorOuZero(consumo.valorComprometido());
+        BigDecimal aprovado = consumo == null ? BigDecimal.ZERO : valorOuZero(consumo.valorAprovado());
+        BigDecimal utilizado = comprometido.add(aprovado);
+        BigDecimal disponivel = limite == null ? null : limite.subtract(utilizado);
+        BigDecimal percentual = null;
+        if (limite != null && limite.signum() > 0) {
+            percentual = utilizado.multiply(BigDecimal.valueOf(100)).divide(limite, 2, RoundingMode.HALF_UP);
+        }
+        boolean excedido = limite != null && utilizado.compareTo(limite) > 0;
+        return new OrcamentoUtilizacaoDTO(
+                filial,
+                categoriaId,
+                categoriaNome,
+                competencia,
+                limite,
+                comprometido,
+                aprovado,
+                disponivel,
+                percentual,
+                bloquear,
+                excedido
+        );
+    }
+
+    private String parseCompetencia(String value) {
+        if (value == null || value.isBlank()) {
+            return YearMonth.now().toString();
+        }
+        try {
+            return YearMonth.parse(value.trim()).toString();
+        } catch (DateTimeParseException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Competencia invalida. Use o formato AAAA-MM.");
+        }
+    }
+
+    private String chave(String filialKey, Long categoriaId) {
+        return filialKey + "|" + categoriaId;
+    }
+
+    private BigDecimal valorOuZero(BigDecimal value) {
+        return value == null ? BigDecimal.ZERO : value;
+    }
+
+    private void ensureAdmin(Conta conta) {
+        if (conta.getTipo() != TipoConta.ADMIN) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Apenas ADMIN pode acessar este recurso.");
+        }
+    }
+
+    private void ensureRootAdmin(Conta conta) {
+        if (!permissionService.isRootAdmin(conta)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Apenas o usuario admin pode gerenciar orcamentos.");
+        }
+    }
+
+    private Conta getContaLogada() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Usuario nao autenticado.");
+        }
+
+        String usuario = auth.getName();
+        return contaRepository.findByUsuario(usuario)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.UNAUTHORIZED,
+                        "Conta autenticada nao encontrada no banco."
+                ));
+    }
+}
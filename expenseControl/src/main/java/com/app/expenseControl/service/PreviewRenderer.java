@@ -0,0 +1,378 @@
+package com.app.expenseControl.service;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Decodificacao e codificacao de imagens para pre-visualizacoes e normalizacao de uploads. Imagens
+ * sao lidas com subamostragem, entao a memoria usada depende do tamanho pedido e nao da resolucao
+ * do original. A orientacao EXIF e aplicada nos pixels, ja que os metadados nao sao copiados.
+ */
+final class PreviewRenderer {
+
+    private static final byte[] PNG_ASSINATURA = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Set<String> PNG_CHUNKS_MANTIDOS = Set.of(
+            "IHDR", "PLTE", "IDAT", "IEND", "tRNS", "gAMA", "cHRM", "sRGB", "iCCP", "sBIT", "pHYs",
+            "acTL", "fcTL", "fdAT"
+    );
+
+    private PreviewRenderer() {
+    }
+
+    /**
+     * Le a imagem ja reduzida para algo entre {@code tamanho} e o dobro disso no lado maior.
+     * Metadados (EXIF, perfis) sao ignorados na leitura.
+     */
+    static BufferedImage imagem(File origem, int tamanho) throws IOException {
+        return ler(origem, tamanho, false);
+    }
+
+    /**
+     * Le a imagem com no maximo {@code limite} pixels no lado maior (subamostragem arredondada
+     * para cima). Menos nitida que {@link #imagem}, mas com memoria limitada pelo proprio limite.
+     */
+    static BufferedImage imagemAte(File origem, int limite) throws IOException {
+        return ler(origem, limite, true);
+    }
+
+    static int maiorLado(File origem) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(origem)) {
+            ImageReader reader = leitor(in);
+            try {
+                reader.setInput(in, true, true);
+                return Math.max(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage ler(File origem, int tamanho, boolean limitar) throws IOException {
+        BufferedImage imagem;
+        try (ImageInputStream in = ImageIO.createImageInputStream(origem)) {
+            ImageReader reader = leitor(in);
+            try {
+                reader.setInput(in, true, true);
+                int maior = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int alvo = Math.max(1, tamanho);
+                int passo = Math.max(1, limitar ? (maior + alvo - 1) / alvo : maior / alvo);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(passo, passo, 0, 0);
+                imagem = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+        return orientar(imagem, orientacaoExif(origem));
+    }
+
+    private static ImageReader leitor(ImageInputStream in) throws IOException {
+        if (in == null) {
+            throw new IOException("Imagem ilegivel.");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("Formato de imagem sem leitor disponivel.");
+        }
+        return readers.next();
+    }
+
+    /**
+     * Rasteriza a primeira pagina do PDF com o lado maior em {@code tamanho} pixels.
+     */
+    static BufferedImage primeiraPaginaPdf(File origem, int tamanho) throws IOException {
+        try (PDDocument documento = Loader.loadPDF(origem)) {
+            if (documento.getNumberOfPages() == 0) {
+                throw new IOException("PDF sem paginas.");
+            }
+            PDRectangle caixa = documento.getPage(0).getCropBox();
+            float escala = tamanho / Math.max(caixa.getWidth(), caixa.getHeight());
+            return new PDFRenderer(documento).renderImage(0, escala, ImageType.RGB);
+        }
+    }
+
+    /**
+     * Reduz para no maximo {@code tamanho} no lado maior, em etapas de metade para evitar
+     * serrilhado. O resultado e RGB opaco (transparencia vira fundo branco), pronto para JPEG.
+     */
+    static BufferedImage reduzir(BufferedImage origem, int tamanho) {
+        return reduzir(origem, tamanho, false);
+    }
+
+    /**
+     * Igual a {@link #reduzir(BufferedImage, int)}; com {@code alfa}, o resultado e ARGB e mantem a
+     * transparencia (PNG).
+     */
+    static BufferedImage reduzir(BufferedImage origem, int tamanho, boolean alfa) {
+        BufferedImage atual = origem;
+        int largura = origem.getWidth();
+        int altura = origem.getHeight();
+        do {
+            int maior = Math.max(largura, altura);
+            if (maior / 2 >= tamanho) {
+                largura = Math.max(1, largura / 2);
+                altura = Math.max(1, altura / 2);
+            } else if (maior > tamanho) {
+                double fator = (double) tamanho / maior;
+                largura = Math.max(1, (int) Math.round(largura * fator));
+                altura = Math.max(1, (int) Math.round(altura * fator));
+            }
+            atual = redimensionar(atual, largura, altura, alfa);
+        } while (Math.max(largura, altura) > tamanho);
+        return atual;
+    }
+
+    static byte[] jpeg(BufferedImage imagem, float qualidade) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        jpeg(imagem, qualidade, bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Codifica em JPEG direto no destino, sem metadados.
+     */
+    static void jpeg(BufferedImage imagem, float qualidade, OutputStream destino) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("Codificador JPEG indisponivel.");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(destino)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(qualidade);
+            writer.write(null, new IIOImage(imagem, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    static void png(BufferedImage imagem, OutputStream destino) throws IOException {
+        if (!ImageIO.write(imagem, "png", destino)) {
+            throw new IOException("Codificador PNG indisponivel.");
+        }
+    }
+
+    /**
+     * Copia o JPEG sem recodificar os pixels, descartando EXIF, XMP, IPTC e comentarios (APP1,
+     * APP3 a APP13, APP15 e COM). Ficam JFIF, o perfil de cor (APP2) e o Adobe (APP14), que
+     * mudam a leitura das cores.
+     */
+    static void jpegSemMetadados(File origem, OutputStream destino) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(origem.toPath())))) {
+            DataOutputStream out = new DataOutputStream(destino);
+            if (in.readUnsignedShort() != 0xFFD8) {
+                throw new IOException("JPEG invalido.");
+            }
+            out.writeShort(0xFFD8);
+            while (true) {
+                int marcador = in.readUnsignedShort();
+                if ((marcador & 0xFF00) != 0xFF00) {
+                    throw new IOException("JPEG invalido.");
+                }
+                if (marcador == 0xFFDA) {
+                    // Inicio dos dados da imagem: o restante segue como esta.
+                    out.writeShort(marcador);
+                    in.transferTo(out);
+                    out.flush();
+                    return;
+                }
+                int tamanho = in.readUnsignedShort();
+                if (tamanho < 2) {
+                    throw new IOException("JPEG invalido.");
+                }
+                boolean metadado = marcador == 0xFFFE
+                        || (marcador >= 0xFFE1 && marcador <= 0xFFEF && marcador != 0xFFE2 && marcador != 0xFFEE);
+                if (metadado) {
+                    in.skipNBytes(tamanho - 2);
+                    continue;
+                }
+                out.writeShort(marcador);
+                out.writeShort(tamanho);
+                copiar(in, out, tamanho - 2);
+            }
+        }
+    }
+
+    /**
+     * Copia o PNG so com os chunks que afetam a imagem; textos, EXIF e datas (tEXt, zTXt, iTXt,
+     * eXIf, tIME e chunks privados) sao descartados.
+     */
+    static void pngSemMetadados(File origem, OutputStream destino) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(origem.toPath())))) {
+            DataOutputStream out = new DataOutputStream(destino);
+            byte[] assinatura = in.readNBytes(PNG_ASSINATURA.length);
+            if (!Arrays.equals(assinatura, PNG_ASSINATURA)) {
+                throw new IOException("PNG invalido.");
+            }
+            out.write(assinatura);
+            while (true) {
+                int tamanho = in.readInt();
+                if (tamanho < 0) {
+                    throw new IOException("PNG invalido.");
+                }
+                byte[] tipo = new byte[4];
+                in.readFully(tipo);
+                String nome = new String(tipo, StandardCharsets.US_ASCII);
+                if (!PNG_CHUNKS_MANTIDOS.contains(nome)) {
+                    // Dados e CRC.
+                    in.skipNBytes(tamanho + 4L);
+                    continue;
+                }
+                out.writeInt(tamanho);
+                out.write(tipo);
+                copiar(in, out, tamanho + 4L);
+                if ("IEND".equals(nome)) {
+                    out.flush();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void copiar(DataInputStream in, OutputStream out, long bytes) throws IOException {
+        byte[] buffer = new byte[8192];
+        long restantes = bytes;
+        while (restantes > 0) {
+            int lidos = in.read(buffer, 0, (int) Math.min(buffer.length, restantes));
+            if (lidos < 0) {
+                throw new IOException("Arquivo truncado.");
+            }
+            out.write(buffer, 0, lidos);
+            restantes -= lidos;
+        }
+    }
+
+    /**
+     * Orientacao EXIF (1 a 8) de um JPEG, lida dos segmentos APP1 do cabecalho; 1 se ausente.
+     */
+    static int orientacaoExif(File origem) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(origem.toPath())))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marcador = in.readUnsignedShort();
+                if ((marcador & 0xFF00) != 0xFF00 || marcador == 0xFFDA) {
+                    // Inicio dos dados da imagem: nao ha mais cabecalhos.
+                    return 1;
+                }
+                int tamanho = in.readUnsignedShort() - 2;
+                if (marcador == 0xFFE1 && tamanho > 14) {
+                    byte[] dados = new byte[tamanho];
+                    in.readFully(dados);
+                    Integer orientacao = orientacaoTiff(dados);
+                    if (orientacao != null) {
+                        return orientacao;
+                    }
+                } else {
+                    in.skipNBytes(Math.max(0, tamanho));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            return 1;
+        }
+    }
+
+    /**
+     * Procura a tag Orientation (0x0112) no IFD0 de um segmento Exif; {@code null} se o segmento
+     * nao for Exif (ex.: XMP, que tambem usa APP1).
+     */
+    private static Integer orientacaoTiff(byte[] dados) {
+        if (dados[0] != 'E' || dados[1] != 'x' || dados[2] != 'i' || dados[3] != 'f' || dados[4] != 0 || dados[5] != 0) {
+            return null;
+        }
+        ByteBuffer tiff = ByteBuffer.wrap(dados, 6, dados.length - 6).slice();
+        tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int ifd = tiff.getInt(4);
+        int entradas = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entradas; i++) {
+            int posicao = ifd + 2 + i * 12;
+            if ((tiff.getShort(posicao) & 0xFFFF) == 0x0112) {
+                int valor = tiff.getShort(posicao + 8) & 0xFFFF;
+                return valor >= 1 && valor <= 8 ? valor : 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Aplica a orientacao EXIF aos pixels (espelhamentos e rotacoes de 90 graus).
+     */
+    static BufferedImage orientar(BufferedImage imagem, int orientacao) {
+        if (orientacao <= 1 || orientacao > 8) {
+            return imagem;
+        }
+        int w = imagem.getWidth();
+        int h = imagem.getHeight();
+        // Matrizes na ordem do construtor: m00, m10, m01, m11, m02, m12.
+        AffineTransform transformacao = switch (orientacao) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);
+        };
+        boolean girada = orientacao >= 5;
+        BufferedImage destino = new BufferedImage(girada ? h : w, girada ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, destino.getWidth(), destino.getHeight());
+            g.drawImage(imagem, transformacao, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+
+    private static BufferedImage redimensionar(BufferedImage origem, int largura, int altura, boolean alfa) {
+        BufferedImage destino = new BufferedImage(largura, altura, alfa ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = destino.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            if (!alfa) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, largura, altura);
+            }
+            g.drawImage(origem, 0, 0, largura, altura, null);
+        } finally {
+            g.dispose();
+        }
+        return destino;
+    }
+}
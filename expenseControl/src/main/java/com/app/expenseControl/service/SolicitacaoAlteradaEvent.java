@@ -0,0 +1,8 @@
+package com.app.expenseControl.service;
+
+/**
+ * Publicado sempre que uma solicitacao e criada, muda de status ou e excluida.
+ * Consumidores que dependem de agregados por filial (ex.: cache de estatisticas)
+ * escutam apos o commit para invalidar apenas o que foi afetado.
+ */
+public record SolicitacaoAlteradaEvent(Long solicitacaoId, String filial) {}
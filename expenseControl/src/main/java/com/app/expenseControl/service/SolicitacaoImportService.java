@@ -0,0 +1,467 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.SolicitacaoCreateDTO;
+import com.app.expenseControl.dto.SolicitacaoImportErroDTO;
+import com.app.expenseControl.dto.SolicitacaoImportResultadoDTO;
+import com.app.expenseControl.dto.SolicitacaoLinhaCreateDTO;
+import com.app.expenseControl.entity.Categoria;
+import com.app.expenseControl.entity.Conta;
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.entity.SolicitacaoHistorico;
+import com.app.expenseControl.entity.SolicitacaoLinha;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.enums.TipoConta;
+import com.app.expenseControl.repository.CategoriaRepository;
+import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.SolicitacaoHistoricoRepository;
+import com.app.expenseControl.repository.SolicitacaoLinhaRepository;
+import com.app.expenseControl.repository.SolicitacaoRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Importacao de solicitacoes via CSV para filiais que migram de planilhas.
+ * O arquivo e lido registro a registro e gravado em lotes de tamanho fixo, cada lote em
+ * sua propria transacao: a memoria fica limitada ao lote e a conexao so e ocupada na gravacao.
+ */
+@Service
+public class SolicitacaoImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(SolicitacaoImportService.class);
+    private static final String ACAO_IMPORTADA = "IMPORTADA";
+    private static final int MAX_CAMPO = 4000;
+    private static final int MAX_ERROS = 500;
+    private static final DateTimeFormatter DATA_BR = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private static final Set<String> COLUNAS_OBRIGATORIAS = Set.of(
+            "categoria", "titulo", "solicitante", "descricao", "onde_vai_ser_usado", "valor_estimado"
+    );
+    private static final Map<String, String> ALIASES = Map.of(
+            "solicitante_nome", "solicitante",
+            "categoria_id", "categoria",
+            "valor", "valor_estimado",
+            "data_envio", "data"
+    );
+
+    private final SolicitacaoRepository solicitacaoRepository;
+    private final SolicitacaoLinhaRepository solicitacaoLinhaRepository;
+    private final SolicitacaoHistoricoRepository solicitacaoHistoricoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final ContaRepository contaRepository;
+    private final OrcamentoService orcamentoService;
+    private final AuditoriaService auditoriaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanhoLote;
+
+    public SolicitacaoImportService(SolicitacaoRepository solicitacaoRepository,
+                                    SolicitacaoLinhaRepository solicitacaoLinhaRepository,
+                                    SolicitacaoHistoricoRepository solicitacaoHistoricoRepository,
+                                    CategoriaRepository categoriaRepository,
+                                    ContaRepository contaRepository,
+                                    OrcamentoService orcamentoService,
+                                    AuditoriaService auditoriaService,
+                                    ApplicationEventPublisher eventPublisher,
+                                    Validator validator,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.import.chunk-size:200}") int tamanhoLote) {
+        this.solicitacaoRepository = solicitacaoRepository;
+        this.solicitacaoLinhaRepository = solicitacaoLinhaRepository;
+        this.solicitacaoHistoricoRepository = solicitacaoHistoricoRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.contaRepository = contaRepository;
+        this.orcamentoService = orcamentoService;
+        this.auditoriaService = auditoriaService;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanhoLote = Math.max(1, tamanhoLote);
+    }
+
+    /**
+     * Colunas: categoria (id ou nome), titulo, solicitante, descricao, onde_vai_ser_usado,
+     * valor_estimado e, opcionais, fornecedor, forma_pagamento, observacoes, data
+     * (AAAA-MM-DD ou DD/MM/AAAA) e itens ({@code descricao:valor} separados por {@code |}).
+     */
+    public SolicitacaoImportResultadoDTO importar(InputStream entrada) {
+        Conta conta = getContaLogada();
+        ensureFilial(conta);
+
+        Map<String, Categoria> categorias = carregarCategorias();
+        Relatorio relatorio = new Relatorio();
+        List<LinhaImportada> lote = new ArrayList<>(tamanhoLote);
+        int ultimaLinha = 0;
+
+        try (CsvReader csv = CsvReader.abrir(entrada, MAX_CAMPO)) {
+            CsvReader.Registro cabecalho = csv.proximo();
+            if (cabecalho == null || cabecalho.vazio()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Arquivo CSV vazio.");
+            }
+            Map<String, Integer> colunas = mapearColunas(cabecalho.campos());
+
+            CsvReader.Registro registro;
+            while ((registro = csv.proximo()) != null) {
+                ultimaLinha = registro.linha();
+                if (registro.vazio()) {
+                    continue;
+                }
+                relatorio.lidas++;
+                LinhaImportada linha = converter(registro, colunas, categorias, conta, relatorio);
+                if (linha == null) {
+                    continue;
+                }
+                lote.add(linha);
+                if (lote.size() >= tamanhoLote) {
+                    gravarLote(lote, conta, relatorio);
+                    lote.clear();
+                }
+            }
+        } catch (IOException ex) {
+            relatorio.erro(ultimaLinha + 1, "Falha ao ler o arquivo; importacao interrompida.");
+        }
+
+        if (!lote.isEmpty()) {
+            gravarLote(lote, conta, relatorio);
+        }
+        return relatorio.toDTO();
+    }
+
+    /**
+     * Grava o lote numa transacao. Linhas que passariam de um orcamento com bloqueio ficam de fora
+     * e vao para o relatorio com o motivo, como na criacao unitaria; as demais sao gravadas.
+     */
+    private void gravarLote(List<LinhaImportada> lote, Conta conta, Relatorio relatorio) {
+        try {
+            List<String> bloqueios = transactionTemplate.execute(status -> {
+                List<String> motivos = orcamentoService.bloqueiosEmLote(lote.stream()
+                        .map(linha -> new OrcamentoService.Transicao(null, orcamentoService.consumoDe(linha.solicitacao())))
+                        .toList());
+                List<LinhaImportada> aceitas = new ArrayList<>(lote.size());
+                for (int i = 0; i < lote.size(); i++) {
+                    if (motivos.get(i) == null) {
+                        aceitas.add(lote.get(i));
+                    }
+                }
+                if (!aceitas.isEmpty()) {
+                    gravarAceitas(aceitas, conta);
+                }
+                return motivos;
+            });
+            for (int i = 0; i < lote.size(); i++) {
+                if (bloqueios.get(i) == null) {
+                    relatorio.importadas++;
+                } else {
+                    relatorio.erro(lote.get(i).linha(), bloqueios.get(i));
+                }
+            }
+        } catch (RuntimeException ex) {
+            log.warn("Falha ao gravar lote de importacao ({} linhas): {}", lote.size(), ex.getMessage());
+            for (LinhaImportada linha : lote) {
+                relatorio.erro(linha.linha(), "Falha ao gravar o lote desta linha.");
+            }
+        }
+    }
+
+    private void gravarAceitas(List<LinhaImportada> lote, Conta conta) {
+        List<Solicitacao> salvas = solicitacaoRepository.saveAll(
+                lote.stream().map(LinhaImportada::solicitacao).toList()
+        );
+
+        List<SolicitacaoLinha> linhas = new ArrayList<>();
+        List<SolicitacaoHistorico> historicos = new ArrayList<>(salvas.size());
+        Map<Solicitacao, OrcamentoService.Consumo> consumos = new LinkedHashMap<>();
+        BigDecimal valorTotal = BigDecimal.ZERO;
+        StringBuilder detalhe = new StringBuilder();
+        for (int i = 0; i < salvas.size(); i++) {
+            Solicitacao salva = salvas.get(i);
+            List<SolicitacaoLinhaCreateDTO> itens = lote.get(i).itens();
+            for (int ordem = 0; ordem < itens.size(); ordem++) {
+                SolicitacaoLinhaCreateDTO item = itens.get(ordem);
+                linhas.add(SolicitacaoLinha.builder()
+                        .solicitacaoId(salva.getId())
+                        .descricao(item.descricao().trim())
+                        .valor(item.valor())
+                        .observacao(item.observacao())
+                        .ordem(ordem)
+                        .build());
+            }
+            historicos.add(SolicitacaoHistorico.builder()
+                    .solicitacaoId(salva.getId())
+                    .ator(conta.getTipo().name())
+                    .acao(ACAO_IMPORTADA)
+                    .comentario("Importada do CSV (linha " + lote.get(i).linha() + ").")
+                    .build());
+            consumos.put(salva, null);
+            valorTotal = valorTotal.add(salva.getValorEstimado());
+            detalhe.append("  - #").append(salva.getId())
+                    .append(" | Linha ").append(lote.get(i).linha())
+                    .append(" | ").append(salva.getTitulo())
+                    .append(" | ").append(salva.getValorEstimado())
+                    .append('\n');
+        }
+        solicitacaoLinhaRepository.saveAll(linhas);
+        solicitacaoHistoricoRepository.saveAll(historicos);
+        orcamentoService.registrarTransicoesSemBloqueio(consumos);
+
+        String resumo = "Importacao CSV | Filial: " + conta.getFilial()
+                + " | Solicitacoes: " + salvas.size()
+                + " (#" + salvas.get(0).getId() + " a #" + salvas.get(salvas.size() - 1).getId() + ")"
+                + " | Valor estimado total: " + valorTotal;
+        auditoriaService.registrar(
+                "SOLICITACOES_IMPORTADAS",
+                resumo,
+                resumo + "\nSolicitacoes:\n" + detalhe,
+                "SOLICITACAO",
+                null
+        );
+        eventPublisher.publishEvent(new SolicitacaoAlteradaEvent(null, conta.getFilial()));
+    }
+
+    private LinhaImportada converter(CsvReader.Registro registro,
+                                     Map<String, Integer> colunas,
+                                     Map<String, Categoria> categorias,
+                                     Conta conta,
+                                     Relatorio relatorio) {
+        if (registro.erro() != null) {
+            relatorio.erro(registro.linha(), registro.erro());
+            return null;
+        }
+        List<String> campos = registro.campos();
+        List<String> erros = new ArrayList<>();
+
+        String categoriaValor = campo(campos, colunas, "categoria");
+        Categoria categoria = categoriaValor == null ? null : categorias.get(chaveCategoria(categoriaValor));
+        if (categoriaValor != null && categoria == null) {
+            erros.add("categoria: nao encontrada (" + categoriaValor + ")");
+        } else if (categoria != null && Boolean.FALSE.equals(categoria.getAtiva())) {
+            erros.add("categoria: inativa");
+        }
+
+        BigDecimal valorEstimado = parseValor(campo(campos, colunas, "valor_estimado"), "valor_estimado", erros);
+        LocalDateTime data = parseData(campo(campos, colunas, "data"), erros);
+        List<SolicitacaoLinhaCreateDTO> itens = parseItens(campo(campos, colunas, "itens"), erros);
+
+        SolicitacaoCreateDTO dto = new SolicitacaoCreateDTO(
+                categoria == null ? null : categoria.getId(),
+                campo(campos, colunas, "titulo"),
+                campo(campos, colunas, "solicitante"),
+                campo(campos, colunas, "descricao"),
+                campo(campos, colunas, "onde_vai_ser_usado"),
+                valorEstimado,
+                campo(campos, colunas, "fornecedor"),
+                campo(campos, colunas, "forma_pagamento"),
+                campo(campos, colunas, "observacoes"),
+                itens
+        );
+        validator.validate(dto).stream()
+                .filter(violation -> !(categoriaValor != null
+                        && "categoriaId".equals(violation.getPropertyPath().toString())))
+                .map(this::descrever)
+                .sorted()
+                .forEach(erros::add);
+
+        if (!erros.isEmpty()) {
+            relatorio.erro(registro.linha(), String.join("; ", erros));
+            return null;
+        }
+
+        Solicitacao solicitacao = Solicitacao.builder()
+                .filial(conta.getFilial())
+                .categoria(categoria)
+                .titulo(dto.titulo().trim())
+                .solicitanteNome(dto.solicitanteNome().trim())
+                .descricao(dto.descricao())
+                .ondeVaiSerUsado(dto.ondeVaiSerUsado())
+                .valorEstimado(dto.valorEstimado())
+                .fornecedor(dto.fornecedor())
+                .formaPagamento(dto.formaPagamento())
+                .observacoes(dto.observacoes())
+                .status(StatusSolicitacao.PENDENTE)
+                .criadoEm(data)
+                // A data do CSV so define a competencia: o prazo de vencimento conta da importacao.
+                .enviadoEm(LocalDateTime.now())
+                .build();
+        return new LinhaImportada(registro.linha(), solicitacao, itens);
+    }
+
+    private Map<String, Integer> mapearColunas(List<String> cabecalho) {
+        Map<String, Integer> colunas = new HashMap<>();
+        for (int i = 0; i < cabecalho.size(); i++) {
+            String nome = normalizarColuna(cabecalho.get(i));
+            colunas.putIfAbsent(ALIASES.getOrDefault(nome, nome), i);
+        }
+        List<String> faltando = COLUNAS_OBRIGATORIAS.stream()
+                .filter(coluna -> !colunas.containsKey(coluna))
+                .sorted()
+                .toList();
+        if (!faltando.isEmpty()) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    "Colunas obrigatorias ausentes no CSV: " + String.join(", ", faltando) + "."
+            );
+        }
+        return colunas;
+    }
+
+    private Map<String, Categoria> carregarCategorias() {
+        Map<String, Categoria> categorias = new HashMap<>();
+        for (Categoria categoria : categoriaRepository.findAll()) {
+            categorias.put(String.valueOf(categoria.getId()), categoria);
+            categorias.putIfAbsent(chaveCategoria(categoria.getNome()), categoria);
+        }
+        return categorias;
+    }
+
+    private String campo(List<String> campos, Map<String, Integer> colunas, String coluna) {
+        Integer index = colunas.get(coluna);
+        if (index == null || index >= campos.size()) {
+            return null;
+        }
+        String valor = campos.get(index).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private BigDecimal parseValor(String valor, String coluna, List<String> erros) {
+        if (valor == null) {
+            return null;
+        }
+        String normalizado = valor.replace("R$", "").replace(" ", "");
+        if (normalizado.contains(",")) {
+            normalizado = normalizado.replace(".", "").replace(',', '.');
+        }
+        try {
+            return new BigDecimal(normalizado);
+        } catch (NumberFormatException ex) {
+            erros.add(coluna + ": valor invalido (" + valor + ")");
+            return null;
+        }
+    }
+
+    private LocalDateTime parseData(String valor, List<String> erros) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            LocalDate data = valor.contains("/") ? LocalDate.parse(valor, DATA_BR) : LocalDate.parse(valor);
+            if (data.isAfter(LocalDate.now())) {
+                erros.add("data: nao pode ser futura");
+                return null;
+            }
+            return data.atStartOfDay();
+        } catch (DateTimeParseException ex) {
+            erros.add("data: use AAAA-MM-DD ou DD/MM/AAAA (" + valor + ")");
+            return null;
+        }
+    }
+
+    private List<SolicitacaoLinhaCreateDTO> parseItens(String valor, List<String> erros) {
+        if (valor == null) {
+            return List.of();
+        }
+        List<SolicitacaoLinhaCreateDTO> itens = new ArrayList<>();
+        for (String item : valor.split("\\|")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            int separador = item.lastIndexOf(':');
+            if (separador <= 0) {
+                erros.add("itens: use descricao:valor separados por | (" + item.trim() + ")");
+                continue;
+            }
+            BigDecimal valorItem = parseValor(item.substring(separador + 1).trim(), "itens", erros);
+            itens.add(new SolicitacaoLinhaCreateDTO(item.substring(0, separador).trim(), valorItem, null));
+        }
+        return itens;
+    }
+
+    private String descrever(ConstraintViolation<SolicitacaoCreateDTO> violation) {
+        return violation.getPropertyPath() + ": " + violation.getMessage();
+    }
+
+    private String normalizarColuna(String value) {
+        String semAcento = Normalizer.normalize(value == null ? "" : value, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        return semAcento.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_").replaceAll("^_|_$", "");
+    }
+
+    private String chaveCategoria(String value) {
+        return Normalizer.normalize(value, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .trim()
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private Conta getContaLogada() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || auth.getName() == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Usuario nao autenticado.");
+        }
+
+        String usuario = auth.getName();
+        return contaRepository.findByUsuario(usuario)
+                .orElseThrow(() -> new ResponseStatusException(
+                        HttpStatus.UNAUTHORIZED,
+                        "Conta autenticada nao encontrada no banco."
+                ));
+    }
+
+    private void ensureFilial(Conta conta) {
+        if (conta.getTipo() != TipoConta.FILIAL) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Apenas FILIAL pode acessar este recurso.");
+        }
+        if (conta.getFilial() == null || conta.getFilial().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Conta FILIAL sem filial definida.");
+        }
+    }
+
+    private record LinhaImportada(int linha, Solicitacao solicitacao, List<SolicitacaoLinhaCreateDTO> itens) {}
+
+    /**
+     * Contadores e erros da importacao; a lista de erros e limitada para nao crescer com o arquivo.
+     */
+    private static final class Relatorio {
+        private int lidas;
+        private int importadas;
+        private int rejeitadas;
+        private final List<SolicitacaoImportErroDTO> erros = new ArrayList<>();
+
+        void erro(int linha, String mensagem) {
+            rejeitadas++;
+            if (erros.size() < MAX_ERROS) {
+                erros.add(new SolicitacaoImportErroDTO(linha, mensagem));
+            }
+        }
+
+        SolicitacaoImportResultadoDTO toDTO() {
+            return new SolicitacaoImportResultadoDTO(lidas, importadas, rejeitadas, List.copyOf(erros), rejeitadas > erros.size());
+        }
+    }
+}
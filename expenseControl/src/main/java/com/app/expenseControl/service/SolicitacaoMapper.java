@@ -3,6 +3,7 @@ package com.app.expenseControl.service;
 import com.app.expenseControl.dto.SolicitacaoHistoricoResponseDTO;
 import com.app.expenseControl.dto.SolicitacaoLinhaResponseDTO;
 import com.app.expenseControl.dto.SolicitacaoResponseDTO;
+import com.app.expenseControl.dto.SolicitacaoResumoDTO;
 import com.app.expenseControl.entity.Solicitacao;
 import com.app.expenseControl.entity.SolicitacaoHistorico;
 import com.app.expenseControl.entity.SolicitacaoLinha;
@@ -14,6 +15,17 @@ final class SolicitacaoMapper {
     private SolicitacaoMapper() {
     }
 
+    static SolicitacaoResumoDTO toResumoDTO(Solicitacao solicitacao) {
+        return new SolicitacaoResumoDTO(
+                solicitacao.getId(),
+                solicitacao.getStatus(),
+                solicitacao.getCriadoEm(),
+                solicitacao.getEnviadoEm(),
+                solicitacao.getDecididoEm(),
+                solicitacao.getVersao()
+        );
+    }
+
     static SolicitacaoResponseDTO toDTO(Solicitacao solicitacao,
                                         List<SolicitacaoLinha> linhas,
                                         List<SolicitacaoHistorico> historico) {
@@ -36,7 +48,11 @@ final class SolicitacaoMapper {
                 solicitacao.getDecididoEm(),
                 solicitacao.getComentarioDecisao(),
                 linhas.stream().map(SolicitacaoMapper::toLinhaDTO).toList(),
-                historico.stream().map(SolicitacaoMapper::toHistoricoDTO).toList()
+                historico.stream().map(SolicitacaoMapper::toHistoricoDTO).toList(),
+                solicitacao.getVersao(),
+                solicitacao.getReservadoPor(),
+                solicitacao.getReservadoAte(),
+                solicitacao.getEscaladaEm()
         );
     }
 
@@ -1,27 +1,38 @@
 package com.app.expenseControl.service;
 
+import com.app.expenseControl.dto.DecisaoLoteDTO;
+import com.app.expenseControl.dto.DecisaoLoteItemDTO;
+import com.app.expenseControl.dto.DecisaoLoteResponseDTO;
+import com.app.expenseControl.dto.DecisaoLoteResultadoDTO;
 import com.app.expenseControl.dto.DecisaoSolicitacaoDTO;
 import com.app.expenseControl.dto.PageResponse;
+import com.app.expenseControl.dto.SolicitacaoBreakdownDTO;
 import com.app.expenseControl.dto.SolicitacaoCreateDTO;
 import com.app.expenseControl.dto.SolicitacaoLinhaCreateDTO;
 import com.app.expenseControl.dto.SolicitacaoPedidoInfoDTO;
 import com.app.expenseControl.dto.SolicitacaoReenvioDTO;
 import com.app.expenseControl.dto.SolicitacaoResponseDTO;
+import com.app.expenseControl.dto.SolicitacaoResumoDTO;
 import com.app.expenseControl.dto.SolicitacaoStatsDTO;
+import com.app.expenseControl.dto.SolicitacaoStatusResumoDTO;
 import com.app.expenseControl.entity.Attachment;
 import com.app.expenseControl.entity.Categoria;
 import com.app.expenseControl.entity.Conta;
 import com.app.expenseControl.entity.Solicitacao;
 import com.app.expenseControl.entity.SolicitacaoHistorico;
 import com.app.expenseControl.entity.SolicitacaoLinha;
+import com.app.expenseControl.enums.StatusAnexo;
 import com.app.expenseControl.enums.StatusSolicitacao;
 import com.app.expenseControl.enums.TipoConta;
 import com.app.expenseControl.repository.CategoriaRepository;
 import com.app.expenseControl.repository.ContaRepository;
 import com.app.expenseControl.repository.AttachmentRepository;
 import com.app.expenseControl.repository.SolicitacaoHistoricoRepository;
+import com.app.expenseControl.repository.SolicitacaoJdbcRepository;
 import com.app.expenseControl.repository.SolicitacaoLinhaRepository;
 import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -37,9 +48,16 @@ import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -60,9 +78,15 @@ public class SolicitacaoService {
     private final AttachmentRepository attachmentRepository;
     private final SolicitacaoLinhaRepository solicitacaoLinhaRepository;
     private final SolicitacaoHistoricoRepository solicitacaoHistoricoRepository;
+    private final SolicitacaoJdbcRepository solicitacaoJdbcRepository;
     private final AttachmentService attachmentService;
     private final ContaPermissionService permissionService;
     private final AuditoriaService auditoriaService;
+    private final OrcamentoService orcamentoService;
+    private final SolicitacaoStatsCache statsCache;
+    private final SolicitacaoStatsFanOut statsFanOut;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int leaseMinutos;
 
     public SolicitacaoService(SolicitacaoRepository solicitacaoRepository,
                               CategoriaRepository categoriaRepository,
@@ -70,22 +94,43 @@ public class SolicitacaoService {
                               AttachmentRepository attachmentRepository,
                               SolicitacaoLinhaRepository solicitacaoLinhaRepository,
                               SolicitacaoHistoricoRepository solicitacaoHistoricoRepository,
+                              SolicitacaoJdbcRepository solicitacaoJdbcRepository,
                               AttachmentService attachmentService,
                               ContaPermissionService permissionService,
-                              AuditoriaService auditoriaService) {
+                              AuditoriaService auditoriaService,
+                              OrcamentoService orcamentoService,
+                              SolicitacaoStatsCache statsCache,
+                              SolicitacaoStatsFanOut statsFanOut,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${app.queue.lease-minutes:15}") int leaseMinutos) {
         this.solicitacaoRepository = solicitacaoRepository;
         this.categoriaRepository = categoriaRepository;
         this.contaRepository = contaRepository;
         this.attachmentRepository = attachmentRepository;
         this.solicitacaoLinhaRepository = solicitacaoLinhaRepository;
         this.solicitacaoHistoricoRepository = solicitacaoHistoricoRepository;
+        this.solicitacaoJdbcRepository = solicitacaoJdbcRepository;
         this.attachmentService = attachmentService;
         this.permissionService = permissionService;
         this.auditoriaService = auditoriaService;
+        this.orcamentoService = orcamentoService;
+        this.statsCache = statsCache;
+        this.statsFanOut = statsFanOut;
+        this.eventPublisher = eventPublisher;
+        this.leaseMinutos = Math.max(1, leaseMinutos);
     }
 
     @Transactional
     public SolicitacaoResponseDTO criar(SolicitacaoCreateDTO dto) {
+        return completo(criarInterno(dto));
+    }
+
+    @Transactional
+    public SolicitacaoResumoDTO criarResumo(SolicitacaoCreateDTO dto) {
+        return SolicitacaoMapper.toResumoDTO(criarInterno(dto).solicitacao());
+    }
+
+    private Escrita criarInterno(SolicitacaoCreateDTO dto) {
         Conta conta = getContaLogada();
         ensureFilial(conta);
 
@@ -111,19 +156,27 @@ public class SolicitacaoService {
                 .build();
 
         Solicitacao salva = solicitacaoRepository.save(s);
+        orcamentoService.registrarTransicao(null, salva);
         List<SolicitacaoLinha> linhasSalvas = salvarLinhas(salva.getId(), dto.linhas());
-        List<Attachment> anexos = attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(salva.getId());
-        registrarHistorico(salva.getId(), conta.getTipo().name(), ACAO_CRIADA, null);
-        registrarAuditoriaSolicitacao("SOLICITACAO_CRIADA", salva, linhasSalvas, anexos);
+        // Recem-criada: ainda sem anexos e com um unico evento de historico.
+        SolicitacaoHistorico criada = registrarHistorico(salva.getId(), conta.getTipo().name(), ACAO_CRIADA, null);
+        registrarAuditoriaSolicitacao(conta, "SOLICITACAO_CRIADA", salva, linhasSalvas, List.of());
+        publicarAlteracao(salva);
 
-        List<SolicitacaoHistorico> historico = solicitacaoHistoricoRepository
-                .findBySolicitacaoIdOrderByCriadoEmAsc(salva.getId());
+        return new Escrita(salva, linhasSalvas, List.of(criada));
+    }
 
-        return SolicitacaoMapper.toDTO(salva, linhasSalvas, historico);
+    @Transactional
+    public SolicitacaoResponseDTO reenvio(Long id, SolicitacaoReenvioDTO dto, Long versaoEsperada) {
+        return completo(reenvioInterno(id, dto, versaoEsperada));
     }
 
     @Transactional
-    public SolicitacaoResponseDTO reenvio(Long id, SolicitacaoReenvioDTO dto) {
+    public SolicitacaoResumoDTO reenvioResumo(Long id, SolicitacaoReenvioDTO dto, Long versaoEsperada) {
+        return SolicitacaoMapper.toResumoDTO(reenvioInterno(id, dto, versaoEsperada).solicitacao());
+    }
+
+    private Escrita reenvioInterno(Long id, SolicitacaoReenvioDTO dto, Long versaoEsperada) {
         Conta conta = getContaLogada();
         ensureFilial(conta);
 
@@ -133,6 +186,7 @@ public class SolicitacaoService {
         if (!conta.getFilial().equals(s.getFilial())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Solicitacao nao pertence a filial.");
         }
+        ensureVersao(s, versaoEsperada);
 
         if (s.getStatus() != StatusSolicitacao.PENDENTE_INFO) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Solicitacao nao esta aguardando informacoes.");
@@ -144,6 +198,7 @@ public class SolicitacaoService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Categoria inativa.");
         }
 
+        OrcamentoService.Consumo consumoAnterior = orcamentoService.consumoDe(s);
         s.setCategoria(categoria);
         s.setTitulo(dto.dados().titulo().trim());
         s.setSolicitanteNome(dto.dados().solicitanteNome().trim());
@@ -157,20 +212,21 @@ public class SolicitacaoService {
         s.setEnviadoEm(LocalDateTime.now());
         s.setDecididoEm(null);
         s.setValorAprovado(null);
+        s.setEscaladaEm(null);
+        s.setLembreteEm(null);
+        s.setInfoSolicitadaEm(null);
 
-        Solicitacao salva = solicitacaoRepository.save(s);
+        Solicitacao salva = solicitacaoRepository.saveAndFlush(s);
+        orcamentoService.registrarTransicao(consumoAnterior, salva);
 
-        solicitacaoLinhaRepository.deleteBySolicitacaoId(salva.getId());
-        List<SolicitacaoLinha> linhasSalvas = salvarLinhas(salva.getId(), dto.dados().linhas());
-        List<Attachment> anexos = attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(salva.getId());
+        List<SolicitacaoLinha> linhasSalvas = sincronizarLinhas(salva.getId(), dto.dados().linhas());
+        List<Attachment> anexos = anexosConfirmados(salva.getId());
 
         registrarHistorico(salva.getId(), conta.getTipo().name(), ACAO_REENVIADA, dto.comentario());
-        registrarAuditoriaSolicitacao("SOLICITACAO_REENVIADA", salva, linhasSalvas, anexos);
-
-        List<SolicitacaoHistorico> historico = solicitacaoHistoricoRepository
-                .findBySolicitacaoIdOrderByCriadoEmAsc(salva.getId());
+        registrarAuditoriaSolicitacao(conta, "SOLICITACAO_REENVIADA", salva, linhasSalvas, anexos);
+        publicarAlteracao(salva);
 
-        return SolicitacaoMapper.toDTO(salva, linhasSalvas, historico);
+        return new Escrita(salva, linhasSalvas, null);
     }
 
     @Transactional(readOnly = true)
@@ -222,13 +278,27 @@ public class SolicitacaoService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Solicitacao nao pertence a filial.");
         }
 
-        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoId(s.getId());
+        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(s.getId());
         List<SolicitacaoHistorico> historico = solicitacaoHistoricoRepository
                 .findBySolicitacaoIdOrderByCriadoEmAsc(s.getId());
 
         return SolicitacaoMapper.toDTO(s, linhas, historico);
     }
 
+    @Transactional(readOnly = true)
+    public SolicitacaoResumoDTO buscarResumoDaFilial(Long id) {
+        Conta conta = getContaLogada();
+        ensureFilial(conta);
+
+        Solicitacao s = solicitacaoRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
+
+        if (!conta.getFilial().equals(s.getFilial())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Solicitacao nao pertence a filial.");
+        }
+        return SolicitacaoMapper.toResumoDTO(s);
+    }
+
     @Transactional(readOnly = true)
     public List<SolicitacaoResponseDTO> listarParaAdmin(String status) {
         Conta conta = getContaLogada();
@@ -265,37 +335,50 @@ public class SolicitacaoService {
         ensureAdmin(conta);
 
         if (permissionService.isRootAdmin(conta)) {
-            return estatisticasGlobais();
+            return statsCache.obter(true, List.of(), this::estatisticasGlobais);
         }
 
         List<String> filiais = visibleFilialKeys(conta);
         if (filiais.isEmpty()) {
             var porStatus = java.util.Arrays.stream(StatusSolicitacao.values())
-                    .map(status -> new com.app.expenseControl.dto.SolicitacaoStatusResumoDTO(status, 0L))
+                    .map(status -> new SolicitacaoStatusResumoDTO(status, 0L))
                     .toList();
             return new SolicitacaoStatsDTO(0L, BigDecimal.ZERO, List.of(), List.of(), porStatus);
         }
 
-        long totalAprovadas = solicitacaoRepository.countByStatusAndFilialIn(StatusSolicitacao.APROVADO, filiais);
-        var valorTotalAprovado = solicitacaoRepository.sumValorAprovadoByStatusAndFiliais(StatusSolicitacao.APROVADO, filiais);
-        if (valorTotalAprovado == null) {
-            valorTotalAprovado = BigDecimal.ZERO;
-        }
+        return statsCache.obter(false, filiais, () -> estatisticasPorFiliais(filiais));
+    }
 
-        var porCategoria = solicitacaoRepository.resumoPorCategoriaAndFiliais(StatusSolicitacao.APROVADO, filiais);
-        var porFilial = solicitacaoRepository.resumoPorFilialAndFiliais(StatusSolicitacao.APROVADO, filiais);
-        var porStatus = java.util.Arrays.stream(StatusSolicitacao.values())
-                .map(status -> new com.app.expenseControl.dto.SolicitacaoStatusResumoDTO(
-                        status,
-                        solicitacaoRepository.countByStatusAndFilialIn(status, filiais)
-                ))
-                .toList();
+    private SolicitacaoStatsDTO estatisticasPorFiliais(List<String> filiais) {
+        boolean paralelo = statsFanOut.podeParalelizar();
+        var valorTotal = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.sumValorAprovadoByStatusAndFiliais(StatusSolicitacao.APROVADO, filiais));
+        var porCategoria = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.resumoPorCategoriaAndFiliais(StatusSolicitacao.APROVADO, filiais));
+        var porFilial = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.resumoPorFilialAndFiliais(StatusSolicitacao.APROVADO, filiais));
+        var porStatus = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.resumoPorStatusAndFiliais(filiais));
+
+        return montarEstatisticas(
+                statsFanOut.resultado(valorTotal),
+                statsFanOut.resultado(porCategoria),
+                statsFanOut.resultado(porFilial),
+                statsFanOut.resultado(porStatus)
+        );
+    }
 
-        return new SolicitacaoStatsDTO(totalAprovadas, valorTotalAprovado, porCategoria, porFilial, porStatus);
+    @Transactional
+    public SolicitacaoResponseDTO pedirInfo(Long id, SolicitacaoPedidoInfoDTO dto, Long versaoEsperada) {
+        return completo(pedirInfoInterno(id, dto, versaoEsperada));
     }
 
     @Transactional
-    public SolicitacaoResponseDTO pedirInfo(Long id, SolicitacaoPedidoInfoDTO dto) {
+    public SolicitacaoResumoDTO pedirInfoResumo(Long id, SolicitacaoPedidoInfoDTO dto, Long versaoEsperada) {
+        return SolicitacaoMapper.toResumoDTO(pedirInfoInterno(id, dto, versaoEsperada).solicitacao());
+    }
+
+    private Escrita pedirInfoInterno(Long id, SolicitacaoPedidoInfoDTO dto, Long versaoEsperada) {
         Conta conta = getContaLogada();
         ensureAdmin(conta);
         ensureAdminCanDecide(conta);
@@ -303,6 +386,7 @@ public class SolicitacaoService {
         Solicitacao s = solicitacaoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
         ensureAdminCanViewSolicitacao(conta, s);
+        ensureVersao(s, versaoEsperada);
 
         if (s.getStatus() != StatusSolicitacao.PENDENTE) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Solicitacao nao esta pendente.");
@@ -312,20 +396,32 @@ public class SolicitacaoService {
         s.setComentarioDecisao(dto.comentario());
         s.setDecididoEm(null);
         s.setValorAprovado(null);
-
-        Solicitacao salva = solicitacaoRepository.save(s);
-        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoId(salva.getId());
-        List<Attachment> anexos = attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(salva.getId());
+        s.setEscaladaEm(null);
+        s.setLembreteEm(null);
+        s.setInfoSolicitadaEm(LocalDateTime.now());
+
+        Solicitacao salva = solicitacaoRepository.saveAndFlush(s);
+        // Lidas uma vez: servem a auditoria e a resposta completa.
+        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(salva.getId());
+        List<Attachment> anexos = anexosConfirmados(salva.getId());
         registrarHistorico(salva.getId(), conta.getTipo().name(), ACAO_PEDIDO_INFO, dto.comentario());
-        registrarAuditoriaSolicitacao("SOLICITACAO_PEDIDO_AJUSTE", salva, linhas, anexos);
-        List<SolicitacaoHistorico> historico = solicitacaoHistoricoRepository
-                .findBySolicitacaoIdOrderByCriadoEmAsc(salva.getId());
+        registrarAuditoriaSolicitacao(conta, "SOLICITACAO_PEDIDO_AJUSTE", salva, linhas, anexos);
+        publicarAlteracao(salva);
+
+        return new Escrita(salva, linhas, null);
+    }
 
-        return SolicitacaoMapper.toDTO(salva, linhas, historico);
+    @Transactional
+    public SolicitacaoResponseDTO decidir(Long id, DecisaoSolicitacaoDTO dto, Long versaoEsperada) {
+        return completo(decidirInterno(id, dto, versaoEsperada));
     }
 
     @Transactional
-    public SolicitacaoResponseDTO decidir(Long id, DecisaoSolicitacaoDTO dto) {
+    public SolicitacaoResumoDTO decidirResumo(Long id, DecisaoSolicitacaoDTO dto, Long versaoEsperada) {
+        return SolicitacaoMapper.toResumoDTO(decidirInterno(id, dto, versaoEsperada).solicitacao());
+    }
+
+    private Escrita decidirInterno(Long id, DecisaoSolicitacaoDTO dto, Long versaoEsperada) {
         Conta conta = getContaLogada();
         ensureAdmin(conta);
         ensureAdminCanDecide(conta);
@@ -333,6 +429,7 @@ public class SolicitacaoService {
         Solicitacao s = solicitacaoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
         ensureAdminCanViewSolicitacao(conta, s);
+        ensureVersao(s, versaoEsperada);
 
         if (s.getStatus() != StatusSolicitacao.PENDENTE) {
             throw new ResponseStatusException(HttpStatus.CONFLICT, "Solicitacao nao esta pendente.");
@@ -343,6 +440,7 @@ public class SolicitacaoService {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Decisao invalida. Use APROVADO ou REPROVADO.");
         }
 
+        OrcamentoService.Consumo consumoAnterior = orcamentoService.consumoDe(s);
         if (decisao.equals("APROVADO")) {
             s.setStatus(StatusSolicitacao.APROVADO);
             s.setValorAprovado(dto.valorAprovado() != null ? dto.valorAprovado() : s.getValorEstimado());
@@ -354,22 +452,209 @@ public class SolicitacaoService {
         s.setComentarioDecisao(dto.comentario());
         s.setDecididoEm(LocalDateTime.now());
 
-        Solicitacao salva = solicitacaoRepository.save(s);
-        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoId(salva.getId());
-        List<Attachment> anexos = attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(salva.getId());
+        Solicitacao salva = solicitacaoRepository.saveAndFlush(s);
+        orcamentoService.registrarTransicao(consumoAnterior, salva);
+        // Lidas uma vez: servem a auditoria e a resposta completa.
+        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(salva.getId());
+        List<Attachment> anexos = anexosConfirmados(salva.getId());
 
         String acao = decisao.equals("APROVADO") ? ACAO_APROVADA : ACAO_REPROVADA;
         registrarHistorico(salva.getId(), conta.getTipo().name(), acao, dto.comentario());
         registrarAuditoriaSolicitacao(
+                conta,
                 decisao.equals("APROVADO") ? "SOLICITACAO_APROVADA" : "SOLICITACAO_REPROVADA",
                 salva,
                 linhas,
                 anexos
         );
+        publicarAlteracao(salva);
+
+        return new Escrita(salva, linhas, null);
+    }
+
+    /**
+     * Entrega ao aprovador a proxima solicitacao PENDENTE visivel para ele, reservada por
+     * {@code app.queue.lease-minutes}. Se ele ja tem uma reserva valida, ela e renovada e devolvida.
+     * A reserva e um SELECT ... FOR UPDATE SKIP LOCKED: aprovadores simultaneos recebem itens
+     * diferentes sem esperar um pelo outro.
+     */
+    @Transactional
+    public Optional<SolicitacaoResponseDTO> reservarProxima() {
+        Conta conta = getContaLogada();
+        ensureAdmin(conta);
+        ensureAdminCanDecide(conta);
+
+        Long id = solicitacaoJdbcRepository.renovarReserva(conta.getUsuario(), leaseMinutos);
+        if (id == null) {
+            List<String> filiais = null;
+            if (!permissionService.isRootAdmin(conta)) {
+                filiais = visibleFilialKeys(conta);
+                if (filiais.isEmpty()) {
+                    return Optional.empty();
+                }
+            }
+            id = solicitacaoJdbcRepository.reservarProxima(conta.getUsuario(), filiais, leaseMinutos);
+        }
+        if (id == null) {
+            return Optional.empty();
+        }
+
+        Solicitacao s = solicitacaoRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
+        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(s.getId());
         List<SolicitacaoHistorico> historico = solicitacaoHistoricoRepository
-                .findBySolicitacaoIdOrderByCriadoEmAsc(salva.getId());
+                .findBySolicitacaoIdOrderByCriadoEmAsc(s.getId());
+        return Optional.of(SolicitacaoMapper.toDTO(s, linhas, historico));
+    }
+
+    @Transactional
+    public void liberarReserva(Long id) {
+        Conta conta = getContaLogada();
+        ensureAdmin(conta);
 
-        return SolicitacaoMapper.toDTO(salva, linhas, historico);
+        if (!solicitacaoJdbcRepository.liberarReserva(id, conta.getUsuario())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Solicitacao nao esta reservada por este usuario.");
+        }
+    }
+
+    /**
+     * Decide varias solicitacoes de uma vez. Carrega tudo em uma consulta, valida item a item,
+     * grava os status com um UPDATE em lote condicionado a PENDENTE e insere historico e
+     * auditoria em lote. Falhas de um item nao impedem os demais e sao reportadas por id.
+     */
+    @Transactional
+    public DecisaoLoteResponseDTO decidirEmLote(DecisaoLoteDTO dto) {
+        Conta conta = getContaLogada();
+        ensureAdmin(conta);
+        ensureAdminCanDecide(conta);
+
+        List<DecisaoLoteItemDTO> itens = dto.decisoes();
+        DecisaoLoteResultadoDTO[] resultados = new DecisaoLoteResultadoDTO[itens.size()];
+        Set<Long> ids = new LinkedHashSet<>();
+        for (int i = 0; i < itens.size(); i++) {
+            if (!ids.add(itens.get(i).id())) {
+                resultados[i] = falhaLote(itens.get(i).id(), HttpStatus.BAD_REQUEST, "Solicitacao repetida no lote.");
+            }
+        }
+
+        Map<Long, Solicitacao> carregadas = solicitacaoRepository.findAllSomenteLeituraByIdIn(ids).stream()
+                .collect(Collectors.toMap(Solicitacao::getId, Function.identity()));
+        boolean root = permissionService.isRootAdmin(conta);
+        Set<String> filiaisVisiveis = root ? Set.of() : permissionService.visibleFilialKeys(conta);
+
+        LocalDateTime agora = LocalDateTime.now();
+        List<Integer> indices = new ArrayList<>();
+        List<SolicitacaoJdbcRepository.Decisao> decisoes = new ArrayList<>();
+        for (int i = 0; i < itens.size(); i++) {
+            if (resultados[i] != null) {
+                continue;
+            }
+            DecisaoLoteItemDTO item = itens.get(i);
+            Solicitacao s = carregadas.get(item.id());
+            if (s == null) {
+                resultados[i] = falhaLote(item.id(), HttpStatus.NOT_FOUND, "Solicitacao nao encontrada.");
+                continue;
+            }
+            if (!root && !filiaisVisiveis.contains(permissionService.normalizedKey(s.getFilial()))) {
+                resultados[i] = falhaLote(item.id(), HttpStatus.FORBIDDEN, "Sem permissao para visualizar esta solicitacao.");
+                continue;
+            }
+            if (s.getStatus() != StatusSolicitacao.PENDENTE) {
+                resultados[i] = falhaLote(item.id(), HttpStatus.CONFLICT, "Solicitacao nao esta pendente.");
+                continue;
+            }
+            if (item.versao() != null && !item.versao().equals(s.getVersao())) {
+                resultados[i] = falhaLote(item.id(), HttpStatus.PRECONDITION_FAILED, "Solicitacao foi alterada por outra requisicao.");
+                continue;
+            }
+            String decisao = item.decisao() == null ? "" : item.decisao().trim().toUpperCase();
+            if (!decisao.equals("APROVADO") && !decisao.equals("REPROVADO")) {
+                resultados[i] = falhaLote(item.id(), HttpStatus.BAD_REQUEST, "Decisao invalida. Use APROVADO ou REPROVADO.");
+                continue;
+            }
+            boolean aprovado = decisao.equals("APROVADO");
+            decisoes.add(new SolicitacaoJdbcRepository.Decisao(
+                    s.getId(),
+                    s.getVersao(),
+                    aprovado ? StatusSolicitacao.APROVADO : StatusSolicitacao.REPROVADO,
+                    aprovado ? (item.valorAprovado() != null ? item.valorAprovado() : s.getValorEstimado()) : null,
+                    item.comentario(),
+                    agora
+            ));
+            indices.add(i);
+        }
+        bloquearExcessosLote(carregadas, decisoes, indices, resultados);
+
+        boolean[] alteradas = solicitacaoJdbcRepository.decidirPendentes(decisoes);
+
+        Map<Solicitacao, OrcamentoService.Consumo> consumosAnteriores = new LinkedHashMap<>();
+        List<SolicitacaoHistorico> historicos = new ArrayList<>();
+        for (int j = 0; j < decisoes.size(); j++) {
+            SolicitacaoJdbcRepository.Decisao decisao = decisoes.get(j);
+            int i = indices.get(j);
+            if (!alteradas[j]) {
+                // Outra requisicao alterou a solicitacao entre a leitura e o UPDATE.
+                resultados[i] = falhaLote(decisao.id(), HttpStatus.CONFLICT, "Solicitacao nao esta pendente.");
+                continue;
+            }
+            // Entidade somente leitura: os setters apenas espelham o que o UPDATE gravou.
+            Solicitacao s = carregadas.get(decisao.id());
+            consumosAnteriores.put(s, orcamentoService.consumoDe(s));
+            s.setStatus(decisao.status());
+            s.setValorAprovado(decisao.valorAprovado());
+            s.setComentarioDecisao(decisao.comentario());
+            s.setDecididoEm(decisao.decididoEm());
+            s.setVersao(decisao.versao() + 1);
+            historicos.add(SolicitacaoHistorico.builder()
+                    .solicitacaoId(s.getId())
+                    .ator(conta.getTipo().name())
+                    .acao(decisao.status() == StatusSolicitacao.APROVADO ? ACAO_APROVADA : ACAO_REPROVADA)
+                    .comentario(decisao.comentario())
+                    .build());
+            resultados[i] = new DecisaoLoteResultadoDTO(s.getId(), true, s.getStatus(), s.getVersao(), HttpStatus.OK.value(), null);
+        }
+
+        if (!consumosAnteriores.isEmpty()) {
+            List<Solicitacao> decididas = List.copyOf(consumosAnteriores.keySet());
+            orcamentoService.registrarTransicoesSemBloqueio(consumosAnteriores);
+            solicitacaoHistoricoRepository.saveAll(historicos);
+            registrarAuditoriaLote(decididas);
+            decididas.forEach(this::publicarAlteracao);
+        }
+
+        List<DecisaoLoteResultadoDTO> lista = List.of(resultados);
+        int processadas = (int) lista.stream().filter(DecisaoLoteResultadoDTO::sucesso).count();
+        return new DecisaoLoteResponseDTO(processadas, lista.size() - processadas, lista);
+    }
+
+    /**
+     * Mesma checagem de orcamento bloqueante do {@code decidir} unitario, item a item: aprovacoes
+     * que passariam do limite saem do lote com 409 e a mensagem do excesso.
+     */
+    private void bloquearExcessosLote(Map<Long, Solicitacao> carregadas,
+                                      List<SolicitacaoJdbcRepository.Decisao> decisoes,
+                                      List<Integer> indices,
+                                      DecisaoLoteResultadoDTO[] resultados) {
+        List<OrcamentoService.Transicao> transicoes = new ArrayList<>(decisoes.size());
+        for (SolicitacaoJdbcRepository.Decisao decisao : decisoes) {
+            OrcamentoService.Consumo antes = orcamentoService.consumoDe(carregadas.get(decisao.id()));
+            OrcamentoService.Consumo depois = antes == null ? null : new OrcamentoService.Consumo(
+                    antes.filialKey(),
+                    antes.categoriaId(),
+                    antes.competencia(),
+                    BigDecimal.ZERO,
+                    decisao.valorAprovado() != null ? decisao.valorAprovado() : BigDecimal.ZERO
+            );
+            transicoes.add(new OrcamentoService.Transicao(antes, depois));
+        }
+        List<String> bloqueios = orcamentoService.bloqueiosEmLote(transicoes);
+        for (int j = decisoes.size() - 1; j >= 0; j--) {
+            if (bloqueios.get(j) != null) {
+                resultados[indices.get(j)] = falhaLote(decisoes.get(j).id(), HttpStatus.CONFLICT, bloqueios.get(j));
+                decisoes.remove(j);
+                indices.remove(j);
+            }
+        }
     }
 
     @Transactional
@@ -381,14 +666,16 @@ public class SolicitacaoService {
         Solicitacao s = solicitacaoRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Solicitacao nao encontrada."));
         ensureAdminCanViewSolicitacao(conta, s);
-        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoId(s.getId());
+        List<SolicitacaoLinha> linhas = solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(s.getId());
         List<Attachment> anexos = attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(s.getId());
 
+        orcamentoService.registrarExclusao(orcamentoService.consumoDe(s));
         solicitacaoHistoricoRepository.deleteBySolicitacaoId(s.getId());
         solicitacaoLinhaRepository.deleteBySolicitacaoId(s.getId());
         attachmentService.deleteAllForSolicitacao(s.getId());
         solicitacaoRepository.delete(s);
-        registrarAuditoriaSolicitacao("SOLICITACAO_EXCLUIDA", s, linhas, anexos);
+        registrarAuditoriaSolicitacao(conta, "SOLICITACAO_EXCLUIDA", s, linhas, anexos);
+        publicarAlteracao(s);
     }
 
     private Page<Solicitacao> buscarPaginaAdmin(Conta conta,
@@ -429,22 +716,109 @@ public class SolicitacaoService {
     }
 
     private SolicitacaoStatsDTO estatisticasGlobais() {
-        long totalAprovadas = solicitacaoRepository.countByStatus(StatusSolicitacao.APROVADO);
-        var valorTotalAprovado = solicitacaoRepository.sumValorAprovadoByStatus(StatusSolicitacao.APROVADO);
-        if (valorTotalAprovado == null) {
-            valorTotalAprovado = BigDecimal.ZERO;
-        }
+        boolean paralelo = statsFanOut.podeParalelizar();
+        var valorTotal = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.sumValorAprovadoByStatus(StatusSolicitacao.APROVADO));
+        var porCategoria = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.resumoPorCategoria(StatusSolicitacao.APROVADO));
+        var porFilial = statsFanOut.agendar(paralelo,
+                () -> solicitacaoRepository.resumoPorFilial(StatusSolicitacao.APROVADO));
+        var porStatus = statsFanOut.agendar(paralelo, solicitacaoRepository::resumoPorStatus);
+
+        return montarEstatisticas(
+                statsFanOut.resultado(valorTotal),
+                statsFanOut.resultado(porCategoria),
+                statsFanOut.resultado(porFilial),
+                statsFanOut.resultado(porStatus)
+        );
+    }
 
-        var porCategoria = solicitacaoRepository.resumoPorCategoria(StatusSolicitacao.APROVADO);
-        var porFilial = solicitacaoRepository.resumoPorFilial(StatusSolicitacao.APROVADO);
+    private SolicitacaoStatsDTO montarEstatisticas(BigDecimal valorTotalAprovado,
+                                                   List<SolicitacaoBreakdownDTO> porCategoria,
+                                                   List<SolicitacaoBreakdownDTO> porFilial,
+                                                   List<SolicitacaoStatusResumoDTO> resumoStatus) {
+        Map<StatusSolicitacao, Long> totaisPorStatus = new EnumMap<>(StatusSolicitacao.class);
+        for (SolicitacaoStatusResumoDTO item : resumoStatus) {
+            totaisPorStatus.put(item.status(), item.total());
+        }
         var porStatus = java.util.Arrays.stream(StatusSolicitacao.values())
-                .map(status -> new com.app.expenseControl.dto.SolicitacaoStatusResumoDTO(
-                        status,
-                        solicitacaoRepository.countByStatus(status)
-                ))
+                .map(status -> new SolicitacaoStatusResumoDTO(status, totaisPorStatus.getOrDefault(status, 0L)))
+                .toList();
+        long totalAprovadas = totaisPorStatus.getOrDefault(StatusSolicitacao.APROVADO, 0L);
+
+        return new SolicitacaoStatsDTO(
+                totalAprovadas,
+                valorTotalAprovado == null ? BigDecimal.ZERO : valorTotalAprovado,
+                porCategoria,
+                porFilial,
+                porStatus
+        );
+    }
+
+    private DecisaoLoteResultadoDTO falhaLote(Long id, HttpStatus status, String erro) {
+        return new DecisaoLoteResultadoDTO(id, false, null, null, status.value(), erro);
+    }
+
+    /**
+     * Anexos que entram na auditoria: reservas de uploads em andamento ficam de fora.
+     */
+    private List<Attachment> anexosConfirmados(Long solicitacaoId) {
+        return attachmentRepository.findBySolicitacaoIdAndStatusOrderByCreatedAtAsc(solicitacaoId, StatusAnexo.CONFIRMADO);
+    }
+
+    private void registrarAuditoriaLote(List<Solicitacao> solicitacoes) {
+        List<Long> ids = solicitacoes.stream().map(Solicitacao::getId).toList();
+        Map<Long, List<SolicitacaoLinha>> linhasPorSolicitacao = solicitacaoLinhaRepository
+                .findBySolicitacaoIdInOrderByOrdemAscIdAsc(ids)
+                .stream()
+                .collect(Collectors.groupingBy(SolicitacaoLinha::getSolicitacaoId));
+        Map<Long, List<Attachment>> anexosPorSolicitacao = attachmentRepository
+                .findBySolicitacaoIdInAndStatusOrderByCreatedAtAsc(ids, StatusAnexo.CONFIRMADO)
+                .stream()
+                .collect(Collectors.groupingBy(anexo -> anexo.getSolicitacao().getId()));
+
+        List<AuditoriaService.Registro> registros = solicitacoes.stream()
+                .map(s -> {
+                    String acao = s.getStatus() == StatusSolicitacao.APROVADO
+                            ? "SOLICITACAO_APROVADA"
+                            : "SOLICITACAO_REPROVADA";
+                    return new AuditoriaService.Registro(
+                            acao,
+                            buildSolicitacaoResumo(s),
+                            buildSolicitacaoDetalheCompleto(
+                                    acao,
+                                    s,
+                                    linhasPorSolicitacao.getOrDefault(s.getId(), List.of()),
+                                    anexosPorSolicitacao.getOrDefault(s.getId(), List.of())
+                            ),
+                            "SOLICITACAO",
+                            String.valueOf(s.getId())
+                    );
+                })
                 .toList();
+        auditoriaService.registrarLote(registros);
+    }
 
-        return new SolicitacaoStatsDTO(totalAprovadas, valorTotalAprovado, porCategoria, porFilial, porStatus);
+    /**
+     * Monta a resposta completa de uma escrita. Linhas e historico sao lidos uma unica vez (o flush
+     * automatico da consulta ja inclui o evento recem-gravado), a menos que a escrita os tenha em memoria.
+     */
+    private SolicitacaoResponseDTO completo(Escrita escrita) {
+        List<SolicitacaoLinha> linhas = escrita.linhas() != null
+                ? escrita.linhas()
+                : solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(escrita.solicitacao().getId());
+        List<SolicitacaoHistorico> historico = escrita.historico() != null
+                ? escrita.historico()
+                : solicitacaoHistoricoRepository.findBySolicitacaoIdOrderByCriadoEmAsc(escrita.solicitacao().getId());
+        return SolicitacaoMapper.toDTO(escrita.solicitacao(), linhas, historico);
+    }
+
+    private record Escrita(Solicitacao solicitacao,
+                           List<SolicitacaoLinha> linhas,
+                           List<SolicitacaoHistorico> historico) {}
+
+    private void publicarAlteracao(Solicitacao solicitacao) {
+        eventPublisher.publishEvent(new SolicitacaoAlteradaEvent(solicitacao.getId(), solicitacao.getFilial()));
     }
 
     private PageResponse<SolicitacaoResponseDTO> toPageResponse(Page<Solicitacao> page,
@@ -574,6 +948,19 @@ public class SolicitacaoService {
         }
     }
 
+    /**
+     * Confere a versao informada via If-Match. A gravacao em si e protegida pelo {@code @Version}:
+     * o flush falha se outra requisicao alterou a solicitacao depois desta leitura.
+     */
+    private void ensureVersao(Solicitacao solicitacao, Long versaoEsperada) {
+        if (versaoEsperada != null && !versaoEsperada.equals(solicitacao.getVersao())) {
+            throw new ResponseStatusException(
+                    HttpStatus.PRECONDITION_FAILED,
+                    "Solicitacao foi alterada por outra requisicao. Recarregue e tente novamente."
+            );
+        }
+    }
+
     private void ensureAdminCanDecide(Conta conta) {
         if (!permissionService.canApproveSolicitacao(conta)) {
             throw new ResponseStatusException(
@@ -605,19 +992,43 @@ public class SolicitacaoService {
             return List.of();
         }
 
-        List<SolicitacaoLinha> entidades = linhas.stream()
-                .map(linha -> SolicitacaoLinha.builder()
-                        .solicitacaoId(solicitacaoId)
-                        .descricao(linha.descricao().trim())
-                        .valor(linha.valor())
-                        .observacao(linha.observacao())
-                        .build())
-                .toList();
+        List<SolicitacaoLinha> entidades = new ArrayList<>(linhas.size());
+        for (SolicitacaoLinhaCreateDTO linha : linhas) {
+            entidades.add(SolicitacaoLinha.builder()
+                    .solicitacaoId(solicitacaoId)
+                    .descricao(linha.descricao().trim())
+                    .valor(linha.valor())
+                    .observacao(linha.observacao())
+                    .ordem(entidades.size())
+                    .build());
+        }
 
         return solicitacaoLinhaRepository.saveAll(entidades);
     }
 
-    private void registrarHistorico(Long solicitacaoId, String ator, String acao, String comentario) {
+    /**
+     * Aplica as linhas do reenvio como diff sobre as existentes (ver {@link LinhasDiff}): so o que
+     * mudou vira UPDATE, INSERT ou DELETE. Devolve as linhas na ordem recebida.
+     */
+    private List<SolicitacaoLinha> sincronizarLinhas(Long solicitacaoId, List<SolicitacaoLinhaCreateDTO> linhas) {
+        List<SolicitacaoLinhaCreateDTO> desejadas = linhas == null ? List.of() : linhas;
+        List<SolicitacaoLinha> existentes = solicitacaoLinhaRepository.findBySolicitacaoIdOrderByOrdemAscIdAsc(solicitacaoId);
+        if (existentes.isEmpty()) {
+            return salvarLinhas(solicitacaoId, desejadas);
+        }
+
+        // Entidades gerenciadas: as alteradas viram UPDATE em lote no flush.
+        LinhasDiff diff = LinhasDiff.calcular(solicitacaoId, existentes, desejadas);
+        if (!diff.removidas().isEmpty()) {
+            solicitacaoLinhaRepository.deleteAllInBatch(diff.removidas());
+        }
+        if (!diff.novas().isEmpty()) {
+            solicitacaoLinhaRepository.saveAll(diff.novas());
+        }
+        return diff.linhas();
+    }
+
+    private SolicitacaoHistorico registrarHistorico(Long solicitacaoId, String ator, String acao, String comentario) {
         SolicitacaoHistorico historico = SolicitacaoHistorico.builder()
                 .solicitacaoId(solicitacaoId)
                 .ator(ator)
@@ -625,16 +1036,18 @@ public class SolicitacaoService {
                 .comentario(comentario)
                 .build();
 
-        solicitacaoHistoricoRepository.save(historico);
+        return solicitacaoHistoricoRepository.save(historico);
     }
 
-    private void registrarAuditoriaSolicitacao(String acao,
+    private void registrarAuditoriaSolicitacao(Conta autor,
+                                               String acao,
                                                Solicitacao solicitacao,
                                                List<SolicitacaoLinha> linhas,
                                                List<Attachment> anexos) {
         String resumo = buildSolicitacaoResumo(solicitacao);
         String detalheCompleto = buildSolicitacaoDetalheCompleto(acao, solicitacao, linhas, anexos);
         auditoriaService.registrar(
+                autor,
                 acao,
                 resumo,
                 detalheCompleto,
@@ -735,7 +1148,7 @@ public class SolicitacaoService {
 
         List<Long> ids = solicitacoes.stream().map(Solicitacao::getId).toList();
         Map<Long, List<SolicitacaoLinha>> linhasPorSolicitacao = solicitacaoLinhaRepository
-                .findBySolicitacaoIdIn(ids)
+                .findBySolicitacaoIdInOrderByOrdemAscIdAsc(ids)
                 .stream()
                 .collect(Collectors.groupingBy(SolicitacaoLinha::getSolicitacaoId));
 
@@ -0,0 +1,164 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.SolicitacaoStatsDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache das estatisticas do painel admin, chaveado pelo conjunto de filiais visiveis.
+ * Admins com a mesma visibilidade compartilham a entrada; o admin raiz usa uma chave propria.
+ * Misses concorrentes para a mesma chave sao coalescidos em um unico calculo.
+ */
+@Service
+public class SolicitacaoStatsCache {
+
+    private static final String ROOT_KEY = "*";
+
+    private final ContaPermissionService permissionService;
+    private final long ttlMillis;
+    private final Map<String, Entrada> entradas;
+    private final ConcurrentHashMap<String, CompletableFuture<SolicitacaoStatsDTO>> emAndamento =
+            new ConcurrentHashMap<>();
+
+    public SolicitacaoStatsCache(ContaPermissionService permissionService,
+                                 @Value("${app.stats.cache.max-entries:64}") int maxEntries,
+                                 @Value("${app.stats.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.permissionService = permissionService;
+        this.ttlMillis = Math.max(0, ttlSeconds) * 1000L;
+        int limite = Math.max(1, maxEntries);
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                return size() > limite;
+            }
+        };
+    }
+
+    public SolicitacaoStatsDTO obter(boolean root,
+                                     Collection<String> filialKeys,
+                                     Supplier<SolicitacaoStatsDTO> calcular) {
+        Set<String> filiais = canonicalizar(root, filialKeys);
+        String chave = root ? ROOT_KEY : String.join(",", filiais);
+
+        SolicitacaoStatsDTO cached = buscar(chave);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<SolicitacaoStatsDTO> calculo = new CompletableFuture<>();
+        CompletableFuture<SolicitacaoStatsDTO> existente = emAndamento.putIfAbsent(chave, calculo);
+        if (existente != null) {
+            return aguardar(existente);
+        }
+
+        try {
+            cached = buscar(chave);
+            SolicitacaoStatsDTO stats = cached != null ? cached : calcular.get();
+            // Se houve invalidacao durante o calculo, o futuro ja foi removido e o resultado nao e cacheado.
+            if (emAndamento.remove(chave, calculo) && cached == null) {
+                armazenar(chave, new Entrada(root, filiais, stats, System.currentTimeMillis() + ttlMillis));
+            }
+            calculo.complete(stats);
+            return stats;
+        } catch (RuntimeException | Error ex) {
+            emAndamento.remove(chave, calculo);
+            calculo.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSolicitacaoAlterada(SolicitacaoAlteradaEvent event) {
+        invalidarFilial(event.filial());
+    }
+
+    public void invalidarFilial(String filial) {
+        String key = permissionService.normalizedKey(filial);
+        synchronized (entradas) {
+            entradas.values().removeIf(entrada -> entrada.root() || entrada.filiais().contains(key));
+        }
+        emAndamento.keySet().removeIf(chave -> chaveAfetada(chave, key));
+    }
+
+    public void invalidarTudo() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+        emAndamento.clear();
+    }
+
+    private SolicitacaoStatsDTO buscar(String chave) {
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(chave);
+            if (entrada == null) {
+                return null;
+            }
+            if (entrada.expiraEm() <= System.currentTimeMillis()) {
+                entradas.remove(chave);
+                return null;
+            }
+            return entrada.stats();
+        }
+    }
+
+    private void armazenar(String chave, Entrada entrada) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        synchronized (entradas) {
+            entradas.put(chave, entrada);
+        }
+    }
+
+    private SolicitacaoStatsDTO aguardar(CompletableFuture<SolicitacaoStatsDTO> calculo) {
+        try {
+            return calculo.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw ex;
+        }
+    }
+
+    private Set<String> canonicalizar(boolean root, Collection<String> filialKeys) {
+        if (root || filialKeys == null) {
+            return Set.of();
+        }
+        TreeSet<String> keys = new TreeSet<>();
+        for (String filial : filialKeys) {
+            String key = permissionService.normalizedKey(filial);
+            if (!key.isBlank()) {
+                keys.add(key);
+            }
+        }
+        return Collections.unmodifiableSortedSet(keys);
+    }
+
+    private boolean chaveAfetada(String chave, String filialKey) {
+        if (ROOT_KEY.equals(chave)) {
+            return true;
+        }
+        for (String part : chave.split(",")) {
+            if (part.equals(filialKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Entrada(boolean root, Set<String> filiais, SolicitacaoStatsDTO stats, long expiraEm) {}
+}
@@ -0,0 +1,107 @@
+package com.app.expenseControl.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Executa as consultas agregadas do painel em paralelo quando ha folga no pool Hikari.
+ * O executor proprio limita quantas conexoes o painel pode ocupar ao mesmo tempo;
+ * sem folga (ou com o modo desligado) as consultas rodam em sequencia na thread da requisicao.
+ */
+@Component
+public class SolicitacaoStatsFanOut implements DisposableBean {
+
+    private final HikariDataSource dataSource;
+    private final boolean enabled;
+    private final int maxConnections;
+    private final int reservedConnections;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    public SolicitacaoStatsFanOut(HikariDataSource dataSource,
+                                  @Value("${app.stats.parallel.enabled:false}") boolean enabled,
+                                  @Value("${app.stats.parallel.max-connections:2}") int maxConnections,
+                                  @Value("${app.stats.parallel.reserved-connections:1}") int reservedConnections,
+                                  @Value("${app.stats.parallel.timeout-seconds:30}") long timeoutSeconds) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.reservedConnections = Math.max(0, reservedConnections);
+        this.timeoutMillis = Math.max(1, timeoutSeconds) * 1000L;
+
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                this.maxConnections,
+                this.maxConnections,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(this.maxConnections * 8),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stats-query-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Decide, uma vez por calculo, se ha conexoes livres suficientes para abrir o leque
+     * sem deixar o restante da aplicacao sem conexao.
+     */
+    public boolean podeParalelizar() {
+        if (!enabled || maxConnections < 2) {
+            return false;
+        }
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return false;
+        }
+        int naoCriadas = Math.max(0, dataSource.getMaximumPoolSize() - pool.getTotalConnections());
+        int livres = pool.getIdleConnections() + naoCriadas;
+        return pool.getThreadsAwaitingConnection() == 0 && livres - reservedConnections >= maxConnections;
+    }
+
+    public <T> CompletableFuture<T> agendar(boolean paralelo, Supplier<T> consulta) {
+        if (!paralelo) {
+            return CompletableFuture.completedFuture(consulta.get());
+        }
+        return CompletableFuture.supplyAsync(consulta, executor);
+    }
+
+    public <T> T resultado(CompletableFuture<T> consulta) {
+        try {
+            return consulta.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Calculo de estatisticas interrompido.", ex);
+        } catch (TimeoutException ex) {
+            consulta.cancel(true);
+            throw new IllegalStateException("Tempo esgotado ao calcular estatisticas.", ex);
+        } catch (ExecutionException | CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Falha ao calcular estatisticas.", ex.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
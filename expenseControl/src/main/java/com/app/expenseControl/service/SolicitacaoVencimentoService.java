@@ -0,0 +1,237 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.entity.SolicitacaoHistorico;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.repository.SolicitacaoHistoricoRepository;
+import com.app.expenseControl.repository.SolicitacaoJdbcRepository;
+import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rotina periodica para solicitacoes paradas:
+ * <ul>
+ *     <li>PENDENTE sem decisao ha {@code escalar-apos-dias}: marcada como escalada;</li>
+ *     <li>PENDENTE_INFO sem resposta ha {@code lembrar-apos-dias} desde o pedido de ajuste: recebe lembrete no historico;</li>
+ *     <li>PENDENTE_INFO lembrada ha {@code expirar-apos-lembrete-dias}: reprovada automaticamente.</li>
+ * </ul>
+ * Cada lote roda na propria transacao, protegido por um advisory lock do Postgres para que so uma
+ * instancia processe por vez. O total de lotes por execucao e limitado: o custo de cada execucao
+ * nao depende do tamanho do acumulado, que vai sendo consumido nas execucoes seguintes.
+ */
+@Service
+public class SolicitacaoVencimentoService {
+
+    private static final Logger log = LoggerFactory.getLogger(SolicitacaoVencimentoService.class);
+
+    /** Chave do advisory lock desta rotina (valor fixo, unico na aplicacao). */
+    private static final long LOCK_VENCIMENTO = 37_001L;
+    private static final String ATOR = "SISTEMA";
+
+    private enum Etapa {
+        EXPIRAR("EXPIRADA", "SOLICITACAO_EXPIRADA"),
+        LEMBRAR("LEMBRETE", "SOLICITACAO_LEMBRETE"),
+        ESCALAR("ESCALADA", "SOLICITACAO_ESCALADA");
+
+        private final String acaoHistorico;
+        private final String acaoAuditoria;
+
+        Etapa(String acaoHistorico, String acaoAuditoria) {
+            this.acaoHistorico = acaoHistorico;
+            this.acaoAuditoria = acaoAuditoria;
+        }
+    }
+
+    private record Lote(int lidas, int alteradas) {}
+
+    private final SolicitacaoRepository solicitacaoRepository;
+    private final SolicitacaoJdbcRepository solicitacaoJdbcRepository;
+    private final SolicitacaoHistoricoRepository solicitacaoHistoricoRepository;
+    private final OrcamentoService orcamentoService;
+    private final AuditoriaService auditoriaService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final int escalarAposDias;
+    private final int lembrarAposDias;
+    private final int expirarAposLembreteDias;
+    private final int tamanhoLote;
+    private final int maxLotes;
+
+    public SolicitacaoVencimentoService(SolicitacaoRepository solicitacaoRepository,
+                                        SolicitacaoJdbcRepository solicitacaoJdbcRepository,
+                                        SolicitacaoHistoricoRepository solicitacaoHistoricoRepository,
+                                        OrcamentoService orcamentoService,
+                                        AuditoriaService auditoriaService,
+                                        ApplicationEventPublisher eventPublisher,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${app.vencimento.escalar-apos-dias:7}") int escalarAposDias,
+                                        @Value("${app.vencimento.lembrar-apos-dias:7}") int lembrarAposDias,
+                                        @Value("${app.vencimento.expirar-apos-lembrete-dias:7}") int expirarAposLembreteDias,
+                                        @Value("${app.vencimento.lote:100}") int tamanhoLote,
+                                        @Value("${app.vencimento.max-lotes:10}") int maxLotes) {
+        this.solicitacaoRepository = solicitacaoRepository;
+        this.solicitacaoJdbcRepository = solicitacaoJdbcRepository;
+        this.solicitacaoHistoricoRepository = solicitacaoHistoricoRepository;
+        this.orcamentoService = orcamentoService;
+        this.auditoriaService = auditoriaService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.escalarAposDias = escalarAposDias;
+        this.lembrarAposDias = lembrarAposDias;
+        this.expirarAposLembreteDias = expirarAposLembreteDias;
+        this.tamanhoLote = Math.max(1, tamanhoLote);
+        this.maxLotes = Math.max(1, maxLotes);
+    }
+
+    @Scheduled(
+            initialDelayString = "${app.vencimento.interval-ms:3600000}",
+            fixedDelayString = "${app.vencimento.interval-ms:3600000}"
+    )
+    public void executar() {
+        LocalDateTime agora = LocalDateTime.now();
+        int lotesRestantes = maxLotes;
+        boolean restouTrabalho = false;
+        Map<Etapa, Integer> alteradas = new EnumMap<>(Etapa.class);
+
+        // A ordem das etapas define a prioridade dentro do limite de lotes da execucao.
+        for (Etapa etapa : Etapa.values()) {
+            if (!habilitada(etapa)) {
+                continue;
+            }
+            while (lotesRestantes > 0) {
+                lotesRestantes--;
+                Lote lote = transactionTemplate.execute(status -> processarLote(etapa, agora));
+                if (lote == null) {
+                    log.debug("Rotina de vencimento em execucao em outra instancia; ignorando.");
+                    return;
+                }
+                alteradas.merge(etapa, lote.alteradas(), Integer::sum);
+                restouTrabalho = lote.lidas() == tamanhoLote;
+                if (!restouTrabalho) {
+                    break;
+                }
+            }
+        }
+
+        if (alteradas.values().stream().anyMatch(total -> total > 0)) {
+            log.info("Rotina de vencimento: {}", alteradas);
+        }
+        if (lotesRestantes == 0 && restouTrabalho) {
+            log.info("Rotina de vencimento atingiu o limite de {} lotes; o restante fica para a proxima execucao.", maxLotes);
+        }
+    }
+
+    private boolean habilitada(Etapa etapa) {
+        return switch (etapa) {
+            case EXPIRAR -> expirarAposLembreteDias > 0;
+            case LEMBRAR -> lembrarAposDias > 0;
+            case ESCALAR -> escalarAposDias > 0;
+        };
+    }
+
+    /**
+     * Processa um lote da etapa. Devolve {@code null} se outra instancia detem o lock.
+     */
+    private Lote processarLote(Etapa etapa, LocalDateTime agora) {
+        if (!solicitacaoJdbcRepository.tentarLockTransacional(LOCK_VENCIMENTO)) {
+            return null;
+        }
+
+        Pageable pagina = PageRequest.of(0, tamanhoLote);
+        List<Solicitacao> candidatas = switch (etapa) {
+            case EXPIRAR -> solicitacaoRepository.findLembradasSomenteLeitura(
+                    StatusSolicitacao.PENDENTE_INFO, agora.minusDays(expirarAposLembreteDias), pagina);
+            case LEMBRAR -> solicitacaoRepository.findInfoSemLembreteSomenteLeitura(
+                    agora.minusDays(lembrarAposDias), pagina);
+            case ESCALAR -> solicitacaoRepository.findNaoSinalizadasSomenteLeitura(
+                    StatusSolicitacao.PENDENTE, agora.minusDays(escalarAposDias), pagina);
+        };
+        if (candidatas.isEmpty()) {
+            return new Lote(0, 0);
+        }
+
+        String comentario = comentario(etapa);
+        List<SolicitacaoJdbcRepository.Marcacao> marcacoes = candidatas.stream()
+                .map(s -> new SolicitacaoJdbcRepository.Marcacao(s.getId(), s.getVersao()))
+                .toList();
+        boolean[] gravadas = switch (etapa) {
+            case EXPIRAR -> solicitacaoJdbcRepository.expirarPendentesInfo(marcacoes, comentario, agora);
+            case LEMBRAR -> solicitacaoJdbcRepository.lembrarPendentesInfo(marcacoes, agora);
+            case ESCALAR -> solicitacaoJdbcRepository.escalarPendentes(marcacoes, agora);
+        };
+
+        Map<Solicitacao, OrcamentoService.Consumo> consumosAnteriores = new LinkedHashMap<>();
+        List<SolicitacaoHistorico> historicos = new ArrayList<>();
+        List<AuditoriaService.Registro> registros = new ArrayList<>();
+        List<Solicitacao> expiradas = new ArrayList<>();
+        for (int i = 0; i < candidatas.size(); i++) {
+            if (!gravadas[i]) {
+                // Alterada por um usuario entre a leitura e o UPDATE; volta a ser avaliada depois.
+                continue;
+            }
+            // Entidade somente leitura: os setters apenas espelham o que o UPDATE gravou.
+            Solicitacao s = candidatas.get(i);
+            if (etapa == Etapa.EXPIRAR) {
+                consumosAnteriores.put(s, orcamentoService.consumoDe(s));
+                s.setStatus(StatusSolicitacao.REPROVADO);
+                s.setValorAprovado(null);
+                s.setComentarioDecisao(comentario);
+                s.setDecididoEm(agora);
+                expiradas.add(s);
+            }
+            s.setVersao(s.getVersao() + 1);
+            historicos.add(SolicitacaoHistorico.builder()
+                    .solicitacaoId(s.getId())
+                    .ator(ATOR)
+                    .acao(etapa.acaoHistorico)
+                    .comentario(comentario)
+                    .build());
+            String resumo = "Solicitacao #" + s.getId() + " (" + s.getFilial() + ") - " + s.getTitulo() + ": " + comentario;
+            registros.add(new AuditoriaService.Registro(
+                    etapa.acaoAuditoria,
+                    resumo,
+                    resumo,
+                    "SOLICITACAO",
+                    String.valueOf(s.getId())
+            ));
+        }
+
+        if (!historicos.isEmpty()) {
+            solicitacaoHistoricoRepository.saveAll(historicos);
+            if (!consumosAnteriores.isEmpty()) {
+                orcamentoService.registrarTransicoesSemBloqueio(consumosAnteriores);
+            }
+            auditoriaService.registrarLote(registros);
+            expiradas.forEach(s -> eventPublisher.publishEvent(new SolicitacaoAlteradaEvent(s.getId(), s.getFilial())));
+        }
+        return new Lote(candidatas.size(), historicos.size());
+    }
+
+    private String comentario(Etapa etapa) {
+        return switch (etapa) {
+            case EXPIRAR -> "Reprovada automaticamente: sem ajuste da filial "
+                    + expirarAposLembreteDias + " dias apos o lembrete.";
+            case LEMBRAR -> "Lembrete: ajuste solicitado ainda sem resposta."
+                    + (expirarAposLembreteDias > 0
+                    ? " Sem reenvio em " + expirarAposLembreteDias + " dias, a solicitacao sera reprovada."
+                    : "");
+            case ESCALAR -> "Escalada: pendente de decisao ha mais de " + escalarAposDias + " dias.";
+        };
+    }
+}
@@ -0,0 +1,37 @@
+package com.app.expenseControl.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Camada de armazenamento de blobs, enderecados por chave (o SHA-256 do conteudo). Ha uma camada
+ * local em disco ({@link LocalDiskStorageBackend}), que serve as requisicoes, e opcionalmente uma
+ * remota ({@link HttpObjectStorageBackend} ou outro diretorio), que recebe copias em segundo plano
+ * e devolve blobs que sairam do cache local.
+ */
+public interface StorageBackend {
+
+    /** Nome para logs. */
+    String nome();
+
+    /**
+     * Grava o arquivo sob a chave. Repetir com o mesmo conteudo e seguro.
+     */
+    void put(String chave, Path arquivo) throws IOException;
+
+    /**
+     * Copia o conteudo da chave para {@code destino}. Devolve {@code false} se a chave nao existe.
+     */
+    boolean get(String chave, Path destino) throws IOException;
+
+    /**
+     * Remove a chave; chave inexistente nao e erro.
+     */
+    void delete(String chave) throws IOException;
+
+    static void validarChave(String chave) {
+        if (chave == null || !chave.matches("[A-Za-z0-9._-]{4,200}") || chave.startsWith(".")) {
+            throw new IllegalArgumentException("Chave de armazenamento invalida.");
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.app.expenseControl.service;
+
+/**
+ * Resultado de uma gravacao no armazenamento de anexos. {@code contentType} vem dos primeiros
+ * bytes do arquivo e fica {@code null} quando o formato nao e reconhecido.
+ */
+public record StoredFile(String fileId, long size, String sha256, String contentType) {}
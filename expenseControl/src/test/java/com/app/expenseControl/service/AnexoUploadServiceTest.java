@@ -0,0 +1,164 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.AnexoUploadCreateDTO;
+import com.app.expenseControl.dto.AnexoUploadResponseDTO;
+import com.app.expenseControl.entity.AnexoUpload;
+import com.app.expenseControl.repository.AnexoUploadRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sessoes de upload retomavel: offsets, avanco condicional e conclusao.
+ */
+class AnexoUploadServiceTest {
+
+	private static final String ID = "sessao-1";
+
+	private AnexoUploadRepository repository;
+	private AttachmentService attachmentService;
+	private GoogleDriveStorageService storage;
+	private AnexoUploadService service;
+
+	@BeforeEach
+	void iniciar() {
+		repository = mock(AnexoUploadRepository.class);
+		attachmentService = mock(AttachmentService.class);
+		storage = mock(GoogleDriveStorageService.class);
+		service = new AnexoUploadService(repository, attachmentService, storage, mock(PlatformTransactionManager.class), 1000, 60);
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("loja", "senha"));
+	}
+
+	@AfterEach
+	void limpar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void trechoAvancaOOffsetDepoisDeGravar() {
+		when(repository.findById(ID)).thenReturn(Optional.of(sessao("loja", 100L)));
+		when(storage.writeAt(eq("tmp-1"), eq(100L), any(InputStream.class), eq(400L))).thenReturn(150L);
+		when(repository.avancar(eq(ID), eq(100L), eq(250L), any())).thenReturn(1);
+
+		AnexoUploadResponseDTO resposta = service.enviarTrecho(ID, 100L, corpo());
+
+		assertEquals(250L, resposta.recebido());
+	}
+
+	@Test
+	void offsetDiferenteDoRecebidoRetornaConflitoSemGravar() {
+		when(repository.findById(ID)).thenReturn(Optional.of(sessao("loja", 100L)));
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+				() -> service.enviarTrecho(ID, 0L, corpo()));
+
+		assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+		verify(storage, never()).writeAt(anyString(), anyLong(), any(), anyLong());
+	}
+
+	@Test
+	void avancoConcorrenteRetornaConflitoELiberaASessao() {
+		when(repository.findById(ID)).thenReturn(Optional.of(sessao("loja", 0L)));
+		when(storage.writeAt(eq("tmp-1"), eq(0L), any(InputStream.class), anyLong())).thenReturn(50L);
+		// Outro pedido avancou a sessao enquanto este gravava.
+		when(repository.avancar(eq(ID), eq(0L), eq(50L), any())).thenReturn(0, 1);
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+				() -> service.enviarTrecho(ID, 0L, corpo()));
+
+		assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+		// A sessao nao fica presa como "em uso" depois da falha.
+		assertEquals(50L, service.enviarTrecho(ID, 0L, corpo()).recebido());
+	}
+
+	@Test
+	void sessaoDeOutroUsuarioNaoExiste() {
+		when(repository.findById(ID)).thenReturn(Optional.of(sessao("outra-loja", 0L)));
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> service.consultar(ID));
+
+		assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+	}
+
+	@Test
+	void conclusaoExigeArquivoCompleto() {
+		when(repository.findById(ID)).thenReturn(Optional.of(sessao("loja", 499L)));
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> service.concluir(ID));
+
+		assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+		verify(attachmentService, never()).armazenarRecebido(any(), any(), any(), any(), any());
+	}
+
+	@Test
+	void conclusaoDeSessaoJaRemovidaExpira() {
+		when(repository.findById(ID)).thenReturn(Optional.of(sessao("loja", 500L)));
+		when(repository.removerPorId(ID)).thenReturn(0);
+
+		service.concluir(ID);
+
+		ArgumentCaptor<Runnable> naReserva = ArgumentCaptor.forClass(Runnable.class);
+		verify(attachmentService).armazenarRecebido(eq(7L), eq("nota.pdf"), eq("application/pdf"), eq("tmp-1"), naReserva.capture());
+		// A limpeza removeu a sessao antes da reserva: o temporario nao pode virar anexo.
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> naReserva.getValue().run());
+		assertEquals(HttpStatus.GONE, ex.getStatusCode());
+	}
+
+	@Test
+	void falhaAoAlocarTemporarioRemoveASessao() {
+		when(attachmentService.validarNovoAnexo(eq(7L), eq("application/pdf"), anyLong())).thenReturn("loja");
+		when(storage.newTempId()).thenReturn("tmp-1");
+		when(repository.save(any())).thenAnswer(invocacao -> invocacao.getArgument(0));
+		doThrow(new IllegalStateException("disco cheio")).when(storage).allocateTemp("tmp-1", 500L);
+
+		assertThrows(IllegalStateException.class,
+				() -> service.criar(7L, new AnexoUploadCreateDTO("nota.pdf", "application/pdf", 500L)));
+
+		ArgumentCaptor<AnexoUpload> salvo = ArgumentCaptor.forClass(AnexoUpload.class);
+		verify(repository).save(salvo.capture());
+		verify(repository).removerPorId(salvo.getValue().getId());
+	}
+
+	private AnexoUpload sessao(String usuario, Long recebido) {
+		LocalDateTime agora = LocalDateTime.now();
+		return AnexoUpload.builder()
+				.id(ID)
+				.solicitacaoId(7L)
+				.usuario(usuario)
+				.originalName("nota.pdf")
+				.contentType("application/pdf")
+				.tamanho(500L)
+				.recebido(recebido)
+				.arquivoId("tmp-1")
+				.criadoEm(agora)
+				.expiraEm(agora.plusMinutes(60))
+				.build();
+	}
+
+	private static InputStream corpo() {
+		return new ByteArrayInputStream(new byte[50]);
+	}
+}
@@ -0,0 +1,212 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.entity.Attachment;
+import com.app.expenseControl.entity.Conta;
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.enums.StatusAnexo;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.enums.TipoConta;
+import com.app.expenseControl.repository.AnexoBlobRepository;
+import com.app.expenseControl.repository.AnexoJdbcRepository;
+import com.app.expenseControl.repository.AttachmentRepository;
+import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.SolicitacaoJdbcRepository;
+import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reserva de vagas, referencias aos blobs de anexo e coleta dos blobs liberados.
+ */
+class AttachmentServiceTest {
+
+	private static final String SHA_A = "a".repeat(64);
+	private static final String SHA_B = "b".repeat(64);
+
+	private AttachmentRepository attachmentRepository;
+	private AnexoBlobRepository blobRepository;
+	private AnexoJdbcRepository anexoJdbcRepository;
+	private SolicitacaoRepository solicitacaoRepository;
+	private SolicitacaoJdbcRepository solicitacaoJdbcRepository;
+	private ContaRepository contaRepository;
+	private GoogleDriveStorageService storage;
+	private AnexoPreviewService previewService;
+	private ApplicationEventPublisher eventPublisher;
+	private AttachmentService service;
+
+	@BeforeEach
+	void iniciar() {
+		attachmentRepository = mock(AttachmentRepository.class);
+		blobRepository = mock(AnexoBlobRepository.class);
+		anexoJdbcRepository = mock(AnexoJdbcRepository.class);
+		solicitacaoRepository = mock(SolicitacaoRepository.class);
+		solicitacaoJdbcRepository = mock(SolicitacaoJdbcRepository.class);
+		contaRepository = mock(ContaRepository.class);
+		storage = mock(GoogleDriveStorageService.class);
+		previewService = mock(AnexoPreviewService.class);
+		eventPublisher = mock(ApplicationEventPublisher.class);
+		service = new AttachmentService(
+				attachmentRepository,
+				blobRepository,
+				anexoJdbcRepository,
+				solicitacaoRepository,
+				solicitacaoJdbcRepository,
+				contaRepository,
+				storage,
+				previewService,
+				mock(AnexoImagemNormalizer.class),
+				mock(ContaPermissionService.class),
+				mock(AuditoriaService.class),
+				eventPublisher,
+				mock(PlatformTransactionManager.class),
+				30,
+				60,
+				1
+		);
+		when(storage.isBlobId(anyString())).thenAnswer(invocacao -> ((String) invocacao.getArgument(0)).startsWith("local-blob:"));
+		when(storage.blobId(anyString())).thenAnswer(invocacao -> "local-blob:" + invocacao.getArgument(0));
+	}
+
+	@AfterEach
+	void limpar() {
+		service.destroy();
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void uploadSemVagaNoContadorNaoReserva() {
+		prepararUpload();
+		when(solicitacaoJdbcRepository.reservarVagasAnexo(7L, 2, 5)).thenReturn(null);
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+				() -> service.uploadLote(7L, List.of(arquivo("a.pdf"), arquivo("b.pdf"))));
+
+		assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+		verify(attachmentRepository, never()).saveAll(anyList());
+		verify(storage, never()).stage(any(), any(), anyLong());
+	}
+
+	@Test
+	void loteNumeraPeloContadorEDevolveAsVagasQuandoFalha() {
+		prepararUpload();
+		// Os numeros 1 a 5 ja foram usados (mesmo que por anexos removidos): o lote recebe 6 e 7.
+		when(solicitacaoJdbcRepository.reservarVagasAnexo(7L, 2, 5)).thenReturn(7L);
+		AtomicLong ids = new AtomicLong(20);
+		List<Attachment> reservados = new ArrayList<>();
+		when(attachmentRepository.saveAll(anyList())).thenAnswer(invocacao -> {
+			List<Attachment> anexos = invocacao.getArgument(0);
+			anexos.forEach(anexo -> anexo.setId(ids.incrementAndGet()));
+			reservados.addAll(anexos);
+			return anexos;
+		});
+		when(storage.stage(any(), any(InputStream.class), anyLong())).thenThrow(new IllegalStateException("disco cheio"));
+
+		assertThrows(IllegalStateException.class,
+				() -> service.uploadLote(7L, List.of(arquivo("a.pdf"), arquivo("b.pdf"))));
+
+		assertEquals(2, reservados.size());
+		assertTrue(reservados.get(0).getStoredName().endsWith("-006.pdf"));
+		assertTrue(reservados.get(1).getStoredName().endsWith("-007.pdf"));
+		assertTrue(reservados.stream().allMatch(anexo -> anexo.getStatus() == StatusAnexo.PENDENTE));
+		verify(anexoJdbcRepository).removerPendentes(List.of(21L));
+		verify(anexoJdbcRepository).removerPendentes(List.of(22L));
+	}
+
+	@Test
+	void exclusaoDaSolicitacaoLiberaCadaReferenciaEApagaSoArquivosAvulsos() {
+		Attachment normalizado = anexo(1L, "local-blob:" + SHA_A, StatusAnexo.CONFIRMADO, SHA_A, SHA_B);
+		Attachment duplicado = anexo(2L, "local-blob:" + SHA_A, StatusAnexo.CONFIRMADO, SHA_A, null);
+		Attachment antigo = anexo(3L, "local-file:7/nota.pdf", StatusAnexo.CONFIRMADO, null, null);
+		Attachment pendente = anexo(4L, "local-file:7/tmp.pdf", StatusAnexo.PENDENTE, null, null);
+		when(attachmentRepository.findBySolicitacaoIdOrderByCreatedAtAsc(7L))
+				.thenReturn(List.of(normalizado, duplicado, antigo, pendente));
+
+		service.deleteAllForSolicitacao(7L);
+
+		verify(blobRepository, times(2)).liberar(eq(SHA_A), any());
+		verify(blobRepository, times(1)).liberar(eq(SHA_B), any());
+		ArgumentCaptor<AnexosRemovidosEvent> evento = ArgumentCaptor.forClass(AnexosRemovidosEvent.class);
+		verify(eventPublisher).publishEvent(evento.capture());
+		assertEquals(List.of("local-file:7/nota.pdf", "local-file:7/tmp.pdf"), evento.getValue().fileIds());
+		// Blobs nunca sao apagados direto: podem estar em uso por outros anexos.
+		verify(storage, never()).deleteFile(anyString());
+	}
+
+	@Test
+	void coletaRemoveApenasBlobsQueSeguemSemReferencia() {
+		when(blobRepository.findLiberados(any(), any())).thenReturn(List.of(SHA_A, SHA_B));
+		when(blobRepository.removerSeLiberado(SHA_A)).thenReturn(1);
+		// Um upload voltou a usar SHA_B entre a consulta e a remocao.
+		when(blobRepository.removerSeLiberado(SHA_B)).thenReturn(0);
+		when(storage.hasRemoteTier()).thenReturn(true);
+
+		service.coletarBlobs();
+
+		verify(storage).deleteFile("local-blob:" + SHA_A);
+		verify(previewService).removerPreviews(SHA_A);
+		verify(storage, never()).deleteFile("local-blob:" + SHA_B);
+		verify(previewService, never()).removerPreviews(SHA_B);
+		verify(blobRepository).reiniciarReplicacao(SHA_B);
+		verify(blobRepository, never()).reiniciarReplicacao(SHA_A);
+	}
+
+	private void prepararUpload() {
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("loja", "senha"));
+		when(contaRepository.findByUsuario("loja")).thenReturn(Optional.of(Conta.builder()
+				.usuario("loja")
+				.tipo(TipoConta.FILIAL)
+				.filial("matriz")
+				.build()));
+		when(solicitacaoRepository.findById(7L)).thenReturn(Optional.of(Solicitacao.builder()
+				.id(7L)
+				.filial("matriz")
+				.titulo("Taxi aeroporto")
+				.status(StatusSolicitacao.PENDENTE)
+				.build()));
+	}
+
+	private static MockMultipartFile arquivo(String nome) {
+		return new MockMultipartFile("files", nome, "application/pdf", "%PDF-1.4".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private Attachment anexo(Long id, String fileId, StatusAnexo status, String sha256, String originalSha256) {
+		return Attachment.builder()
+				.id(id)
+				.driveFileId(fileId)
+				.status(status)
+				.sha256(sha256)
+				.originalSha256(originalSha256)
+				.originalName("nota.pdf")
+				.build();
+	}
+}
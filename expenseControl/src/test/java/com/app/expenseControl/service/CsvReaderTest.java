@@ -0,0 +1,90 @@
+package com.app.expenseControl.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvReaderTest {
+
+	@Test
+	void detectaPontoEVirgulaIgnoraBomEAceitaCrLf() throws IOException {
+		try (CsvReader csv = abrir("\uFEFFtitulo;valor\r\nAlmoco;\"10,50\"\r\n", 100)) {
+			assertEquals(List.of("titulo", "valor"), csv.proximo().campos());
+			CsvReader.Registro registro = csv.proximo();
+			assertEquals(2, registro.linha());
+			assertEquals(List.of("Almoco", "10,50"), registro.campos());
+			assertNull(registro.erro());
+			assertNull(csv.proximo());
+		}
+	}
+
+	@Test
+	void campoEntreAspasAceitaQuebraDeLinhaEAspasDuplicadas() throws IOException {
+		try (CsvReader csv = abrir("a;b\n\"linha 1\nlinha 2\";\"di\"\"z\"\nfim;z", 100)) {
+			csv.proximo();
+			CsvReader.Registro multilinha = csv.proximo();
+			assertEquals(2, multilinha.linha());
+			assertEquals(List.of("linha 1\nlinha 2", "di\"z"), multilinha.campos());
+
+			// A numeracao segue as linhas fisicas; o ultimo registro nao precisa de quebra final.
+			CsvReader.Registro ultimo = csv.proximo();
+			assertEquals(4, ultimo.linha());
+			assertEquals(List.of("fim", "z"), ultimo.campos());
+			assertNull(csv.proximo());
+		}
+	}
+
+	@Test
+	void campoGrandeEMarcadoComErroSemAfetarOsSeguintes() throws IOException {
+		try (CsvReader csv = abrir("a,b\n123456,x\nok,y\n", 5)) {
+			csv.proximo();
+			CsvReader.Registro grande = csv.proximo();
+			assertEquals("Campo excede 5 caracteres.", grande.erro());
+			assertEquals(List.of("12345", "x"), grande.campos());
+
+			CsvReader.Registro seguinte = csv.proximo();
+			assertNull(seguinte.erro());
+			assertEquals(List.of("ok", "y"), seguinte.campos());
+		}
+	}
+
+	@Test
+	void registroComColunasDemaisEMarcadoComErro() throws IOException {
+		String muitas = "x,".repeat(70) + "x";
+		try (CsvReader csv = abrir("a,b\n" + muitas + "\n", 100)) {
+			csv.proximo();
+			CsvReader.Registro registro = csv.proximo();
+			assertEquals("Registro excede 64 colunas.", registro.erro());
+			assertEquals(64, registro.campos().size());
+		}
+	}
+
+	@Test
+	void aspasNaoFechadasNoFimDoArquivo() throws IOException {
+		try (CsvReader csv = abrir("a,b\n\"sem fim,1", 100)) {
+			csv.proximo();
+			assertEquals("Aspas nao fechadas.", csv.proximo().erro());
+		}
+	}
+
+	@Test
+	void linhaEmBrancoEVazia() throws IOException {
+		try (CsvReader csv = abrir("a,b\n\n1,2\n", 100)) {
+			csv.proximo();
+			assertTrue(csv.proximo().vazio());
+			assertFalse(csv.proximo().vazio());
+		}
+	}
+
+	private CsvReader abrir(String conteudo, int maxCampo) throws IOException {
+		return CsvReader.abrir(new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8)), maxCampo);
+	}
+}
@@ -0,0 +1,132 @@
+package com.app.expenseControl.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Camada remota contra um servidor de objetos em memoria, no mesmo processo.
+ */
+class HttpObjectStorageBackendTest {
+
+	private static final String CHAVE = "a".repeat(64);
+	private static final String TOKEN = "Bearer teste";
+
+	@TempDir
+	Path temp;
+
+	private final Map<String, byte[]> objetos = new ConcurrentHashMap<>();
+	private HttpServer server;
+	private HttpObjectStorageBackend backend;
+
+	@BeforeEach
+	void iniciar() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/blobs/", this::atender);
+		server.start();
+		backend = new HttpObjectStorageBackend(
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/blobs/",
+				TOKEN,
+				Duration.ofSeconds(5)
+		);
+	}
+
+	@AfterEach
+	void parar() {
+		server.stop(0);
+	}
+
+	private void atender(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!TOKEN.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+				exchange.sendResponseHeaders(403, -1);
+				return;
+			}
+			String chave = exchange.getRequestURI().getPath().substring("/blobs/".length());
+			switch (exchange.getRequestMethod()) {
+				case "PUT" -> {
+					objetos.put(chave, exchange.getRequestBody().readAllBytes());
+					exchange.sendResponseHeaders(200, -1);
+				}
+				case "GET" -> {
+					byte[] conteudo = objetos.get(chave);
+					if (conteudo == null) {
+						exchange.sendResponseHeaders(404, -1);
+						return;
+					}
+					exchange.sendResponseHeaders(200, conteudo.length);
+					try (OutputStream out = exchange.getResponseBody()) {
+						out.write(conteudo);
+					}
+				}
+				case "DELETE" -> exchange.sendResponseHeaders(objetos.remove(chave) == null ? 404 : 204, -1);
+				default -> exchange.sendResponseHeaders(405, -1);
+			}
+		}
+	}
+
+	@Test
+	void gravaLeEApaga() throws IOException {
+		byte[] conteudo = "conteudo do anexo".getBytes(StandardCharsets.UTF_8);
+		Path origem = Files.write(temp.resolve("origem"), conteudo);
+
+		backend.put(CHAVE, origem);
+		assertArrayEquals(conteudo, objetos.get(CHAVE));
+
+		Path destino = temp.resolve("destino");
+		assertTrue(backend.get(CHAVE, destino));
+		assertArrayEquals(conteudo, Files.readAllBytes(destino));
+
+		backend.delete(CHAVE);
+		assertFalse(objetos.containsKey(CHAVE));
+	}
+
+	@Test
+	void chaveInexistenteNaoEErro() throws IOException {
+		Path destino = temp.resolve("destino");
+
+		assertFalse(backend.get(CHAVE, destino));
+		assertFalse(Files.exists(destino));
+		assertFalse(Files.exists(temp.resolve("destino.download")));
+		backend.delete(CHAVE);
+	}
+
+	@Test
+	void falhaDoServidorViraIOException() throws IOException {
+		HttpObjectStorageBackend semToken = new HttpObjectStorageBackend(
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/blobs",
+				"",
+				Duration.ofSeconds(5)
+		);
+		Path origem = Files.write(temp.resolve("origem"), new byte[]{1, 2, 3});
+
+		IOException erro = assertThrows(IOException.class, () -> semToken.put(CHAVE, origem));
+		assertTrue(erro.getMessage().contains("403"));
+		assertEquals(0, objetos.size());
+	}
+
+	@Test
+	void rejeitaChaveInvalida() {
+		assertThrows(IllegalArgumentException.class, () -> backend.get("../fora", temp.resolve("x")));
+	}
+}
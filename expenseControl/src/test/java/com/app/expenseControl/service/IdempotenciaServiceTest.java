@@ -0,0 +1,196 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.entity.IdempotenciaChave;
+import com.app.expenseControl.enums.StatusIdempotencia;
+import com.app.expenseControl.repository.IdempotenciaChaveRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reserva, renovacao e conclusao das chaves de idempotencia.
+ */
+class IdempotenciaServiceTest {
+
+	private static final String USUARIO = "ana";
+	private static final String CHAVE = "chave-1";
+	private static final String OPERACAO = "criar-solicitacao";
+	private static final String REQUISICAO = "{\"titulo\":\"Taxi\"}";
+
+	private IdempotenciaChaveRepository repository;
+	private IdempotenciaService service;
+
+	@BeforeEach
+	void iniciar() {
+		repository = mock(IdempotenciaChaveRepository.class);
+		service = new IdempotenciaService(repository, mock(PlatformTransactionManager.class), 24, 120, 30000);
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(USUARIO, "senha"));
+	}
+
+	@AfterEach
+	void limpar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void concluiComOTokenDaPropriaReserva() {
+		when(repository.reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any()))
+				.thenReturn(1);
+		when(repository.concluir(eq(USUARIO), eq(CHAVE), anyString(), eq(10L))).thenReturn(1);
+
+		IdempotenciaService.Resultado<Long> resultado = executar(() -> 10L);
+
+		assertEquals(10L, resultado.corpo());
+		assertFalse(resultado.reproduzido());
+		ArgumentCaptor<String> reservado = ArgumentCaptor.forClass(String.class);
+		ArgumentCaptor<LocalDateTime> criadoEm = ArgumentCaptor.forClass(LocalDateTime.class);
+		ArgumentCaptor<LocalDateTime> reservadaAte = ArgumentCaptor.forClass(LocalDateTime.class);
+		verify(repository).reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), reservado.capture(),
+				criadoEm.capture(), reservadaAte.capture(), any());
+		verify(repository).concluir(USUARIO, CHAVE, reservado.getValue(), 10L);
+		assertEquals(criadoEm.getValue().plusSeconds(120), reservadaAte.getValue());
+	}
+
+	@Test
+	void conclusaoRecusadaDesfazAAcaoComConflito() {
+		when(repository.reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any()))
+				.thenReturn(1);
+		when(repository.concluir(eq(USUARIO), eq(CHAVE), anyString(), anyLong())).thenReturn(0);
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> executar(() -> 10L));
+
+		assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+		verify(repository).liberar(eq(USUARIO), eq(CHAVE), anyString());
+	}
+
+	@Test
+	void reservaEmAndamentoDentroDoPrazoRetornaConflito() {
+		LocalDateTime agora = LocalDateTime.now();
+		when(repository.reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any()))
+				.thenReturn(0);
+		// Criada ha muito tempo, mas ainda renovada: a acao original continua rodando.
+		when(repository.findByUsuarioAndChave(USUARIO, CHAVE))
+				.thenReturn(Optional.of(existente(StatusIdempotencia.EM_ANDAMENTO, agora.minusHours(1), agora.plusSeconds(60))));
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> executar(() -> 10L));
+
+		assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+		verify(repository, never()).removerPorId(anyLong());
+	}
+
+	@Test
+	void assumeReservaSemRenovacao() {
+		LocalDateTime agora = LocalDateTime.now();
+		when(repository.reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any()))
+				.thenReturn(0, 1);
+		when(repository.findByUsuarioAndChave(USUARIO, CHAVE))
+				.thenReturn(Optional.of(existente(StatusIdempotencia.EM_ANDAMENTO, agora.minusMinutes(10), agora.minusSeconds(1))));
+		when(repository.concluir(eq(USUARIO), eq(CHAVE), anyString(), eq(10L))).thenReturn(1);
+
+		IdempotenciaService.Resultado<Long> resultado = executar(() -> 10L);
+
+		assertEquals(10L, resultado.corpo());
+		verify(repository).removerPorId(1L);
+		verify(repository, times(2)).reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any());
+	}
+
+	@Test
+	void renovaApenasEnquantoAAcaoRoda() {
+		when(repository.reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any()))
+				.thenReturn(1);
+		when(repository.concluir(eq(USUARIO), eq(CHAVE), anyString(), eq(10L))).thenReturn(1);
+		AtomicReference<Collection<String>> renovados = new AtomicReference<>();
+		when(repository.renovar(anyCollection(), any())).thenAnswer(invocacao -> {
+			renovados.set(invocacao.getArgument(0));
+			return 1;
+		});
+
+		executar(() -> {
+			service.renovarReservas();
+			return 10L;
+		});
+		service.renovarReservas();
+
+		verify(repository, times(1)).renovar(anyCollection(), any());
+		ArgumentCaptor<String> token = ArgumentCaptor.forClass(String.class);
+		verify(repository).concluir(eq(USUARIO), eq(CHAVE), token.capture(), eq(10L));
+		assertEquals(1, renovados.get().size());
+		assertTrue(renovados.get().contains(token.getValue()));
+	}
+
+	@Test
+	void repeticaoDeChaveConcluidaReproduzORecurso() {
+		LocalDateTime agora = LocalDateTime.now();
+		IdempotenciaChave concluida = existente(StatusIdempotencia.CONCLUIDA, agora.minusMinutes(5), agora.minusMinutes(4));
+		concluida.setRecursoId(42L);
+		when(repository.reservar(eq(USUARIO), eq(CHAVE), eq(OPERACAO), anyString(), anyString(), any(), any(), any()))
+				.thenReturn(0);
+		when(repository.findByUsuarioAndChave(USUARIO, CHAVE)).thenReturn(Optional.of(concluida));
+
+		IdempotenciaService.Resultado<Long> resultado = executar(() -> {
+			throw new AssertionError("acao nao deve rodar de novo");
+		});
+
+		assertEquals(420L, resultado.corpo());
+		assertTrue(resultado.reproduzido());
+		verify(repository, never()).concluir(anyString(), anyString(), anyString(), any());
+	}
+
+	private IdempotenciaService.Resultado<Long> executar(Supplier<Long> acao) {
+		return service.executar(CHAVE, OPERACAO, REQUISICAO, acao, id -> id, id -> id * 10);
+	}
+
+	private IdempotenciaChave existente(StatusIdempotencia status, LocalDateTime criadoEm, LocalDateTime reservadaAte) {
+		return IdempotenciaChave.builder()
+				.id(1L)
+				.usuario(USUARIO)
+				.chave(CHAVE)
+				.operacao(OPERACAO)
+				.fingerprint(fingerprint())
+				.status(status)
+				.token("outra-tentativa")
+				.criadoEm(criadoEm)
+				.reservadaAte(reservadaAte)
+				.expiraEm(criadoEm.plusHours(24))
+				.build();
+	}
+
+	private static String fingerprint() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(digest.digest((OPERACAO + "\n" + REQUISICAO).getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.SolicitacaoLinhaCreateDTO;
+import com.app.expenseControl.entity.SolicitacaoLinha;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LinhasDiffTest {
+
+	private static final Long SOLICITACAO = 10L;
+
+	@Test
+	void reenvioIgualMantemTudo() {
+		SolicitacaoLinha almoco = existente(1L, "Almoco", "30.00", 0);
+		SolicitacaoLinha taxi = existente(2L, "Taxi", "15.50", 1);
+
+		LinhasDiff diff = LinhasDiff.calcular(SOLICITACAO, List.of(almoco, taxi), List.of(
+				desejada("Almoco", "30"),
+				desejada(" Taxi ", "15.5")
+		));
+
+		assertTrue(diff.novas().isEmpty());
+		assertTrue(diff.removidas().isEmpty());
+		assertSame(almoco, diff.linhas().get(0));
+		assertSame(taxi, diff.linhas().get(1));
+		assertEquals("30.00", almoco.getValor().toPlainString());
+	}
+
+	@Test
+	void reordenarSoAtualizaAPosicao() {
+		SolicitacaoLinha almoco = existente(1L, "Almoco", "30.00", 0);
+		SolicitacaoLinha taxi = existente(2L, "Taxi", "15.50", 1);
+
+		LinhasDiff diff = LinhasDiff.calcular(SOLICITACAO, List.of(almoco, taxi), List.of(
+				desejada("Taxi", "15.50"),
+				desejada("Almoco", "30.00")
+		));
+
+		assertTrue(diff.novas().isEmpty());
+		assertTrue(diff.removidas().isEmpty());
+		assertEquals(List.of(taxi, almoco), diff.linhas());
+		assertEquals(0, taxi.getOrdem());
+		assertEquals(1, almoco.getOrdem());
+	}
+
+	@Test
+	void linhaAlteradaReaproveitaExistenteESaldoViraInsercao() {
+		SolicitacaoLinha almoco = existente(1L, "Almoco", "30.00", 0);
+		SolicitacaoLinha taxi = existente(2L, "Taxi", "15.50", 1);
+
+		LinhasDiff diff = LinhasDiff.calcular(SOLICITACAO, List.of(almoco, taxi), List.of(
+				desejada("Almoco", "30.00"),
+				desejada("Hotel", "200.00"),
+				desejada("Estacionamento", "12.00")
+		));
+
+		assertSame(almoco, diff.linhas().get(0));
+		// O taxi virou hotel (UPDATE) em vez de DELETE + INSERT.
+		assertSame(taxi, diff.linhas().get(1));
+		assertEquals("Hotel", taxi.getDescricao());
+		assertEquals(1, diff.novas().size());
+		SolicitacaoLinha nova = diff.novas().get(0);
+		assertSame(nova, diff.linhas().get(2));
+		assertNull(nova.getId());
+		assertEquals(SOLICITACAO, nova.getSolicitacaoId());
+		assertEquals(2, nova.getOrdem());
+		assertTrue(diff.removidas().isEmpty());
+	}
+
+	@Test
+	void linhasQueSobramSaoRemovidas() {
+		SolicitacaoLinha almoco = existente(1L, "Almoco", "30.00", 0);
+		SolicitacaoLinha taxi = existente(2L, "Taxi", "15.50", 1);
+		SolicitacaoLinha hotel = existente(3L, "Hotel", "200.00", 2);
+
+		LinhasDiff diff = LinhasDiff.calcular(SOLICITACAO, List.of(almoco, taxi, hotel), List.of(
+				desejada("Hotel", "200.00")
+		));
+
+		assertEquals(List.of(hotel), diff.linhas());
+		assertEquals(0, hotel.getOrdem());
+		assertEquals(List.of(almoco, taxi), diff.removidas());
+		assertTrue(diff.novas().isEmpty());
+	}
+
+	private SolicitacaoLinha existente(Long id, String descricao, String valor, int ordem) {
+		return SolicitacaoLinha.builder()
+				.id(id)
+				.solicitacaoId(SOLICITACAO)
+				.descricao(descricao)
+				.valor(new BigDecimal(valor))
+				.ordem(ordem)
+				.build();
+	}
+
+	private SolicitacaoLinhaCreateDTO desejada(String descricao, String valor) {
+		return new SolicitacaoLinhaCreateDTO(descricao, new BigDecimal(valor), null);
+	}
+}
@@ -0,0 +1,170 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.dto.OrcamentoConsumoTotaisDTO;
+import com.app.expenseControl.entity.Categoria;
+import com.app.expenseControl.entity.Orcamento;
+import com.app.expenseControl.repository.CategoriaRepository;
+import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.OrcamentoConsumoRepository;
+import com.app.expenseControl.repository.OrcamentoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checagem de orcamento bloqueante das decisoes em lote e da importacao.
+ */
+class OrcamentoServiceTest {
+
+	private static final String FILIAL = "matriz";
+	private static final Long CATEGORIA = 7L;
+	private static final String COMPETENCIA = "2026-10";
+
+	private OrcamentoRepository orcamentoRepository;
+	private OrcamentoConsumoRepository consumoRepository;
+	private OrcamentoService service;
+
+	@BeforeEach
+	void iniciar() {
+		orcamentoRepository = mock(OrcamentoRepository.class);
+		consumoRepository = mock(OrcamentoConsumoRepository.class);
+		service = new OrcamentoService(
+				orcamentoRepository,
+				consumoRepository,
+				mock(CategoriaRepository.class),
+				mock(ContaRepository.class),
+				mock(ContaPermissionService.class),
+				mock(AuditoriaService.class)
+		);
+	}
+
+	@Test
+	void bloqueiaApenasAprovacoesQuePassamDoLimite() {
+		orcamento("1000.00", true);
+		utilizado("920.00");
+
+		List<String> bloqueios = service.bloqueiosEmLote(List.of(
+				aprovacao("100.00", "150.00"),
+				aprovacao("100.00", "150.00")
+		));
+
+		assertNull(bloqueios.get(0));
+		assertNotNull(bloqueios.get(1));
+		assertTrue(bloqueios.get(1).contains("utilizado 1020.00 de 1000.00"));
+		// Um unico upsert de trava e uma leitura por chave, nao por item.
+		verify(consumoRepository, times(1)).acumular(FILIAL, CATEGORIA, COMPETENCIA, BigDecimal.ZERO, BigDecimal.ZERO);
+		verify(consumoRepository, times(1)).totais(FILIAL, CATEGORIA, COMPETENCIA);
+	}
+
+	@Test
+	void reprovacoesDoLoteLiberamEspacoAntesDasAprovacoes() {
+		orcamento("1000.00", true);
+		utilizado("950.00");
+
+		List<String> bloqueios = service.bloqueiosEmLote(List.of(
+				aprovacao("100.00", "150.00"),
+				reprovacao("100.00")
+		));
+
+		assertEquals(Arrays.asList(null, null), bloqueios);
+	}
+
+	@Test
+	void itemBloqueadoNaoConsomeOrcamentoDosSeguintes() {
+		orcamento("1000.00", true);
+		utilizado("900.00");
+
+		List<String> bloqueios = service.bloqueiosEmLote(List.of(
+				aprovacao("0.00", "500.00"),
+				aprovacao("0.00", "100.00")
+		));
+
+		assertNotNull(bloqueios.get(0));
+		assertNull(bloqueios.get(1));
+	}
+
+	@Test
+	void solicitacoesNovasContamOTotalInteiro() {
+		orcamento("1000.00", true);
+		utilizado("700.00");
+
+		List<String> bloqueios = service.bloqueiosEmLote(List.of(
+				importacao("200.00"),
+				importacao("200.00"),
+				importacao("100.00")
+		));
+
+		assertNull(bloqueios.get(0));
+		assertTrue(bloqueios.get(1).contains("utilizado 1100.00 de 1000.00"));
+		assertNull(bloqueios.get(2));
+	}
+
+	@Test
+	void orcamentoSemBloqueioNaoBarraNemTravaContador() {
+		orcamento("10.00", false);
+
+		List<String> bloqueios = service.bloqueiosEmLote(List.of(aprovacao("100.00", "150.00")));
+
+		assertNull(bloqueios.get(0));
+		verify(consumoRepository, never()).acumular(anyString(), anyLong(), anyString(), any(), any());
+		verify(consumoRepository, never()).totais(anyString(), anyLong(), anyString());
+	}
+
+	private void orcamento(String limite, boolean bloquear) {
+		Orcamento orcamento = Orcamento.builder()
+				.filial("Matriz")
+				.filialKey(FILIAL)
+				.categoria(Categoria.builder().id(CATEGORIA).nome("Viagem").build())
+				.competencia(COMPETENCIA)
+				.valorLimite(new BigDecimal(limite))
+				.bloquearExcesso(bloquear)
+				.build();
+		when(orcamentoRepository.findByFilialKeyAndCategoriaIdAndCompetencia(FILIAL, CATEGORIA, COMPETENCIA))
+				.thenReturn(Optional.of(orcamento));
+	}
+
+	private void utilizado(String comprometido) {
+		when(consumoRepository.totais(FILIAL, CATEGORIA, COMPETENCIA)).thenReturn(Optional.of(
+				new OrcamentoConsumoTotaisDTO(FILIAL, CATEGORIA, COMPETENCIA, new BigDecimal(comprometido), BigDecimal.ZERO)
+		));
+	}
+
+	private OrcamentoService.Transicao aprovacao(String estimado, String aprovado) {
+		return new OrcamentoService.Transicao(
+				consumo(new BigDecimal(estimado), BigDecimal.ZERO),
+				consumo(BigDecimal.ZERO, new BigDecimal(aprovado))
+		);
+	}
+
+	private OrcamentoService.Transicao importacao(String estimado) {
+		return new OrcamentoService.Transicao(null, consumo(new BigDecimal(estimado), BigDecimal.ZERO));
+	}
+
+	private OrcamentoService.Transicao reprovacao(String estimado) {
+		return new OrcamentoService.Transicao(
+				consumo(new BigDecimal(estimado), BigDecimal.ZERO),
+				consumo(BigDecimal.ZERO, BigDecimal.ZERO)
+		);
+	}
+
+	private OrcamentoService.Consumo consumo(BigDecimal comprometido, BigDecimal aprovado) {
+		return new OrcamentoService.Consumo(FILIAL, CATEGORIA, COMPETENCIA, comprometido, aprovado);
+	}
+}
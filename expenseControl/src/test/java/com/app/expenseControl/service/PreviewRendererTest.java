@@ -0,0 +1,105 @@
+package com.app.expenseControl.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreviewRendererTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void reducaoComAlfaMantemTransparencia() {
+		BufferedImage origem = new BufferedImage(400, 200, BufferedImage.TYPE_INT_ARGB);
+		origem.setRGB(0, 0, 0x00FFFFFF);
+
+		BufferedImage comAlfa = PreviewRenderer.reduzir(origem, 100, true);
+		BufferedImage opaca = PreviewRenderer.reduzir(origem, 100);
+
+		assertEquals(100, comAlfa.getWidth());
+		assertTrue(comAlfa.getColorModel().hasAlpha());
+		assertEquals(0, comAlfa.getRGB(0, 0) >>> 24);
+		assertFalse(opaca.getColorModel().hasAlpha());
+	}
+
+	@Test
+	void jpegSemMetadadosDescartaExifEComentariosSemRecodificar() throws IOException {
+		byte[] limpo = codificar(new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB), "jpeg");
+		ByteArrayOutputStream comMetadados = new ByteArrayOutputStream();
+		comMetadados.write(limpo, 0, 2);
+		segmento(comMetadados, 0xFFE1, "Exif\0\0GPS -23.5,-46.6");
+		segmento(comMetadados, 0xFFFE, "comentario");
+		comMetadados.write(limpo, 2, limpo.length - 2);
+		Path origem = Files.write(dir.resolve("foto.jpg"), comMetadados.toByteArray());
+
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+		PreviewRenderer.jpegSemMetadados(origem.toFile(), saida);
+
+		assertArrayEquals(limpo, saida.toByteArray());
+	}
+
+	@Test
+	void pngSemMetadadosDescartaTextoEMantemPixels() throws IOException {
+		BufferedImage imagem = new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB);
+		imagem.setRGB(1, 1, 0x80FF0000);
+		byte[] limpo = codificar(imagem, "png");
+		// Insere um tEXt logo depois do IHDR (assinatura de 8 bytes + IHDR de 25).
+		ByteArrayOutputStream comTexto = new ByteArrayOutputStream();
+		comTexto.write(limpo, 0, 33);
+		chunk(comTexto, "tEXt", "Author\0Fulano");
+		comTexto.write(limpo, 33, limpo.length - 33);
+		Path origem = Files.write(dir.resolve("imagem.png"), comTexto.toByteArray());
+
+		ByteArrayOutputStream saida = new ByteArrayOutputStream();
+		PreviewRenderer.pngSemMetadados(origem.toFile(), saida);
+
+		assertArrayEquals(limpo, saida.toByteArray());
+		BufferedImage lida = ImageIO.read(new ByteArrayInputStream(saida.toByteArray()));
+		assertNotNull(lida);
+		assertEquals(0x80FF0000, lida.getRGB(1, 1));
+	}
+
+	private static byte[] codificar(BufferedImage imagem, String formato) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		assertTrue(ImageIO.write(imagem, formato, bytes));
+		return bytes.toByteArray();
+	}
+
+	private static void segmento(ByteArrayOutputStream out, int marcador, String conteudo) throws IOException {
+		byte[] dados = conteudo.getBytes(StandardCharsets.ISO_8859_1);
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeShort(marcador);
+		data.writeShort(dados.length + 2);
+		data.write(dados);
+	}
+
+	private static void chunk(ByteArrayOutputStream out, String tipo, String conteudo) throws IOException {
+		byte[] nome = tipo.getBytes(StandardCharsets.US_ASCII);
+		byte[] dados = conteudo.getBytes(StandardCharsets.ISO_8859_1);
+		CRC32 crc = new CRC32();
+		crc.update(nome);
+		crc.update(dados);
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(dados.length);
+		data.write(nome);
+		data.write(dados);
+		data.writeInt((int) crc.getValue());
+	}
+}
@@ -0,0 +1,174 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.config.ApiExceptionHandler;
+import com.app.expenseControl.dto.ApiErrorResponse;
+import com.app.expenseControl.dto.DecisaoLoteDTO;
+import com.app.expenseControl.dto.DecisaoLoteItemDTO;
+import com.app.expenseControl.dto.DecisaoLoteResponseDTO;
+import com.app.expenseControl.dto.DecisaoSolicitacaoDTO;
+import com.app.expenseControl.entity.Conta;
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.entity.SolicitacaoHistorico;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.enums.TipoConta;
+import com.app.expenseControl.repository.AttachmentRepository;
+import com.app.expenseControl.repository.CategoriaRepository;
+import com.app.expenseControl.repository.ContaRepository;
+import com.app.expenseControl.repository.SolicitacaoHistoricoRepository;
+import com.app.expenseControl.repository.SolicitacaoJdbcRepository;
+import com.app.expenseControl.repository.SolicitacaoLinhaRepository;
+import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Controle de concorrencia otimista nas decisoes unitarias e em lote.
+ */
+class SolicitacaoServiceTest {
+
+	private SolicitacaoRepository solicitacaoRepository;
+	private SolicitacaoJdbcRepository jdbcRepository;
+	private SolicitacaoHistoricoRepository historicoRepository;
+	private AuditoriaService auditoriaService;
+	private SolicitacaoService service;
+
+	@BeforeEach
+	void iniciar() {
+		solicitacaoRepository = mock(SolicitacaoRepository.class);
+		jdbcRepository = mock(SolicitacaoJdbcRepository.class);
+		historicoRepository = mock(SolicitacaoHistoricoRepository.class);
+		auditoriaService = mock(AuditoriaService.class);
+		ContaRepository contaRepository = mock(ContaRepository.class);
+		ContaPermissionService permissionService = mock(ContaPermissionService.class);
+		OrcamentoService orcamentoService = mock(OrcamentoService.class);
+		service = new SolicitacaoService(
+				solicitacaoRepository,
+				mock(CategoriaRepository.class),
+				contaRepository,
+				mock(AttachmentRepository.class),
+				mock(SolicitacaoLinhaRepository.class),
+				historicoRepository,
+				jdbcRepository,
+				mock(AttachmentService.class),
+				permissionService,
+				auditoriaService,
+				orcamentoService,
+				mock(SolicitacaoStatsCache.class),
+				mock(SolicitacaoStatsFanOut.class),
+				mock(ApplicationEventPublisher.class),
+				15
+		);
+		SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("gestor", "senha"));
+		when(contaRepository.findByUsuario("gestor")).thenReturn(Optional.of(Conta.builder()
+				.usuario("gestor")
+				.tipo(TipoConta.ADMIN)
+				.build()));
+		when(permissionService.canApproveSolicitacao(any())).thenReturn(true);
+		when(permissionService.isRootAdmin(any())).thenReturn(true);
+		when(orcamentoService.bloqueiosEmLote(anyList()))
+				.thenAnswer(invocacao -> Arrays.asList(new String[((List<?>) invocacao.getArgument(0)).size()]));
+	}
+
+	@AfterEach
+	void limpar() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void ifMatchDesatualizadoRetorna412SemGravar() {
+		when(solicitacaoRepository.findById(1L)).thenReturn(Optional.of(pendente(1L, 4L)));
+
+		ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+				() -> service.decidir(1L, new DecisaoSolicitacaoDTO("APROVADO", null, null), 3L));
+
+		assertEquals(HttpStatus.PRECONDITION_FAILED, ex.getStatusCode());
+		verify(solicitacaoRepository, never()).saveAndFlush(any());
+	}
+
+	@Test
+	void decisaoConcorrentePerdeNoFlushEViraConflito() {
+		when(solicitacaoRepository.findById(1L)).thenReturn(Optional.of(pendente(1L, 4L)));
+		// Outro aprovador gravou entre a leitura e o flush: o UPDATE com versao nao encontra a linha.
+		ObjectOptimisticLockingFailureException falha = new ObjectOptimisticLockingFailureException(Solicitacao.class, 1L);
+		when(solicitacaoRepository.saveAndFlush(any())).thenThrow(falha);
+
+		assertThrows(ObjectOptimisticLockingFailureException.class,
+				() -> service.decidir(1L, new DecisaoSolicitacaoDTO("APROVADO", null, null), 4L));
+
+		verify(historicoRepository, never()).save(any());
+		verify(auditoriaService, never()).registrar(any(), any(), any(), any(), any(), any());
+		ResponseEntity<ApiErrorResponse> resposta = new ApiExceptionHandler()
+				.handleOptimisticLocking(falha, new MockHttpServletRequest());
+		assertEquals(HttpStatus.CONFLICT, resposta.getStatusCode());
+	}
+
+	@Test
+	void loteSeparaVersaoDesatualizadaECorridaPerdida() {
+		when(solicitacaoRepository.findAllSomenteLeituraByIdIn(any()))
+				.thenReturn(List.of(pendente(1L, 2L), pendente(2L, 5L), pendente(3L, 7L)));
+		// A solicitacao 3 foi alterada entre a leitura e o UPDATE condicionado a versao.
+		when(jdbcRepository.decidirPendentes(anyList())).thenReturn(new boolean[]{true, false});
+
+		DecisaoLoteResponseDTO resposta = service.decidirEmLote(new DecisaoLoteDTO(List.of(
+				new DecisaoLoteItemDTO(1L, "APROVADO", null, null, 2L),
+				new DecisaoLoteItemDTO(2L, "APROVADO", null, null, 4L),
+				new DecisaoLoteItemDTO(3L, "REPROVADO", null, null, null)
+		)));
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<SolicitacaoJdbcRepository.Decisao>> decisoes = ArgumentCaptor.forClass(List.class);
+		verify(jdbcRepository).decidirPendentes(decisoes.capture());
+		assertEquals(List.of(1L, 3L), decisoes.getValue().stream().map(SolicitacaoJdbcRepository.Decisao::id).toList());
+		assertEquals(List.of(2L, 7L), decisoes.getValue().stream().map(SolicitacaoJdbcRepository.Decisao::versao).toList());
+
+		assertEquals(1, resposta.processadas());
+		assertTrue(resposta.resultados().get(0).sucesso());
+		assertEquals(3L, resposta.resultados().get(0).versao());
+		assertFalse(resposta.resultados().get(1).sucesso());
+		assertEquals(HttpStatus.PRECONDITION_FAILED.value(), resposta.resultados().get(1).codigo());
+		assertFalse(resposta.resultados().get(2).sucesso());
+		assertEquals(HttpStatus.CONFLICT.value(), resposta.resultados().get(2).codigo());
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<SolicitacaoHistorico>> historicos = ArgumentCaptor.forClass(List.class);
+		verify(historicoRepository).saveAll(historicos.capture());
+		assertEquals(List.of(1L), historicos.getValue().stream().map(SolicitacaoHistorico::getSolicitacaoId).toList());
+	}
+
+	private Solicitacao pendente(Long id, Long versao) {
+		return Solicitacao.builder()
+				.id(id)
+				.filial("matriz")
+				.titulo("Taxi")
+				.valorEstimado(new BigDecimal("80.00"))
+				.status(StatusSolicitacao.PENDENTE)
+				.versao(versao)
+				.build();
+	}
+}
@@ -0,0 +1,122 @@
+package com.app.expenseControl.service;
+
+import com.app.expenseControl.entity.Solicitacao;
+import com.app.expenseControl.entity.SolicitacaoHistorico;
+import com.app.expenseControl.enums.StatusSolicitacao;
+import com.app.expenseControl.repository.SolicitacaoHistoricoRepository;
+import com.app.expenseControl.repository.SolicitacaoJdbcRepository;
+import com.app.expenseControl.repository.SolicitacaoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prazos e marcacoes da rotina de vencimento.
+ */
+class SolicitacaoVencimentoServiceTest {
+
+	private SolicitacaoRepository solicitacaoRepository;
+	private SolicitacaoJdbcRepository jdbcRepository;
+	private SolicitacaoHistoricoRepository historicoRepository;
+	private AuditoriaService auditoriaService;
+	private SolicitacaoVencimentoService service;
+
+	@BeforeEach
+	void iniciar() {
+		solicitacaoRepository = mock(SolicitacaoRepository.class);
+		jdbcRepository = mock(SolicitacaoJdbcRepository.class);
+		historicoRepository = mock(SolicitacaoHistoricoRepository.class);
+		auditoriaService = mock(AuditoriaService.class);
+		service = new SolicitacaoVencimentoService(
+				solicitacaoRepository,
+				jdbcRepository,
+				historicoRepository,
+				mock(OrcamentoService.class),
+				auditoriaService,
+				mock(ApplicationEventPublisher.class),
+				mock(PlatformTransactionManager.class),
+				7, 3, 5, 100, 10
+		);
+		when(jdbcRepository.tentarLockTransacional(anyLong())).thenReturn(true);
+	}
+
+	@Test
+	void lembreteContaDoPedidoDeAjusteEEscalaContaDoEnvio() {
+		service.executar();
+
+		ArgumentCaptor<LocalDateTime> expirar = ArgumentCaptor.forClass(LocalDateTime.class);
+		ArgumentCaptor<LocalDateTime> lembrar = ArgumentCaptor.forClass(LocalDateTime.class);
+		ArgumentCaptor<LocalDateTime> escalar = ArgumentCaptor.forClass(LocalDateTime.class);
+		verify(solicitacaoRepository).findLembradasSomenteLeitura(eq(StatusSolicitacao.PENDENTE_INFO), expirar.capture(), any());
+		verify(solicitacaoRepository).findInfoSemLembreteSomenteLeitura(lembrar.capture(), any());
+		verify(solicitacaoRepository).findNaoSinalizadasSomenteLeitura(eq(StatusSolicitacao.PENDENTE), escalar.capture(), any());
+		// PENDENTE_INFO nao passa mais pela busca por enviado_em.
+		verify(solicitacaoRepository, never()).findNaoSinalizadasSomenteLeitura(eq(StatusSolicitacao.PENDENTE_INFO), any(), any());
+
+		// Todas as etapas partem do mesmo instante: 7 dias (escalar), 3 (lembrar) e 5 (expirar).
+		assertEquals(Duration.ofDays(4), Duration.between(escalar.getValue(), lembrar.getValue()));
+		assertEquals(Duration.ofDays(2), Duration.between(expirar.getValue(), lembrar.getValue()));
+		LocalDateTime agora = LocalDateTime.now();
+		assertTrue(Duration.between(lembrar.getValue(), agora).compareTo(Duration.ofDays(3)) >= 0);
+		assertTrue(Duration.between(lembrar.getValue(), agora).compareTo(Duration.ofDays(3).plusMinutes(1)) < 0);
+	}
+
+	@Test
+	void lembraApenasAsQueSeguemNaVersaoLida() {
+		Solicitacao atual = pendenteInfo(1L);
+		Solicitacao alterada = pendenteInfo(2L);
+		when(solicitacaoRepository.findInfoSemLembreteSomenteLeitura(any(), any())).thenReturn(List.of(atual, alterada));
+		when(jdbcRepository.lembrarPendentesInfo(anyList(), any())).thenReturn(new boolean[]{true, false});
+
+		service.executar();
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<SolicitacaoHistorico>> historicos = ArgumentCaptor.forClass(List.class);
+		verify(historicoRepository).saveAll(historicos.capture());
+		assertEquals(1, historicos.getValue().size());
+		assertEquals(1L, historicos.getValue().get(0).getSolicitacaoId());
+		assertEquals("LEMBRETE", historicos.getValue().get(0).getAcao());
+		verify(auditoriaService).registrarLote(anyList());
+	}
+
+	@Test
+	void semLockNaoProcessaNada() {
+		when(jdbcRepository.tentarLockTransacional(anyLong())).thenReturn(false);
+
+		service.executar();
+
+		verify(solicitacaoRepository, never()).findLembradasSomenteLeitura(any(), any(), any());
+		verify(solicitacaoRepository, never()).findInfoSemLembreteSomenteLeitura(any(), any());
+		verify(historicoRepository, never()).saveAll(anyList());
+	}
+
+	private Solicitacao pendenteInfo(Long id) {
+		LocalDateTime agora = LocalDateTime.now();
+		return Solicitacao.builder()
+				.id(id)
+				.filial("matriz")
+				.titulo("Taxi")
+				.status(StatusSolicitacao.PENDENTE_INFO)
+				.enviadoEm(agora.minusDays(30))
+				.infoSolicitadaEm(agora.minusDays(4))
+				.versao(3L)
+				.build();
+	}
+}
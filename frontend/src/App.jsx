@@ -141,6 +141,7 @@ function AppRuntime() {
           onPedidoInfo={controller.admin.onPedidoInfo}
           onLoadStats={controller.admin.onLoadStats}
           onDownloadAttachment={controller.admin.onDownloadAttachment}
+          onLoadAttachmentPreview={controller.admin.onLoadAttachmentPreview}
           onDeleteAttachment={controller.admin.onDeleteAttachment}
           onDeleteSolicitacao={controller.admin.onDeleteSolicitacao}
           onUpdatePasswordForm={controller.admin.onUpdatePasswordForm}
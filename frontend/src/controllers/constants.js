@@ -1,5 +1,9 @@
 export const MAX_ATTACHMENTS = 5;
 export const MAX_ATTACHMENT_SIZE = 10 * 1024 * 1024;
+// Acima de MAX_ATTACHMENT_SIZE o envio usa upload retomavel, em trechos.
+export const MAX_RESUMABLE_ATTACHMENT_SIZE = 100 * 1024 * 1024;
+export const RESUMABLE_CHUNK_SIZE = 4 * 1024 * 1024;
+export const RESUMABLE_MAX_RETRIES = 5;
 export const ALLOWED_ATTACHMENT_TYPES = ["application/pdf", "image/jpeg", "image/png", "image/jpg"];
 export const DEFAULT_PAGE_SIZE = 20;
 
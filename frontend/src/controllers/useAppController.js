@@ -80,6 +80,7 @@ export const useAppController = () => {
     handleUploadAttachment,
     handleUploadAttachments,
     handleDownloadAttachment,
+    loadAttachmentPreview,
     handleDeleteAttachment,
     loadAttachments,
   } = useAttachmentsController({
@@ -273,6 +274,7 @@ export const useAppController = () => {
       attachmentsLoading,
       attachmentsUploading,
       onDownloadAttachment: handleDownloadAttachment,
+      onLoadAttachmentPreview: loadAttachmentPreview,
       onDeleteAttachment: handleDeleteAttachment,
     },
   };
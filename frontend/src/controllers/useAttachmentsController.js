@@ -1,10 +1,19 @@
 import { useCallback, useMemo, useState } from "react";
 import { API_BASE } from "../models/api.js";
-import { ALLOWED_ATTACHMENT_TYPES, MAX_ATTACHMENTS, MAX_ATTACHMENT_SIZE } from "./constants.js";
+import {
+  ALLOWED_ATTACHMENT_TYPES,
+  MAX_ATTACHMENTS,
+  MAX_ATTACHMENT_SIZE,
+  MAX_RESUMABLE_ATTACHMENT_SIZE,
+  RESUMABLE_CHUNK_SIZE,
+  RESUMABLE_MAX_RETRIES,
+} from "./constants.js";
 import { getErrorMessage } from "./utils/errors.js";
 
 const PREVIEWABLE_EXTENSIONS = new Set(["pdf", "png", "jpg", "jpeg"]);
 
+const wait = (ms) => new Promise((resolve) => window.setTimeout(resolve, ms));
+
 export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice, openConfirm }) => {
   const [attachments, setAttachments] = useState([]);
   const [attachmentsLoading, setAttachmentsLoading] = useState(false);
@@ -16,8 +25,8 @@ export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice
     if (!ALLOWED_ATTACHMENT_TYPES.includes(file.type)) {
       return "Tipo de arquivo não permitido.";
     }
-    if (file.size > MAX_ATTACHMENT_SIZE) {
-      return "Arquivo maior que 10MB.";
+    if (file.size > MAX_RESUMABLE_ATTACHMENT_SIZE) {
+      return "Arquivo maior que 100MB.";
     }
     return null;
   }, []);
@@ -96,9 +105,47 @@ export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice
     [clearAttachments, requestAuthed, showNotice],
   );
 
+  // Arquivos grandes vao em trechos: se um trecho falhar, consulta o offset no servidor e
+  // continua dali, sem reenviar o que ja chegou.
+  const uploadResumableAttachment = useCallback(
+    async (solicitacaoId, file) => {
+      const session = await requestAuthed(`/solicitacoes/${solicitacaoId}/anexos/uploads`, {
+        method: "POST",
+        body: JSON.stringify({ nome: file.name, contentType: file.type, tamanho: file.size }),
+      });
+      let offset = session.recebido || 0;
+      let failures = 0;
+      try {
+        while (offset < file.size) {
+          try {
+            const current = await requestAuthed(`/anexos/uploads/${session.id}?offset=${offset}`, {
+              method: "PUT",
+              headers: { "Content-Type": "application/octet-stream" },
+              body: file.slice(offset, offset + RESUMABLE_CHUNK_SIZE),
+            });
+            offset = current.recebido;
+            failures = 0;
+          } catch (error) {
+            failures += 1;
+            if (failures > RESUMABLE_MAX_RETRIES) throw error;
+            await wait(1000 * failures);
+            const current = await requestAuthed(`/anexos/uploads/${session.id}`);
+            offset = current.recebido;
+          }
+        }
+        return await requestAuthed(`/anexos/uploads/${session.id}/concluir`, { method: "POST" });
+      } catch (error) {
+        requestAuthed(`/anexos/uploads/${session.id}`, { method: "DELETE" }).catch(() => {});
+        throw error;
+      }
+    },
+    [requestAuthed],
+  );
+
   const uploadPendingAttachments = useCallback(
     async (solicitacaoId, files) => {
       const failures = [];
+      const smallFiles = [];
       setAttachmentsUploading(true);
       try {
         for (const file of files) {
@@ -107,15 +154,29 @@ export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice
             failures.push({ file, error: validationError });
             continue;
           }
+          if (file.size <= MAX_ATTACHMENT_SIZE) {
+            smallFiles.push(file);
+            continue;
+          }
           try {
-            const formData = new FormData();
-            formData.append("file", file);
-            await requestAuthed(`/solicitacoes/${solicitacaoId}/anexos`, {
+            await uploadResumableAttachment(solicitacaoId, file);
+          } catch (error) {
+            failures.push({ file, error: getErrorMessage(error, "Erro ao enviar anexo.") });
+          }
+        }
+        if (smallFiles.length > 0) {
+          // Arquivos comuns vao juntos em uma unica requisicao; o lote e anexado todo ou nada.
+          const formData = new FormData();
+          const batch = smallFiles.length > 1;
+          smallFiles.forEach((file) => formData.append(batch ? "files" : "file", file));
+          try {
+            await requestAuthed(`/solicitacoes/${solicitacaoId}/anexos${batch ? "/batch" : ""}`, {
               method: "POST",
               body: formData,
             });
           } catch (error) {
-            failures.push({ file, error: getErrorMessage(error, "Erro ao enviar anexo.") });
+            const message = getErrorMessage(error, "Erro ao enviar anexo.");
+            smallFiles.forEach((file) => failures.push({ file, error: message }));
           }
         }
       } finally {
@@ -123,7 +184,7 @@ export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice
       }
       return failures;
     },
-    [requestAuthed, validateAttachmentFile],
+    [requestAuthed, uploadResumableAttachment, validateAttachmentFile],
   );
 
   const handleUploadAttachments = useCallback(
@@ -262,6 +323,26 @@ export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice
     [authHeader, showNotice],
   );
 
+  // Miniatura gerada no servidor (JPEG pequeno) em vez do arquivo original.
+  const loadAttachmentPreview = useCallback(
+    async (attachmentId, tamanho = 160) => {
+      if (!attachmentId || !authHeader) return null;
+      try {
+        const response = await fetch(`${API_BASE}/anexos/${attachmentId}/preview?tamanho=${tamanho}`, {
+          headers: {
+            Authorization: authHeader,
+          },
+        });
+        if (!response.ok) return null;
+        const blob = await response.blob();
+        return window.URL.createObjectURL(blob);
+      } catch {
+        return null;
+      }
+    },
+    [authHeader],
+  );
+
   const attachmentsApi = useMemo(
     () => ({
       pendingAttachments,
@@ -295,6 +376,7 @@ export const useAttachmentsController = ({ requestAuthed, authHeader, showNotice
     handleUploadAttachment,
     handleUploadAttachments,
     handleDownloadAttachment,
+    loadAttachmentPreview,
     handleDeleteAttachment,
   };
 };
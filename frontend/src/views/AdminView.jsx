@@ -61,6 +61,7 @@ export const AdminView = ({
   onDeleteSolicitacao,
   onLoadStats,
   onDownloadAttachment,
+  onLoadAttachmentPreview,
   onDeleteAttachment,
   onUpdatePasswordForm,
   onSubmitPassword,
@@ -243,6 +244,7 @@ export const AdminView = ({
           onPedidoInfo={onPedidoInfo}
           onDeleteSolicitacao={onDeleteSolicitacao}
           onDownloadAttachment={onDownloadAttachment}
+          onLoadAttachmentPreview={onLoadAttachmentPreview}
           onDeleteAttachment={onDeleteAttachment}
         />
       )}
@@ -9,6 +9,34 @@ import {
   statusLabels,
 } from "../format";
 
+const PREVIEW_TYPES = new Set(["application/pdf", "image/jpeg", "image/jpg", "image/png"]);
+
+const AttachmentThumb = ({ attachment, onLoadPreview }) => {
+  const [url, setUrl] = useState(null);
+  const previewable = PREVIEW_TYPES.has(String(attachment.contentType || "").toLowerCase());
+
+  useEffect(() => {
+    if (!previewable || !onLoadPreview) return undefined;
+    let active = true;
+    let objectUrl = null;
+    onLoadPreview(attachment.id, 160).then((loaded) => {
+      objectUrl = loaded;
+      if (active) {
+        setUrl(loaded);
+      } else if (loaded) {
+        window.URL.revokeObjectURL(loaded);
+      }
+    });
+    return () => {
+      active = false;
+      if (objectUrl) window.URL.revokeObjectURL(objectUrl);
+    };
+  }, [attachment.id, onLoadPreview, previewable]);
+
+  if (!url) return null;
+  return <img className="attachment-thumb" src={url} alt="" loading="lazy" />;
+};
+
 export const AdminDetailPanel = ({
   selected,
   isAprovadasTab,
@@ -26,6 +54,7 @@ export const AdminDetailPanel = ({
   onPedidoInfo,
   onDeleteSolicitacao,
   onDownloadAttachment,
+  onLoadAttachmentPreview,
   onDeleteAttachment,
 }) => {
   const canDecide = canApproveSolicitacao && selected?.status === "PENDENTE";
@@ -314,7 +343,10 @@ export const AdminDetailPanel = ({
                     <tbody>
                       {attachments.map((item) => (
                         <tr key={item.id}>
-                          <td className="file-name">{item.originalName}</td>
+                          <td className="file-name">
+                            <AttachmentThumb attachment={item} onLoadPreview={onLoadAttachmentPreview} />
+                            {item.originalName}
+                          </td>
                           <td className="mono file-meta">{formatFileSize(item.size)}</td>
                           <td className="file-meta">{item.uploadedBy}</td>
                           <td className="mono file-meta">{formatDateTime(item.createdAt)}</td>
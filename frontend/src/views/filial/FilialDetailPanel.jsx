@@ -150,7 +150,7 @@ export const FilialDetailPanel = ({
                   disabled={!canAttachMoreExisting || attachmentsLoading || attachmentsUploading || isSubmitting}
                   onFiles={(files) => onUploadAttachments(files, selected.id)}
                   summaryText={detailUploadSummary}
-                  helpText="PDF/JPG/PNG até 10MB. Máximo 5 anexos."
+                  helpText="PDF/JPG/PNG até 100MB. Máximo 5 anexos."
                 />
               </div>
 
@@ -34,7 +34,7 @@ export const FilialFormPanel = ({
     ? "Enviando anexos..."
     : `${pendingCount}/${maxAttachments} anexos na fila`;
   const draftUploadHelp =
-    "PDF/JPG/PNG até 10MB. Os anexos são enviados após salvar a solicitação.";
+    "PDF/JPG/PNG até 100MB. Os anexos são enviados após salvar a solicitação.";
 
   const handleDropFiles = (files) => {
     if (isEditing && uploadTargetId) {
@@ -183,7 +183,7 @@ export const FilialFormPanel = ({
           </div>
 
           <div className="section-title">Anexos</div>
-          <p className="panel__subtitle">PDF/JPG/PNG até 10MB. Máximo 5 anexos por solicitação.</p>
+          <p className="panel__subtitle">PDF/JPG/PNG até 100MB. Máximo 5 anexos por solicitação.</p>
           <div className="field file-field">
             <label>Anexar arquivos</label>
             <FileDropzone
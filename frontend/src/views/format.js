@@ -11,11 +11,15 @@ export const historicoAcoes = {
   REENVIADA: "Solicitação reenviada",
   APROVADA: "Solicitação aprovada",
   REPROVADA: "Solicitação reprovada",
+  ESCALADA: "Solicitação escalada",
+  LEMBRETE: "Lembrete de ajuste",
+  EXPIRADA: "Reprovada por prazo",
 };
 
 export const historicoAtores = {
   ADMIN: "Admin",
   FILIAL: "Filial",
+  SISTEMA: "Sistema",
 };
 
 export const formatCurrency = (value) => {